@@ -0,0 +1,133 @@
+package com.nckh.dia5.config;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache for reference and catalog data (provinces, specialties, medications, pharmacies,
+ * distributors): a short-lived near cache on every node in front of Redis.
+ *
+ * When {@code app.cache.redis.enabled=false} or Redis does not answer a PING at startup the
+ * application runs with the near cache only.
+ */
+@Slf4j
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    private static final Map<String, Long> DEFAULT_TTL_SECONDS = Map.of(
+            CacheNames.PROVINCES, 86400L,
+            CacheNames.MEDICAL_SPECIALTIES, 86400L,
+            CacheNames.MEDICATIONS, 21600L,
+            CacheNames.PHARMACIES, 3600L,
+            CacheNames.DISTRIBUTORS, 3600L);
+
+    private static final int CLEAR_SCAN_BATCH_SIZE = 1000;
+
+    @Value("${app.cache.redis.enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${app.cache.default-ttl-seconds:600}")
+    private long defaultTtlSeconds;
+
+    @Value("${app.cache.local.max-ttl-seconds:60}")
+    private long localMaxTtlSeconds;
+
+    @Value("${app.cache.local.max-size:1000}")
+    private int localMaxSize;
+
+    @Value("${app.cache.redis.key-prefix:dia5:cache:}")
+    private String keyPrefix;
+
+    @Value("${app.cache.redis.invalidation-channel:dia5:cache:invalidate}")
+    private String invalidationChannel;
+
+    @Value("${app.cache.redis.retry-delay-seconds:30}")
+    private long remoteRetryDelaySeconds;
+
+    @Bean
+    public TwoTierCacheManager cacheManager(ObjectProvider<RedisConnectionFactory> connectionFactoryProvider,
+            ObjectMapper objectMapper, Environment environment) {
+        Function<String, Duration> ttlResolver = name -> Duration.ofSeconds(environment.getProperty(
+                "app.cache.ttl-seconds." + name, Long.class,
+                DEFAULT_TTL_SECONDS.getOrDefault(name, defaultTtlSeconds)));
+
+        RedisConnectionFactory connectionFactory = redisEnabled ? connectionFactoryProvider.getIfAvailable() : null;
+        if (connectionFactory != null && !isReachable(connectionFactory)) {
+            connectionFactory = null;
+        }
+
+        RedisCacheManager redisCacheManager = null;
+        if (connectionFactory != null) {
+            redisCacheManager = buildRedisCacheManager(connectionFactory, objectMapper, ttlResolver);
+            log.info("Cache: near cache + Redis tier (channel {})", invalidationChannel);
+        } else {
+            log.info("Cache: local-only mode (Redis {})", redisEnabled ? "unavailable" : "disabled");
+        }
+
+        return new TwoTierCacheManager(ttlResolver, Duration.ofSeconds(localMaxTtlSeconds), localMaxSize,
+                connectionFactory, redisCacheManager, invalidationChannel,
+                Duration.ofSeconds(remoteRetryDelaySeconds));
+    }
+
+    private RedisCacheManager buildRedisCacheManager(RedisConnectionFactory connectionFactory,
+            ObjectMapper objectMapper, Function<String, Duration> ttlResolver) {
+        // Lưu kèm type info để đọc lại đúng DTO/entity từ Redis
+        ObjectMapper redisMapper = objectMapper.copy();
+        redisMapper.activateDefaultTyping(
+                BasicPolymorphicTypeValidator.builder().allowIfSubType("com.nckh.dia5.").allowIfSubType("java.").build(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        RedisCacheConfiguration defaults = RedisCacheConfiguration.defaultCacheConfig()
+                .disableCachingNullValues()
+                .prefixCacheNameWith(keyPrefix)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new GenericJackson2JsonRedisSerializer(redisMapper)));
+
+        Map<String, RedisCacheConfiguration> perCache = new HashMap<>();
+        for (String name : CacheNames.ALL) {
+            perCache.put(name, defaults.entryTtl(ttlResolver.apply(name)));
+        }
+
+        // clear() xoá theo SCAN từng khối thay vì KEYS, không chặn Redis dùng chung khi catalog thay đổi
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory,
+                BatchStrategies.scan(CLEAR_SCAN_BATCH_SIZE));
+        RedisCacheManager manager = RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(defaults.entryTtl(Duration.ofSeconds(defaultTtlSeconds)))
+                .withInitialCacheConfigurations(perCache)
+                .build();
+        manager.afterPropertiesSet();
+        return manager;
+    }
+
+    private boolean isReachable(RedisConnectionFactory connectionFactory) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Redis not reachable, falling back to local-only cache: {}", e.getMessage());
+            return false;
+        }
+    }
+}
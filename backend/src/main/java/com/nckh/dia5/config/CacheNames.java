@@ -0,0 +1,22 @@
+package com.nckh.dia5.config;
+
+import java.util.List;
+
+/**
+ * Names of the shared reference/catalog caches. Default TTLs live in {@link CacheConfig} and can be
+ * overridden with {@code app.cache.ttl-seconds.<name>}.
+ */
+public final class CacheNames {
+
+    public static final String PROVINCES = "provinces";
+    public static final String MEDICAL_SPECIALTIES = "medicalSpecialties";
+    public static final String MEDICATIONS = "medications";
+    public static final String PHARMACIES = "pharmacies";
+    public static final String DISTRIBUTORS = "distributors";
+
+    public static final List<String> ALL = List.of(PROVINCES, MEDICAL_SPECIALTIES, MEDICATIONS, PHARMACIES,
+            DISTRIBUTORS);
+
+    private CacheNames() {
+    }
+}
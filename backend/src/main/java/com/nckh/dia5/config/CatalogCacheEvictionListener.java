@@ -0,0 +1,75 @@
+package com.nckh.dia5.config;
+
+import com.nckh.dia5.model.MedicalSpecialty;
+import com.nckh.dia5.model.Medication;
+import com.nckh.dia5.model.PharmaCompany;
+import com.nckh.dia5.model.Province;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * JPA listener on the catalog entities that clears the caches built from them once the write
+ * commits. Clearing a {@link TwoTierCache} also tells the other nodes to drop their near copies.
+ *
+ * Hibernate obtains this listener from the Spring bean container, so it can be injected.
+ */
+@RequiredArgsConstructor
+public class CatalogCacheEvictionListener {
+
+    private final CacheManager cacheManager;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onCatalogChange(Object entity) {
+        List<String> cacheNames = cacheNamesFor(entity);
+        if (cacheNames.isEmpty()) {
+            return;
+        }
+
+        // Clear sau commit, tránh node khác nạp lại dữ liệu cũ trước khi transaction kết thúc
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear(cacheNames);
+                }
+            });
+        } else {
+            clear(cacheNames);
+        }
+    }
+
+    private void clear(List<String> cacheNames) {
+        for (String name : cacheNames) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    private static List<String> cacheNamesFor(Object entity) {
+        if (entity instanceof PharmaCompany) {
+            return List.of(CacheNames.PHARMACIES, CacheNames.DISTRIBUTORS);
+        }
+        if (entity instanceof Medication) {
+            return List.of(CacheNames.MEDICATIONS);
+        }
+        if (entity instanceof Province) {
+            return List.of(CacheNames.PROVINCES);
+        }
+        if (entity instanceof MedicalSpecialty) {
+            return List.of(CacheNames.MEDICAL_SPECIALTIES);
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,58 @@
+package com.nckh.dia5.config;
+
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.model.Shipment;
+import com.nckh.dia5.service.DashboardStatsService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Feeds batch and shipment writes into {@link DashboardStatsService} as deltas between the last
+ * persisted state (remembered on load and after each flush) and the new one. Obtained from the
+ * Spring bean container like {@link CatalogCacheEvictionListener}.
+ *
+ * The service is resolved lazily: Hibernate creates this listener while the entity manager factory
+ * is being built, before the service's repositories can exist.
+ */
+@RequiredArgsConstructor
+public class DashboardStatsListener {
+
+    private final ObjectProvider<DashboardStatsService> dashboardStatsService;
+
+    @PostLoad
+    public void onLoad(Object entity) {
+        if (entity instanceof DrugBatch batch) {
+            batch.rememberPersistedState();
+        } else if (entity instanceof Shipment shipment) {
+            shipment.rememberPersistedState();
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Object entity) {
+        if (entity instanceof DrugBatch batch) {
+            dashboardStatsService.getObject().onBatchChanged(batch.getPersistedStatus(), batch.getPersistedQuantity(),
+                    batch.getStatus(), batch.getQuantity());
+            batch.rememberPersistedState();
+        } else if (entity instanceof Shipment shipment) {
+            dashboardStatsService.getObject().onShipmentChanged(shipment.getPersistedStatus(), shipment.getPersistedShipmentDate(),
+                    shipment.getStatus(), shipment.getShipmentDate());
+            shipment.rememberPersistedState();
+        }
+    }
+
+    @PostRemove
+    public void onRemoved(Object entity) {
+        if (entity instanceof DrugBatch batch) {
+            dashboardStatsService.getObject().onBatchChanged(batch.getPersistedStatus(), batch.getPersistedQuantity(), null, null);
+        } else if (entity instanceof Shipment shipment) {
+            dashboardStatsService.getObject().onShipmentChanged(shipment.getPersistedStatus(), shipment.getPersistedShipmentDate(),
+                    null, null);
+        }
+    }
+}
@@ -4,12 +4,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+/**
+ * MySQL schema fixes applied at startup. Not run under the test profile, whose H2 schema is
+ * generated from the entities.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@Profile("!test")
 public class DatabaseHotfixRunner implements ApplicationRunner {
 
     private final JdbcTemplate jdbcTemplate;
@@ -19,6 +26,18 @@ public class DatabaseHotfixRunner implements ApplicationRunner {
         fixOwnershipHistoryForeignKey();
         fixDrugVerificationRecordsForeignKey();
         dropProblematicTriggers();
+        fixBlockchainEventsUniqueKey();
+        createIndexerCursorTable();
+        addBlockchainEventProjectionColumns();
+        createIndexedBlocksTable();
+        createBatchCreationJobsTable();
+        createBlockchainOutboxTable();
+        addChatMessageOrderUniqueKey();
+        addDashboardStatsIndexes();
+        createSchemaBackfillsTable();
+        addShipmentBlockchainColumns();
+        addSerialRegistrationRetryColumns();
+        addProductItemRedeemedBlockColumn();
     }
 
     private void fixOwnershipHistoryForeignKey() {
@@ -65,6 +84,246 @@ public class DatabaseHotfixRunner implements ApplicationRunner {
             log.warn("Skipping drop trigger update_batch_status_on_delivery: {}", e.getMessage());
         }
     }
-}
 
+    private void fixBlockchainEventsUniqueKey() {
+        // Một transaction có thể phát nhiều event -> unique theo (transaction_hash, log_index) để upsert
+        try {
+            jdbcTemplate.execute("ALTER TABLE blockchain_events DROP INDEX UKmy081fpj6u877vqk9jv516sr4");
+            log.info("Dropped unique key UKmy081fpj6u877vqk9jv516sr4 on blockchain_events");
+        } catch (Exception e) {
+            log.warn("Skipping drop unique key UKmy081fpj6u877vqk9jv516sr4: {}", e.getMessage());
+        }
+        try {
+            jdbcTemplate.execute("ALTER TABLE blockchain_events ADD UNIQUE KEY uk_blockchain_events_tx_log (transaction_hash, log_index)");
+            log.info("Added unique key uk_blockchain_events_tx_log on blockchain_events");
+        } catch (Exception e) {
+            log.warn("Skipping add unique key uk_blockchain_events_tx_log: {}", e.getMessage());
+        }
+    }
+
+    private void createIndexerCursorTable() {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS blockchain_indexer_cursors (" +
+                    "contract_address varchar(42) NOT NULL PRIMARY KEY, " +
+                    "last_indexed_block decimal(38,0) NOT NULL, " +
+                    "updated_at datetime(6) NOT NULL" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+            log.info("Ensured table blockchain_indexer_cursors");
+        } catch (Exception e) {
+            log.warn("Skipping create table blockchain_indexer_cursors: {}", e.getMessage());
+        }
+    }
+
+    private void addBlockchainEventProjectionColumns() {
+        String[] statements = {
+                "ALTER TABLE blockchain_events ADD COLUMN quantity decimal(38,0) DEFAULT NULL",
+                "ALTER TABLE blockchain_events ADD COLUMN serial_number varchar(255) DEFAULT NULL",
+                "ALTER TABLE blockchain_events ADD COLUMN status_code int DEFAULT NULL",
+                "CREATE INDEX idx_be_batch_block ON blockchain_events (batch_id, block_number, log_index)",
+                "CREATE INDEX idx_be_shipment_block ON blockchain_events (shipment_id, block_number, log_index)",
+                "CREATE INDEX idx_be_from_address ON blockchain_events (from_address)",
+                "CREATE INDEX idx_be_to_address ON blockchain_events (to_address)"
+        };
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+                log.info("Applied: {}", statement);
+            } catch (Exception e) {
+                log.warn("Skipping '{}': {}", statement, e.getMessage());
+            }
+        }
+    }
+
+    private void createIndexedBlocksTable() {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS blockchain_indexed_blocks (" +
+                    "block_number decimal(38,0) NOT NULL PRIMARY KEY, " +
+                    "block_hash varchar(66) NOT NULL, " +
+                    "parent_hash varchar(66) NOT NULL, " +
+                    "indexed_at datetime(6) NOT NULL" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+            log.info("Ensured table blockchain_indexed_blocks");
+        } catch (Exception e) {
+            log.warn("Skipping create table blockchain_indexed_blocks: {}", e.getMessage());
+        }
+    }
+
+    private void createBatchCreationJobsTable() {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS batch_creation_jobs (" +
+                    "id bigint NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                    "batch_id decimal(38,0) NOT NULL, " +
+                    "stage varchar(30) NOT NULL, " +
+                    "status varchar(20) NOT NULL, " +
+                    "total_items bigint NOT NULL, " +
+                    "generated_items bigint NOT NULL DEFAULT 0, " +
+                    "registered_serials bigint NOT NULL DEFAULT 0, " +
+                    "attempts int NOT NULL DEFAULT 0, " +
+                    "last_error varchar(1000) DEFAULT NULL, " +
+                    "next_attempt_at datetime(6) DEFAULT NULL, " +
+                    "created_at datetime(6) NOT NULL, " +
+                    "updated_at datetime(6) NOT NULL, " +
+                    "KEY idx_batch_creation_jobs_status (status, next_attempt_at)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+            log.info("Ensured table batch_creation_jobs");
+        } catch (Exception e) {
+            log.warn("Skipping create table batch_creation_jobs: {}", e.getMessage());
+        }
+    }
+
+    private void createBlockchainOutboxTable() {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS blockchain_outbox (" +
+                    "id bigint NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                    "operation varchar(30) NOT NULL, " +
+                    "aggregate_id bigint NOT NULL, " +
+                    "status varchar(20) NOT NULL, " +
+                    "attempts int NOT NULL DEFAULT 0, " +
+                    "next_attempt_at datetime(6) DEFAULT NULL, " +
+                    "last_error varchar(1000) DEFAULT NULL, " +
+                    "transaction_hash varchar(66) DEFAULT NULL, " +
+                    "created_at datetime(6) NOT NULL, " +
+                    "updated_at datetime(6) NOT NULL, " +
+                    "UNIQUE KEY uk_blockchain_outbox_operation_aggregate (operation, aggregate_id), " +
+                    "KEY idx_blockchain_outbox_ready (status, next_attempt_at, id)" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+            log.info("Ensured table blockchain_outbox");
+        } catch (Exception e) {
+            log.warn("Skipping create table blockchain_outbox: {}", e.getMessage());
+        }
+    }
 
+    private void addChatMessageOrderUniqueKey() {
+        // message_order được cấp từ chat_sessions.total_messages; unique key chặn trùng thứ tự nếu có ghi ngoài luồng đó
+        try {
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE() " +
+                    "AND table_name = 'chat_messages' AND index_name = 'uk_chat_messages_session_order'", Integer.class);
+            if (existing != null && existing > 0) {
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Skipping unique key on chat_messages (session_id, message_order): {}", e.getMessage());
+            return;
+        }
+
+        // Dữ liệu cũ có thể đã trùng (session_id, message_order): đánh số lại các session bị trùng theo thứ tự
+        // hiện có (message_order, timestamp, id) rồi đẩy total_messages lên để lần cấp tiếp theo không trùng
+        try {
+            int renumbered = jdbcTemplate.update(
+                    "UPDATE chat_messages m JOIN (" +
+                    "  SELECT id, ROW_NUMBER() OVER (PARTITION BY session_id ORDER BY message_order, timestamp, id) AS rn " +
+                    "  FROM chat_messages WHERE session_id IN (" +
+                    "    SELECT session_id FROM chat_messages GROUP BY session_id, message_order HAVING COUNT(*) > 1)" +
+                    ") r ON m.id = r.id SET m.message_order = r.rn");
+            if (renumbered > 0) {
+                jdbcTemplate.update(
+                        "UPDATE chat_sessions s JOIN (" +
+                        "  SELECT session_id, MAX(message_order) AS max_order FROM chat_messages GROUP BY session_id" +
+                        ") m ON s.id = m.session_id SET s.total_messages = GREATEST(s.total_messages, m.max_order)");
+                log.warn("Renumbered {} chat messages with duplicate (session_id, message_order)", renumbered);
+            }
+        } catch (Exception e) {
+            log.warn("Skipping renumbering of duplicate chat message orders: {}", e.getMessage());
+        }
+
+        String statement = "CREATE UNIQUE INDEX uk_chat_messages_session_order ON chat_messages (session_id, message_order)";
+        try {
+            jdbcTemplate.execute(statement);
+            log.info("Applied: {}", statement);
+        } catch (DuplicateKeyException e) {
+            // Vẫn còn thứ tự trùng sau khi đánh số lại: dừng khởi động thay vì chạy tiếp không có unique key
+            throw new IllegalStateException("Failed to apply '" + statement + "': " + e.getMessage(), e);
+        } catch (Exception e) {
+            log.warn("Skipping '{}': {}", statement, e.getMessage());
+        }
+    }
+
+    private void addDashboardStatsIndexes() {
+        // Rollup GROUP BY của DashboardStatsService chạy trên index thay vì quét cả bảng
+        String[] statements = {
+                "CREATE INDEX idx_drug_batches_status_quantity ON drug_batches (status, quantity)",
+                "CREATE INDEX idx_drug_shipments_status ON drug_shipments (shipment_status)",
+                "CREATE INDEX idx_drug_shipments_date ON drug_shipments (shipment_date)",
+                "CREATE INDEX idx_product_items_status_registered ON product_items (status, blockchain_registered)"
+        };
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+                log.info("Applied: {}", statement);
+            } catch (Exception e) {
+                log.warn("Skipping '{}': {}", statement, e.getMessage());
+            }
+        }
+    }
+
+    private void createSchemaBackfillsTable() {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_backfills (" +
+                    "name varchar(100) NOT NULL PRIMARY KEY, " +
+                    "completed_at datetime(6) NOT NULL" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+            log.info("Ensured table schema_backfills");
+        } catch (Exception e) {
+            log.warn("Skipping create table schema_backfills: {}", e.getMessage());
+        }
+    }
+
+    private void addShipmentBlockchainColumns() {
+        // Metadata blockchain của shipment tách khỏi notes JSON; ALGORITHM=INPLACE, LOCK=NONE để không khóa bảng,
+        // dữ liệu cũ được ShipmentMetadataBackfill điền dần theo từng khối
+        String[] statements = {
+                "ALTER TABLE drug_shipments ADD COLUMN blockchain_shipment_id decimal(38,0) DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_shipments ADD COLUMN from_address varchar(42) DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_shipments ADD COLUMN to_address varchar(42) DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_shipments ADD COLUMN tracking_info text DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_shipments ADD COLUMN block_number decimal(38,0) DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_shipments ADD COLUMN is_synced tinyint(1) NOT NULL DEFAULT 0, ALGORITHM=INPLACE, LOCK=NONE",
+                "CREATE INDEX idx_drug_shipments_blockchain_id ON drug_shipments (blockchain_shipment_id) ALGORITHM=INPLACE LOCK=NONE",
+                "CREATE INDEX idx_drug_shipments_from_address ON drug_shipments (from_address) ALGORITHM=INPLACE LOCK=NONE",
+                "CREATE INDEX idx_drug_shipments_to_address ON drug_shipments (to_address) ALGORITHM=INPLACE LOCK=NONE",
+                "CREATE INDEX idx_drug_shipments_is_synced ON drug_shipments (is_synced) ALGORITHM=INPLACE LOCK=NONE"
+        };
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+                log.info("Applied: {}", statement);
+            } catch (Exception e) {
+                log.warn("Skipping '{}': {}", statement, e.getMessage());
+            }
+        }
+    }
+
+    private void addSerialRegistrationRetryColumns() {
+        // Số lần thử, thời điểm thử lại và trạng thái dừng của lượt resume đăng ký serial theo lô
+        String[] statements = {
+                "ALTER TABLE drug_batches ADD COLUMN serial_registration_attempts int NOT NULL DEFAULT 0, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_batches ADD COLUMN serial_registration_next_attempt_at datetime(6) DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE drug_batches ADD COLUMN serial_registration_failed tinyint(1) NOT NULL DEFAULT 0, ALGORITHM=INPLACE, LOCK=NONE"
+        };
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+                log.info("Applied: {}", statement);
+            } catch (Exception e) {
+                log.warn("Skipping '{}': {}", statement, e.getMessage());
+            }
+        }
+    }
+
+    private void addProductItemRedeemedBlockColumn() {
+        // Block của giao dịch redeem; indexer hoàn tác các redeem sau fork point khi có reorg
+        String[] statements = {
+                "ALTER TABLE product_items ADD COLUMN redeemed_block_number decimal(38,0) DEFAULT NULL, ALGORITHM=INPLACE, LOCK=NONE",
+                "CREATE INDEX idx_product_items_redeemed_block ON product_items (redeemed_block_number) ALGORITHM=INPLACE LOCK=NONE"
+        };
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+                log.info("Applied: {}", statement);
+            } catch (Exception e) {
+                log.warn("Skipping '{}': {}", statement, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.nckh.dia5.config;
+
+import com.nckh.dia5.model.Medication;
+import com.nckh.dia5.service.MedicationSearchIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps {@link MedicationSearchIndex} in step with single-row medication writes, applied once the
+ * write commits. Obtained from the Spring bean container like {@link CatalogCacheEvictionListener}.
+ *
+ * The index is resolved lazily: Hibernate creates this listener while the entity manager factory
+ * is being built, before the index's repository can exist.
+ */
+@RequiredArgsConstructor
+public class MedicationSearchIndexListener {
+
+    private final ObjectProvider<MedicationSearchIndex> searchIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Medication medication) {
+        afterCommit(() -> searchIndex.getObject().upsert(medication));
+    }
+
+    @PostRemove
+    public void onRemoved(Medication medication) {
+        Integer id = medication.getId();
+        afterCommit(() -> searchIndex.getObject().remove(id));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.nckh.dia5.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.service.PythonServiceClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP client cho các Python service (AI diagnosis, chatbot), mỗi service có pool kết nối,
+ * timeout, bulkhead và circuit breaker riêng
+ */
+@Configuration
+public class PythonServiceClientConfig {
+
+    @Value("${python-services.callback-threads:4}")
+    private int callbackThreads;
+
+    // Chạy callback khi response về (parse JSON, lưu DB); việc chờ I/O không chiếm thread.
+    // Không đăng ký làm bean để không thay thế applicationTaskExecutor của Spring Boot
+    private ExecutorService callbackExecutor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        callbackExecutor = Executors.newFixedThreadPool(Math.max(1, callbackThreads), runnable -> {
+            Thread thread = new Thread(runnable, "python-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        callbackExecutor.shutdownNow();
+    }
+
+    @Bean
+    public PythonServiceClient aiDiagnosisClient(
+            @Value("${ai.diagnosis.service.url}") String url,
+            @Value("${ai.diagnosis.service.timeout.connect:5}") long connectSeconds,
+            @Value("${ai.diagnosis.service.timeout.read:60}") long readSeconds,
+            @Value("${ai.diagnosis.service.max-concurrent:20}") int maxConcurrent,
+            @Value("${ai.diagnosis.service.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${ai.diagnosis.service.circuit.open-seconds:30}") long openSeconds,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new PythonServiceClient("ai-diagnosis", url,
+                Duration.ofSeconds(connectSeconds), Duration.ofSeconds(readSeconds),
+                maxConcurrent, failureThreshold, Duration.ofSeconds(openSeconds),
+                callbackExecutor, objectMapper, meterRegistry);
+    }
+
+    @Bean
+    public PythonServiceClient chatbotClient(
+            @Value("${chatbot.service.url}") String url,
+            @Value("${chatbot.service.timeout.connect:5}") long connectSeconds,
+            @Value("${chatbot.service.timeout.read:120}") long readSeconds,
+            @Value("${chatbot.service.max-concurrent:50}") int maxConcurrent,
+            @Value("${chatbot.service.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${chatbot.service.circuit.open-seconds:30}") long openSeconds,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new PythonServiceClient("chatbot", url,
+                Duration.ofSeconds(connectSeconds), Duration.ofSeconds(readSeconds),
+                maxConcurrent, failureThreshold, Duration.ofSeconds(openSeconds),
+                callbackExecutor, objectMapper, meterRegistry);
+    }
+}
@@ -1,9 +1,13 @@
 package com.nckh.dia5.config;
 
+import com.nckh.dia5.dto.common.CursorPage;
 import com.nckh.dia5.security.CustomUserDetailsService;
 import com.nckh.dia5.security.JwtAuthenticationEntryPoint;
 import com.nckh.dia5.security.JwtAuthenticationFilter;
 import com.nckh.dia5.security.JwtTokenProvider;
+import com.nckh.dia5.security.PrincipalCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -35,6 +39,8 @@ public class SecurityConfig {
     private final CustomUserDetailsService customUserDetailsService;
     private final JwtAuthenticationEntryPoint unauthorizedHandler;
     private final JwtTokenProvider jwtTokenProvider;
+    private final PrincipalCache principalCache;
+    private final MeterRegistry meterRegistry;
 
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -61,6 +67,8 @@ public class SecurityConfig {
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(authz -> authz
+                        // Async dispatch của controller trả CompletableFuture/SSE: request gốc đã được xác thực
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Public endpoints - no authentication required
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/distributor/auth/**").permitAll()
@@ -70,6 +78,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/blockchain/drugs/debug/**").permitAll() // Debug endpoints
                         .requestMatchers("/api/products/debug/**").permitAll() // Products debug endpoints
                         .requestMatchers("/api/blockchain/drugs/batches").permitAll() // Temporary for testing
+                        .requestMatchers("/api/blockchain/drugs/jobs/**").permitAll() // Batch creation job progress
                         .requestMatchers("/api/blockchain/drugs/shipments/**").permitAll() // Temporary for testing
                         .requestMatchers("/api/blockchain/drugs/distributors").permitAll() // Get distributors for frontend
                         .requestMatchers("/api/blockchain/drugs/stats").permitAll() // Dashboard stats
@@ -93,7 +102,8 @@ public class SecurityConfig {
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(jwtTokenProvider, customUserDetailsService);
+        return new JwtAuthenticationFilter(jwtTokenProvider, customUserDetailsService, principalCache,
+                meterRegistry);
     }
 
     @Bean
@@ -102,6 +112,7 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(List.of("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(List.of(CursorPage.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,45 @@
+package com.nckh.dia5.config;
+
+import com.nckh.dia5.model.Shipment;
+import com.nckh.dia5.service.ShipmentIdentityResolver;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Evicts the near-cache keys of {@link ShipmentIdentityResolver} for a shipment once its write
+ * commits, so a new or re-identified shipment is never shadowed by an older lookup. Obtained from
+ * the Spring bean container like {@link CatalogCacheEvictionListener}.
+ *
+ * The resolver is resolved lazily: Hibernate creates this listener while the entity manager factory
+ * is being built, before the resolver's repository can exist.
+ */
+@RequiredArgsConstructor
+public class ShipmentIdentityListener {
+
+    private final ObjectProvider<ShipmentIdentityResolver> identityResolver;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChanged(Shipment shipment) {
+        // Lấy khóa ngay lúc ghi: entity có thể còn bị sửa tiếp trước khi commit
+        List<String> keys = ShipmentIdentityResolver.keysOf(shipment);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    identityResolver.getObject().evict(keys);
+                }
+            });
+        } else {
+            identityResolver.getObject().evict(keys);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.nckh.dia5.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache with an in-process near tier in front of an optional shared Redis tier.
+ *
+ * Reads go near tier → Redis → loader. Writes and evictions go to both tiers; evictions and
+ * clears are also broadcast through {@link TwoTierCacheManager} so other nodes drop their near
+ * copies. Redis failures never fail the caller: the operation continues on the near tier only.
+ * Evictions and clears ignore the read back-off and always try Redis; if Redis still misses one,
+ * the Redis tier of this cache is cleared before it is read again.
+ * A full near tier drops expired entries first and then the oldest ones.
+ */
+@Slf4j
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final long localTtlMs;
+    private final int localMaxSize;
+    private final Cache remote;
+    private final TwoTierCacheManager manager;
+
+    private final Map<Object, LocalEntry> local = new ConcurrentHashMap<>();
+    // Loader đang chạy theo key (sync=true): request cùng key chờ kết quả thay vì gọi loader lần nữa
+    private final Map<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    // Evict/clear không tới được Redis: Redis có thể còn entry cũ tới hết TTL
+    private volatile boolean remoteStale;
+
+    TwoTierCache(String name, long localTtlMs, int localMaxSize, Cache remote, TwoTierCacheManager manager) {
+        super(false);
+        this.name = name;
+        this.localTtlMs = localTtlMs;
+        this.localMaxSize = localMaxSize;
+        this.remote = remote;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        LocalEntry entry = local.get(key);
+        if (entry != null) {
+            if (entry.expiresAtMs() > System.currentTimeMillis()) {
+                return entry.value();
+            }
+            local.remove(key, entry);
+        }
+
+        if (!isRemoteReady()) {
+            return null;
+        }
+        try {
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper == null || wrapper.get() == null) {
+                return null;
+            }
+            putLocal(key, wrapper.get());
+            return wrapper.get();
+        } catch (RuntimeException e) {
+            manager.onRemoteFailure(name, e);
+            return null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // sync=true: mỗi key chỉ một loader chạy trên node này; khoá theo key, không khoá cả cache
+        // (và không dùng synchronized để không pin virtual thread trong lúc loader chạy)
+        Object value = lookup(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        try {
+            // Loader trước có thể vừa xong giữa lookup và putIfAbsent
+            Object cached = lookup(key);
+            T loaded = cached != null ? (T) cached : valueLoader.call();
+            if (cached == null) {
+                put(key, loaded);
+            }
+            load.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        putLocal(key, value);
+        if (isRemoteReady()) {
+            try {
+                remote.put(key, value);
+            } catch (RuntimeException e) {
+                manager.onRemoteFailure(name, e);
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.remove(key);
+        // Ghi luôn thử Redis, kể cả trong thời gian back-off của lượt đọc
+        if (remote != null) {
+            try {
+                remote.evict(key);
+            } catch (RuntimeException e) {
+                remoteStale = true;
+                manager.onRemoteFailure(name, e);
+            }
+        }
+        manager.publishInvalidation(name);
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        if (remote != null) {
+            try {
+                remote.clear();
+                remoteStale = false;
+            } catch (RuntimeException e) {
+                remoteStale = true;
+                manager.onRemoteFailure(name, e);
+            }
+        }
+        manager.publishInvalidation(name);
+    }
+
+    /**
+     * Drops the near tier only; called when another node changed this cache.
+     */
+    void clearLocal() {
+        local.clear();
+    }
+
+    /**
+     * Redis tier usable for reads and puts; first clears it if an eviction missed it during an outage.
+     */
+    private boolean isRemoteReady() {
+        if (!manager.isRemoteAvailable()) {
+            return false;
+        }
+        if (!remoteStale) {
+            return true;
+        }
+        try {
+            remote.clear();
+            remoteStale = false;
+            log.info("Cleared Redis tier of cache {} after evictions missed during an outage", name);
+        } catch (RuntimeException e) {
+            manager.onRemoteFailure(name, e);
+            return false;
+        }
+        manager.publishInvalidation(name);
+        return true;
+    }
+
+    private void putLocal(Object key, Object value) {
+        long now = System.currentTimeMillis();
+        if (local.size() >= localMaxSize && !local.containsKey(key)) {
+            evictLocal(now);
+        }
+        local.put(key, new LocalEntry(value, now + localTtlMs));
+    }
+
+    /**
+     * Bỏ entry đã hết hạn; nếu vẫn đầy thì bỏ 10% entry cũ nhất (cùng TTL nên cũ nhất là hết hạn sớm nhất),
+     * để lần put tiếp theo không phải quét lại ngay.
+     */
+    private void evictLocal(long now) {
+        local.values().removeIf(entry -> entry.expiresAtMs() <= now);
+        if (local.size() < localMaxSize) {
+            return;
+        }
+        int excess = local.size() - localMaxSize + Math.max(1, localMaxSize / 10);
+        local.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAtMs()))
+                .limit(excess)
+                .toList()
+                .forEach(e -> local.remove(e.getKey(), e.getValue()));
+    }
+
+    private record LocalEntry(Object value, long expiresAtMs) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.nckh.dia5.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Builds {@link TwoTierCache}s and owns the shared Redis state: the Redis tier, the invalidation
+ * channel between nodes and the back-off after Redis errors.
+ *
+ * Created without a connection factory it runs in local-only mode, which is also what reads and
+ * puts do for {@code remoteRetryDelay} after any Redis failure. Evictions, clears and
+ * invalidation messages still try Redis during that window.
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, DisposableBean {
+
+    private final Function<String, Duration> ttlResolver;
+    private final Duration localMaxTtl;
+    private final int localMaxSize;
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final ChannelTopic invalidationTopic;
+    private final long remoteRetryDelayMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+    private RedisMessageListenerContainer listenerContainer;
+
+    private volatile long remoteRetryAtMs;
+
+    public TwoTierCacheManager(Function<String, Duration> ttlResolver, Duration localMaxTtl, int localMaxSize,
+            RedisConnectionFactory connectionFactory, RedisCacheManager redisCacheManager,
+            String invalidationChannel, Duration remoteRetryDelay) {
+        this.ttlResolver = ttlResolver;
+        this.localMaxTtl = localMaxTtl;
+        this.localMaxSize = localMaxSize;
+        this.redisCacheManager = redisCacheManager;
+        this.invalidationTopic = new ChannelTopic(invalidationChannel);
+        this.remoteRetryDelayMs = remoteRetryDelay.toMillis();
+
+        if (connectionFactory != null && redisCacheManager != null) {
+            this.redisTemplate = new StringRedisTemplate(connectionFactory);
+            this.listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(connectionFactory);
+            listenerContainer.addMessageListener((message, pattern) ->
+                    onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)), invalidationTopic);
+            listenerContainer.setErrorHandler(e -> log.warn("Cache invalidation listener error: {}", e.getMessage()));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        } else {
+            this.redisTemplate = null;
+        }
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    public boolean isRedisEnabled() {
+        return redisCacheManager != null;
+    }
+
+    boolean isRemoteAvailable() {
+        return redisCacheManager != null && System.currentTimeMillis() >= remoteRetryAtMs;
+    }
+
+    void onRemoteFailure(String cacheName, RuntimeException e) {
+        boolean wasAvailable = isRemoteAvailable();
+        remoteRetryAtMs = System.currentTimeMillis() + remoteRetryDelayMs;
+        if (wasAvailable) {
+            log.warn("Redis cache tier unavailable (cache {}), using local cache only for {} ms: {}",
+                    cacheName, remoteRetryDelayMs, e.getMessage());
+        }
+    }
+
+    void publishInvalidation(String cacheName) {
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(invalidationTopic.getTopic(), nodeId + ":" + cacheName);
+        } catch (RuntimeException e) {
+            onRemoteFailure(cacheName, e);
+        }
+    }
+
+    // Package-private để test gửi message thay cho Redis listener
+    void onInvalidation(String message) {
+        int separator = message.indexOf(':');
+        if (separator < 0 || message.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        TwoTierCache cache = caches.get(message.substring(separator + 1));
+        if (cache != null) {
+            cache.clearLocal();
+            log.debug("Cleared near cache {} after change on another node", cache.getName());
+        }
+    }
+
+    private TwoTierCache createCache(String name) {
+        Duration ttl = ttlResolver.apply(name);
+        long localTtlMs = Math.min(ttl.toMillis(), localMaxTtl.toMillis());
+        Cache remote = redisCacheManager != null ? redisCacheManager.getCache(name) : null;
+        return new TwoTierCache(name, localTtlMs, localMaxSize, remote, this);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.nckh.dia5.config;
+
+import com.nckh.dia5.util.NdjsonStreams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Gives NDJSON export responses ({@link NdjsonStreams}) their own async timeout. The timeout is set
+ * on the request just before async processing starts, so other async requests keep the default.
+ */
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+
+    @Value("${app.export.timeout-ms:600000}")
+    private long exportTimeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(NdjsonStreams.EXPORT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+                    asyncRequest.setTimeout(exportTimeoutMs);
+                }
+            }
+        });
+    }
+}
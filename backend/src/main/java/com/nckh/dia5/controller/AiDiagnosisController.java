@@ -2,15 +2,19 @@ package com.nckh.dia5.controller;
 
 import com.nckh.dia5.dto.common.ApiResponse;
 import com.nckh.dia5.dto.medical.AiDiagnosisResponse;
+import com.nckh.dia5.handler.UpstreamServiceUnavailableException;
 import com.nckh.dia5.model.AiDiagnosis;
 import com.nckh.dia5.service.AiDiagnosisService;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestController
@@ -21,25 +25,39 @@ public class AiDiagnosisController {
     private final AiDiagnosisService aiDiagnosisService;
 
     @PostMapping("/diagnose/{sessionId}")
-    public ResponseEntity<ApiResponse<AiDiagnosisResponse>> getDiagnosis(
+    public CompletableFuture<ResponseEntity<ApiResponse<AiDiagnosisResponse>>> getDiagnosis(
             @PathVariable @NotBlank String sessionId) {
 
         log.info("Received AI diagnosis request for session: {}", sessionId);
 
+        CompletableFuture<AiDiagnosisResponse> diagnosis;
         try {
-            AiDiagnosisResponse response = aiDiagnosisService.getDiagnosis(sessionId);
-            return ResponseEntity.ok(ApiResponse.success(response, "Chẩn đoán AI thành công"));
-
+            diagnosis = aiDiagnosisService.getDiagnosis(sessionId);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid diagnosis request for session: {}, error: {}", sessionId, e.getMessage());
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error(e.getMessage(), 400));
-
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage(), 400)));
         } catch (Exception e) {
             log.error("Error processing AI diagnosis for session: {}", sessionId, e);
-            return ResponseEntity.internalServerError()
-                    .body(ApiResponse.error("Lỗi hệ thống khi thực hiện chẩn đoán", 500));
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Lỗi hệ thống khi thực hiện chẩn đoán", 500)));
         }
+
+        // Servlet thread được trả lại trong lúc chờ AI service
+        return diagnosis.handle((response, error) -> {
+            if (error == null) {
+                return ResponseEntity.ok(ApiResponse.success(response, "Chẩn đoán AI thành công"));
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof UpstreamServiceUnavailableException) {
+                log.warn("AI service unavailable for session: {}: {}", sessionId, cause.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(ApiResponse.<AiDiagnosisResponse>error(cause.getMessage(), 503));
+            }
+            log.error("Error processing AI diagnosis for session: {}", sessionId, cause);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.<AiDiagnosisResponse>error("Lỗi hệ thống khi thực hiện chẩn đoán", 500));
+        });
     }
 
     @GetMapping("/history")
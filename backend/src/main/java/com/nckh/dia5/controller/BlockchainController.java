@@ -1,9 +1,11 @@
 package com.nckh.dia5.controller;
 
 import com.nckh.dia5.dto.common.ApiResponse;
+import com.nckh.dia5.model.BlockchainEvent;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.service.BlockchainIndexerService;
 import com.nckh.dia5.service.BlockchainService;
-import com.nckh.dia5.service.ProductItemService;
-import com.nckh.dia5.service.DrugTraceabilityService;
+import com.nckh.dia5.service.DashboardStatsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -13,6 +15,7 @@ import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import java.math.BigInteger;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -23,8 +26,8 @@ import java.util.Optional;
 public class BlockchainController {
 
     private final BlockchainService blockchainService;
-    private final ProductItemService productItemService;
-    private final DrugTraceabilityService drugTraceabilityService;
+    private final DashboardStatsService dashboardStatsService;
+    private final BlockchainIndexerService indexerService;
 
     @GetMapping("/status")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getBlockchainStatus() {
@@ -98,7 +101,7 @@ public class BlockchainController {
             @RequestParam BigInteger batchId,
             @RequestParam String ownerAddress) {
         try {
-            boolean isOwner = blockchainService.verifyOwnership(batchId, ownerAddress).get();
+            boolean isOwner = blockchainService.await(blockchainService.verifyOwnership(batchId, ownerAddress));
             
             Map<String, Object> result = new HashMap<>();
             result.put("batchId", batchId);
@@ -129,6 +132,39 @@ public class BlockchainController {
         }
     }
 
+    @GetMapping("/events/batch/{batchId}")
+    public ResponseEntity<ApiResponse<List<BlockchainEvent>>> getBatchEvents(@PathVariable BigInteger batchId) {
+        try {
+            List<BlockchainEvent> events = indexerService.getBatchHistory(batchId);
+            return ResponseEntity.ok(ApiResponse.success(events, "Lấy lịch sử sự kiện của lô thành công"));
+        } catch (Exception e) {
+            log.error("Failed to get batch events", e);
+            return ResponseEntity.ok(ApiResponse.error("Lỗi khi lấy lịch sử sự kiện: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/events/shipment/{shipmentId}")
+    public ResponseEntity<ApiResponse<List<BlockchainEvent>>> getShipmentEvents(@PathVariable BigInteger shipmentId) {
+        try {
+            List<BlockchainEvent> events = indexerService.getShipmentHistory(shipmentId);
+            return ResponseEntity.ok(ApiResponse.success(events, "Lấy lịch sử sự kiện của lô hàng thành công"));
+        } catch (Exception e) {
+            log.error("Failed to get shipment events", e);
+            return ResponseEntity.ok(ApiResponse.error("Lỗi khi lấy lịch sử sự kiện: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/events/address/{address}")
+    public ResponseEntity<ApiResponse<List<BlockchainEvent>>> getAddressEvents(@PathVariable String address) {
+        try {
+            List<BlockchainEvent> events = indexerService.getAddressHistory(address);
+            return ResponseEntity.ok(ApiResponse.success(events, "Lấy lịch sử sự kiện của địa chỉ thành công"));
+        } catch (Exception e) {
+            log.error("Failed to get address events", e);
+            return ResponseEntity.ok(ApiResponse.error("Lỗi khi lấy lịch sử sự kiện: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/manufacturer/stats")
     @PreAuthorize("hasRole('MANUFACTURER')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getManufacturerStats() {
@@ -150,8 +186,8 @@ public class BlockchainController {
             // Get product item statistics
             try {
                 // Count total items
-                long totalItems = productItemService.countAllItems();
-                long blockchainSyncedItems = productItemService.countBlockchainSyncedItems();
+                long totalItems = dashboardStatsService.getProductItemCount();
+                long blockchainSyncedItems = dashboardStatsService.getRegisteredProductItemCount();
                 long pendingSyncItems = totalItems - blockchainSyncedItems;
                 
                 stats.put("totalProductItems", totalItems);
@@ -160,7 +196,7 @@ public class BlockchainController {
                 stats.put("syncRate", totalItems > 0 ? (double) blockchainSyncedItems / totalItems : 0.0);
                 
                 // Count by status
-                Map<String, Long> statusCounts = productItemService.getStatusCounts();
+                Map<String, Long> statusCounts = dashboardStatsService.getProductItemStatusCounts();
                 stats.put("statusCounts", statusCounts);
                 
             } catch (Exception e) {
@@ -170,11 +206,8 @@ public class BlockchainController {
             
             // Get batch statistics
             try {
-                var allBatches = drugTraceabilityService.getAllBatches();
-                long totalBatches = allBatches.size();
-                long activeBatches = allBatches.stream()
-                    .filter(batch -> !"EXPIRED".equals(batch.getStatus()) && !"CONSUMED".equals(batch.getStatus()))
-                    .count();
+                long totalBatches = dashboardStatsService.getBatchCount();
+                long activeBatches = totalBatches - dashboardStatsService.getBatchCount(DrugBatch.BatchStatus.SOLD);
                 
                 stats.put("totalBatches", totalBatches);
                 stats.put("activeBatches", activeBatches);
@@ -12,10 +12,13 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -90,6 +93,19 @@ public class ChatController {
         }
     }
 
+    /**
+     * Gửi tin nhắn và nhận câu trả lời của chatbot dạng stream (SSE).
+     * Tin nhắn user và câu trả lời AI đều được lưu ở backend, không cần gọi /ai-response
+     */
+    @PostMapping(value = "/sessions/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessage(
+            @PathVariable @NotBlank String sessionId,
+            @Valid @RequestBody SendMessageRequest request) {
+
+        log.info("Streaming message to session: {}", sessionId);
+        return chatService.streamChatResponse(sessionId, request.getMessage());
+    }
+
     /**
      * Lưu phản hồi từ AI (được gọi từ Python service hoặc frontend)
      */
@@ -231,22 +247,15 @@ public class ChatController {
      * Health check
      */
     @GetMapping("/health")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> healthCheck() {
-        try {
-            boolean chatbotHealthy = chatService.isChatbotServiceHealthy();
-
+    public CompletableFuture<ResponseEntity<ApiResponse<Map<String, Object>>>> healthCheck() {
+        return chatService.isChatbotServiceHealthy().thenApply(chatbotHealthy -> {
             Map<String, Object> health = Map.of(
                     "status", chatbotHealthy ? "healthy" : "unhealthy",
                     "chatbot_service", chatbotHealthy,
                     "timestamp", System.currentTimeMillis());
 
             return ResponseEntity.ok(ApiResponse.success(health));
-
-        } catch (Exception e) {
-            log.error("Error in health check", e);
-            return ResponseEntity.internalServerError()
-                    .body(ApiResponse.error("Health check failed", 500));
-        }
+        });
     }
 
     // Request DTOs
@@ -1,16 +1,21 @@
 package com.nckh.dia5.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nckh.dia5.dto.blockchain.CreateDistributorShipmentRequest;
 import com.nckh.dia5.dto.blockchain.ShipmentDto;
 import com.nckh.dia5.dto.common.ApiResponse;
+import com.nckh.dia5.dto.common.CursorPage;
 import com.nckh.dia5.service.DistributorShipmentService;
+import com.nckh.dia5.util.NdjsonStreams;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -22,6 +27,7 @@ import java.util.List;
 public class DistributorShipmentController {
 
     private final DistributorShipmentService distributorShipmentService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @Operation(summary = "Tạo shipment mới", description = "Xuất hàng từ nhà phân phối đến hiệu thuốc")
@@ -37,11 +43,23 @@ public class DistributorShipmentController {
     }
 
     @GetMapping
-    @Operation(summary = "Lấy danh sách shipments", description = "Lấy tất cả shipments của distributor")
-    public ResponseEntity<ApiResponse<List<ShipmentDto>>> getAllShipments() {
-        log.info("Getting all distributor shipments");
-        List<ShipmentDto> shipments = distributorShipmentService.getAllShipments();
-        return ResponseEntity.ok(ApiResponse.success(shipments, "Lấy danh sách shipments thành công"));
+    @Operation(summary = "Lấy danh sách shipments",
+            description = "Phân trang keyset theo id: truyền X-Next-Cursor của trang trước vào cursor")
+    public ResponseEntity<ApiResponse<List<ShipmentDto>>> getAllShipments(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Getting distributor shipments after cursor {}", cursor);
+        CursorPage<ShipmentDto> page = distributorShipmentService.getShipments(cursor, limit);
+        return ResponseEntity.ok().headers(page.toHeaders())
+                .body(ApiResponse.success(page.getContent(), "Lấy danh sách shipments thành công"));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Xuất toàn bộ shipments", description = "Stream NDJSON, mỗi dòng một shipment")
+    public ResponseEntity<StreamingResponseBody> exportShipments() {
+        log.info("Exporting distributor shipments as NDJSON");
+        return NdjsonStreams.response(objectMapper, "distributor-shipments.ndjson",
+                distributorShipmentService::exportShipments);
     }
 
     @GetMapping("/{id}")
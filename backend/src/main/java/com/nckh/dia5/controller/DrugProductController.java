@@ -1,6 +1,7 @@
 package com.nckh.dia5.controller;
 
 import com.nckh.dia5.dto.common.ApiResponse;
+import com.nckh.dia5.dto.common.CursorPage;
 import com.nckh.dia5.model.DrugProduct;
 import com.nckh.dia5.model.ManufacturerUser;
 import com.nckh.dia5.model.PharmaCompany;
@@ -9,6 +10,7 @@ import com.nckh.dia5.repository.PharmaCompanyRepository;
 import com.nckh.dia5.service.ManufacturerAuthService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -25,7 +27,9 @@ public class DrugProductController {
     private final ManufacturerAuthService manufacturerAuthService;
 
     @GetMapping
-    public ResponseEntity<ApiResponse<List<DrugProduct>>> getAll() {
+    public ResponseEntity<ApiResponse<List<DrugProduct>>> getAll(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit) {
         ManufacturerUser current = manufacturerAuthService.getCurrentUser();
         if (current == null) {
             return ResponseEntity.status(401).body(ApiResponse.error("Chưa đăng nhập", 401));
@@ -61,18 +65,24 @@ public class DrugProductController {
             }
         }
         
+        // Keyset pagination theo id: cursor = X-Next-Cursor của trang trước
+        int pageSize = CursorPage.resolveLimit(limit);
+        PageRequest window = PageRequest.of(0, pageSize + 1);
         List<DrugProduct> products;
         if (manufacturerId != null) {
-            products = drugProductRepository.findAllByManufacturerId(manufacturerId);
+            products = drugProductRepository.findByManufacturerIdAndIdGreaterThanOrderByIdAsc(
+                    manufacturerId, CursorPage.resolveCursor(cursor), window);
             log.info("Found {} products for manufacturer ID: {}", products.size(), manufacturerId);
         } else {
             // If no match found, show all products as fallback
-            products = drugProductRepository.findAll();
-            log.info("No manufacturer match found for '{}', showing all {} products", 
+            products = drugProductRepository.findByIdGreaterThanOrderByIdAsc(CursorPage.resolveCursor(cursor), window);
+            log.info("No manufacturer match found for '{}', showing {} products", 
                      current.getCompanyName(), products.size());
         }
+        CursorPage<DrugProduct> page = CursorPage.of(products, pageSize, DrugProduct::getId, product -> product);
         
-        return ResponseEntity.ok(ApiResponse.success(products, "Lấy danh sách sản phẩm thành công"));
+        return ResponseEntity.ok().headers(page.toHeaders())
+                .body(ApiResponse.success(page.getContent(), "Lấy danh sách sản phẩm thành công"));
     }
 
     @PostMapping
@@ -1,23 +1,36 @@
 package com.nckh.dia5.controller;
 
 import com.nckh.dia5.dto.blockchain.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nckh.dia5.dto.common.ApiResponse;
+import com.nckh.dia5.dto.common.CursorPage;
 import com.nckh.dia5.handler.ResourceNotFoundException;
+import com.nckh.dia5.model.Shipment;
 import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.service.BatchCreationJobService;
+import com.nckh.dia5.service.DashboardStatsService;
 import com.nckh.dia5.service.DrugTraceabilityService;
 import com.nckh.dia5.service.BlockchainService;
+import com.nckh.dia5.util.NdjsonStreams;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigInteger;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,13 +42,35 @@ public class DrugTraceabilityController {
     private final DrugTraceabilityService drugTraceabilityService;
     private final DrugBatchRepository drugBatchRepository;
     private final BlockchainService blockchainService;
+    private final BatchCreationJobService batchCreationJobService;
+    private final DashboardStatsService dashboardStatsService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/batches")
     public ResponseEntity<ApiResponse<DrugBatchDto>> createBatch(
             @Valid @RequestBody CreateBatchRequest request) {
         log.info("Creating new drug batch: {}", request.getDrugName());
-        DrugBatchDto batch = drugTraceabilityService.createBatch(request);
-        return ResponseEntity.ok(ApiResponse.success(batch, "Tạo lô thuốc thành công"));
+        DrugBatchDto batch = batchCreationJobService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success(batch, "Đã lưu lô thuốc, đang đồng bộ lên blockchain"));
+    }
+
+    /**
+     * Tiến độ job tạo lô
+     * GET /api/blockchain/drugs/jobs/{jobId}
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApiResponse<BatchCreationJobDto>> getBatchCreationJob(@PathVariable Long jobId) {
+        return ResponseEntity.ok(ApiResponse.success(batchCreationJobService.getJob(jobId)));
+    }
+
+    /**
+     * Theo dõi tiến độ job tạo lô qua Server-Sent Events
+     * GET /api/blockchain/drugs/jobs/{jobId}/events
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBatchCreationJob(@PathVariable Long jobId) {
+        return batchCreationJobService.subscribe(jobId);
     }
 
     @PostMapping("/shipments")
@@ -63,13 +98,18 @@ public class DrugTraceabilityController {
         
         try {
             // Call blockchain service to dispatch shipment
-            blockchainService.dispatchShipment(shipmentId, dispatchLocation, notes).get();
+            blockchainService.await(blockchainService.dispatchShipment(shipmentId, dispatchLocation, notes));
             
             // Get updated shipment info
             ShipmentDto shipment = drugTraceabilityService.getShipment(shipmentId);
             
             return ResponseEntity.ok(ApiResponse.success(shipment, "Gửi hàng thành công"));
             
+        } catch (TimeoutException e) {
+            log.warn("Dispatch of shipment {} still pending on blockchain: {}", shipmentId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(
+                ApiResponse.error("Giao dịch gửi hàng chưa được xác nhận, vui lòng kiểm tra lại sau", 504)
+            );
         } catch (Exception e) {
             log.error("Failed to dispatch shipment: {}", e.getMessage(), e);
             return ResponseEntity.badRequest().body(
@@ -85,6 +125,10 @@ public class DrugTraceabilityController {
         try {
             ShipmentDto shipment = drugTraceabilityService.receiveShipment(shipmentId);
             return ResponseEntity.ok(ApiResponse.success(shipment, "Nhận shipment thành công"));
+        } catch (ResourceNotFoundException e) {
+            // Đã tra cả mã shipment, ID blockchain và ID database trong một truy vấn
+            log.warn("Shipment not found for receive: {}", shipmentId);
+            return ResponseEntity.badRequest().body(ApiResponse.error("Không tìm thấy shipment với ID: " + shipmentId, 400));
         } catch (Exception e) {
             // Try to find by database ID instead
             log.info("Shipment not found by shipmentId: {}, trying by database ID", shipmentId);
@@ -139,8 +183,8 @@ public class DrugTraceabilityController {
             }
             response.put("serialInfo", serialInfo);
 
-            // Get ownership history from shipments
-            List<ShipmentDto> shipments = drugTraceabilityService.getShipmentsByBatch(batch.getBatchId());
+            // Get ownership history from delivered shipments
+            List<ShipmentDto> shipments = drugTraceabilityService.getDeliveredShipmentsByBatch(batch.getBatchId());
             List<Map<String, Object>> ownershipHistory = new ArrayList<>();
             
             // Add mint record
@@ -181,15 +225,23 @@ public class DrugTraceabilityController {
         }
     }
 
+    /**
+     * Keyset pagination: cursor = X-Next-Cursor của trang trước (bỏ trống cho trang đầu)
+     */
     @GetMapping("/batches")
-    public ResponseEntity<ApiResponse<List<DrugBatchDto>>> getAllBatches() {
-        log.info("Getting all drug batches");
-        List<DrugBatchDto> batches = drugTraceabilityService.getAllBatches();
-        log.info("Found {} batches in database", batches.size());
-        for (DrugBatchDto batch : batches) {
-            log.info("Batch: id={}, drugName={}, batchNumber={}", batch.getId(), batch.getDrugName(), batch.getBatchNumber());
-        }
-        return ResponseEntity.ok(ApiResponse.success(batches, "Lấy danh sách tất cả lô thuốc thành công"));
+    public ResponseEntity<ApiResponse<List<DrugBatchDto>>> getAllBatches(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Getting drug batches after cursor {}", cursor);
+        CursorPage<DrugBatchDto> page = drugTraceabilityService.getBatches(cursor, limit);
+        return ResponseEntity.ok().headers(page.toHeaders())
+                .body(ApiResponse.success(page.getContent(), "Lấy danh sách tất cả lô thuốc thành công"));
+    }
+
+    @GetMapping(value = "/batches/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBatches() {
+        log.info("Exporting all drug batches as NDJSON");
+        return NdjsonStreams.response(objectMapper, "batches.ndjson", drugTraceabilityService::exportBatches);
     }
 
     @GetMapping("/batches/debug")
@@ -245,10 +297,13 @@ public class DrugTraceabilityController {
 
     @GetMapping("/batches/{batchId}/transactions")
     public ResponseEntity<ApiResponse<List<BlockchainTransactionDto>>> getBatchTransactionHistory(
-            @PathVariable BigInteger batchId) {
+            @PathVariable BigInteger batchId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit) {
         log.info("Getting transaction history for batch: {}", batchId);
-        List<BlockchainTransactionDto> transactions = drugTraceabilityService.getBatchTransactionHistory(batchId);
-        return ResponseEntity.ok(ApiResponse.success(transactions, "Lấy lịch sử giao dịch blockchain thành công"));
+        CursorPage<BlockchainTransactionDto> page = drugTraceabilityService.getBatchTransactions(batchId, cursor, limit);
+        return ResponseEntity.ok().headers(page.toHeaders())
+                .body(ApiResponse.success(page.getContent(), "Lấy lịch sử giao dịch blockchain thành công"));
     }
 
     @GetMapping("/batches/ready-for-shipment")
@@ -266,10 +321,19 @@ public class DrugTraceabilityController {
     }
 
     @GetMapping("/shipments")
-    public ResponseEntity<ApiResponse<List<ShipmentDto>>> getAllShipments() {
-        log.info("Getting all shipments");
-        List<ShipmentDto> shipments = drugTraceabilityService.getAllShipments();
-        return ResponseEntity.ok(ApiResponse.success(shipments, "Lấy danh sách lô hàng thành công"));
+    public ResponseEntity<ApiResponse<List<ShipmentDto>>> getAllShipments(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Getting shipments after cursor {}", cursor);
+        CursorPage<ShipmentDto> page = drugTraceabilityService.getShipments(cursor, limit);
+        return ResponseEntity.ok().headers(page.toHeaders())
+                .body(ApiResponse.success(page.getContent(), "Lấy danh sách lô hàng thành công"));
+    }
+
+    @GetMapping(value = "/shipments/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportShipments() {
+        log.info("Exporting all shipments as NDJSON");
+        return NdjsonStreams.response(objectMapper, "shipments.ndjson", drugTraceabilityService::exportShipments);
     }
 
     @GetMapping("/shipments/manufacturer/{manufacturerAddress}")
@@ -434,12 +498,12 @@ public class DrugTraceabilityController {
             log.info("Adding checkpoint for shipmentId: {}, status: {}, location: {}", 
                      shipmentId, status, location);
             
-            blockchainService.updateShipmentStatus(
+            blockchainService.await(blockchainService.updateShipmentStatus(
                 shipmentId,
                 BigInteger.valueOf(status),
                 location,
                 notes
-            ).get();
+            ));
             
             return ResponseEntity.ok(ApiResponse.success(
                 "Checkpoint added successfully",
@@ -467,7 +531,7 @@ public class DrugTraceabilityController {
             // Also verify on blockchain if needed
             if (isOwner && shipment.getBatchId() != null) {
                 try {
-                    isOwner = blockchainService.verifyOwnership(shipment.getBatchId(), expectedOwner).get();
+                    isOwner = blockchainService.await(blockchainService.verifyOwnership(shipment.getBatchId(), expectedOwner));
                 } catch (Exception e) {
                     log.warn("Could not verify on blockchain, using database check: {}", e.getMessage());
                 }
@@ -494,17 +558,14 @@ public class DrugTraceabilityController {
             Map<String, Object> result = new HashMap<>();
             result.put("scanCode", scanCode);
             
-            // Test 1: Try as shipment ID
-            try {
-                BigInteger shipmentId = new BigInteger(scanCode);
-                ShipmentDto shipment = drugTraceabilityService.getShipment(shipmentId);
+            // Test 1: Try as shipment (chain ID, shipment code, database ID or QR payload)
+            Optional<ShipmentDto> shipment = drugTraceabilityService.findShipmentByScanCode(scanCode);
+            if (shipment.isPresent()) {
                 result.put("foundAsShipment", true);
-                result.put("shipmentData", shipment);
-                return ResponseEntity.ok(ApiResponse.success(result, "Found as shipment ID"));
-            } catch (Exception e) {
-                result.put("foundAsShipment", false);
-                result.put("shipmentError", e.getMessage());
+                result.put("shipmentData", shipment.get());
+                return ResponseEntity.ok(ApiResponse.success(result, "Found as shipment"));
             }
+            result.put("foundAsShipment", false);
             
             // Test 2: Try as batch ID
             try {
@@ -534,52 +595,25 @@ public class DrugTraceabilityController {
         try {
             Map<String, Object> stats = new HashMap<>();
             
-            // Get basic statistics
-            List<DrugBatchDto> allBatches = drugTraceabilityService.getAllBatches();
-            List<ShipmentDto> allShipments = drugTraceabilityService.getAllShipments();
-            
-            // Calculate statistics
-            long totalBatches = allBatches.size();
-            long totalShipments = allShipments.size();
-            
-            // Count by status
-            long activeBatches = allBatches.stream()
-                .filter(batch -> !"EXPIRED".equals(batch.getStatus()) && !"CONSUMED".equals(batch.getStatus()))
-                .count();
-            
-            long pendingShipments = allShipments.stream()
-                .filter(shipment -> "IN_TRANSIT".equals(shipment.getStatus()) || "PENDING".equals(shipment.getStatus()))
-                .count();
-            
-            long deliveredShipments = allShipments.stream()
-                .filter(shipment -> "DELIVERED".equals(shipment.getStatus()))
-                .count();
-            
-            // Calculate total quantity
-            long totalQuantity = allBatches.stream()
-                .mapToLong(batch -> batch.getQuantity() != null ? batch.getQuantity() : 0L)
-                .sum();
-            
-            // Build stats response
+            // Bộ đếm trong DashboardStatsService, không load toàn bộ batch/shipment
+            long totalBatches = dashboardStatsService.getBatchCount();
+            long activeBatches = totalBatches - dashboardStatsService.getBatchCount(
+                com.nckh.dia5.model.DrugBatch.BatchStatus.SOLD);
+            long pendingShipments = dashboardStatsService.getShipmentCount(Shipment.ShipmentStatus.IN_TRANSIT)
+                + dashboardStatsService.getShipmentCount(Shipment.ShipmentStatus.PENDING);
+
             stats.put("totalBatches", totalBatches);
             stats.put("activeBatches", activeBatches);
-            stats.put("totalShipments", totalShipments);
+            stats.put("totalShipments", dashboardStatsService.getShipmentCount());
             stats.put("pendingShipments", pendingShipments);
-            stats.put("deliveredShipments", deliveredShipments);
-            stats.put("totalQuantity", totalQuantity);
-            
+            stats.put("deliveredShipments", dashboardStatsService.getShipmentCount(Shipment.ShipmentStatus.DELIVERED));
+            stats.put("totalQuantity", dashboardStatsService.getTotalBatchQuantity());
+
             // Recent activity (last 10 shipments)
-            List<ShipmentDto> recentShipments = allShipments.stream()
-                .sorted((s1, s2) -> s2.getShipmentTimestamp().compareTo(s1.getShipmentTimestamp()))
-                .limit(10)
-                .collect(Collectors.toList());
-            stats.put("recentShipments", recentShipments);
-            
-            // Monthly statistics (simplified)
+            stats.put("recentShipments", drugTraceabilityService.getRecentShipments());
+
             Map<String, Long> monthlyStats = new HashMap<>();
-            monthlyStats.put("currentMonth", (long) allShipments.stream()
-                .filter(s -> s.getShipmentTimestamp().getMonthValue() == LocalDateTime.now().getMonthValue())
-                .collect(Collectors.toList()).size());
+            monthlyStats.put("currentMonth", dashboardStatsService.getShipmentCount(YearMonth.now()));
             stats.put("monthlyStats", monthlyStats);
             
             return ResponseEntity.ok(ApiResponse.success(stats, "Lấy thống kê dashboard thành công"));
@@ -1,12 +1,21 @@
 package com.nckh.dia5.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nckh.dia5.dto.common.ApiResponse;
+import com.nckh.dia5.dto.common.CursorPage;
+import com.nckh.dia5.dto.common.PageResponse;
 import com.nckh.dia5.model.Medication;
-import com.nckh.dia5.repository.MedicationRepository;
+import com.nckh.dia5.service.MedicationSearchIndex;
+import com.nckh.dia5.service.MedicationService;
+import com.nckh.dia5.util.NdjsonStreams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -16,37 +25,51 @@ import java.util.List;
 @RequiredArgsConstructor
 public class MedicationController {
 
-    private final MedicationRepository medicationRepository;
+    private final MedicationService medicationService;
+    private final MedicationSearchIndex medicationSearchIndex;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Keyset pagination: cursor = X-Next-Cursor của trang trước (bỏ trống cho trang đầu)
+     */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<Medication>>> getAllMedications() {
-        log.info("Getting all medications");
-        List<Medication> medications = medicationRepository.findAll();
-        return ResponseEntity.ok(ApiResponse.success(medications, "Lấy danh sách thuốc thành công"));
+    public ResponseEntity<ApiResponse<List<Medication>>> getAllMedications(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Getting medications after cursor {}", cursor);
+        CursorPage<Medication> page = medicationService.getMedications(cursor, limit);
+        return ResponseEntity.ok().headers(page.toHeaders())
+                .body(ApiResponse.success(page.getContent(), "Lấy danh sách thuốc thành công"));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMedications() {
+        log.info("Exporting all medications as NDJSON");
+        return NdjsonStreams.response(objectMapper, "medications.ndjson", medicationService::exportMedications);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<Medication>> getMedicationById(@PathVariable Integer id) {
         log.info("Getting medication by id: {}", id);
-        return medicationRepository.findById(id)
+        return medicationService.getMedicationById(id)
                 .map(medication -> ResponseEntity.ok(ApiResponse.success(medication, "Lấy thông tin thuốc thành công")))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/search")
-    public ResponseEntity<ApiResponse<List<Medication>>> searchMedications(@RequestParam String keyword) {
+    public ResponseEntity<ApiResponse<PageResponse<Medication>>> searchMedications(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
         log.info("Searching medications with keyword: {}", keyword);
-        List<Medication> medications = medicationRepository.findAll().stream()
-                .filter(m -> m.getName().toLowerCase().contains(keyword.toLowerCase()) || 
-                           (m.getGenericName() != null && m.getGenericName().toLowerCase().contains(keyword.toLowerCase())))
-                .toList();
-        return ResponseEntity.ok(ApiResponse.success(medications, "Tìm kiếm thuốc thành công"));
+        Page<Medication> medications = medicationSearchIndex.search(keyword, PageRequest.of(page, size));
+        return ResponseEntity.ok(ApiResponse.success(PageResponse.of(medications), "Tìm kiếm thuốc thành công"));
     }
 
     @GetMapping("/drug-class/{drugClass}")
     public ResponseEntity<ApiResponse<List<Medication>>> getMedicationsByDrugClass(@PathVariable String drugClass) {
         log.info("Getting medications by drug class: {}", drugClass);
-        List<Medication> medications = medicationRepository.findByDrugClass(drugClass);
+        List<Medication> medications = medicationService.getMedicationsByDrugClass(drugClass);
         return ResponseEntity.ok(ApiResponse.success(medications, "Lấy danh sách thuốc theo phân loại thành công"));
     }
 }
@@ -2,7 +2,7 @@ package com.nckh.dia5.controller;
 
 import com.nckh.dia5.dto.common.ApiResponse;
 import com.nckh.dia5.model.PharmaCompany;
-import com.nckh.dia5.repository.PharmaCompanyRepository;
+import com.nckh.dia5.service.PharmaCompanyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -16,20 +16,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class PharmacyController {
 
-    private final PharmaCompanyRepository pharmaCompanyRepository;
+    private final PharmaCompanyService pharmaCompanyService;
 
     @GetMapping
     public ResponseEntity<ApiResponse<List<PharmaCompany>>> getAllPharmacies() {
         log.info("Getting all pharmacies");
-        List<PharmaCompany> pharmacies = pharmaCompanyRepository.findByCompanyTypeAndIsActive(
-                PharmaCompany.CompanyType.PHARMACY, true);
+        List<PharmaCompany> pharmacies = pharmaCompanyService.getActivePharmacies();
         return ResponseEntity.ok(ApiResponse.success(pharmacies, "Lấy danh sách hiệu thuốc thành công"));
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<PharmaCompany>> getPharmacyById(@PathVariable Long id) {
         log.info("Getting pharmacy by id: {}", id);
-        return pharmaCompanyRepository.findById(id)
+        return pharmaCompanyService.getPharmacyById(id)
                 .map(pharmacy -> ResponseEntity.ok(ApiResponse.success(pharmacy, "Lấy thông tin hiệu thuốc thành công")))
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -37,7 +36,7 @@ public class PharmacyController {
     @GetMapping("/wallet/{walletAddress}")
     public ResponseEntity<ApiResponse<PharmaCompany>> getPharmacyByWallet(@PathVariable String walletAddress) {
         log.info("Getting pharmacy by wallet: {}", walletAddress);
-        return pharmaCompanyRepository.findByWalletAddress(walletAddress)
+        return pharmaCompanyService.getPharmacyByWallet(walletAddress)
                 .map(pharmacy -> ResponseEntity.ok(ApiResponse.success(pharmacy, "Lấy thông tin hiệu thuốc thành công")))
                 .orElse(ResponseEntity.notFound().build());
     }
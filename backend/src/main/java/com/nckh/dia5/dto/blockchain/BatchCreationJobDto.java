@@ -0,0 +1,47 @@
+package com.nckh.dia5.dto.blockchain;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreationJobDto {
+
+    private Long jobId;
+
+    @JsonSerialize(using = ToStringSerializer.class)
+    private BigInteger batchId;
+
+    private String stage;
+
+    private String status;
+
+    private Long totalItems;
+
+    private Long generatedItems;
+
+    private Long registeredSerials;
+
+    private Integer attempts;
+
+    private String lastError;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime nextAttemptAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+}
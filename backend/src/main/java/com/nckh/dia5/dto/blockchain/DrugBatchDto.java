@@ -80,6 +80,9 @@ public class DrugBatchDto {
 
     private Long redeemedSerials;
 
+    // Job tạo lô chạy nền (chỉ có trong response của POST /batches)
+    private Long jobId;
+
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
 
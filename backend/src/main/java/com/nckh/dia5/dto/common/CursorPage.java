@@ -0,0 +1,75 @@
+package com.nckh.dia5.dto.common;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One page of a keyset (cursor) listing ordered by primary key. {@code nextCursor} is the key of
+ * the last row and is passed back as {@code cursor} to fetch the following page; it is
+ * {@code null} on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Mặc định đủ lớn để client cũ (chưa gửi cursor/limit) vẫn nhận đủ dữ liệu ở quy mô hiện tại
+    public static final int DEFAULT_LIMIT = 500;
+    public static final int MAX_LIMIT = 1000;
+
+    private List<T> content;
+    private Long nextCursor;
+    private boolean hasNext;
+
+    /**
+     * Builds a page from rows fetched with {@code limit + 1}: the extra row only signals that
+     * another page exists and is dropped.
+     */
+    public static <E, T> CursorPage<T> of(List<E> rows, int limit, Function<E, Long> keyOf,
+            Function<E, T> mapper) {
+        boolean hasNext = rows.size() > limit;
+        List<E> page = hasNext ? rows.subList(0, limit) : rows;
+        return CursorPage.<T>builder()
+                .content(page.stream().map(mapper).collect(Collectors.toList()))
+                .nextCursor(hasNext ? keyOf.apply(page.get(page.size() - 1)) : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Response headers carrying the cursor of the next page, for endpoints whose body stays a
+     * plain list.
+     */
+    public HttpHeaders toHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            headers.set(NEXT_CURSOR_HEADER, nextCursor.toString());
+        }
+        return headers;
+    }
+
+    /**
+     * Clamps a requested page size to {@code [1, MAX_LIMIT]}, using {@code DEFAULT_LIMIT} when absent.
+     */
+    public static int resolveLimit(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(requested, MAX_LIMIT);
+    }
+
+    /**
+     * Key to continue after: the given cursor, or 0 (before any generated id) for the first page.
+     */
+    public static long resolveCursor(Long cursor) {
+        return cursor != null ? cursor : 0L;
+    }
+}
@@ -163,4 +163,16 @@ public class GlobalExceptionHandler {
 
         return new ResponseEntity<>(response, HttpStatus.CONFLICT);
     }
+
+    @ExceptionHandler(UpstreamServiceUnavailableException.class)
+    public ResponseEntity<ApiResponse<Object>> handleUpstreamServiceUnavailableException(
+            UpstreamServiceUnavailableException ex) {
+
+        log.warn("Upstream service unavailable: {}", ex.getMessage());
+
+        ApiResponse<Object> response = ApiResponse.error(ex.getMessage(),
+                HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
 }
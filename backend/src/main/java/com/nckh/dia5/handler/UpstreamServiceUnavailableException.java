@@ -0,0 +1,15 @@
+package com.nckh.dia5.handler;
+
+/**
+ * Python service (AI diagnosis, chatbot) không phản hồi: circuit đang mở, quá số request đồng thời hoặc timeout
+ */
+public class UpstreamServiceUnavailableException extends RuntimeException {
+
+    public UpstreamServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public UpstreamServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
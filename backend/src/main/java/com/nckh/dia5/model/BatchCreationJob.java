@@ -0,0 +1,97 @@
+package com.nckh.dia5.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Tiến độ tạo lô thuốc chạy nền: sinh hộp thuốc, phát hành lô lên blockchain, đăng ký serial.
+ * Mỗi stage được lưu lại để job có thể chạy tiếp sau khi restart hoặc lỗi.
+ */
+@Entity
+@Table(name = "batch_creation_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "batch_id", nullable = false)
+    private BigInteger batchId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage", nullable = false, length = 30)
+    @Builder.Default
+    private Stage stage = Stage.GENERATING_ITEMS;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.QUEUED;
+
+    @Column(name = "total_items", nullable = false)
+    private Long totalItems;
+
+    @Column(name = "generated_items", nullable = false)
+    @Builder.Default
+    private Long generatedItems = 0L;
+
+    @Column(name = "registered_serials", nullable = false)
+    @Builder.Default
+    private Long registeredSerials = 0L;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public enum Stage {
+        GENERATING_ITEMS,
+        ISSUING_ON_CHAIN,
+        REGISTERING_SERIALS,
+        COMPLETED
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        RETRYING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -14,7 +14,8 @@ import java.time.LocalDateTime;
  * Entity để lưu trữ blockchain events
  */
 @Entity
-@Table(name = "blockchain_events")
+@Table(name = "blockchain_events",
+       uniqueConstraints = @UniqueConstraint(name = "uk_blockchain_events_tx_log", columnNames = {"transaction_hash", "log_index"}))
 @Data
 @Builder
 @NoArgsConstructor
@@ -32,7 +33,7 @@ public class BlockchainEvent {
     @Column(name = "contract_address", nullable = false)
     private String contractAddress;
 
-    @Column(name = "transaction_hash", nullable = false, unique = true)
+    @Column(name = "transaction_hash", nullable = false)
     private String transactionHash;
 
     @Column(name = "block_number", nullable = false)
@@ -56,6 +57,15 @@ public class BlockchainEvent {
     @Column(name = "to_address")
     private String toAddress;
 
+    @Column(name = "quantity")
+    private BigInteger quantity;
+
+    @Column(name = "serial_number")
+    private String serialNumber;
+
+    @Column(name = "status_code")
+    private Integer statusCode;
+
     @Column(name = "indexed_at", nullable = false)
     private LocalDateTime indexedAt;
 
@@ -0,0 +1,82 @@
+package com.nckh.dia5.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox cho các giao dịch blockchain chưa gửi được (lô/shipment lưu ở chế độ offline với hash PENDING_).
+ * BlockchainOutboxService gửi lại theo thứ tự với backoff và cập nhật bản ghi local khi có receipt.
+ */
+@Entity
+@Table(name = "blockchain_outbox",
+       uniqueConstraints = @UniqueConstraint(name = "uk_blockchain_outbox_operation_aggregate",
+                                             columnNames = {"operation", "aggregate_id"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlockchainOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 30)
+    private Operation operation;
+
+    // drug_batches.id hoặc drug_shipments.id tuỳ operation
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "transaction_hash", length = 66)
+    private String transactionHash;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public enum Operation {
+        ISSUE_BATCH,
+        CREATE_SHIPMENT
+    }
+
+    public enum Status {
+        PENDING,
+        DONE,
+        FAILED
+    }
+}
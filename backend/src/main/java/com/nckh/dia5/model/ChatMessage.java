@@ -12,7 +12,8 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", uniqueConstraints = @UniqueConstraint(
+        name = "uk_chat_messages_session_order", columnNames = {"session_id", "message_order"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,5 +1,6 @@
 package com.nckh.dia5.model;
 
+import com.nckh.dia5.config.DashboardStatsListener;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
@@ -20,7 +21,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, DashboardStatsListener.class})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class DrugBatch {
 
@@ -100,6 +101,17 @@ public class DrugBatch {
     @Column(name = "redeemed_serials")
     private Long redeemedSerials = 0L;
 
+    // Trạng thái lượt resume đăng ký serial (SerialRegistrationService): backoff giữa các lần thử,
+    // quá số lần tối đa thì dừng resume tự động
+    @Column(name = "serial_registration_attempts", nullable = false)
+    private Integer serialRegistrationAttempts = 0;
+
+    @Column(name = "serial_registration_next_attempt_at")
+    private LocalDateTime serialRegistrationNextAttemptAt;
+
+    @Column(name = "serial_registration_failed", nullable = false)
+    private Boolean serialRegistrationFailed = false;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -125,6 +137,20 @@ public class DrugBatch {
     @com.fasterxml.jackson.annotation.JsonIgnore
     private List<ProductItem> productItems;
 
+    // Giá trị đã lưu gần nhất, để DashboardStatsListener tính delta khi update/delete
+    @Transient
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private BatchStatus persistedStatus;
+
+    @Transient
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private Long persistedQuantity;
+
+    public void rememberPersistedState() {
+        persistedStatus = status;
+        persistedQuantity = quantity;
+    }
+
     public enum BatchStatus {
         MANUFACTURED,
         IN_TRANSIT,
@@ -0,0 +1,41 @@
+package com.nckh.dia5.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Hash của các block đã index, dùng để phát hiện chain reorg
+ */
+@Entity
+@Table(name = "blockchain_indexed_blocks")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexedBlock {
+
+    @Id
+    @Column(name = "block_number")
+    private BigInteger blockNumber;
+
+    @Column(name = "block_hash", nullable = false, length = 66)
+    private String blockHash;
+
+    @Column(name = "parent_hash", nullable = false, length = 66)
+    private String parentHash;
+
+    @Column(name = "indexed_at", nullable = false)
+    private LocalDateTime indexedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        this.indexedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,38 @@
+package com.nckh.dia5.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+/**
+ * Vị trí block đã index xong cho từng contract
+ */
+@Entity
+@Table(name = "blockchain_indexer_cursors")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexerCursor {
+
+    @Id
+    @Column(name = "contract_address", length = 42)
+    private String contractAddress;
+
+    @Column(name = "last_indexed_block", nullable = false)
+    private BigInteger lastIndexedBlock;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
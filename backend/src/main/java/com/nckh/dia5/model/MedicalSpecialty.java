@@ -1,5 +1,6 @@
 package com.nckh.dia5.model;
 
+import com.nckh.dia5.config.CatalogCacheEvictionListener;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
@@ -18,7 +19,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, CatalogCacheEvictionListener.class})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class MedicalSpecialty {
 
@@ -1,5 +1,7 @@
 package com.nckh.dia5.model;
 
+import com.nckh.dia5.config.CatalogCacheEvictionListener;
+import com.nckh.dia5.config.MedicationSearchIndexListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -16,7 +18,8 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, CatalogCacheEvictionListener.class,
+        MedicationSearchIndexListener.class})
 public class Medication {
 
     @Id
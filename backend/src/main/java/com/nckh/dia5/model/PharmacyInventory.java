@@ -20,8 +20,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@NamedEntityGraph(name = PharmacyInventory.WITH_RECEIVED_FROM, attributeNodes = {
+        @NamedAttributeNode("receivedFromDistributor")
+})
 public class PharmacyInventory {
 
+    /**
+     * Associations PharmacyInventoryDto reads beyond their id (receivedShipment only needs the id,
+     * which the lazy proxy already holds).
+     */
+    public static final String WITH_RECEIVED_FROM = "PharmacyInventory.withReceivedFrom";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -10,6 +10,7 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import java.math.BigInteger;
 import java.time.LocalDateTime;
 
 @Entity
@@ -53,6 +54,10 @@ public class ProductItem {
     @Column(name = "redeemed_at")
     private LocalDateTime redeemedAt;
 
+    // Block chứa giao dịch redeem, để hoàn tác khi block đó bị reorg
+    @Column(name = "redeemed_block_number")
+    private BigInteger redeemedBlockNumber;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
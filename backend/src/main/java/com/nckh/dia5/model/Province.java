@@ -1,5 +1,6 @@
 package com.nckh.dia5.model;
 
+import com.nckh.dia5.config.CatalogCacheEvictionListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -16,7 +17,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, CatalogCacheEvictionListener.class})
 public class Province {
 
     @Id
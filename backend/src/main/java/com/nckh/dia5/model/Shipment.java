@@ -1,5 +1,7 @@
 package com.nckh.dia5.model;
 
+import com.nckh.dia5.config.DashboardStatsListener;
+import com.nckh.dia5.config.ShipmentIdentityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -21,10 +23,21 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, DashboardStatsListener.class, ShipmentIdentityListener.class})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@NamedEntityGraph(name = Shipment.WITH_PARTIES_AND_BATCH, attributeNodes = {
+        @NamedAttributeNode("fromCompany"),
+        @NamedAttributeNode("toCompany"),
+        @NamedAttributeNode("drugBatch")
+})
 public class Shipment {
 
+    /**
+     * Everything ShipmentDto reads: list queries fetch-join these in the same SELECT instead of
+     * loading them lazily per row.
+     */
+    public static final String WITH_PARTIES_AND_BATCH = "Shipment.withPartiesAndBatch";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -35,15 +48,17 @@ public class Shipment {
     @Column(name = "shipment_code", nullable = false, unique = true, length = 100)
     private String shipmentCode;
     
-    // Keep shipment_id for blockchain compatibility (can be stored in notes or tracking_info)
-    @Transient
+    // ID shipment trên blockchain (trước đây nằm trong notes: original_shipment_id / blockchain_id)
+    @Column(name = "blockchain_shipment_id", precision = 38)
     private BigInteger shipmentId;
 
-    // Blockchain addresses (stored in tracking_info or notes)
-    @Transient
+    // Địa chỉ ví gửi/nhận trên blockchain
+    @Size(max = 42)
+    @Column(name = "from_address", length = 42)
     private String fromAddress;
     
-    @Transient
+    @Size(max = 42)
+    @Column(name = "to_address", length = 42)
     private String toAddress;
     
     // Company relationships
@@ -85,14 +100,13 @@ public class Shipment {
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
     
-    // Store blockchain data in notes field as JSON
-    @Transient
+    @Column(name = "tracking_info", columnDefinition = "TEXT")
     private String trackingInfo;
     
-    @Transient
+    @Column(name = "block_number", precision = 38)
     private BigInteger blockNumber;
     
-    @Transient
+    @Column(name = "is_synced", nullable = false)
     private Boolean isSynced = false;
 
     @CreatedDate
@@ -115,6 +129,20 @@ public class Shipment {
     @JsonIgnore
     private List<BlockchainTransaction> transactions;
 
+    // Giá trị đã lưu gần nhất, để DashboardStatsListener tính delta khi update/delete
+    @Transient
+    @JsonIgnore
+    private ShipmentStatus persistedStatus;
+
+    @Transient
+    @JsonIgnore
+    private LocalDateTime persistedShipmentDate;
+
+    public void rememberPersistedState() {
+        persistedStatus = status;
+        persistedShipmentDate = shipmentDate;
+    }
+
     public enum ShipmentStatus {
         PENDING,
         IN_TRANSIT,
@@ -0,0 +1,26 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.BatchCreationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository cho BatchCreationJob
+ */
+@Repository
+public interface BatchCreationJobRepository extends JpaRepository<BatchCreationJob, Long> {
+
+    /**
+     * Các job chưa xong và đã tới lượt chạy lại
+     */
+    @Query("SELECT j FROM BatchCreationJob j WHERE j.status IN :statuses " +
+           "AND (j.nextAttemptAt IS NULL OR j.nextAttemptAt <= :now) ORDER BY j.id")
+    List<BatchCreationJob> findRunnable(@Param("statuses") Collection<BatchCreationJob.Status> statuses,
+                                        @Param("now") LocalDateTime now);
+}
@@ -2,9 +2,11 @@ package com.nckh.dia5.repository;
 
 import com.nckh.dia5.model.BlockchainEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigInteger;
 import java.util.List;
@@ -14,7 +16,7 @@ import java.util.Optional;
  * Repository cho BlockchainEvent
  */
 @Repository
-public interface BlockchainEventRepository extends JpaRepository<BlockchainEvent, Long> {
+public interface BlockchainEventRepository extends JpaRepository<BlockchainEvent, Long>, BlockchainEventRepositoryCustom {
 
     /**
      * Kiểm tra event đã tồn tại chưa
@@ -36,6 +38,16 @@ public interface BlockchainEventRepository extends JpaRepository<BlockchainEvent
      */
     List<BlockchainEvent> findByShipmentIdOrderByIndexedAtAsc(BigInteger shipmentId);
 
+    /**
+     * Lịch sử on-chain của batch theo thứ tự trên chain
+     */
+    List<BlockchainEvent> findByBatchIdOrderByBlockNumberAscLogIndexAsc(BigInteger batchId);
+
+    /**
+     * Lịch sử on-chain của shipment theo thứ tự trên chain
+     */
+    List<BlockchainEvent> findByShipmentIdOrderByBlockNumberAscLogIndexAsc(BigInteger shipmentId);
+
     /**
      * Lấy events theo loại
      */
@@ -50,9 +62,22 @@ public interface BlockchainEventRepository extends JpaRepository<BlockchainEvent
     /**
      * Lấy events theo address (from hoặc to)
      */
-    @Query("SELECT e FROM BlockchainEvent e WHERE e.fromAddress = :address OR e.toAddress = :address ORDER BY e.indexedAt DESC")
+    @Query("SELECT e FROM BlockchainEvent e WHERE e.fromAddress = :address OR e.toAddress = :address ORDER BY e.blockNumber DESC, e.logIndex DESC")
     List<BlockchainEvent> findByAddress(@Param("address") String address);
 
+    /**
+     * Xoá events sau fork point khi chain reorg
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BlockchainEvent e WHERE e.blockNumber > :blockNumber")
+    int deleteAfterBlock(@Param("blockNumber") BigInteger blockNumber);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BlockchainEvent e WHERE e.blockNumber BETWEEN :fromBlock AND :toBlock")
+    int deleteBlockRange(@Param("fromBlock") BigInteger fromBlock, @Param("toBlock") BigInteger toBlock);
+
     /**
      * Đếm số events chưa process
      */
@@ -0,0 +1,16 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.BlockchainEvent;
+
+import java.util.List;
+
+/**
+ * Các thao tác ghi hàng loạt cho BlockchainEvent không dùng được qua JPA
+ */
+public interface BlockchainEventRepositoryCustom {
+
+    /**
+     * Ghi một lô events bằng batched upsert theo (transaction_hash, log_index)
+     */
+    int upsertAll(List<BlockchainEvent> events);
+}
@@ -0,0 +1,59 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.BlockchainEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class BlockchainEventRepositoryImpl implements BlockchainEventRepositoryCustom {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO blockchain_events (event_type, contract_address, transaction_hash, block_number, log_index, " +
+            "event_data, batch_id, shipment_id, from_address, to_address, quantity, serial_number, status_code, " +
+            "indexed_at, processed) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE event_type = VALUES(event_type), block_number = VALUES(block_number), " +
+            "event_data = VALUES(event_data), batch_id = VALUES(batch_id), shipment_id = VALUES(shipment_id), " +
+            "from_address = VALUES(from_address), to_address = VALUES(to_address), quantity = VALUES(quantity), " +
+            "serial_number = VALUES(serial_number), status_code = VALUES(status_code)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int upsertAll(List<BlockchainEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getEventType());
+            ps.setString(2, event.getContractAddress());
+            ps.setString(3, event.getTransactionHash());
+            ps.setBigDecimal(4, toDecimal(event.getBlockNumber()));
+            ps.setBigDecimal(5, toDecimal(event.getLogIndex()));
+            ps.setString(6, event.getEventData());
+            ps.setBigDecimal(7, toDecimal(event.getBatchId()));
+            ps.setBigDecimal(8, toDecimal(event.getShipmentId()));
+            ps.setString(9, event.getFromAddress());
+            ps.setString(10, event.getToAddress());
+            ps.setBigDecimal(11, toDecimal(event.getQuantity()));
+            ps.setString(12, event.getSerialNumber());
+            ps.setObject(13, event.getStatusCode(), Types.INTEGER);
+            ps.setTimestamp(14, now);
+            ps.setBoolean(15, Boolean.TRUE.equals(event.getProcessed()));
+        });
+        return events.size();
+    }
+
+    private BigDecimal toDecimal(BigInteger value) {
+        return value != null ? new BigDecimal(value) : null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.BlockchainOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository cho BlockchainOutboxEntry
+ */
+@Repository
+public interface BlockchainOutboxRepository extends JpaRepository<BlockchainOutboxEntry, Long> {
+
+    Optional<BlockchainOutboxEntry> findByOperationAndAggregateId(BlockchainOutboxEntry.Operation operation, Long aggregateId);
+
+    /**
+     * Các entry đang chờ và đã tới lượt gửi lại, theo thứ tự tạo
+     */
+    @Query("SELECT e FROM BlockchainOutboxEntry e WHERE e.status = com.nckh.dia5.model.BlockchainOutboxEntry.Status.PENDING " +
+           "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now) ORDER BY e.id")
+    List<BlockchainOutboxEntry> findReady(@Param("now") LocalDateTime now, Pageable pageable);
+}
@@ -66,6 +66,11 @@ public interface BlockchainTransactionRepository extends JpaRepository<Blockchai
     @Query("SELECT bt FROM BlockchainTransaction bt WHERE bt.drugBatch.batchId = :batchId ORDER BY bt.timestamp ASC")
     List<BlockchainTransaction> findByBatchIdOrderByTimestamp(@Param("batchId") BigInteger batchId);
 
+    @Query("SELECT bt FROM BlockchainTransaction bt WHERE bt.drugBatch.batchId = :batchId AND bt.id > :afterId ORDER BY bt.id ASC")
+    List<BlockchainTransaction> findByBatchIdAfterId(@Param("batchId") BigInteger batchId,
+                                                     @Param("afterId") Long afterId,
+                                                     Pageable pageable);
+
     @Query("SELECT bt FROM BlockchainTransaction bt WHERE bt.shipment.shipmentCode = CONCAT('SHIP-', :shipmentId) ORDER BY bt.timestamp ASC")
     List<BlockchainTransaction> findByShipmentIdOrderByTimestamp(@Param("shipmentId") BigInteger shipmentId);
 }
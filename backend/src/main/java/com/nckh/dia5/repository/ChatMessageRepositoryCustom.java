@@ -0,0 +1,19 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.ChatMessage;
+
+/**
+ * Ghi tin nhắn chat với message_order được cấp nguyên tử từ chat_sessions.total_messages
+ */
+public interface ChatMessageRepositoryCustom {
+
+    /**
+     * Tăng total_messages của session và ghi tin nhắn với thứ tự vừa cấp trong cùng một transaction,
+     * không đọc lại session. Row lock của câu UPDATE tuần tự hoá các tin nhắn của cùng một session,
+     * các session khác nhau không chặn nhau.
+     *
+     * @param userId nếu khác null thì session phải thuộc user này
+     * @return tin nhắn đã ghi (id, messageOrder được gán), hoặc null nếu session không tồn tại
+     */
+    ChatMessage append(String sessionId, String userId, ChatMessage message);
+}
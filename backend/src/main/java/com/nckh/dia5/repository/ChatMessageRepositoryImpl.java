@@ -0,0 +1,80 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class ChatMessageRepositoryImpl implements ChatMessageRepositoryCustom {
+
+    // LAST_INSERT_ID(expr) trả giá trị mới qua generated key của chính câu UPDATE -> không cần SELECT thêm.
+    // Khai báo cột total_messages làm generated key: MySQL trả LAST_INSERT_ID, H2 trả giá trị mới của cột
+    private static final String NEXT_ORDER =
+            "UPDATE chat_sessions SET total_messages = LAST_INSERT_ID(total_messages + 1) WHERE id = ?";
+    private static final String NEXT_ORDER_FOR_USER = NEXT_ORDER + " AND user_id = ?";
+    private static final String[] ORDER_KEY = {"total_messages"};
+
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO chat_messages (session_id, message_order, sender, message_text, message_type, " +
+            "ai_confidence, processing_time_ms, sentiment_score, contains_urgency_keywords, sources_json, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public ChatMessage append(String sessionId, String userId, ChatMessage message) {
+        KeyHolder orderHolder = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    userId != null ? NEXT_ORDER_FOR_USER : NEXT_ORDER, ORDER_KEY);
+            statement.setString(1, sessionId);
+            if (userId != null) {
+                statement.setString(2, userId);
+            }
+            return statement;
+        }, orderHolder);
+        if (updated == 0) {
+            return null;
+        }
+
+        int messageOrder = orderHolder.getKey().intValue();
+        if (message.getTimestamp() == null) {
+            message.setTimestamp(LocalDateTime.now());
+        }
+
+        KeyHolder idHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_MESSAGE, Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, sessionId);
+            statement.setInt(2, messageOrder);
+            statement.setString(3, message.getSender().name());
+            statement.setString(4, message.getMessageText());
+            statement.setString(5, message.getMessageType() != null ? message.getMessageType().name() : null);
+            statement.setBigDecimal(6, message.getAiConfidence());
+            if (message.getProcessingTimeMs() != null) {
+                statement.setInt(7, message.getProcessingTimeMs());
+            } else {
+                statement.setNull(7, Types.INTEGER);
+            }
+            statement.setBigDecimal(8, message.getSentimentScore());
+            statement.setBoolean(9, Boolean.TRUE.equals(message.getContainsUrgencyKeywords()));
+            statement.setString(10, message.getSourcesJson());
+            statement.setTimestamp(11, Timestamp.valueOf(message.getTimestamp()));
+            return statement;
+        }, idHolder);
+
+        message.setId(idHolder.getKey().intValue());
+        message.setMessageOrder(messageOrder);
+        return message;
+    }
+}
@@ -1,17 +1,23 @@
 package com.nckh.dia5.repository;
 
 import com.nckh.dia5.model.DrugBatch;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DrugBatchRepository extends JpaRepository<DrugBatch, Long> {
@@ -30,6 +36,9 @@ public interface DrugBatchRepository extends JpaRepository<DrugBatch, Long> {
 
     List<DrugBatch> findByIsSynced(Boolean isSynced);
 
+    @Query("SELECT b.id FROM DrugBatch b WHERE b.isSynced = false")
+    List<Long> findUnsyncedIds();
+
     @Query("SELECT db FROM DrugBatch db WHERE db.expiryDate BETWEEN :startDate AND :endDate")
     List<DrugBatch> findByExpiryDateBetween(@Param("startDate") LocalDateTime startDate, 
                                            @Param("endDate") LocalDateTime endDate);
@@ -53,6 +62,54 @@ public interface DrugBatchRepository extends JpaRepository<DrugBatch, Long> {
     @Query("SELECT db FROM DrugBatch db WHERE db.expiryDate < :currentDate")
     List<DrugBatch> findExpiredBatches(@Param("currentDate") LocalDateTime currentDate);
 
+    /**
+     * Rollup cho DashboardStatsService: [status, count, sum(quantity)]
+     */
+    @Query("SELECT db.status, COUNT(db), COALESCE(SUM(db.quantity), 0) FROM DrugBatch db GROUP BY db.status")
+    List<Object[]> countAndSumQuantityByStatus();
+
+    /**
+     * Keyset page theo khóa chính: gọi với PageRequest.of(0, limit + 1) để biết còn trang sau
+     */
+    List<DrugBatch> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * Export toàn bộ: MySQL server-side cursor (useCursorFetch) đọc từng khối fetch size
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT db FROM DrugBatch db ORDER BY db.id")
+    Stream<DrugBatch> streamAllOrderById();
+
     @Query("SELECT db FROM DrugBatch db WHERE db.transactionHash = :hash")
     Optional<DrugBatch> findByTransactionHash(@Param("hash") String transactionHash);
+
+    /**
+     * Đếm lại redeemed_serials từ product_items (sau khi hoàn tác redeem do reorg)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE DrugBatch db SET db.redeemedSerials = " +
+           "(SELECT COUNT(p) FROM ProductItem p WHERE p.drugBatch = db AND p.blockchainRedeemed = true) " +
+           "WHERE db.id IN :ids")
+    int recountRedeemedSerials(@Param("ids") List<Long> ids);
+
+    /**
+     * Ghi kết quả một lượt đăng ký serial mà không merge lại cả entity: lượt đăng ký có thể kéo dài nhiều
+     * phút, trong lúc đó status/owner/isSynced/redeemedSerials của lô có thể đã được cập nhật nơi khác
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE DrugBatch db SET db.registeredSerials = :registered, " +
+           "db.serialRegistrationAttempts = :attempts, " +
+           "db.serialRegistrationNextAttemptAt = :nextAttemptAt, " +
+           "db.serialRegistrationFailed = :failed " +
+           "WHERE db.id = :id")
+    int updateSerialRegistration(@Param("id") Long id,
+                                 @Param("registered") Long registered,
+                                 @Param("attempts") Integer attempts,
+                                 @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                                 @Param("failed") Boolean failed);
 }
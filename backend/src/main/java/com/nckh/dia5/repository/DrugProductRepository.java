@@ -1,6 +1,7 @@
 package com.nckh.dia5.repository;
 
 import com.nckh.dia5.model.DrugProduct;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,6 +12,11 @@ public interface DrugProductRepository extends JpaRepository<DrugProduct, Long>
     @Query("SELECT p FROM DrugProduct p WHERE p.manufacturerId = :manufacturerId")
     java.util.List<DrugProduct> findAllByManufacturerId(@Param("manufacturerId") Long manufacturerId);
 
+    java.util.List<DrugProduct> findByManufacturerIdAndIdGreaterThanOrderByIdAsc(Long manufacturerId, Long afterId,
+            Pageable pageable);
+
+    java.util.List<DrugProduct> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
     java.util.List<DrugProduct> findByManufacturerIdIsNull();
 
     java.util.Optional<DrugProduct> findByIdAndManufacturerId(Long id, Long manufacturerId);
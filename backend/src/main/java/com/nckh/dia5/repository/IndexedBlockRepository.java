@@ -0,0 +1,34 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.IndexedBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Repository cho IndexedBlock
+ */
+@Repository
+public interface IndexedBlockRepository extends JpaRepository<IndexedBlock, BigInteger> {
+
+    /**
+     * Các block đã ghi nhận trước một block, mới nhất trước
+     */
+    List<IndexedBlock> findByBlockNumberLessThanOrderByBlockNumberDesc(BigInteger blockNumber);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexedBlock b WHERE b.blockNumber > :blockNumber")
+    int deleteAfter(@Param("blockNumber") BigInteger blockNumber);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexedBlock b WHERE b.blockNumber < :blockNumber")
+    int deleteBefore(@Param("blockNumber") BigInteger blockNumber);
+}
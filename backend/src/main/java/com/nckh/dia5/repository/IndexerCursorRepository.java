@@ -0,0 +1,12 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.IndexerCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository cho IndexerCursor
+ */
+@Repository
+public interface IndexerCursorRepository extends JpaRepository<IndexerCursor, String> {
+}
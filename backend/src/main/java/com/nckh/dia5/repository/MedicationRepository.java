@@ -1,15 +1,19 @@
 package com.nckh.dia5.repository;
 
 import com.nckh.dia5.model.Medication;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MedicationRepository extends JpaRepository<Medication, Integer> {
@@ -35,4 +39,13 @@ public interface MedicationRepository extends JpaRepository<Medication, Integer>
 
     @Query("SELECT DISTINCT m.drugClass FROM Medication m WHERE m.drugClass IS NOT NULL ORDER BY m.drugClass")
     List<String> findAllDrugClasses();
+
+    List<Medication> findByIdGreaterThanOrderByIdAsc(Integer afterId, Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM Medication m ORDER BY m.id")
+    Stream<Medication> streamAllOrderById();
 }
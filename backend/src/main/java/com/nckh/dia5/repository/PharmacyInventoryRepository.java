@@ -2,6 +2,7 @@ package com.nckh.dia5.repository;
 
 import com.nckh.dia5.model.DrugBatch;
 import com.nckh.dia5.model.PharmacyInventory;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -20,6 +21,7 @@ public interface PharmacyInventoryRepository extends JpaRepository<PharmacyInven
     Optional<PharmacyInventory> findByPharmacyIdAndDrugBatchId(Long pharmacyId, Long batchId);
 
     // Find by pharmacy wallet address
+    @EntityGraph(PharmacyInventory.WITH_RECEIVED_FROM)
     @Query("SELECT pi FROM PharmacyInventory pi WHERE pi.pharmacy.walletAddress = :walletAddress")
     List<PharmacyInventory> findByPharmacyWalletAddress(@Param("walletAddress") String walletAddress);
 
@@ -3,21 +3,106 @@ package com.nckh.dia5.repository;
 import com.nckh.dia5.model.DrugBatch;
 import com.nckh.dia5.model.ProductItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigInteger;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductItemRepository extends JpaRepository<ProductItem, Long> {
+public interface ProductItemRepository extends JpaRepository<ProductItem, Long>, ProductItemRepositoryCustom {
 
     Optional<ProductItem> findBySerialNumber(String serialNumber);
 
     Optional<ProductItem> findByDrugBatchAndSerialNumber(DrugBatch drugBatch, String serialNumber);
 
+    /**
+     * Hộp thuốc kèm lô trong một query (đường xác minh QR)
+     */
+    @Query("SELECT p FROM ProductItem p JOIN FETCH p.drugBatch b WHERE b.batchId = :batchId AND p.serialNumber = :serialNumber")
+    Optional<ProductItem> findWithBatch(@Param("batchId") BigInteger batchId, @Param("serialNumber") String serialNumber);
+
     List<ProductItem> findByDrugBatch(DrugBatch drugBatch);
 
     long countByBlockchainRegisteredTrue();
 
     long countByStatus(ProductItem.ProductItemStatus status);
+
+    long countByDrugBatchAndBlockchainRegisteredTrue(DrugBatch drugBatch);
+
+    long countByDrugBatch(DrugBatch drugBatch);
+
+    @Query("SELECT p.serialNumber FROM ProductItem p WHERE p.drugBatch = :batch AND p.blockchainRegistered = false ORDER BY p.id")
+    List<String> findUnregisteredSerialNumbers(@Param("batch") DrugBatch batch);
+
+    @Query("SELECT DISTINCT p.drugBatch.batchId FROM ProductItem p WHERE p.blockchainRegistered = false " +
+            "AND p.drugBatch.isSynced = true AND p.drugBatch.serialRegistrationFailed = false " +
+            "AND (p.drugBatch.serialRegistrationNextAttemptAt IS NULL OR p.drugBatch.serialRegistrationNextAttemptAt <= :now)")
+    List<BigInteger> findBatchIdsWithUnregisteredItems(@Param("now") LocalDateTime now);
+
+    /**
+     * Rollup cho DashboardStatsService: [status, blockchainRegistered, count]
+     */
+    @Query("SELECT p.status, p.blockchainRegistered, COUNT(p) FROM ProductItem p GROUP BY p.status, p.blockchainRegistered")
+    List<Object[]> countGroupedByStatusAndRegistered();
+
+    /**
+     * Chỉ cập nhật serial chưa đăng ký, để số dòng trả về đúng bằng số serial mới được đăng ký
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProductItem p SET p.blockchainRegistered = true, p.status = :status, p.updatedAt = :now " +
+           "WHERE p.drugBatch = :batch AND p.serialNumber IN :serials AND p.blockchainRegistered = false")
+    int markRegistered(@Param("batch") DrugBatch batch,
+                       @Param("serials") List<String> serials,
+                       @Param("status") ProductItem.ProductItemStatus status,
+                       @Param("now") LocalDateTime now);
+
+    /**
+     * Áp dụng event SerialNumberRedeemed từ indexer (serial_number là unique)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProductItem p SET p.blockchainRedeemed = true, p.status = :status, p.redeemedByAddress = :redeemedBy, " +
+           "p.redeemedAt = :redeemedAt, p.redeemedBlockNumber = :blockNumber, p.updatedAt = :now " +
+           "WHERE p.serialNumber = :serialNumber AND p.blockchainRedeemed = false")
+    int markRedeemedFromChain(@Param("serialNumber") String serialNumber,
+                              @Param("redeemedBy") String redeemedBy,
+                              @Param("redeemedAt") LocalDateTime redeemedAt,
+                              @Param("blockNumber") BigInteger blockNumber,
+                              @Param("status") ProductItem.ProductItemStatus status,
+                              @Param("now") LocalDateTime now);
+
+    /**
+     * Ghi block của redeem cho serial đã được đánh dấu redeem mà chưa biết block (đọc qua eth_call)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProductItem p SET p.redeemedBlockNumber = :blockNumber " +
+           "WHERE p.serialNumber = :serialNumber AND p.blockchainRedeemed = true AND p.redeemedBlockNumber IS NULL")
+    int recordRedemptionBlock(@Param("serialNumber") String serialNumber,
+                              @Param("blockNumber") BigInteger blockNumber);
+
+    @Query("SELECT DISTINCT p.drugBatch.id FROM ProductItem p WHERE p.redeemedBlockNumber > :blockNumber")
+    List<Long> findBatchIdsRedeemedAfterBlock(@Param("blockNumber") BigInteger blockNumber);
+
+    /**
+     * Hoàn tác các redeem nằm trong block bị reorg: serial trở về REGISTERED (hoặc CREATED nếu chưa đăng ký);
+     * nếu giao dịch được mined lại, indexer áp dụng lại từ event SerialNumberRedeemed
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ProductItem p SET p.blockchainRedeemed = false, " +
+           "p.status = CASE WHEN p.blockchainRegistered = true THEN :registered ELSE :created END, " +
+           "p.redeemedByAddress = null, p.redeemedAt = null, p.redeemedBlockNumber = null, p.updatedAt = :now " +
+           "WHERE p.redeemedBlockNumber > :blockNumber")
+    int revertRedemptionsAfterBlock(@Param("blockNumber") BigInteger blockNumber,
+                                    @Param("registered") ProductItem.ProductItemStatus registered,
+                                    @Param("created") ProductItem.ProductItemStatus created,
+                                    @Param("now") LocalDateTime now);
 }
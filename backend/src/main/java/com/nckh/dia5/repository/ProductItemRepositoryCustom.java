@@ -0,0 +1,18 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.ProductItem;
+
+import java.util.List;
+
+/**
+ * Các thao tác ghi hàng loạt cho ProductItem không dùng được qua JPA
+ */
+public interface ProductItemRepositoryCustom {
+
+    /**
+     * Ghi một lô hộp thuốc bằng một câu INSERT nhiều dòng với ON DUPLICATE KEY UPDATE; serial trùng bị bỏ qua
+     * nhờ unique constraint. Số dòng driver trả về không phân biệt dòng mới với dòng trùng (useAffectedRows=false)
+     * nên người gọi tự đếm số dòng được thêm.
+     */
+    void insertSkippingDuplicates(Long drugBatchId, List<ProductItem> items);
+}
@@ -0,0 +1,54 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.ProductItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ProductItemRepositoryImpl implements ProductItemRepositoryCustom {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO product_items (drug_batch_id, serial_number, qr_code, status, " +
+            "blockchain_registered, blockchain_redeemed, created_at, updated_at) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?, ?, ?, ?, ?)";
+    // Chỉ bỏ qua trùng unique key; khác INSERT IGNORE, lỗi dữ liệu (cắt chuỗi, sai FK...) vẫn được báo
+    private static final String ON_DUPLICATE_SUFFIX = " ON DUPLICATE KEY UPDATE id = id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertSkippingDuplicates(Long drugBatchId, List<ProductItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + items.size() * (ROW_PLACEHOLDER.length() + 2)
+                + ON_DUPLICATE_SUFFIX.length());
+        sql.append(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(items.size() * 8);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        for (int i = 0; i < items.size(); i++) {
+            ProductItem item = items.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+            args.add(drugBatchId);
+            args.add(item.getSerialNumber());
+            args.add(item.getQrCode());
+            args.add(item.getStatus().name());
+            args.add(Boolean.TRUE.equals(item.getBlockchainRegistered()));
+            args.add(Boolean.TRUE.equals(item.getBlockchainRedeemed()));
+            args.add(now);
+            args.add(now);
+        }
+        sql.append(ON_DUPLICATE_SUFFIX);
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+}
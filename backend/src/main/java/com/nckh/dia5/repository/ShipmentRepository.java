@@ -2,10 +2,14 @@ package com.nckh.dia5.repository;
 
 import com.nckh.dia5.model.Shipment;
 import com.nckh.dia5.model.DrugBatch;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -13,6 +17,7 @@ import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ShipmentRepository extends JpaRepository<Shipment, Long> {
@@ -22,28 +27,80 @@ public interface ShipmentRepository extends JpaRepository<Shipment, Long> {
     @Query("SELECT s FROM Shipment s WHERE s.shipmentCode = CONCAT('SHIP-', :shipmentId)")
     Optional<Shipment> findByShipmentId(@Param("shipmentId") BigInteger shipmentId);
 
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
     List<Shipment> findByDrugBatch(DrugBatch drugBatch);
 
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
     @Query("SELECT s FROM Shipment s WHERE s.fromCompany.walletAddress = :address")
     List<Shipment> findByFromAddress(@Param("address") String fromAddress);
 
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
     @Query("SELECT s FROM Shipment s WHERE s.toCompany.walletAddress = :address")
     List<Shipment> findByToAddress(@Param("address") String toAddress);
 
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
     List<Shipment> findByStatus(Shipment.ShipmentStatus status);
 
-    @Query("SELECT s FROM Shipment s WHERE JSON_EXTRACT(s.notes, '$.is_synced') = :isSynced")
-    List<Shipment> findByIsSynced(@Param("isSynced") Boolean isSynced);
-    
-    @Query("SELECT s FROM Shipment s WHERE JSON_EXTRACT(s.notes, '$.blockchain_id') = :blockchainId")
-    Optional<Shipment> findByBlockchainId(@Param("blockchainId") String blockchainId);
-
+    /**
+     * Keyset page theo khóa chính: gọi với PageRequest.of(0, limit + 1) để biết còn trang sau
+     */
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
+    List<Shipment> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * Export toàn bộ: MySQL server-side cursor (useCursorFetch) đọc từng khối fetch size
+     */
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM Shipment s ORDER BY s.id")
+    Stream<Shipment> streamAllOrderById();
+
+    /**
+     * Shipment được lưu ở chế độ offline (create_tx_hash = PENDING_...)
+     */
+    @Query("SELECT s.id FROM Shipment s WHERE s.createTxHash LIKE 'PENDING_%'")
+    List<Long> findPendingSyncIds();
+
+    @Query("SELECT b.isSynced FROM Shipment s JOIN s.drugBatch b WHERE s.id = :id")
+    Optional<Boolean> findBatchSyncedByShipmentId(@Param("id") Long id);
+
+    /**
+     * Tra theo cột blockchain_shipment_id (có index); dữ liệu cũ có thể trùng nên lấy theo thứ tự id
+     */
+    @Query("SELECT s FROM Shipment s WHERE s.shipmentId = :blockchainId ORDER BY s.id")
+    List<Shipment> findByBlockchainId(@Param("blockchainId") BigInteger blockchainId);
+
+    /**
+     * Mọi định danh trong một truy vấn (shipment_code unique, blockchain_shipment_id có index, id là PK);
+     * ưu tiên mã shipment, rồi ID blockchain, rồi ID database. Gọi với PageRequest.of(0, 1)
+     */
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
+    @Query("SELECT s FROM Shipment s WHERE s.shipmentCode = :code OR s.shipmentId = :chainId OR s.id = :dbId " +
+           "ORDER BY CASE WHEN s.shipmentCode = :code THEN 0 WHEN s.shipmentId = :chainId THEN 1 ELSE 2 END, s.id")
+    List<Shipment> findByAnyIdentity(@Param("code") String code,
+                                     @Param("chainId") BigInteger chainId,
+                                     @Param("dbId") Long dbId,
+                                     Pageable pageable);
+
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
+    Optional<Shipment> findWithPartiesAndBatchById(Long id);
+
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
     @Query("SELECT s FROM Shipment s WHERE s.fromCompany.walletAddress = :address OR s.toCompany.walletAddress = :address")
     List<Shipment> findByInvolvedAddress(@Param("address") String address);
 
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
     @Query("SELECT s FROM Shipment s WHERE s.drugBatch.batchId = :batchId")
     List<Shipment> findByBatchId(@Param("batchId") BigInteger batchId);
 
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
+    @Query("SELECT s FROM Shipment s WHERE s.drugBatch.batchId = :batchId AND s.status = :status")
+    List<Shipment> findByBatchIdAndStatus(@Param("batchId") BigInteger batchId,
+                                          @Param("status") Shipment.ShipmentStatus status);
+
     @Query("SELECT s FROM Shipment s WHERE s.shipmentDate BETWEEN :startDate AND :endDate")
     List<Shipment> findByShipmentTimestampBetween(@Param("startDate") LocalDateTime startDate, 
                                                   @Param("endDate") LocalDateTime endDate);
@@ -63,6 +120,22 @@ public interface ShipmentRepository extends JpaRepository<Shipment, Long> {
     List<Shipment> findStaleShipments(@Param("status") Shipment.ShipmentStatus status, 
                                      @Param("threshold") LocalDateTime threshold);
 
+    /**
+     * Rollup cho DashboardStatsService: [status, count]
+     */
+    @Query("SELECT s.status, COUNT(s) FROM Shipment s GROUP BY s.status")
+    List<Object[]> countGroupedByStatus();
+
+    /**
+     * Rollup cho DashboardStatsService: [year, month, count] từ {@code since}
+     */
+    @Query("SELECT YEAR(s.shipmentDate), MONTH(s.shipmentDate), COUNT(s) FROM Shipment s " +
+           "WHERE s.shipmentDate >= :since GROUP BY YEAR(s.shipmentDate), MONTH(s.shipmentDate)")
+    List<Object[]> countByMonthSince(@Param("since") LocalDateTime since);
+
+    @EntityGraph(Shipment.WITH_PARTIES_AND_BATCH)
+    List<Shipment> findTop10ByOrderByShipmentDateDesc();
+
     @Query("SELECT s FROM Shipment s WHERE s.createTxHash = :hash OR s.receiveTxHash = :hash")
     Optional<Shipment> findByTransactionHash(@Param("hash") String transactionHash);
 
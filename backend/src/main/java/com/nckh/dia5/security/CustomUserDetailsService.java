@@ -15,6 +15,8 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
@@ -52,6 +54,25 @@ public class CustomUserDetailsService implements UserDetailsService {
         return user;
     }
 
+    /**
+     * Resolves a principal whose account table is known from the token, so only one
+     * {@code findByEmail} runs. Tokens without a type fall back to probing every table.
+     */
+    @Transactional(readOnly = true)
+    public UserDetails loadUserByUsername(String email, PrincipalType principalType) {
+        if (principalType == null) {
+            return loadUserByUsername(email);
+        }
+
+        Optional<? extends UserDetails> user = switch (principalType) {
+            case MANUFACTURER -> manufacturerUserRepository.findByEmail(email);
+            case DISTRIBUTOR -> distributorUserRepository.findByEmail(email);
+            case PHARMACY -> pharmacyUserRepository.findByEmail(email);
+            case USER -> userRepository.findByEmail(email);
+        };
+        return user.orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+    }
+
     @Transactional
     public UserDetails loadUserById(String id) {
         // First try manufacturer users
@@ -11,11 +11,14 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.UUID;
 
 @Slf4j
 @Component
 public class JwtTokenProvider {
 
+    public static final String PRINCIPAL_TYPE_CLAIM = "ptype";
+
     @Value("${app.jwt.secret:dia5MedicalApiSecretKeyForJwtTokenGeneration}")
     private String jwtSecret;
 
@@ -30,11 +33,16 @@ public class JwtTokenProvider {
     }
 
     public String generateToken(Authentication authentication) {
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
+        // Một số luồng đăng ký tạo Authentication với principal là email (String)
+        PrincipalType principalType = authentication.getPrincipal() instanceof UserDetails userDetails
+                ? PrincipalType.of(userDetails)
+                : null;
         Date expiryDate = new Date(System.currentTimeMillis() + jwtExpirationMs);
 
         return Jwts.builder()
-                .subject(userPrincipal.getUsername())
+                .id(UUID.randomUUID().toString())
+                .subject(authentication.getName())
+                .claim(PRINCIPAL_TYPE_CLAIM, principalType != null ? principalType.name() : null)
                 .issuedAt(new Date())
                 .expiration(expiryDate)
                 .signWith(key)
@@ -45,6 +53,7 @@ public class JwtTokenProvider {
         Date expiryDate = new Date(System.currentTimeMillis() + jwtExpirationMs);
 
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(new Date())
                 .expiration(expiryDate)
@@ -63,12 +72,20 @@ public class JwtTokenProvider {
     }
 
     public boolean validateToken(String token) {
+        return parseValidClaims(token) != null;
+    }
+
+    /**
+     * Verifies the token and returns its claims, or {@code null} if it is invalid or expired.
+     * Lets callers validate and read the subject with a single parse.
+     */
+    public Claims parseValidClaims(String token) {
         try {
-            Jwts.parser()
+            return Jwts.parser()
                     .verifyWith(key)
                     .build()
-                    .parseSignedClaims(token);
-            return true;
+                    .parseSignedClaims(token)
+                    .getPayload();
         } catch (MalformedJwtException e) {
             log.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -77,8 +94,10 @@ public class JwtTokenProvider {
             log.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            log.error("JWT signature is invalid: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 
     public long getExpirationMs() {
@@ -0,0 +1,125 @@
+package com.nckh.dia5.security;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved principals of recently seen tokens, keyed by the token ID ({@code jti}).
+ *
+ * An entry lives for at most {@code app.security.principal-cache.ttl-seconds} and never past the
+ * token's own expiry. Services that change a user's profile, role or active flag call
+ * {@link #invalidate(String)} so the next request reloads the account; today that is only
+ * {@code UserService.updateProfile}.
+ *
+ * Manufacturer, distributor and pharmacy accounts have no deactivation or role-change path in the
+ * application (only registration and login, which issue a new token). Such changes are made
+ * directly in the database and reach tokens already in use after at most {@code ttl-seconds};
+ * a new write path for those accounts must call {@link #invalidate(String)} as well.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PrincipalCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.principal-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, CachedPrincipal> entries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("security.principal.cache.size", entries, Map::size)
+                .description("Resolved principals cached by token ID")
+                .register(meterRegistry);
+    }
+
+    public UserDetails get(Claims claims) {
+        if (!enabled) {
+            return null;
+        }
+        CachedPrincipal cached = entries.get(keyOf(claims));
+        if (cached == null) {
+            meterRegistry.counter("security.principal.cache", "result", "miss").increment();
+            return null;
+        }
+        if (cached.expiresAtMs() <= System.currentTimeMillis()) {
+            entries.remove(keyOf(claims), cached);
+            meterRegistry.counter("security.principal.cache", "result", "expired").increment();
+            return null;
+        }
+        meterRegistry.counter("security.principal.cache", "result", "hit").increment();
+        return cached.userDetails();
+    }
+
+    public void put(Claims claims, UserDetails userDetails) {
+        if (!enabled) {
+            return;
+        }
+        long expiresAtMs = System.currentTimeMillis() + ttlSeconds * 1000;
+        Date tokenExpiry = claims.getExpiration();
+        if (tokenExpiry != null) {
+            expiresAtMs = Math.min(expiresAtMs, tokenExpiry.getTime());
+        }
+        if (entries.size() >= maxSize) {
+            evictExpired();
+            if (entries.size() >= maxSize) {
+                // Không giữ LRU: cache đầy thì bỏ qua, request sau vẫn tự load lại từ DB
+                return;
+            }
+        }
+        entries.put(keyOf(claims), new CachedPrincipal(userDetails.getUsername(), userDetails, expiresAtMs));
+    }
+
+    /**
+     * Drops every cached principal of the given account (all of its tokens).
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        entries.values().removeIf(cached -> username.equalsIgnoreCase(cached.username()));
+        log.debug("Invalidated cached principals of {}", username);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(cached -> cached.expiresAtMs() <= now);
+    }
+
+    private static String keyOf(Claims claims) {
+        // Token cũ (trước khi có jti) dùng subject + issuedAt làm khóa
+        if (claims.getId() != null) {
+            return claims.getId();
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return claims.getSubject() + "@" + (issuedAt != null ? issuedAt.getTime() : 0);
+    }
+
+    private record CachedPrincipal(String username, UserDetails userDetails, long expiresAtMs) {
+    }
+}
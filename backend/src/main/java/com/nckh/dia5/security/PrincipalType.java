@@ -0,0 +1,45 @@
+package com.nckh.dia5.security;
+
+import com.nckh.dia5.model.DistributorUser;
+import com.nckh.dia5.model.ManufacturerUser;
+import com.nckh.dia5.model.PharmacyUser;
+import com.nckh.dia5.model.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Account table a principal lives in. Carried in the JWT so the filter can resolve the user
+ * with a single indexed lookup instead of probing every user table.
+ */
+public enum PrincipalType {
+    MANUFACTURER,
+    DISTRIBUTOR,
+    PHARMACY,
+    USER;
+
+    public static PrincipalType of(UserDetails userDetails) {
+        if (userDetails instanceof ManufacturerUser) {
+            return MANUFACTURER;
+        }
+        if (userDetails instanceof DistributorUser) {
+            return DISTRIBUTOR;
+        }
+        if (userDetails instanceof PharmacyUser) {
+            return PHARMACY;
+        }
+        if (userDetails instanceof User) {
+            return USER;
+        }
+        return null;
+    }
+
+    public static PrincipalType fromClaim(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -11,12 +11,12 @@ import com.nckh.dia5.repository.UserSymptomReportRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,47 +24,40 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AiDiagnosisService {
 
-    private final RestTemplate restTemplate;
+    private final PythonServiceClient aiDiagnosisClient;
     private final AiDiagnosisRepository aiDiagnosisRepository;
     private final UserSymptomReportRepository symptomReportRepository;
     private final AuthService authService;
 
-    @Value("${ai.diagnosis.service.url}")
-    private String aiServiceUrl;
-
     @Value("${ai.diagnosis.service.api-key}")
     private String apiKey;
 
-    public AiDiagnosisResponse getDiagnosis(String sessionId) {
-        try {
-            log.info("Getting AI diagnosis for session: {}", sessionId);
-
-            // Lấy thông tin user hiện tại
-            User currentUser = authService.getCurrentUser();
+    /**
+     * Chẩn đoán AI cho session. Chuẩn bị dữ liệu trên request thread, gọi AI service non-blocking;
+     * kết quả được lưu và trả về khi AI service phản hồi.
+     */
+    public CompletableFuture<AiDiagnosisResponse> getDiagnosis(String sessionId) {
+        log.info("Getting AI diagnosis for session: {}", sessionId);
 
-            // Lấy các symptom reports trong session
-            List<UserSymptomReport> symptoms = symptomReportRepository
-                    .findByUserAndSessionId(currentUser, sessionId);
+        // Lấy thông tin user hiện tại (SecurityContext chỉ có trên request thread)
+        User currentUser = authService.getCurrentUser();
 
-            if (symptoms.isEmpty()) {
-                throw new IllegalArgumentException("Không tìm thấy triệu chứng trong session: " + sessionId);
-            }
+        // Lấy các symptom reports trong session
+        List<UserSymptomReport> symptoms = symptomReportRepository
+                .findByUserAndSessionId(currentUser, sessionId);
 
-            // Chuẩn bị request data
-            AiDiagnosisRequest request = buildDiagnosisRequest(currentUser, symptoms, sessionId);
+        if (symptoms.isEmpty()) {
+            throw new IllegalArgumentException("Không tìm thấy triệu chứng trong session: " + sessionId);
+        }
 
-            // Gọi AI service
-            AiDiagnosisResponse aiResponse = callAiService(request);
+        // Chuẩn bị request data
+        AiDiagnosisRequest request = buildDiagnosisRequest(currentUser, symptoms, sessionId);
 
-            // Lưu kết quả vào database
+        // Gọi AI service, lưu kết quả vào database khi có response
+        return callAiService(request).thenApply(aiResponse -> {
             saveAiDiagnosis(currentUser, sessionId, aiResponse);
-
             return aiResponse;
-
-        } catch (Exception e) {
-            log.error("Error getting AI diagnosis for session: {}", sessionId, e);
-            throw new RuntimeException("Lỗi khi gọi AI chẩn đoán: " + e.getMessage());
-        }
+        });
     }
 
     private AiDiagnosisRequest buildDiagnosisRequest(User user, List<UserSymptomReport> symptoms, String sessionId) {
@@ -99,32 +92,12 @@ public class AiDiagnosisService {
                 .build();
     }
 
-    private AiDiagnosisResponse callAiService(AiDiagnosisRequest request) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("X-API-Key", apiKey);
-            headers.set("User-Agent", "Dia5-Medical-App/1.0");
-
-            HttpEntity<AiDiagnosisRequest> entity = new HttpEntity<>(request, headers);
-
-            log.info("Calling AI service at: {}", aiServiceUrl + "/diagnosis");
-
-            ResponseEntity<AiDiagnosisResponse> response = restTemplate.postForEntity(
-                    aiServiceUrl + "/diagnosis",
-                    entity,
-                    AiDiagnosisResponse.class);
+    private CompletableFuture<AiDiagnosisResponse> callAiService(AiDiagnosisRequest request) {
+        log.info("Calling AI service /diagnosis for user: {}", request.getUserId());
 
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return response.getBody();
-            } else {
-                throw new RuntimeException("AI service returned status: " + response.getStatusCode());
-            }
-
-        } catch (Exception e) {
-            log.error("Error calling AI service", e);
-            throw new RuntimeException("Không thể kết nối đến AI service: " + e.getMessage());
-        }
+        return aiDiagnosisClient.postJson("/diagnosis", request,
+                Map.of("X-API-Key", apiKey, "User-Agent", "Dia5-Medical-App/1.0"),
+                AiDiagnosisResponse.class);
     }
 
     private void saveAiDiagnosis(User user, String sessionId, AiDiagnosisResponse response) {
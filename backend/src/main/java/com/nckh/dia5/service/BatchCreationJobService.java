@@ -0,0 +1,318 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.dto.blockchain.BatchCreationJobDto;
+import com.nckh.dia5.dto.blockchain.CreateBatchRequest;
+import com.nckh.dia5.dto.blockchain.DrugBatchDto;
+import com.nckh.dia5.handler.ResourceNotFoundException;
+import com.nckh.dia5.model.BatchCreationJob;
+import com.nckh.dia5.model.BlockchainOutboxEntry;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.repository.BatchCreationJobRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tạo lô thuốc dạng job chạy nền.
+ *
+ * POST /batches chỉ lưu lô và job rồi trả về ngay; các stage GENERATING_ITEMS → ISSUING_ON_CHAIN →
+ * REGISTERING_SERIALS chạy trên executor giới hạn (phát hành lô đi qua BlockchainOutboxService). Stage hiện tại được lưu sau mỗi bước nên job chạy tiếp
+ * từ đúng chỗ sau khi restart; stage lỗi được thử lại với backoff tới khi hết số lần cho phép.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchCreationJobService {
+
+    private static final Set<BatchCreationJob.Status> RUNNABLE_STATUSES = EnumSet.of(
+            BatchCreationJob.Status.QUEUED, BatchCreationJob.Status.RUNNING, BatchCreationJob.Status.RETRYING);
+
+    private static final long SSE_TIMEOUT_MS = 10 * 60 * 1000L;
+
+    private final BatchCreationJobRepository jobRepository;
+    private final DrugTraceabilityService drugTraceabilityService;
+    private final SerialRegistrationService serialRegistrationService;
+    private final BlockchainOutboxService outboxService;
+    private final DrugBatchRepository drugBatchRepository;
+    private final ProductItemRepository productItemRepository;
+
+    @Value("${pharmaledger.jobs.parallelism:2}")
+    private int parallelism;
+
+    @Value("${pharmaledger.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${pharmaledger.jobs.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${pharmaledger.jobs.retry-delay-seconds:15}")
+    private long retryDelaySeconds;
+
+    private ThreadPoolExecutor executor;
+
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, parallelism);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "batch-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Lưu lô và job trong cùng transaction, job được đưa vào executor sau khi commit
+     */
+    @Transactional
+    public DrugBatchDto submit(CreateBatchRequest request) {
+        DrugBatchDto batch = drugTraceabilityService.createBatch(request);
+
+        BatchCreationJob job = jobRepository.save(BatchCreationJob.builder()
+                .batchId(batch.getBatchId())
+                .totalItems(batch.getQuantity())
+                .build());
+        batch.setJobId(job.getId());
+
+        Long jobId = job.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(jobId);
+                }
+            });
+        } else {
+            dispatch(jobId);
+        }
+
+        log.info("Queued batch creation job {} for batch {}", jobId, batch.getBatchId());
+        return batch;
+    }
+
+    public BatchCreationJobDto getJob(Long jobId) {
+        return toDto(findJob(jobId));
+    }
+
+    /**
+     * Theo dõi tiến độ job qua Server-Sent Events; gửi trạng thái hiện tại ngay khi subscribe
+     */
+    public SseEmitter subscribe(Long jobId) {
+        BatchCreationJob job = findJob(jobId);
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+
+        if (job.isFinished()) {
+            send(emitter, job);
+            emitter.complete();
+            return emitter;
+        }
+
+        Set<SseEmitter> jobEmitters = emitters.computeIfAbsent(jobId, id -> new CopyOnWriteArraySet<>());
+        jobEmitters.add(emitter);
+        Runnable remove = () -> jobEmitters.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        send(emitter, job);
+        return emitter;
+    }
+
+    /**
+     * Chạy lại các job đang chờ, đang retry hoặc bị gián đoạn khi restart
+     */
+    @Scheduled(fixedDelay = 15000, initialDelay = 15000)
+    public void resumeJobs() {
+        try {
+            List<BatchCreationJob> jobs = jobRepository.findRunnable(RUNNABLE_STATUSES, LocalDateTime.now());
+            for (BatchCreationJob job : jobs) {
+                dispatch(job.getId());
+            }
+        } catch (Exception e) {
+            log.error("Failed to resume batch creation jobs: {}", e.getMessage());
+        }
+    }
+
+    private void dispatch(Long jobId) {
+        if (!runningJobs.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    runJob(jobId);
+                } finally {
+                    runningJobs.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Hàng đợi đầy: job vẫn ở trạng thái QUEUED, lần resume sau sẽ thử lại
+            runningJobs.remove(jobId);
+            log.warn("Batch creation queue full, job {} deferred", jobId);
+        }
+    }
+
+    private void runJob(Long jobId) {
+        BatchCreationJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.isFinished()) {
+            return;
+        }
+
+        job.setStatus(BatchCreationJob.Status.RUNNING);
+        job.setNextAttemptAt(null);
+        job = save(job);
+
+        try {
+            while (job.getStage() != BatchCreationJob.Stage.COMPLETED) {
+                runStage(job);
+                job.setStage(nextStage(job.getStage()));
+                job = save(job);
+            }
+            job.setStatus(BatchCreationJob.Status.COMPLETED);
+            job.setLastError(null);
+            save(job);
+            log.info("Batch creation job {} completed for batch {}", jobId, job.getBatchId());
+
+        } catch (Exception e) {
+            String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLastError(message != null && message.length() > 1000 ? message.substring(0, 1000) : message);
+
+            if (job.getAttempts() >= maxAttempts) {
+                job.setStatus(BatchCreationJob.Status.FAILED);
+                log.error("Batch creation job {} failed at {} after {} attempts: {}",
+                        jobId, job.getStage(), job.getAttempts(), message);
+            } else {
+                long delay = retryDelaySeconds << Math.min(job.getAttempts() - 1, 6);
+                job.setStatus(BatchCreationJob.Status.RETRYING);
+                job.setNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+                log.warn("Batch creation job {} failed at {} (attempt {}), retrying in {} s: {}",
+                        jobId, job.getStage(), job.getAttempts(), delay, message);
+            }
+            save(job);
+        }
+    }
+
+    private void runStage(BatchCreationJob job) {
+        BigInteger batchId = job.getBatchId();
+        switch (job.getStage()) {
+            case GENERATING_ITEMS -> {
+                drugTraceabilityService.generateBatchItems(batchId);
+                job.setGeneratedItems(productItemRepository.countByDrugBatch(findBatch(batchId)));
+            }
+            case ISSUING_ON_CHAIN -> outboxService.processNow(
+                    BlockchainOutboxEntry.Operation.ISSUE_BATCH, findBatch(batchId).getId());
+            case REGISTERING_SERIALS -> {
+                serialRegistrationService.registerPendingSerials(batchId).join();
+                DrugBatch batch = findBatch(batchId);
+                long registered = productItemRepository.countByDrugBatchAndBlockchainRegisteredTrue(batch);
+                job.setRegisteredSerials(registered);
+                if (registered < job.getGeneratedItems()) {
+                    throw new IllegalStateException((job.getGeneratedItems() - registered) + " serials not registered yet");
+                }
+            }
+            default -> { }
+        }
+    }
+
+    private BatchCreationJob.Stage nextStage(BatchCreationJob.Stage stage) {
+        return switch (stage) {
+            case GENERATING_ITEMS -> BatchCreationJob.Stage.ISSUING_ON_CHAIN;
+            case ISSUING_ON_CHAIN -> BatchCreationJob.Stage.REGISTERING_SERIALS;
+            case REGISTERING_SERIALS, COMPLETED -> BatchCreationJob.Stage.COMPLETED;
+        };
+    }
+
+    private BatchCreationJob save(BatchCreationJob job) {
+        BatchCreationJob saved = jobRepository.save(job);
+        publish(saved);
+        return saved;
+    }
+
+    private void publish(BatchCreationJob job) {
+        Set<SseEmitter> jobEmitters = emitters.get(job.getId());
+        if (jobEmitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : jobEmitters) {
+            send(emitter, job);
+            if (job.isFinished()) {
+                emitter.complete();
+            }
+        }
+        if (job.isFinished()) {
+            emitters.remove(job.getId());
+        }
+    }
+
+    private void send(SseEmitter emitter, BatchCreationJob job) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(toDto(job)));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private BatchCreationJob findJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Batch creation job", "id", jobId));
+    }
+
+    private DrugBatch findBatch(BigInteger batchId) {
+        return drugBatchRepository.findByBatchId(batchId)
+                .orElseThrow(() -> new ResourceNotFoundException("Batch", "batchId", batchId));
+    }
+
+    private BatchCreationJobDto toDto(BatchCreationJob job) {
+        return BatchCreationJobDto.builder()
+                .jobId(job.getId())
+                .batchId(job.getBatchId())
+                .stage(job.getStage().name())
+                .status(job.getStatus().name())
+                .totalItems(job.getTotalItems())
+                .generatedItems(job.getGeneratedItems())
+                .registeredSerials(job.getRegisteredSerials())
+                .attempts(job.getAttempts())
+                .lastError(job.getLastError())
+                .nextAttemptAt(job.getNextAttemptAt())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,179 @@
+package com.nckh.dia5.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gom các eth_call đồng thời thành một JSON-RPC batch request.
+ *
+ * Call đầu tiên của một đợt mở cửa sổ {@code window-ms}; đợt được gửi khi hết cửa sổ hoặc khi đủ
+ * {@code max-size} call, kết quả được trả về đúng future của từng call theo id của request.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlockchainCallAggregator {
+
+    private final Web3j web3j;
+    private final MeterRegistry meterRegistry;
+    private final BlockchainExecutors executors;
+
+    @Value("${blockchain.call-batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${blockchain.call-batch.window-ms:5}")
+    private long windowMs;
+
+    @Value("${blockchain.call-batch.max-size:50}")
+    private int maxBatchSize;
+
+    private record PendingCall(Transaction transaction, CompletableFuture<EthCall> future) {
+    }
+
+    private final Object lock = new Object();
+    private List<PendingCall> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private ScheduledExecutorService flushScheduler;
+    private Counter callCounter;
+    private Counter rpcCounter;
+
+    @PostConstruct
+    void init() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blockchain-call-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        callCounter = Counter.builder("blockchain.call.requests")
+                .description("eth_call requested by the application")
+                .register(meterRegistry);
+        rpcCounter = Counter.builder("blockchain.call.rpc")
+                .description("HTTP round trips used for eth_call (batched)")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flushScheduler.shutdownNow();
+    }
+
+    /**
+     * eth_call tại block LATEST, được gom với các call đồng thời khác
+     */
+    public CompletableFuture<EthCall> call(Transaction transaction) {
+        callCounter.increment();
+        PendingCall call = new PendingCall(transaction, new CompletableFuture<>());
+
+        if (!enabled) {
+            dispatch(List.of(call));
+            return call.future();
+        }
+
+        List<PendingCall> full = null;
+        synchronized (lock) {
+            pending.add(call);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flushScheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return call.future();
+    }
+
+    private void flush() {
+        List<PendingCall> batch;
+        synchronized (lock) {
+            scheduledFlush = null;
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private void dispatch(List<PendingCall> calls) {
+        try {
+            executors.getReadExecutor().execute(() -> send(calls));
+        } catch (RejectedExecutionException e) {
+            calls.forEach(call -> call.future().completeExceptionally(e));
+        }
+    }
+
+    // Gọi khi đang giữ lock
+    private List<PendingCall> takePending() {
+        List<PendingCall> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(List<PendingCall> calls) {
+        rpcCounter.increment();
+        try {
+            if (calls.size() == 1) {
+                PendingCall call = calls.get(0);
+                call.future().complete(web3j.ethCall(call.transaction(), DefaultBlockParameterName.LATEST).send());
+                return;
+            }
+
+            BatchRequest batch = web3j.newBatch();
+            Map<Long, PendingCall> byId = new HashMap<>();
+            for (PendingCall call : calls) {
+                Request<?, EthCall> request = web3j.ethCall(call.transaction(), DefaultBlockParameterName.LATEST);
+                byId.put(request.getId(), call);
+                batch.add(request);
+            }
+
+            // Node có thể trả response không theo thứ tự -> ghép theo id
+            for (Response<?> response : batch.send().getResponses()) {
+                PendingCall call = byId.remove(response.getId());
+                if (call != null) {
+                    call.future().complete((EthCall) response);
+                }
+            }
+            for (PendingCall missing : byId.values()) {
+                missing.future().completeExceptionally(new IOException("No response for eth_call in batch"));
+            }
+            log.debug("Sent {} eth_calls in one batch", calls.size());
+
+        } catch (Exception e) {
+            log.warn("Batched eth_call of {} calls failed: {}", calls.size(), e.getMessage());
+            for (PendingCall call : calls) {
+                call.future().completeExceptionally(e);
+            }
+        }
+    }
+}
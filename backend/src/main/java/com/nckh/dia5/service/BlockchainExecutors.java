@@ -0,0 +1,120 @@
+package com.nckh.dia5.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Các thread pool riêng cho blockchain I/O (thay cho ForkJoinPool.commonPool).
+ *
+ * <ul>
+ *   <li>write: một thread duy nhất (thứ tự nonce), hàng đợi giới hạn, từ chối khi đầy</li>
+ *   <li>read: eth_call / batch request, hàng đợi giới hạn, từ chối khi đầy</li>
+ *   <li>receipt: chạy callback khi receipt về, khi đầy thì chạy trên thread gọi để không mất receipt</li>
+ * </ul>
+ * Mỗi pool có metric {@code executor.*} (active, queued, completed) với tag {@code name} và
+ * counter {@code blockchain.executor.rejected}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlockchainExecutors {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${blockchain.executor.write.queue-capacity:1000}")
+    private int writeQueueCapacity;
+
+    @Value("${blockchain.executor.read.threads:8}")
+    private int readThreads;
+
+    @Value("${blockchain.executor.read.queue-capacity:2000}")
+    private int readQueueCapacity;
+
+    @Value("${blockchain.executor.receipt.threads:4}")
+    private int receiptThreads;
+
+    @Value("${blockchain.executor.receipt.queue-capacity:5000}")
+    private int receiptQueueCapacity;
+
+    @Getter
+    private ExecutorService writeExecutor;
+
+    @Getter
+    private ExecutorService readExecutor;
+
+    @Getter
+    private ExecutorService receiptExecutor;
+
+    private List<ThreadPoolExecutor> pools;
+
+    @PostConstruct
+    void init() {
+        ThreadPoolExecutor writes = newPool("blockchain-write", 1, writeQueueCapacity, false);
+        ThreadPoolExecutor reads = newPool("blockchain-read", readThreads, readQueueCapacity, false);
+        ThreadPoolExecutor receipts = newPool("blockchain-receipt", receiptThreads, receiptQueueCapacity, true);
+        pools = List.of(writes, reads, receipts);
+
+        writeExecutor = ExecutorServiceMetrics.monitor(meterRegistry, writes, "blockchain-write");
+        readExecutor = ExecutorServiceMetrics.monitor(meterRegistry, reads, "blockchain-read");
+        receiptExecutor = ExecutorServiceMetrics.monitor(meterRegistry, receipts, "blockchain-receipt");
+    }
+
+    private ThreadPoolExecutor newPool(String name, int threads, int queueCapacity, boolean callerRuns) {
+        AtomicInteger counter = new AtomicInteger();
+        Counter rejected = Counter.builder("blockchain.executor.rejected")
+                .description("Tasks rejected because the blockchain pool queue was full")
+                .tag("name", name)
+                .register(meterRegistry);
+
+        RejectedExecutionHandler fallback = callerRuns
+                ? new ThreadPoolExecutor.CallerRunsPolicy()
+                : new ThreadPoolExecutor.AbortPolicy();
+        RejectedExecutionHandler handler = (task, executor) -> {
+            rejected.increment();
+            log.warn("{} pool saturated ({} queued)", name, executor.getQueue().size());
+            fallback.rejectedExecution(task, executor);
+        };
+
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                handler);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Cho các giao dịch đã ký trong hàng đợi write được gửi nốt
+        ThreadPoolExecutor writes = pools.get(0);
+        writes.shutdown();
+        try {
+            if (!writes.awaitTermination(5, TimeUnit.SECONDS)) {
+                writes.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writes.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        pools.forEach(ThreadPoolExecutor::shutdownNow);
+    }
+}
@@ -1,32 +1,49 @@
 package com.nckh.dia5.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nckh.dia5.model.BlockchainEvent;
+import com.nckh.dia5.model.IndexedBlock;
+import com.nckh.dia5.model.IndexerCursor;
+import com.nckh.dia5.model.ProductItem;
 import com.nckh.dia5.repository.BlockchainEventRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.IndexedBlockRepository;
+import com.nckh.dia5.repository.IndexerCursorRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.web3j.abi.EventEncoder;
-import org.web3j.abi.TypeReference;
-import org.web3j.abi.datatypes.Address;
-import org.web3j.abi.datatypes.Event;
-import org.web3j.abi.datatypes.Utf8String;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.BatchRequest;
 import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Response;
 import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.EthLog;
 import org.web3j.protocol.core.methods.response.Log;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Arrays;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service để index blockchain events
@@ -38,45 +55,84 @@ public class BlockchainIndexerService {
 
     private final Web3j web3j;
     private final BlockchainEventRepository eventRepository;
+    private final IndexerCursorRepository cursorRepository;
+    private final IndexedBlockRepository blockRepository;
+    private final PharmaLedgerEventDecoder eventDecoder;
+    private final ProductItemRepository productItemRepository;
+    private final DrugBatchRepository drugBatchRepository;
+    private final DashboardStatsService dashboardStatsService;
     private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${pharmaledger.contract.address:0xc6e7DF5E7b4f2A278906862b61205850344D4e7d}")
     private String contractAddress;
 
-    @Value("${pharmaledger.blockchain.safety-buffer:2}")
+    @Value("${pharmaledger.blockchain.safety-buffer:1}")
     private int safetyBuffer;
 
     @Value("${blockscout.api.url:http://localhost:3000/api}")
     private String blockscoutApiUrl;
 
-    // Event signatures
-    private static final Event BATCH_ISSUED_EVENT = new Event("BatchIssued",
-        Arrays.asList(
-            new TypeReference<Uint256>(true) {}, // batchId (indexed)
-            new TypeReference<Address>(true) {}, // manufacturer (indexed) 
-            new TypeReference<Utf8String>() {}, // drugName
-            new TypeReference<Uint256>() {}, // quantity
-            new TypeReference<Utf8String>() {} // qrCode
-        )
-    );
-
-    private static final Event SHIPMENT_CREATED_EVENT = new Event("ShipmentCreated",
-        Arrays.asList(
-            new TypeReference<Uint256>(true) {}, // shipmentId (indexed)
-            new TypeReference<Uint256>(true) {}, // batchId (indexed)
-            new TypeReference<Address>(true) {}, // from (indexed)
-            new TypeReference<Address>() {}, // to
-            new TypeReference<Uint256>() {} // quantity
-        )
-    );
-
-    private static final Event SHIPMENT_RECEIVED_EVENT = new Event("ShipmentReceived",
-        Arrays.asList(
-            new TypeReference<Uint256>(true) {}, // shipmentId (indexed)
-            new TypeReference<Uint256>(true) {}, // batchId (indexed)
-            new TypeReference<Address>(true) {} // receiver (indexed)
-        )
-    );
+    @Value("${pharmaledger.indexer.chunk-size:2000}")
+    private long initialChunkSize;
+
+    @Value("${pharmaledger.indexer.max-chunk-size:10000}")
+    private long maxChunkSize;
+
+    @Value("${pharmaledger.indexer.parallelism:4}")
+    private int parallelism;
+
+    // Số block gần nhất giữ lại hash để so sánh khi có reorg
+    @Value("${pharmaledger.indexer.reorg-depth:256}")
+    private long reorgDepth;
+
+    @Value("${pharmaledger.indexer.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    // Trạng thái serial local chỉ được dùng khi index không trễ hơn ngưỡng này so với chain head
+    @Value("${pharmaledger.verify.max-index-lag-blocks:5}")
+    private long maxIndexLagBlocks;
+
+    @Value("${pharmaledger.verify.max-index-age-ms:90000}")
+    private long maxIndexAgeMs;
+
+    private final AtomicBoolean indexing = new AtomicBoolean(false);
+    private final AtomicLong chunkSize = new AtomicLong();
+    private ExecutorService fetchExecutor;
+
+    // Thống kê cho getIndexingStatus
+    private final AtomicLong totalBlocksIndexed = new AtomicLong();
+    private final AtomicLong totalEventsIndexed = new AtomicLong();
+    private volatile long lastRunBlocks;
+    private volatile long lastRunEvents;
+    private volatile long lastRunMillis;
+
+    // Chain head lần poll gần nhất và block đã index, dùng cho isSerialIndexFresh mà không cần gọi RPC/DB
+    private volatile BigInteger lastSeenHead;
+    private volatile long lastSeenHeadAt;
+    private volatile BigInteger indexedHeight;
+
+    private record BlockRange(BigInteger from, BigInteger to) {
+    }
+
+    // Logs của một chunk cùng header block cuối chunk (checkpoint cho cursor)
+    private record ChunkData(List<Log> logs, EthBlock.Block endHeader) {
+    }
+
+    @PostConstruct
+    void init() {
+        chunkSize.set(Math.max(1, initialChunkSize));
+        fetchExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "blockchain-indexer-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
 
     /**
      * Index blockchain events từ block cũ nhất chưa được index
@@ -85,23 +141,24 @@ public class BlockchainIndexerService {
     @Scheduled(fixedDelay = 30000) // Chạy mỗi 30 giây
     @Async
     public void indexNewEvents() {
+        // @Async nên các lần chạy có thể chồng lên nhau khi đang catch-up khoảng block lớn
+        if (!indexing.compareAndSet(false, true)) {
+            log.debug("Previous indexing run still in progress, skipping");
+            return;
+        }
         try {
             log.info("🔍 Starting blockchain event indexing...");
 
-            // Lấy block number cao nhất đã index
-            BigInteger lastIndexedBlock = eventRepository.findMaxBlockNumber()
-                .orElse(BigInteger.ZERO);
+            // Lấy block đã index xong từ cursor (không quét MAX(block_number) mỗi lần)
+            BigInteger lastIndexedBlock = getLastIndexedBlock();
 
             // Lấy block number hiện tại từ blockchain
             BigInteger currentBlock = web3j.ethBlockNumber().send().getBlockNumber();
             BigInteger configuredBuffer = getConfiguredBuffer();
             BigInteger safeCurrentBlock = applySafetyBuffer(currentBlock, configuredBuffer);
-
-            // Validate block exists before indexing
-            if (!validateBlockExists(safeCurrentBlock)) {
-                log.warn("⚠️ Target block {} not yet available on blockchain, skipping indexing", safeCurrentBlock);
-                return;
-            }
+            indexedHeight = lastIndexedBlock;
+            lastSeenHead = currentBlock;
+            lastSeenHeadAt = System.currentTimeMillis();
 
             if (safeCurrentBlock.compareTo(lastIndexedBlock) <= 0) {
                 log.debug("No new blocks to index. Safe current: {}, last indexed: {}, buffer: {}",
@@ -109,206 +166,373 @@ public class BlockchainIndexerService {
                 return;
             }
 
-            BigInteger fromBlock = lastIndexedBlock.add(BigInteger.ONE);
-            BigInteger toBlock = safeCurrentBlock;
+            // Chỉ cần header của block cuối đã index để phát hiện reorg; block đích <= head nên luôn có sẵn
+            EthBlock.Block lastIndexedHeader = web3j.ethGetBlockByNumber(
+                new DefaultBlockParameterNumber(lastIndexedBlock), false).send().getBlock();
 
-            if (toBlock.compareTo(fromBlock) < 0) {
-                log.debug("Safety buffer leaves no range to index (from: {}, to: {}, buffer: {})",
-                    fromBlock, toBlock, configuredBuffer);
-                return;
+            BigInteger forkPoint = detectFork(lastIndexedBlock, lastIndexedHeader);
+            if (forkPoint != null) {
+                rollbackTo(forkPoint);
+                lastIndexedBlock = forkPoint;
             }
 
+            BigInteger fromBlock = lastIndexedBlock.add(BigInteger.ONE);
+            BigInteger toBlock = safeCurrentBlock;
+
             log.info("📊 Indexing events from block {} to {} (current: {}, buffer: {})",
                 fromBlock, toBlock, currentBlock, configuredBuffer);
-            log.info("   Blockscout should have indexed these blocks by now");
 
-            // Index từng loại event
-            indexBatchIssuedEvents(fromBlock, toBlock);
-            indexShipmentCreatedEvents(fromBlock, toBlock);
-            indexShipmentReceivedEvents(fromBlock, toBlock);
+            indexRange(fromBlock, toBlock);
 
             log.info("✅ Blockchain indexing completed. Processed blocks: {} - {}", 
                 fromBlock, toBlock);
 
         } catch (Exception e) {
             log.error("❌ Failed to index blockchain events: {}", e.getMessage(), e);
+        } finally {
+            indexing.set(false);
         }
     }
 
     /**
-     * Validate that a block exists on the blockchain
+     * So sánh hash của block cuối đã index với chain hiện tại; nếu khác thì tìm block đã ghi nhận gần nhất
+     * vẫn nằm trên canonical chain và trả về block đó làm fork point (null nếu không có reorg).
+     * Block của cursor không có checkpoint (bản cài cũ, dữ liệu ghi dở) thì không thể chứng minh là không
+     * có reorg: lùi về checkpoint gần nhất còn khớp chain và index lại từ đó.
      */
-    private boolean validateBlockExists(BigInteger blockNumber) {
-        try {
-            if (blockNumber.compareTo(BigInteger.ZERO) < 0) {
-                return false;
+    private BigInteger detectFork(BigInteger lastIndexedBlock, EthBlock.Block canonicalHeader) throws IOException {
+        IndexedBlock recorded = blockRepository.findById(lastIndexedBlock).orElse(null);
+        if (recorded != null) {
+            if (canonicalHeader == null || recorded.getBlockHash().equalsIgnoreCase(canonicalHeader.getHash())) {
+                return null;
             }
-            
-            org.web3j.protocol.core.methods.response.EthBlock ethBlock = web3j.ethGetBlockByNumber(
-                new DefaultBlockParameterNumber(blockNumber), false).send();
-            
-            boolean exists = ethBlock.getBlock() != null;
-            if (!exists) {
-                log.warn("Block {} does not exist yet", blockNumber);
+            log.warn("⚠️ Chain reorg detected at block {}: indexed hash {} but chain has {}",
+                lastIndexedBlock, recorded.getBlockHash(), canonicalHeader.getHash());
+        }
+
+        List<IndexedBlock> checkpoints = blockRepository.findByBlockNumberLessThanOrderByBlockNumberDesc(lastIndexedBlock);
+        if (recorded == null) {
+            if (checkpoints.isEmpty()) {
+                // Chưa từng ghi checkpoint nào (lần chạy đầu): không có gì để so sánh
+                return null;
+            }
+            log.warn("⚠️ No checkpoint for indexed block {}, verifying from the previous checkpoint {}",
+                lastIndexedBlock, checkpoints.get(0).getBlockNumber());
+        }
+        Map<BigInteger, EthBlock.Block> canonical = fetchHeaders(
+            checkpoints.stream().map(IndexedBlock::getBlockNumber).toList());
+        for (IndexedBlock checkpoint : checkpoints) {
+            EthBlock.Block header = canonical.get(checkpoint.getBlockNumber());
+            if (header != null && checkpoint.getBlockHash().equalsIgnoreCase(header.getHash())) {
+                return checkpoint.getBlockNumber();
             }
-            return exists;
-            
-        } catch (Exception e) {
-            log.error("Failed to validate block existence: {}", e.getMessage());
-            return false;
         }
+
+        // Reorg sâu hơn các block đã ghi nhận -> index lại toàn bộ cửa sổ
+        BigInteger fallback = checkpoints.isEmpty()
+            ? lastIndexedBlock.subtract(BigInteger.valueOf(reorgDepth))
+            : checkpoints.get(checkpoints.size() - 1).getBlockNumber().subtract(BigInteger.ONE);
+        log.error("❌ No indexed block matches the canonical chain, rolling back to block {}", fallback.max(BigInteger.ZERO));
+        return fallback.max(BigInteger.ZERO);
     }
 
     /**
-     * Index BatchIssued events
+     * Xoá events của các block bị reorg, hoàn tác các redeem serial nằm trong các block đó và đưa cursor về
+     * fork point để index lại, trong một transaction. Bộ đếm dashboard được dựng lại sau khi commit vì các
+     * update hàng loạt không đi qua delta của DashboardStatsService.
      */
-    private void indexBatchIssuedEvents(BigInteger fromBlock, BigInteger toBlock) {
-        try {
-            String eventSignature = EventEncoder.encode(BATCH_ISSUED_EVENT);
-            
-            EthFilter filter = new EthFilter(
-                new DefaultBlockParameterNumber(fromBlock),
-                new DefaultBlockParameterNumber(toBlock),
-                contractAddress
-            ).addSingleTopic(eventSignature);
+    private void rollbackTo(BigInteger forkPoint) {
+        int[] counts = transactionTemplate.execute(status -> {
+            int removed = eventRepository.deleteAfterBlock(forkPoint);
+            List<Long> batchIds = productItemRepository.findBatchIdsRedeemedAfterBlock(forkPoint);
+            int reverted = productItemRepository.revertRedemptionsAfterBlock(forkPoint,
+                ProductItem.ProductItemStatus.REGISTERED, ProductItem.ProductItemStatus.CREATED, LocalDateTime.now());
+            if (!batchIds.isEmpty()) {
+                drugBatchRepository.recountRedeemedSerials(batchIds);
+            }
+            setCursor(forkPoint);
+            blockRepository.deleteAfter(forkPoint);
+            return new int[] {removed, reverted};
+        });
+        if (counts[1] > 0) {
+            dashboardStatsService.rebuild();
+        }
+        log.warn("↩️ Rolled back {} events and {} serial redemptions after block {}, re-indexing from block {}",
+            counts[0], counts[1], forkPoint, forkPoint.add(BigInteger.ONE));
+    }
 
-            EthLog ethLog = web3j.ethGetLogs(filter).send();
-            List<EthLog.LogResult> logs = ethLog.getLogs();
-
-            log.info("📦 Found {} BatchIssued events", logs.size());
-
-            for (EthLog.LogResult logResult : logs) {
-                Log eventLog = (Log) logResult.get();
-                
-                if (!eventRepository.existsByTransactionHashAndLogIndex(
-                    eventLog.getTransactionHash(), eventLog.getLogIndex())) {
-                    
-                    Map<String, Object> eventData = new HashMap<>();
-                    eventData.put("drugName", ""); // Parse từ log data
-                    eventData.put("quantity", "");
-                    eventData.put("qrCode", "");
-                    
-                    BlockchainEvent event = BlockchainEvent.builder()
-                        .eventType("BatchIssued")
-                        .contractAddress(contractAddress)
-                        .transactionHash(eventLog.getTransactionHash())
-                        .blockNumber(eventLog.getBlockNumber())
-                        .logIndex(eventLog.getLogIndex())
-                        .eventData(objectMapper.writeValueAsString(eventData))
-                        .batchId(extractBatchIdFromLog(eventLog))
-                        .fromAddress(extractManufacturerFromLog(eventLog))
-                        .processed(false)
-                        .build();
-                    
-                    eventRepository.save(event);
-                    log.info("💾 Saved BatchIssued event: TX {}", eventLog.getTransactionHash());
-                }
+    private void recordBlock(EthBlock.Block header) {
+        blockRepository.save(IndexedBlock.builder()
+            .blockNumber(header.getNumber())
+            .blockHash(header.getHash())
+            .parentHash(header.getParentHash())
+            .build());
+        blockRepository.deleteBefore(header.getNumber().subtract(BigInteger.valueOf(reorgDepth)));
+    }
+
+    private Map<BigInteger, EthBlock.Block> fetchHeaders(List<BigInteger> blockNumbers) throws IOException {
+        Map<BigInteger, EthBlock.Block> headers = new HashMap<>();
+        if (blockNumbers.isEmpty()) {
+            return headers;
+        }
+
+        BatchRequest batch = web3j.newBatch();
+        for (BigInteger blockNumber : blockNumbers) {
+            batch.add(web3j.ethGetBlockByNumber(new DefaultBlockParameterNumber(blockNumber), false));
+        }
+        for (Response<?> response : batch.send().getResponses()) {
+            EthBlock.Block block = ((EthBlock) response).getBlock();
+            if (block != null) {
+                headers.put(block.getNumber(), block);
             }
-        } catch (Exception e) {
-            log.error("❌ Failed to index BatchIssued events: {}", e.getMessage());
         }
+        return headers;
     }
 
     /**
-     * Index ShipmentCreated events
+     * Index một khoảng block: chia thành các chunk, fetch song song theo từng đợt (tối đa {@code parallelism}
+     * chunk), sau đó ghi tuần tự từng chunk và đẩy cursor lên để lần chạy sau tiếp tục đúng chỗ.
      */
-    private void indexShipmentCreatedEvents(BigInteger fromBlock, BigInteger toBlock) {
-        try {
-            String eventSignature = EventEncoder.encode(SHIPMENT_CREATED_EVENT);
-            
-            EthFilter filter = new EthFilter(
-                new DefaultBlockParameterNumber(fromBlock),
-                new DefaultBlockParameterNumber(toBlock),
-                contractAddress
-            ).addSingleTopic(eventSignature);
+    private void indexRange(BigInteger fromBlock, BigInteger toBlock) {
+        long started = System.nanoTime();
+        long eventCount = 0;
+        BigInteger next = fromBlock;
+
+        while (next.compareTo(toBlock) <= 0) {
+            long waveChunkSize = chunkSize.get();
+            List<BlockRange> wave = new ArrayList<>();
+            for (int i = 0; i < parallelism && next.compareTo(toBlock) <= 0; i++) {
+                BigInteger end = next.add(BigInteger.valueOf(waveChunkSize - 1)).min(toBlock);
+                wave.add(new BlockRange(next, end));
+                next = end.add(BigInteger.ONE);
+            }
 
-            EthLog ethLog = web3j.ethGetLogs(filter).send();
-            List<EthLog.LogResult> logs = ethLog.getLogs();
-
-            log.info("🚚 Found {} ShipmentCreated events", logs.size());
-
-            for (EthLog.LogResult logResult : logs) {
-                Log eventLog = (Log) logResult.get();
-                
-                if (!eventRepository.existsByTransactionHashAndLogIndex(
-                    eventLog.getTransactionHash(), eventLog.getLogIndex())) {
-                    
-                    Map<String, Object> eventData = new HashMap<>();
-                    eventData.put("quantity", "");
-                    
-                    BlockchainEvent event = BlockchainEvent.builder()
-                        .eventType("ShipmentCreated")
-                        .contractAddress(contractAddress)
-                        .transactionHash(eventLog.getTransactionHash())
-                        .blockNumber(eventLog.getBlockNumber())
-                        .logIndex(eventLog.getLogIndex())
-                        .eventData(objectMapper.writeValueAsString(eventData))
-                        .batchId(extractBatchIdFromLog(eventLog))
-                        .shipmentId(extractShipmentIdFromLog(eventLog))
-                        .fromAddress(extractFromAddressFromLog(eventLog))
-                        .toAddress(extractToAddressFromLog(eventLog))
-                        .processed(false)
-                        .build();
-                    
-                    eventRepository.save(event);
-                    log.info("💾 Saved ShipmentCreated event: TX {}", eventLog.getTransactionHash());
-                }
+            List<CompletableFuture<ChunkData>> fetches = wave.stream()
+                .map(range -> CompletableFuture.supplyAsync(() -> fetchChunk(range), fetchExecutor))
+                .toList();
+
+            for (int i = 0; i < wave.size(); i++) {
+                eventCount += writeChunk(wave.get(i), fetches.get(i).join());
+            }
+
+            // Không chunk nào bị chia nhỏ -> thử chunk lớn hơn ở đợt sau
+            if (chunkSize.get() == waveChunkSize) {
+                chunkSize.set(Math.min(waveChunkSize * 2, maxChunkSize));
             }
-        } catch (Exception e) {
-            log.error("❌ Failed to index ShipmentCreated events: {}", e.getMessage());
         }
+
+        long blockCount = toBlock.subtract(fromBlock).longValue() + 1;
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        totalBlocksIndexed.addAndGet(blockCount);
+        totalEventsIndexed.addAndGet(eventCount);
+        lastRunBlocks = blockCount;
+        lastRunEvents = eventCount;
+        lastRunMillis = elapsedMillis;
+
+        log.info("📈 Indexed {} blocks / {} events in {} ms ({} blocks/s, {} events/s)",
+            blockCount, eventCount, elapsedMillis,
+            ratePerSecond(blockCount, elapsedMillis), ratePerSecond(eventCount, elapsedMillis));
     }
 
     /**
-     * Index ShipmentReceived events
+     * Logs của chunk rồi header block cuối chunk; header lấy sau logs nên nếu reorg xảy ra giữa hai lần gọi
+     * thì checkpoint mang hash mới và lần chạy sau phát hiện được.
      */
-    private void indexShipmentReceivedEvents(BigInteger fromBlock, BigInteger toBlock) {
+    private ChunkData fetchChunk(BlockRange range) {
+        List<Log> logs = fetchLogs(range.from(), range.to());
+        try {
+            EthBlock.Block endHeader = web3j.ethGetBlockByNumber(new DefaultBlockParameterNumber(range.to()), false)
+                .send().getBlock();
+            if (endHeader == null) {
+                throw new IOException("block not available");
+            }
+            return new ChunkData(logs, endHeader);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to fetch header of block " + range.to() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lấy logs của tất cả event types trong một filter; nếu node từ chối (quá nhiều kết quả, timeout)
+     * thì chia đôi khoảng block và giảm chunk size cho các đợt tiếp theo.
+     */
+    private List<Log> fetchLogs(BigInteger fromBlock, BigInteger toBlock) {
         try {
-            String eventSignature = EventEncoder.encode(SHIPMENT_RECEIVED_EVENT);
-            
             EthFilter filter = new EthFilter(
                 new DefaultBlockParameterNumber(fromBlock),
                 new DefaultBlockParameterNumber(toBlock),
                 contractAddress
-            ).addSingleTopic(eventSignature);
+            ).addOptionalTopics(eventDecoder.getEventTopics());
 
             EthLog ethLog = web3j.ethGetLogs(filter).send();
-            List<EthLog.LogResult> logs = ethLog.getLogs();
-
-            log.info("📦 Found {} ShipmentReceived events", logs.size());
-
-            for (EthLog.LogResult logResult : logs) {
-                Log eventLog = (Log) logResult.get();
-                
-                if (!eventRepository.existsByTransactionHashAndLogIndex(
-                    eventLog.getTransactionHash(), eventLog.getLogIndex())) {
-                    
-                    BlockchainEvent event = BlockchainEvent.builder()
-                        .eventType("ShipmentReceived")
-                        .contractAddress(contractAddress)
-                        .transactionHash(eventLog.getTransactionHash())
-                        .blockNumber(eventLog.getBlockNumber())
-                        .logIndex(eventLog.getLogIndex())
-                        .eventData("{}")
-                        .batchId(extractBatchIdFromLog(eventLog))
-                        .shipmentId(extractShipmentIdFromLog(eventLog))
-                        .toAddress(extractReceiverFromLog(eventLog))
-                        .processed(false)
-                        .build();
-                    
-                    eventRepository.save(event);
-                    log.info("💾 Saved ShipmentReceived event: TX {}", eventLog.getTransactionHash());
+            if (ethLog.hasError()) {
+                throw new IOException(ethLog.getError().getMessage());
+            }
+            return ethLog.getLogs().stream()
+                .map(logResult -> (Log) logResult.get())
+                .toList();
+
+        } catch (IOException e) {
+            BigInteger span = toBlock.subtract(fromBlock).add(BigInteger.ONE);
+            if (span.compareTo(BigInteger.ONE) <= 0) {
+                throw new RuntimeException("Failed to fetch logs for block " + fromBlock + ": " + e.getMessage(), e);
+            }
+
+            BigInteger half = span.shiftRight(1);
+            chunkSize.accumulateAndGet(Math.max(1, half.longValue()), Math::min);
+            log.warn("⚠️ getLogs failed for blocks {} - {} ({}), splitting range", fromBlock, toBlock, e.getMessage());
+
+            BigInteger mid = fromBlock.add(half).subtract(BigInteger.ONE);
+            List<Log> logs = new ArrayList<>(fetchLogs(fromBlock, mid));
+            logs.addAll(fetchLogs(mid.add(BigInteger.ONE), toBlock));
+            return logs;
+        }
+    }
+
+    /**
+     * Ghi events của một chunk bằng batched upsert, áp dụng projections, ghi checkpoint của block cuối chunk
+     * rồi cập nhật cursor, tất cả trong một transaction: không bao giờ còn khoảng trống giữa lúc xoá events
+     * streamed và lúc upsert lại, và cursor chỉ tiến khi mọi thứ của chunk đã commit.
+     */
+    private long writeChunk(BlockRange range, ChunkData chunk) {
+        List<BlockchainEvent> events = new ArrayList<>(chunk.logs().size());
+        for (Log eventLog : chunk.logs()) {
+            BlockchainEvent event = toEvent(eventLog);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (streamingEnabled) {
+                // Events nhận qua WebSocket chưa qua kiểm tra reorg -> getLogs là nguồn chính thức cho khoảng này
+                eventRepository.deleteBlockRange(range.from(), range.to());
+            }
+            eventRepository.upsertAll(events);
+            applySerialRedemptions(events);
+            recordBlock(chunk.endHeader());
+            advanceCursor(range.to());
+        });
+
+        if (!events.isEmpty()) {
+            log.info("💾 Saved {} events from blocks {} - {}", events.size(), range.from(), range.to());
+        }
+        return events.size();
+    }
+
+    /**
+     * Lưu ngay một log nhận từ WebSocket subscription để hiển thị không phải chờ lần poll tiếp theo.
+     * Cursor không đổi: lần poll sau vẫn index lại khoảng này sau khi kiểm tra reorg.
+     * Chỉ ghi dòng event: log streamed chưa được xác nhận (notification không có cờ removed) nên các
+     * projection như trạng thái redeem của product_items chỉ được cập nhật từ {@link #writeChunk}.
+     */
+    public void indexStreamedLog(Log eventLog) {
+        BlockchainEvent event = toEvent(eventLog);
+        if (event != null) {
+            eventRepository.upsertAll(List.of(event));
+            log.info("⚡ Streamed {} event: TX {}", event.getEventType(), event.getTransactionHash());
+        }
+    }
+
+    /**
+     * Cập nhật trạng thái đã bán của product_items từ SerialNumberRedeemed, để xác minh QR đọc được
+     * cả các serial được redeem ngoài backend này mà không cần eth_call.
+     * (SerialNumbersRegistered chỉ có count nên trạng thái đăng ký lấy từ receipt của SerialRegistrationService.)
+     */
+    private void applySerialRedemptions(List<BlockchainEvent> events) {
+        LocalDateTime now = LocalDateTime.now();
+        for (BlockchainEvent event : events) {
+            if (!"SerialNumberRedeemed".equals(event.getEventType()) || event.getSerialNumber() == null) {
+                continue;
+            }
+            try {
+                JsonNode data = objectMapper.readTree(event.getEventData());
+                long timestamp = data.path("timestamp").asLong(0);
+                LocalDateTime redeemedAt = timestamp > 0
+                    ? LocalDateTime.ofInstant(Instant.ofEpochSecond(timestamp), ZoneOffset.UTC)
+                    : now;
+                int updated = productItemRepository.markRedeemedFromChain(event.getSerialNumber(),
+                    event.getFromAddress(), redeemedAt, event.getBlockNumber(), ProductItem.ProductItemStatus.REDEEMED, now);
+                if (updated > 0) {
+                    dashboardStatsService.onItemsRedeemed(updated);
+                } else {
+                    // Đã được đánh dấu từ eth_call/receipt trước đó: bổ sung block để có thể hoàn tác khi reorg
+                    productItemRepository.recordRedemptionBlock(event.getSerialNumber(), event.getBlockNumber());
                 }
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to apply redemption of serial {}: {}", event.getSerialNumber(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Index đủ mới để trả lời trạng thái serial từ DB: lần poll gần nhất chưa quá cũ và cursor không trễ
+     * quá {@code max-index-lag-blocks} so với chain head lúc đó.
+     */
+    public boolean isSerialIndexFresh() {
+        BigInteger head = lastSeenHead;
+        BigInteger indexed = indexedHeight;
+        if (head == null || indexed == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastSeenHeadAt > maxIndexAgeMs) {
+            return false;
+        }
+        return head.subtract(indexed).longValue() <= maxIndexLagBlocks;
+    }
+
+    private BlockchainEvent toEvent(Log eventLog) {
+        try {
+            BlockchainEvent event = eventDecoder.decode(eventLog);
+            if (event != null) {
+                event.setContractAddress(contractAddress);
             }
+            return event;
         } catch (Exception e) {
-            log.error("❌ Failed to index ShipmentReceived events: {}", e.getMessage());
+            log.error("❌ Failed to decode event in TX {} (log {}): {}",
+                eventLog.getTransactionHash(), eventLog.getLogIndex(), e.getMessage());
+            return null;
+        }
+    }
+
+    private BigInteger getLastIndexedBlock() {
+        return cursorRepository.findById(contractAddress.toLowerCase())
+            .map(IndexerCursor::getLastIndexedBlock)
+            // Chưa có cursor (bản cài cũ) -> bắt đầu từ block cao nhất đã có event
+            .orElseGet(() -> eventRepository.findMaxBlockNumber().orElse(BigInteger.ZERO));
+    }
+
+    private void advanceCursor(BigInteger blockNumber) {
+        String key = contractAddress.toLowerCase();
+        IndexerCursor cursor = cursorRepository.findById(key)
+            .orElseGet(() -> IndexerCursor.builder()
+                .contractAddress(key)
+                .lastIndexedBlock(BigInteger.ZERO)
+                .build());
+
+        // Manual re-index khoảng cũ không được kéo cursor lùi lại
+        if (blockNumber.compareTo(cursor.getLastIndexedBlock()) > 0) {
+            cursor.setLastIndexedBlock(blockNumber);
+            cursorRepository.save(cursor);
+            indexedHeight = blockNumber;
         }
     }
 
+    private void setCursor(BigInteger blockNumber) {
+        cursorRepository.save(IndexerCursor.builder()
+            .contractAddress(contractAddress.toLowerCase())
+            .lastIndexedBlock(blockNumber)
+            .build());
+        indexedHeight = blockNumber;
+    }
+
     /**
      * Manual indexing từ block cụ thể
      */
     public void indexFromBlock(BigInteger fromBlock) {
+        if (!indexing.compareAndSet(false, true)) {
+            throw new IllegalStateException("Indexing is already running");
+        }
         try {
             log.info("🔄 Manual indexing from block: {}", fromBlock);
             
@@ -325,25 +549,45 @@ public class BlockchainIndexerService {
             log.info("📊 Manual indexing from {} to {} (current: {}, buffer: {})", 
                 fromBlock, safeCurrentBlock, currentBlock, configuredBuffer);
             
-            indexBatchIssuedEvents(fromBlock, safeCurrentBlock);
-            indexShipmentCreatedEvents(fromBlock, safeCurrentBlock);
-            indexShipmentReceivedEvents(fromBlock, safeCurrentBlock);
+            indexRange(fromBlock, safeCurrentBlock);
             
             log.info("✅ Manual indexing completed");
         } catch (Exception e) {
             log.error("❌ Manual indexing failed: {}", e.getMessage());
             throw new RuntimeException("Manual indexing failed", e);
+        } finally {
+            indexing.set(false);
         }
     }
 
+    /**
+     * Lịch sử event của batch, đọc từ DB đã index (không gọi RPC)
+     */
+    public List<BlockchainEvent> getBatchHistory(BigInteger batchId) {
+        return eventRepository.findByBatchIdOrderByBlockNumberAscLogIndexAsc(batchId);
+    }
+
+    /**
+     * Lịch sử event của shipment, đọc từ DB đã index (không gọi RPC)
+     */
+    public List<BlockchainEvent> getShipmentHistory(BigInteger shipmentId) {
+        return eventRepository.findByShipmentIdOrderByBlockNumberAscLogIndexAsc(shipmentId);
+    }
+
+    /**
+     * Các event liên quan tới một address (gửi hoặc nhận)
+     */
+    public List<BlockchainEvent> getAddressHistory(String address) {
+        return eventRepository.findByAddress(address.toLowerCase());
+    }
+
     /**
      * Get indexing status
      */
     public Map<String, Object> getIndexingStatus() {
         try {
             BigInteger currentBlock = web3j.ethBlockNumber().send().getBlockNumber();
-            BigInteger lastIndexedBlock = eventRepository.findMaxBlockNumber()
-                .orElse(BigInteger.ZERO);
+            BigInteger lastIndexedBlock = getLastIndexedBlock();
             long unprocessedEvents = eventRepository.countByProcessedFalse();
             
             Map<String, Object> status = new HashMap<>();
@@ -353,6 +597,16 @@ public class BlockchainIndexerService {
             status.put("unprocessedEvents", unprocessedEvents);
             status.put("isUpToDate", currentBlock.equals(lastIndexedBlock));
             status.put("safetyBuffer", getConfiguredBuffer());
+            status.put("indexing", indexing.get());
+            status.put("chunkSize", chunkSize.get());
+            status.put("parallelism", parallelism);
+            status.put("lastRunBlocks", lastRunBlocks);
+            status.put("lastRunEvents", lastRunEvents);
+            status.put("lastRunMillis", lastRunMillis);
+            status.put("blocksPerSecond", ratePerSecond(lastRunBlocks, lastRunMillis));
+            status.put("eventsPerSecond", ratePerSecond(lastRunEvents, lastRunMillis));
+            status.put("totalBlocksIndexed", totalBlocksIndexed.get());
+            status.put("totalEventsIndexed", totalEventsIndexed.get());
             
             return status;
         } catch (Exception e) {
@@ -361,6 +615,10 @@ public class BlockchainIndexerService {
         }
     }
 
+    private double ratePerSecond(long count, long millis) {
+        return millis > 0 ? Math.round(count * 100000.0 / millis) / 100.0 : 0.0;
+    }
+
     private BigInteger getConfiguredBuffer() {
         return BigInteger.valueOf(Math.max(0, safetyBuffer));
     }
@@ -372,35 +630,4 @@ public class BlockchainIndexerService {
         }
         return safeCurrentBlock;
     }
-
-    // Helper methods để parse log data
-    private BigInteger extractBatchIdFromLog(Log log) {
-        // TODO: Implement proper log parsing
-        return BigInteger.ZERO;
-    }
-
-    private BigInteger extractShipmentIdFromLog(Log log) {
-        // TODO: Implement proper log parsing
-        return BigInteger.ZERO;
-    }
-
-    private String extractManufacturerFromLog(Log log) {
-        // TODO: Implement proper log parsing
-        return "";
-    }
-
-    private String extractFromAddressFromLog(Log log) {
-        // TODO: Implement proper log parsing
-        return "";
-    }
-
-    private String extractToAddressFromLog(Log log) {
-        // TODO: Implement proper log parsing
-        return "";
-    }
-
-    private String extractReceiverFromLog(Log log) {
-        // TODO: Implement proper log parsing
-        return "";
-    }
 }
@@ -0,0 +1,180 @@
+package com.nckh.dia5.service;
+
+import io.reactivex.disposables.Disposable;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.LogNotification;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streaming mode cho indexer: subscribe {@code eth_subscribe logs} của PharmaLedger contract qua WebSocket
+ * để event xuất hiện ngay khi block được mined thay vì chờ lần poll 30 giây.
+ *
+ * Poll định kỳ của {@link BlockchainIndexerService} vẫn chạy để giữ cursor, kiểm tra reorg và backfill;
+ * khi mất kết nối sẽ chạy backfill ngay và thử kết nối lại.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlockchainLogStreamService {
+
+    private final BlockchainIndexerService indexerService;
+
+    @Value("${pharmaledger.indexer.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    @Value("${blockchain.network.ws-url:ws://localhost:8545}")
+    private String webSocketUrl;
+
+    @Value("${pharmaledger.contract.address:0xc6e7DF5E7b4f2A278906862b61205850344D4e7d}")
+    private String contractAddress;
+
+    @Value("${pharmaledger.indexer.streaming.reconnect-delay-ms:5000}")
+    private long reconnectDelayMs;
+
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blockchain-log-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile WebSocketService webSocketService;
+    private volatile Disposable subscription;
+    private volatile boolean connected;
+    private volatile boolean stopped;
+    private final ReentrantLock disconnectLock = new ReentrantLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!streamingEnabled) {
+            return;
+        }
+        log.info("🔌 Starting log streaming from {}", webSocketUrl);
+        reconnectScheduler.execute(this::connect);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void connect() {
+        if (stopped) {
+            return;
+        }
+        try {
+            WebSocketService service = new WebSocketService(webSocketUrl, false);
+            service.connect(
+                message -> { },
+                error -> log.warn("⚠️ Log stream error: {}", error.getMessage()),
+                this::onDisconnect
+            );
+            webSocketService = service;
+
+            subscription = Web3j.build(service)
+                .logsNotifications(List.of(contractAddress), Collections.emptyList())
+                .subscribe(this::onLog, error -> {
+                    log.warn("⚠️ Log subscription failed: {}", error.getMessage());
+                    onDisconnect();
+                });
+            connected = true;
+            log.info("✅ Subscribed to logs of {} via WebSocket", contractAddress);
+
+            // Bù các block bị lỡ trong lúc mất kết nối
+            indexerService.indexNewEvents();
+
+        } catch (Exception e) {
+            log.warn("⚠️ Cannot connect log stream to {}: {}, retrying in {} ms",
+                webSocketUrl, e.getMessage(), reconnectDelayMs);
+            closeConnection();
+            scheduleReconnect();
+        }
+    }
+
+    private void onLog(LogNotification notification) {
+        try {
+            org.web3j.protocol.websocket.events.Log streamed = notification.getParams().getResult();
+            // Notification không có cờ removed: indexer coi log streamed là chưa xác nhận
+            Log eventLog = new Log(
+                false,
+                streamed.getLogIndex(),
+                streamed.getTransactionIndex(),
+                streamed.getTransactionHash(),
+                streamed.getBlockHash(),
+                streamed.getBlockNumber(),
+                streamed.getAddress(),
+                streamed.getData(),
+                null,
+                streamed.getTopics()
+            );
+            indexerService.indexStreamedLog(eventLog);
+        } catch (Exception e) {
+            // Poll định kỳ sẽ index lại log này
+            log.error("❌ Failed to index streamed log: {}", e.getMessage());
+        }
+    }
+
+    private void onDisconnect() {
+        // ReentrantLock thay cho synchronized: phần thân gọi RPC, không pin virtual thread
+        disconnectLock.lock();
+        try {
+            if (!connected || stopped) {
+                return;
+            }
+            connected = false;
+            log.warn("⚠️ Log stream disconnected, falling back to polling until reconnected");
+            closeConnection();
+
+            // Poll ngay thay vì chờ lần chạy định kỳ tiếp theo
+            indexerService.indexNewEvents();
+            scheduleReconnect();
+        } finally {
+            disconnectLock.unlock();
+        }
+    }
+
+    private void scheduleReconnect() {
+        if (!stopped) {
+            reconnectScheduler.schedule(this::connect, reconnectDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void closeConnection() {
+        Disposable current = subscription;
+        if (current != null && !current.isDisposed()) {
+            current.dispose();
+        }
+        subscription = null;
+
+        WebSocketService service = webSocketService;
+        webSocketService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (Exception e) {
+                log.debug("Error closing log stream: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        connected = false;
+        closeConnection();
+        reconnectScheduler.shutdownNow();
+    }
+}
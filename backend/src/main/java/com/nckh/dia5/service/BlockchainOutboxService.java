@@ -0,0 +1,305 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.model.BlockchainOutboxEntry;
+import com.nckh.dia5.repository.BlockchainOutboxRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ShipmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reconciler cho blockchain_outbox: gửi lại issueBatch/createShipment của các bản ghi lưu ở chế độ offline.
+ *
+ * Mỗi lượt lấy các entry đã tới hạn theo thứ tự id, chạy ISSUE_BATCH trước rồi mới tới CREATE_SHIPMENT
+ * (shipment cần lô đã có trên chain), song song tối đa {@code parallelism} entry. Entry lỗi được lên lịch
+ * lại với exponential backoff, quá {@code max-attempts} thì chuyển sang FAILED. Transaction hash được ghi
+ * vào entry ngay khi gửi, nên lần thử lại chờ tiếp giao dịch cũ thay vì gửi trùng lên chain.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlockchainOutboxService {
+
+    private final BlockchainOutboxRepository outboxRepository;
+    private final DrugTraceabilityService drugTraceabilityService;
+    private final DrugBatchRepository drugBatchRepository;
+    private final ShipmentRepository shipmentRepository;
+    private final BlockchainService blockchainService;
+
+    @Value("${pharmaledger.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${pharmaledger.outbox.parallelism:4}")
+    private int parallelism;
+
+    @Value("${pharmaledger.outbox.max-attempts:20}")
+    private int maxAttempts;
+
+    @Value("${pharmaledger.outbox.base-backoff-seconds:10}")
+    private long baseBackoffSeconds;
+
+    @Value("${pharmaledger.outbox.max-backoff-seconds:1800}")
+    private long maxBackoffSeconds;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "blockchain-outbox-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Đưa các bản ghi offline có từ trước khi có outbox vào hàng đợi (chạy một lần khi khởi động)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPendingRecords() {
+        try {
+            int added = 0;
+            for (Long batchDbId : drugBatchRepository.findUnsyncedIds()) {
+                added += enqueue(BlockchainOutboxEntry.Operation.ISSUE_BATCH, batchDbId) ? 1 : 0;
+            }
+            for (Long shipmentDbId : shipmentRepository.findPendingSyncIds()) {
+                added += enqueue(BlockchainOutboxEntry.Operation.CREATE_SHIPMENT, shipmentDbId) ? 1 : 0;
+            }
+            if (added > 0) {
+                log.info("📤 Backfilled {} pending chain writes into outbox", added);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Outbox backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gửi các entry đã tới hạn
+     */
+    @Scheduled(fixedDelayString = "${pharmaledger.outbox.poll-interval-ms:10000}", initialDelay = 20000)
+    public void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<BlockchainOutboxEntry> ready = outboxRepository.findReady(LocalDateTime.now(), PageRequest.of(0, batchSize));
+            if (ready.isEmpty()) {
+                return;
+            }
+
+            Map<BlockchainOutboxEntry.Operation, List<BlockchainOutboxEntry>> byOperation = new HashMap<>();
+            for (BlockchainOutboxEntry entry : ready) {
+                byOperation.computeIfAbsent(entry.getOperation(), op -> new ArrayList<>()).add(entry);
+            }
+
+            int done = processAll(byOperation.getOrDefault(BlockchainOutboxEntry.Operation.ISSUE_BATCH, List.of()));
+            done += processAll(byOperation.getOrDefault(BlockchainOutboxEntry.Operation.CREATE_SHIPMENT, List.of()));
+            log.info("📤 Outbox: {}/{} pending chain writes synced", done, ready.size());
+
+        } catch (Exception e) {
+            log.error("❌ Outbox drain failed: {}", e.getMessage());
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Xử lý ngay entry của một bản ghi (dùng bởi job tạo lô), tạo entry nếu chưa có.
+     *
+     * @return transaction hash khi đã đồng bộ
+     * @throws IllegalStateException nếu entry đang được gửi bởi reconciler hoặc đã FAILED
+     */
+    public String processNow(BlockchainOutboxEntry.Operation operation, Long aggregateId) {
+        enqueue(operation, aggregateId);
+        BlockchainOutboxEntry entry = outboxRepository.findByOperationAndAggregateId(operation, aggregateId)
+                .orElseThrow(() -> new IllegalStateException("Outbox entry missing for " + operation + " " + aggregateId));
+
+        if (entry.getStatus() == BlockchainOutboxEntry.Status.DONE) {
+            return entry.getTransactionHash();
+        }
+        if (entry.getStatus() == BlockchainOutboxEntry.Status.FAILED) {
+            throw new IllegalStateException(operation + " for " + aggregateId + " failed permanently: " + entry.getLastError());
+        }
+        if (!process(entry)) {
+            throw new IllegalStateException(operation + " for " + aggregateId + " not synced yet: " + entry.getLastError());
+        }
+        return entry.getTransactionHash();
+    }
+
+    private boolean enqueue(BlockchainOutboxEntry.Operation operation, Long aggregateId) {
+        if (outboxRepository.findByOperationAndAggregateId(operation, aggregateId).isPresent()) {
+            return false;
+        }
+        try {
+            outboxRepository.save(BlockchainOutboxEntry.builder()
+                    .operation(operation)
+                    .aggregateId(aggregateId)
+                    .build());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Đã được tạo đồng thời (unique operation + aggregate_id)
+            return false;
+        }
+    }
+
+    private int processAll(List<BlockchainOutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(entries.size());
+        for (BlockchainOutboxEntry entry : entries) {
+            results.add(CompletableFuture.supplyAsync(() -> process(entry), executor));
+        }
+        return (int) results.stream().filter(CompletableFuture::join).count();
+    }
+
+    private boolean process(BlockchainOutboxEntry entry) {
+        if (!inFlight.add(entry.getId())) {
+            entry.setLastError("already in progress");
+            return false;
+        }
+        try {
+            if (!isReady(entry)) {
+                // Shipment chờ lô được phát hành, không tính là một lần thử
+                entry.setNextAttemptAt(LocalDateTime.now().plusSeconds(baseBackoffSeconds));
+                entry.setLastError("waiting for batch to be issued on chain");
+                outboxRepository.save(entry);
+                return false;
+            }
+
+            String transactionHash = findSyncedHash(entry).orElse(null);
+            if (transactionHash == null) {
+                transactionHash = complete(entry, submitAndConfirm(entry));
+            }
+
+            entry.setStatus(BlockchainOutboxEntry.Status.DONE);
+            entry.setTransactionHash(transactionHash);
+            entry.setLastError(null);
+            entry.setNextAttemptAt(null);
+            outboxRepository.save(entry);
+            return true;
+
+        } catch (Exception e) {
+            String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            entry.setAttempts(entry.getAttempts() + 1);
+            entry.setLastError(message != null && message.length() > 1000 ? message.substring(0, 1000) : message);
+
+            if (entry.getAttempts() >= maxAttempts) {
+                entry.setStatus(BlockchainOutboxEntry.Status.FAILED);
+                log.error("❌ Outbox {} #{} failed after {} attempts: {}",
+                        entry.getOperation(), entry.getAggregateId(), entry.getAttempts(), message);
+            } else {
+                long delay = Math.min(maxBackoffSeconds, baseBackoffSeconds << Math.min(entry.getAttempts() - 1, 20));
+                entry.setNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+                log.warn("⚠️ Outbox {} #{} failed (attempt {}), retrying in {} s: {}",
+                        entry.getOperation(), entry.getAggregateId(), entry.getAttempts(), delay, message);
+            }
+            outboxRepository.save(entry);
+            return false;
+
+        } finally {
+            inFlight.remove(entry.getId());
+        }
+    }
+
+    /**
+     * Gửi giao dịch và chờ receipt. Hash được lưu vào entry trước khi chờ: receipt quá hạn không có nghĩa
+     * giao dịch bị loại (nó vẫn có thể được mined), nên lần thử sau tiếp tục chờ chính giao dịch đó và chỉ
+     * gửi lại khi node không còn biết giao dịch hoặc giao dịch đã bị revert.
+     */
+    private TransactionReceipt submitAndConfirm(BlockchainOutboxEntry entry) throws IOException {
+        if (entry.getTransactionHash() != null) {
+            TransactionReceipt receipt = resumeSubmitted(entry);
+            if (receipt != null) {
+                return receipt;
+            }
+        }
+
+        String transactionHash = switch (entry.getOperation()) {
+            case ISSUE_BATCH -> drugTraceabilityService.submitBatchIssue(entry.getAggregateId());
+            case CREATE_SHIPMENT -> drugTraceabilityService.submitShipmentCreation(entry.getAggregateId());
+        };
+        entry.setTransactionHash(transactionHash);
+        outboxRepository.save(entry);
+
+        return blockchainService.confirmTransaction(transactionHash).join();
+    }
+
+    /**
+     * Receipt của giao dịch đã gửi ở lần thử trước, hoặc null nếu cần gửi lại
+     */
+    private TransactionReceipt resumeSubmitted(BlockchainOutboxEntry entry) throws IOException {
+        String transactionHash = entry.getTransactionHash();
+        Optional<TransactionReceipt> mined = blockchainService.findReceipt(transactionHash);
+        if (mined.isPresent()) {
+            if (mined.get().isStatusOK()) {
+                return mined.get();
+            }
+            log.warn("⚠️ Outbox {} #{}: transaction {} reverted, resubmitting",
+                    entry.getOperation(), entry.getAggregateId(), transactionHash);
+            return null;
+        }
+        if (blockchainService.isTransactionKnown(transactionHash)) {
+            // Vẫn đang chờ trong mempool
+            return blockchainService.confirmTransaction(transactionHash).join();
+        }
+        log.warn("⚠️ Outbox {} #{}: transaction {} was dropped, resubmitting",
+                entry.getOperation(), entry.getAggregateId(), transactionHash);
+        return null;
+    }
+
+    private Optional<String> findSyncedHash(BlockchainOutboxEntry entry) {
+        return switch (entry.getOperation()) {
+            case ISSUE_BATCH -> drugTraceabilityService.findIssuedBatchHash(entry.getAggregateId());
+            case CREATE_SHIPMENT -> drugTraceabilityService.findSyncedShipmentHash(entry.getAggregateId());
+        };
+    }
+
+    private String complete(BlockchainOutboxEntry entry, TransactionReceipt receipt) {
+        return switch (entry.getOperation()) {
+            case ISSUE_BATCH -> drugTraceabilityService.completeBatchIssue(entry.getAggregateId(), receipt);
+            case CREATE_SHIPMENT -> drugTraceabilityService.completeShipmentCreation(entry.getAggregateId(), receipt);
+        };
+    }
+
+    private boolean isReady(BlockchainOutboxEntry entry) {
+        if (entry.getOperation() != BlockchainOutboxEntry.Operation.CREATE_SHIPMENT) {
+            return true;
+        }
+        return shipmentRepository.findBatchSyncedByShipmentId(entry.getAggregateId()).orElse(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,228 @@
+package com.nckh.dia5.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetBlockReceipts;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Central tracker for receipts of submitted transactions.
+ *
+ * Instead of one polling loop per transaction, a single scheduler checks the chain head and
+ * fetches the receipts of every new block in one batched {@code eth_getBlockReceipts} call,
+ * completing all pending futures found in those blocks. Transactions that were just submitted
+ * (and may already be mined) get one batched {@code eth_getTransactionReceipt} lookup.
+ * A transaction that times out was probably dropped by the node, leaving a gap in the sender's
+ * local nonce sequence, so the sender is told to reload its nonce from the node.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlockchainReceiptTracker {
+
+    private final Web3j web3j;
+    private final MeterRegistry meterRegistry;
+    private final BlockchainExecutors executors;
+    private final BlockchainTransactionSender transactionSender;
+
+    @Value("${blockchain.receipt.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${blockchain.receipt.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    // Nếu node bị chậm nhiều block thì lookup trực tiếp theo hash rẻ hơn quét từng block
+    @Value("${blockchain.receipt.max-blocks-per-poll:20}")
+    private int maxBlocksPerPoll;
+
+    private final Map<String, PendingReceipt> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blockchain-receipt-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Chỉ được đọc/ghi trên scheduler thread
+    private BigInteger lastCheckedBlock;
+    private boolean blockReceiptsSupported = true;
+
+    private Timer confirmationTimer;
+
+    @PostConstruct
+    void start() {
+        Gauge.builder("blockchain.tx.pending", pending, Map::size)
+                .description("Submitted transactions waiting for a receipt")
+                .register(meterRegistry);
+        confirmationTimer = Timer.builder("blockchain.tx.confirmation")
+                .description("Time from submission until the receipt is observed")
+                .register(meterRegistry);
+
+        scheduler.scheduleWithFixedDelay(this::pollSafely, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register a submitted transaction, completing once its receipt appears on chain
+     */
+    public CompletableFuture<TransactionReceipt> track(String transactionHash) {
+        return pending.computeIfAbsent(transactionHash.toLowerCase(), hash -> new PendingReceipt())
+                .future;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (Exception e) {
+            // Giữ nguyên lastCheckedBlock để lần sau quét lại các block bị lỡ
+            log.warn("Receipt tracker poll failed: {}", e.getMessage());
+        }
+    }
+
+    private void poll() throws Exception {
+        expireTimedOut();
+
+        if (pending.isEmpty()) {
+            // Không có giao dịch chờ -> không gọi RPC, lần sau bắt đầu lại từ head hiện tại
+            lastCheckedBlock = null;
+            return;
+        }
+
+        BigInteger head = web3j.ethBlockNumber().send().getBlockNumber();
+
+        // Giao dịch mới đăng ký có thể đã nằm trong block đã quét (automine) -> tra trực tiếp một lần
+        List<String> unchecked = new ArrayList<>();
+        pending.forEach((hash, entry) -> {
+            if (!entry.checked) {
+                entry.checked = true;
+                unchecked.add(hash);
+            }
+        });
+
+        lookupByHash(unchecked);
+
+        if (lastCheckedBlock != null && head.compareTo(lastCheckedBlock) > 0 && !pending.isEmpty()) {
+            long newBlocks = head.subtract(lastCheckedBlock).longValue();
+            if (blockReceiptsSupported && newBlocks <= maxBlocksPerPoll) {
+                scanBlocks(lastCheckedBlock.add(BigInteger.ONE), head);
+            } else {
+                lookupByHash(new ArrayList<>(pending.keySet()));
+            }
+        }
+
+        if (lastCheckedBlock == null || head.compareTo(lastCheckedBlock) > 0) {
+            lastCheckedBlock = head;
+        }
+    }
+
+    /**
+     * Fetch the receipts of all blocks in [fromBlock, toBlock] in one batched request
+     */
+    private void scanBlocks(BigInteger fromBlock, BigInteger toBlock) throws Exception {
+        BatchRequest batch = web3j.newBatch();
+        for (BigInteger block = fromBlock; block.compareTo(toBlock) <= 0; block = block.add(BigInteger.ONE)) {
+            batch.add(web3j.ethGetBlockReceipts(DefaultBlockParameter.valueOf(block)));
+        }
+
+        BatchResponse response = batch.send();
+        for (Response<?> item : response.getResponses()) {
+            if (item.hasError()) {
+                log.info("Node does not support eth_getBlockReceipts ({}), falling back to receipt lookups",
+                        item.getError().getMessage());
+                blockReceiptsSupported = false;
+                lookupByHash(new ArrayList<>(pending.keySet()));
+                return;
+            }
+            ((EthGetBlockReceipts) item).getBlockReceipts()
+                    .ifPresent(receipts -> receipts.forEach(this::complete));
+        }
+    }
+
+    /**
+     * Look up the receipts of the given transactions in one batched request
+     */
+    private void lookupByHash(List<String> hashes) throws Exception {
+        if (hashes.isEmpty()) {
+            return;
+        }
+
+        BatchRequest batch = web3j.newBatch();
+        hashes.forEach(hash -> batch.add(web3j.ethGetTransactionReceipt(hash)));
+
+        BatchResponse response = batch.send();
+        for (Response<?> item : response.getResponses()) {
+            if (!item.hasError()) {
+                ((EthGetTransactionReceipt) item).getTransactionReceipt().ifPresent(this::complete);
+            }
+        }
+    }
+
+    private void complete(TransactionReceipt receipt) {
+        if (receipt.getTransactionHash() == null) {
+            return;
+        }
+        PendingReceipt entry = pending.remove(receipt.getTransactionHash().toLowerCase());
+        if (entry != null) {
+            confirmationTimer.record(System.nanoTime() - entry.submittedAt, TimeUnit.NANOSECONDS);
+            // Callback của caller (ghi DB...) chạy trên receipt pool, không chặn thread poll
+            entry.future.completeAsync(() -> receipt, executors.getReceiptExecutor());
+        }
+    }
+
+    private void expireTimedOut() {
+        long deadline = System.nanoTime() - TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        boolean expired = pending.entrySet().removeIf(e -> {
+            if (e.getValue().submittedAt - deadline < 0) {
+                log.warn("No receipt received for transaction {} after {} seconds", e.getKey(), timeoutSeconds);
+                e.getValue().future.completeExceptionally(new RuntimeException(
+                        "No receipt received for transaction " + e.getKey() + " after " + timeoutSeconds + " seconds"));
+                return true;
+            }
+            return false;
+        });
+        if (expired) {
+            // Giao dịch có thể đã bị node loại khỏi mempool: các nonce sau nó sẽ kẹt cho tới khi nonce được đọc lại
+            transactionSender.resetNonce();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.values().forEach(entry ->
+                entry.future.completeExceptionally(new IllegalStateException("Receipt tracker stopped")));
+        pending.clear();
+    }
+
+    private static class PendingReceipt {
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+        private final long submittedAt = System.nanoTime();
+        private volatile boolean checked;
+    }
+}
@@ -5,6 +5,7 @@ import com.nckh.dia5.dto.blockchain.SerialNumberStatusDto;
 import com.nckh.dia5.util.BlockchainEncodingFixer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.FunctionReturnDecoder;
@@ -18,13 +19,17 @@ import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.request.Transaction;
 import org.web3j.protocol.core.methods.response.*;
 import org.web3j.tx.gas.ContractGasProvider;
-import org.web3j.tx.RawTransactionManager;
-import org.web3j.tx.TransactionManager;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
@@ -36,6 +41,12 @@ public class BlockchainService {
     private final ContractGasProvider gasProvider;
     private final BlockchainConfig blockchainConfig;
     private final BlockchainEncodingFixer encodingFixer;
+    private final BlockchainTransactionSender transactionSender;
+    private final BlockchainReceiptTracker receiptTracker;
+    private final BlockchainCallAggregator callAggregator;
+
+    @Value("${blockchain.executor.await-timeout-seconds:150}")
+    private long awaitTimeoutSeconds;
 
     // Smart contract function signatures
     private static final String ISSUE_BATCH_FUNCTION = "issueBatch";
@@ -48,11 +59,14 @@ public class BlockchainService {
     private static final String REDEEM_SERIAL_FUNCTION = "redeemSerialNumber";
     private static final String GET_SERIAL_STATUS_FUNCTION = "getSerialNumberStatus";
 
+    private static final String ISSUE_BATCH_FAILURE = "Failed to issue batch on blockchain";
+    private static final String CREATE_SHIPMENT_FAILURE = "Failed to create shipment on blockchain";
+
     // Event signatures
     private static final String BATCH_ISSUED_EVENT = "BatchIssued(uint256,address,string,uint256,string)";
     private static final String SHIPMENT_CREATED_EVENT = "ShipmentCreated(uint256,uint256,address,address,uint256)";
-    private static final String SHIPMENT_RECEIVED_EVENT = "ShipmentReceived(uint256,uint256,address)";
-    private static final String BATCH_STATUS_UPDATED_EVENT = "BatchStatusUpdated(uint256,uint8)";
+    private static final String SHIPMENT_RECEIVED_EVENT = "ShipmentReceived(uint256,uint256,address,uint256)";
+    private static final String BATCH_STATUS_UPDATED_EVENT = "BatchStatusUpdated(uint256,uint8,uint8)";
 
     /**
      * Issue a new drug batch on the blockchain
@@ -65,60 +79,66 @@ public class BlockchainService {
             BigInteger expiryTimestamp,
             String storageConditions) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                log.info("Issuing batch on blockchain: drugName={}, manufacturer={}, batchNumber={}, quantity={}", 
-                         drugName, manufacturer, batchNumber, quantity);
-
-                String cleanDrugName = sanitizeForBlockchain(drugName, "UNKNOWN");
-                String cleanManufacturer = sanitizeForBlockchain(manufacturer, "UNKNOWN");
-                String cleanBatchNumber = encodingFixer.validateBatchNumber(batchNumber);
-
-                encodingFixer.logEncodingIssues(drugName, cleanDrugName, "drug_name");
-                encodingFixer.logEncodingIssues(manufacturer, cleanManufacturer, "manufacturer");
-                encodingFixer.logEncodingIssues(batchNumber, cleanBatchNumber, "batch_number");
-
-                // Create DrugInfo struct for smart contract
-                List<Type> drugInfoParams = Arrays.asList(
-                    new Utf8String(cleanDrugName),           // name
-                    new Utf8String(""),                     // activeIngredient - có thể để trống
-                    new Utf8String(""),                     // dosage - có thể để trống
-                    new Utf8String(cleanManufacturer),       // manufacturer
-                    new Utf8String("")                      // registrationNumber - có thể để trống
-                );
+        return submitIssueBatch(drugName, manufacturer, batchNumber, quantity, expiryTimestamp, storageConditions)
+                .thenCompose(transactionHash -> confirmTransaction(ISSUE_BATCH_FAILURE, transactionHash))
+                .thenApply(receipt -> {
+                    log.info("Batch issued successfully. Transaction hash: {}", receipt.getTransactionHash());
+                    return receipt;
+                });
+    }
 
-                DynamicStruct drugInfo = new DynamicStruct(drugInfoParams);
+    /**
+     * Gửi issueBatch và trả về transaction hash ngay khi node nhận giao dịch, không chờ receipt
+     * (dùng bởi outbox để lưu hash trước khi chờ, xem {@link #confirmTransaction(String)})
+     */
+    public CompletableFuture<String> submitIssueBatch(
+            String drugName,
+            String manufacturer,
+            String batchNumber,
+            BigInteger quantity,
+            BigInteger expiryTimestamp,
+            String storageConditions) {
 
-                // Generate QR code for this batch
-                String qrCode = generateQrCode(cleanDrugName, cleanBatchNumber);
+        return submitTransaction(ISSUE_BATCH_FAILURE, () -> {
+            log.info("Issuing batch on blockchain: drugName={}, manufacturer={}, batchNumber={}, quantity={}", 
+                     drugName, manufacturer, batchNumber, quantity);
+
+            String cleanDrugName = sanitizeForBlockchain(drugName, "UNKNOWN");
+            String cleanManufacturer = sanitizeForBlockchain(manufacturer, "UNKNOWN");
+            String cleanBatchNumber = encodingFixer.validateBatchNumber(batchNumber);
+
+            encodingFixer.logEncodingIssues(drugName, cleanDrugName, "drug_name");
+            encodingFixer.logEncodingIssues(manufacturer, cleanManufacturer, "manufacturer");
+            encodingFixer.logEncodingIssues(batchNumber, cleanBatchNumber, "batch_number");
+
+            // Create DrugInfo struct for smart contract
+            List<Type> drugInfoParams = Arrays.asList(
+                new Utf8String(cleanDrugName),           // name
+                new Utf8String(""),                     // activeIngredient - có thể để trống
+                new Utf8String(""),                     // dosage - có thể để trống
+                new Utf8String(cleanManufacturer),       // manufacturer
+                new Utf8String("")                      // registrationNumber - có thể để trống
+            );
 
-                // Prepare function parameters matching smart contract signature
-                List<Type> inputParameters = Arrays.asList(
-                    drugInfo,                           // DrugInfo memory _drugInfo
-                    new Uint256(quantity),              // uint256 _quantity
-                    new Uint256(System.currentTimeMillis() / 1000),  // uint256 _manufactureDate (current time)
-                    new Uint256(expiryTimestamp),       // uint256 _expiryDate
-                    new Utf8String(qrCode)              // string memory _qrCode
-                );
+            DynamicStruct drugInfo = new DynamicStruct(drugInfoParams);
 
-                Function function = new Function(
-                    ISSUE_BATCH_FUNCTION,
-                    inputParameters,
-                    Arrays.asList(new TypeReference<Uint256>() {})
-                );
+            // Generate QR code for this batch
+            String qrCode = generateQrCode(cleanDrugName, cleanBatchNumber);
 
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Batch issued successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
+            // Prepare function parameters matching smart contract signature
+            List<Type> inputParameters = Arrays.asList(
+                drugInfo,                           // DrugInfo memory _drugInfo
+                new Uint256(quantity),              // uint256 _quantity
+                new Uint256(System.currentTimeMillis() / 1000),  // uint256 _manufactureDate (current time)
+                new Uint256(expiryTimestamp),       // uint256 _expiryDate
+                new Utf8String(qrCode)              // string memory _qrCode
+            );
 
-            } catch (Exception e) {
-                log.error("Failed to issue batch on blockchain", e);
-                throw new RuntimeException("Failed to issue batch on blockchain", e);
-            }
+            return new Function(
+                ISSUE_BATCH_FUNCTION,
+                inputParameters,
+                Arrays.asList(new TypeReference<Uint256>() {})
+            );
         });
     }
 
@@ -126,39 +146,17 @@ public class BlockchainService {
             BigInteger batchId,
             List<String> serialNumbers) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                if (serialNumbers == null || serialNumbers.isEmpty()) {
-                    throw new IllegalArgumentException("Serial number list is empty");
-                }
-
-                log.info("Registering {} serial numbers for batch {}", serialNumbers.size(), batchId);
-
-                List<Utf8String> serialTypes = serialNumbers.stream()
-                        .map(serial -> new Utf8String(sanitizeForBlockchain(serial, serial)))
-                        .collect(Collectors.toList());
-
-                Function function = new Function(
-                        REGISTER_SERIALS_FUNCTION,
-                        Arrays.asList(
-                                new Uint256(batchId),
-                                new DynamicArray<>(Utf8String.class, serialTypes)
-                        ),
-                        Collections.emptyList()
-                );
+        return executeTransaction("Failed to register serial numbers", () -> {
+            if (serialNumbers == null || serialNumbers.isEmpty()) {
+                throw new IllegalArgumentException("Serial number list is empty");
+            }
 
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Serial numbers registered successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
+            log.info("Registering {} serial numbers for batch {}", serialNumbers.size(), batchId);
 
-            } catch (Exception e) {
-                log.error("Failed to register serial numbers", e);
-                throw new RuntimeException("Failed to register serial numbers", e);
-            }
+            return buildRegisterSerialNumbersFunction(batchId, serialNumbers);
+        }).thenApply(receipt -> {
+            log.info("Serial numbers registered successfully. Transaction hash: {}", receipt.getTransactionHash());
+            return receipt;
         });
     }
 
@@ -171,47 +169,52 @@ public class BlockchainService {
             BigInteger quantity,
             String trackingNumber) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                log.info("Creating shipment on blockchain: batchId={}, toAddress={}, quantity={}, tracking={}", 
-                         batchId, toAddress, quantity, trackingNumber);
+        return submitCreateShipment(batchId, toAddress, quantity, trackingNumber)
+                .thenCompose(transactionHash -> confirmTransaction(CREATE_SHIPMENT_FAILURE, transactionHash))
+                .thenApply(receipt -> {
+                    log.info("Shipment created successfully. Transaction hash: {}", receipt.getTransactionHash());
+                    return receipt;
+                });
+    }
 
-                // If no tracking number provided, generate one
-                final String finalTrackingNumber;
-                if (trackingNumber == null || trackingNumber.trim().isEmpty()) {
-                    finalTrackingNumber = generateTrackingNumber(batchId);
-                    log.info("Generated tracking number: {}", finalTrackingNumber);
-                } else {
-                    finalTrackingNumber = trackingNumber;
-                }
+    /**
+     * Gửi createShipment và trả về transaction hash ngay khi node nhận giao dịch, không chờ receipt
+     */
+    public CompletableFuture<String> submitCreateShipment(
+            BigInteger batchId,
+            String toAddress,
+            BigInteger quantity,
+            String trackingNumber) {
 
-                // Match smart contract function signature: createShipment(uint256,address,uint256,string)
-                List<Type> inputParameters = Arrays.asList(
-                    new Uint256(batchId),               // uint256 _batchId
-                    new Address(toAddress),             // address _to
-                    new Uint256(quantity),              // uint256 _quantity
-                    new Utf8String(finalTrackingNumber)      // string memory _trackingNumber
-                );
+        log.info("Creating shipment on blockchain: batchId={}, toAddress={}, quantity={}, tracking={}", 
+                 batchId, toAddress, quantity, trackingNumber);
 
-                Function function = new Function(
-                    CREATE_SHIPMENT_FUNCTION,
-                    inputParameters,
-                    Arrays.asList(new TypeReference<Uint256>() {})
-                );
+        // If no tracking number provided, generate one
+        final String finalTrackingNumber;
+        if (trackingNumber == null || trackingNumber.trim().isEmpty()) {
+            finalTrackingNumber = generateTrackingNumber(batchId);
+            log.info("Generated tracking number: {}", finalTrackingNumber);
+        } else {
+            finalTrackingNumber = trackingNumber;
+        }
 
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Shipment created successfully. Transaction hash: {}, Tracking: {}", 
-                        receipt.getTransactionHash(), finalTrackingNumber);
-                return receipt;
+        return submitTransaction(CREATE_SHIPMENT_FAILURE, () -> {
+            // Match smart contract function signature: createShipment(uint256,address,uint256,string)
+            List<Type> inputParameters = Arrays.asList(
+                new Uint256(batchId),               // uint256 _batchId
+                new Address(toAddress),             // address _to
+                new Uint256(quantity),              // uint256 _quantity
+                new Utf8String(finalTrackingNumber)      // string memory _trackingNumber
+            );
 
-            } catch (Exception e) {
-                log.error("Failed to create shipment on blockchain", e);
-                throw new RuntimeException("Failed to create shipment on blockchain", e);
-            }
+            return new Function(
+                CREATE_SHIPMENT_FUNCTION,
+                inputParameters,
+                Arrays.asList(new TypeReference<Uint256>() {})
+            );
+        }).thenApply(transactionHash -> {
+            log.info("Shipment submitted. Transaction hash: {}, Tracking: {}", transactionHash, finalTrackingNumber);
+            return transactionHash;
         });
     }
 
@@ -219,32 +222,21 @@ public class BlockchainService {
             BigInteger batchId,
             String serialNumber) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                String sanitizedSerial = sanitizeForBlockchain(serialNumber, serialNumber);
-                log.info("Redeeming serial {} for batch {}", sanitizedSerial, batchId);
-
-                Function function = new Function(
-                        REDEEM_SERIAL_FUNCTION,
-                        Arrays.asList(
-                                new Uint256(batchId),
-                                new Utf8String(sanitizedSerial)
-                        ),
-                        Collections.emptyList()
-                );
-
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Serial redeemed successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
-
-            } catch (Exception e) {
-                log.error("Failed to redeem serial number", e);
-                throw new RuntimeException("Failed to redeem serial number", e);
-            }
+        return executeTransaction("Failed to redeem serial number", () -> {
+            String sanitizedSerial = sanitizeForBlockchain(serialNumber, serialNumber);
+            log.info("Redeeming serial {} for batch {}", sanitizedSerial, batchId);
+
+            return new Function(
+                    REDEEM_SERIAL_FUNCTION,
+                    Arrays.asList(
+                            new Uint256(batchId),
+                            new Utf8String(sanitizedSerial)
+                    ),
+                    Collections.emptyList()
+            );
+        }).thenApply(receipt -> {
+            log.info("Serial redeemed successfully. Transaction hash: {}", receipt.getTransactionHash());
+            return receipt;
         });
     }
 
@@ -252,53 +244,51 @@ public class BlockchainService {
             BigInteger batchId,
             String serialNumber) {
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String sanitizedSerial = sanitizeForBlockchain(serialNumber, serialNumber);
-
-                Function function = new Function(
-                        GET_SERIAL_STATUS_FUNCTION,
-                        Arrays.asList(
-                                new Uint256(batchId),
-                                new Utf8String(sanitizedSerial)
-                        ),
-                        Arrays.asList(
-                                new TypeReference<Bool>() {},
-                                new TypeReference<Bool>() {},
-                                new TypeReference<Uint256>() {},
-                                new TypeReference<Address>() {}
-                        )
-                );
-
-                List<Type> result = executeCall(function);
-
-                if (result.isEmpty()) {
-                    return SerialNumberStatusDto.builder()
-                            .exists(false)
-                            .redeemed(false)
-                            .redeemedAt(0L)
-                            .redeemedBy(null)
-                            .build();
-                }
+        String sanitizedSerial = sanitizeForBlockchain(serialNumber, serialNumber);
 
-                boolean exists = ((Bool) result.get(0)).getValue();
-                boolean redeemed = ((Bool) result.get(1)).getValue();
-                BigInteger redeemedAtValue = ((Uint256) result.get(2)).getValue();
-                String redeemedBy = ((Address) result.get(3)).getValue();
+        Function function = new Function(
+                GET_SERIAL_STATUS_FUNCTION,
+                Arrays.asList(
+                        new Uint256(batchId),
+                        new Utf8String(sanitizedSerial)
+                ),
+                Arrays.asList(
+                        new TypeReference<Bool>() {},
+                        new TypeReference<Bool>() {},
+                        new TypeReference<Uint256>() {},
+                        new TypeReference<Address>() {}
+                )
+        );
 
-                long redeemedAt = redeemedAtValue != null ? redeemedAtValue.longValue() : 0L;
+        return executeCallAsync(function).handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.error("Failed to get serial status from blockchain", cause);
+                throw new CompletionException(new RuntimeException("Failed to get serial status", cause));
+            }
 
+            if (result.isEmpty()) {
                 return SerialNumberStatusDto.builder()
-                        .exists(exists)
-                        .redeemed(redeemed)
-                        .redeemedAt(redeemedAt)
-                        .redeemedBy(redeemedBy)
+                        .exists(false)
+                        .redeemed(false)
+                        .redeemedAt(0L)
+                        .redeemedBy(null)
                         .build();
-
-            } catch (Exception e) {
-                log.error("Failed to get serial status from blockchain", e);
-                throw new RuntimeException("Failed to get serial status", e);
             }
+
+            boolean exists = ((Bool) result.get(0)).getValue();
+            boolean redeemed = ((Bool) result.get(1)).getValue();
+            BigInteger redeemedAtValue = ((Uint256) result.get(2)).getValue();
+            String redeemedBy = ((Address) result.get(3)).getValue();
+
+            long redeemedAt = redeemedAtValue != null ? redeemedAtValue.longValue() : 0L;
+
+            return SerialNumberStatusDto.builder()
+                    .exists(exists)
+                    .redeemed(redeemed)
+                    .redeemedAt(redeemedAt)
+                    .redeemedBy(redeemedBy)
+                    .build();
         });
     }
 
@@ -315,40 +305,29 @@ public class BlockchainService {
             String dispatchLocation,
             String notes) {
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                log.info("Dispatching shipment on blockchain: shipmentId={}, location={}, notes={}", 
-                         shipmentId, dispatchLocation, notes);
-
-                // Sanitize inputs
-                String cleanLocation = sanitizeForBlockchain(dispatchLocation, "Unknown Location");
-                String cleanNotes = sanitizeForBlockchain(notes, "");
-
-                // Match smart contract function signature: dispatchShipment(uint256,string,string)
-                List<Type> inputParameters = Arrays.asList(
-                    new Uint256(shipmentId),            // uint256 _shipmentId
-                    new Utf8String(cleanLocation),      // string memory _dispatchLocation
-                    new Utf8String(cleanNotes)          // string memory _notes
-                );
-
-                Function function = new Function(
-                    DISPATCH_SHIPMENT_FUNCTION,
-                    inputParameters,
-                    Arrays.asList()  // No return value
-                );
-
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Shipment dispatched successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
+        return executeTransaction("Failed to dispatch shipment on blockchain", () -> {
+            log.info("Dispatching shipment on blockchain: shipmentId={}, location={}, notes={}", 
+                     shipmentId, dispatchLocation, notes);
+
+            // Sanitize inputs
+            String cleanLocation = sanitizeForBlockchain(dispatchLocation, "Unknown Location");
+            String cleanNotes = sanitizeForBlockchain(notes, "");
+
+            // Match smart contract function signature: dispatchShipment(uint256,string,string)
+            List<Type> inputParameters = Arrays.asList(
+                new Uint256(shipmentId),            // uint256 _shipmentId
+                new Utf8String(cleanLocation),      // string memory _dispatchLocation
+                new Utf8String(cleanNotes)          // string memory _notes
+            );
 
-            } catch (Exception e) {
-                log.error("Failed to dispatch shipment on blockchain", e);
-                throw new RuntimeException("Failed to dispatch shipment on blockchain", e);
-            }
+            return new Function(
+                DISPATCH_SHIPMENT_FUNCTION,
+                inputParameters,
+                Arrays.asList()  // No return value
+            );
+        }).thenApply(receipt -> {
+            log.info("Shipment dispatched successfully. Transaction hash: {}", receipt.getTransactionHash());
+            return receipt;
         });
     }
 
@@ -356,30 +335,19 @@ public class BlockchainService {
      * Receive a shipment on the blockchain
      */
     public CompletableFuture<TransactionReceipt> receiveShipment(BigInteger shipmentId) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                log.info("Receiving shipment on blockchain: shipmentId={}", shipmentId);
+        return executeTransaction("Failed to receive shipment on blockchain", () -> {
+            log.info("Receiving shipment on blockchain: shipmentId={}", shipmentId);
 
-                List<Type> inputParameters = Arrays.asList(new Uint256(shipmentId));
+            List<Type> inputParameters = Arrays.asList(new Uint256(shipmentId));
 
-                Function function = new Function(
-                    RECEIVE_SHIPMENT_FUNCTION,
-                    inputParameters,
-                    Arrays.asList()
-                );
-
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Shipment received successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
-
-            } catch (Exception e) {
-                log.error("Failed to receive shipment on blockchain", e);
-                throw new RuntimeException("Failed to receive shipment on blockchain", e);
-            }
+            return new Function(
+                RECEIVE_SHIPMENT_FUNCTION,
+                inputParameters,
+                Arrays.asList()
+            );
+        }).thenApply(receipt -> {
+            log.info("Shipment received successfully. Transaction hash: {}", receipt.getTransactionHash());
+            return receipt;
         });
     }
     
@@ -392,36 +360,25 @@ public class BlockchainService {
             BigInteger newStatus,
             String location,
             String notes) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                log.info("Updating shipment status on blockchain: shipmentId={}, status={}, location={}", 
-                         shipmentId, newStatus, location);
-
-                List<Type> inputParameters = Arrays.asList(
-                    new Uint256(shipmentId),
-                    new Uint256(newStatus),  // 0=CREATED, 1=IN_PROGRESS, 2=COMPLETED, 3=CANCELLED
-                    new Utf8String(location),
-                    new Utf8String(notes)
-                );
-
-                Function function = new Function(
-                    "updateShipmentStatus",
-                    inputParameters,
-                    Arrays.asList()
-                );
-
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Shipment status updated successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
+        return executeTransaction("Failed to update shipment status on blockchain", () -> {
+            log.info("Updating shipment status on blockchain: shipmentId={}, status={}, location={}", 
+                     shipmentId, newStatus, location);
+
+            List<Type> inputParameters = Arrays.asList(
+                new Uint256(shipmentId),
+                new Uint256(newStatus),  // 0=CREATED, 1=IN_PROGRESS, 2=COMPLETED, 3=CANCELLED
+                new Utf8String(location),
+                new Utf8String(notes)
+            );
 
-            } catch (Exception e) {
-                log.error("Failed to update shipment status on blockchain", e);
-                throw new RuntimeException("Failed to update shipment status on blockchain", e);
-            }
+            return new Function(
+                "updateShipmentStatus",
+                inputParameters,
+                Arrays.asList()
+            );
+        }).thenApply(receipt -> {
+            log.info("Shipment status updated successfully. Transaction hash: {}", receipt.getTransactionHash());
+            return receipt;
         });
     }
     
@@ -453,10 +410,9 @@ public class BlockchainService {
             );
 
             String encodedFunction = FunctionEncoder.encode(function);
-            EthCall response = web3j.ethCall(
-                Transaction.createEthCallTransaction(null, contractAddress, encodedFunction),
-                DefaultBlockParameterName.LATEST
-            ).send();
+            EthCall response = callAggregator.call(
+                Transaction.createEthCallTransaction(null, contractAddress, encodedFunction)
+            ).get(awaitTimeoutSeconds, TimeUnit.SECONDS);
 
             if (response.hasError()) {
                 log.error("Error getting shipment history: {}", response.getError().getMessage());
@@ -590,10 +546,9 @@ public class BlockchainService {
             );
 
             String encodedFunction = FunctionEncoder.encode(function);
-            EthCall response = web3j.ethCall(
-                Transaction.createEthCallTransaction(null, contractAddress, encodedFunction),
-                DefaultBlockParameterName.LATEST
-            ).send();
+            EthCall response = callAggregator.call(
+                Transaction.createEthCallTransaction(null, contractAddress, encodedFunction)
+            ).get(awaitTimeoutSeconds, TimeUnit.SECONDS);
 
             if (response.hasError()) {
                 log.error("Error getting shipment details: {}", response.getError().getMessage());
@@ -670,33 +625,22 @@ public class BlockchainService {
      * Update batch status on the blockchain
      */
     public CompletableFuture<TransactionReceipt> updateBatchStatus(BigInteger batchId, BigInteger newStatus) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (credentials == null) {
-                    throw new IllegalStateException("Blockchain credentials not available");
-                }
-
-                log.info("Updating batch status on blockchain: batchId={}, newStatus={}", batchId, newStatus);
-
-                List<Type> inputParameters = Arrays.asList(
-                    new Uint256(batchId),
-                    new Uint256(newStatus)
-                );
-
-                Function function = new Function(
-                    UPDATE_BATCH_STATUS_FUNCTION,
-                    inputParameters,
-                    Arrays.asList()
-                );
+        return executeTransaction("Failed to update batch status on blockchain", () -> {
+            log.info("Updating batch status on blockchain: batchId={}, newStatus={}", batchId, newStatus);
 
-                TransactionReceipt receipt = executeTransaction(function);
-                log.info("Batch status updated successfully. Transaction hash: {}", receipt.getTransactionHash());
-                return receipt;
+            List<Type> inputParameters = Arrays.asList(
+                new Uint256(batchId),
+                new Uint256(newStatus)
+            );
 
-            } catch (Exception e) {
-                log.error("Failed to update batch status on blockchain", e);
-                throw new RuntimeException("Failed to update batch status on blockchain", e);
-            }
+            return new Function(
+                UPDATE_BATCH_STATUS_FUNCTION,
+                inputParameters,
+                Arrays.asList()
+            );
+        }).thenApply(receipt -> {
+            log.info("Batch status updated successfully. Transaction hash: {}", receipt.getTransactionHash());
+            return receipt;
         });
     }
 
@@ -704,35 +648,54 @@ public class BlockchainService {
      * Verify ownership of a batch
      */
     public CompletableFuture<Boolean> verifyOwnership(BigInteger batchId, String ownerAddress) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                log.info("Verifying ownership on blockchain: batchId={}, ownerAddress={}", batchId, ownerAddress);
-
-                List<Type> inputParameters = Arrays.asList(
-                    new Uint256(batchId),
-                    new Address(ownerAddress)
-                );
+        log.info("Verifying ownership on blockchain: batchId={}, ownerAddress={}", batchId, ownerAddress);
 
-                Function function = new Function(
-                    VERIFY_OWNERSHIP_FUNCTION,
-                    inputParameters,
-                    Arrays.asList(new TypeReference<Bool>() {})
-                );
+        List<Type> inputParameters = Arrays.asList(
+            new Uint256(batchId),
+            new Address(ownerAddress)
+        );
 
-                List<Type> result = executeCall(function);
-                boolean isOwner = (Boolean) result.get(0).getValue();
-                
-                log.info("Ownership verification result: batchId={}, ownerAddress={}, isOwner={}", 
-                         batchId, ownerAddress, isOwner);
-                return isOwner;
+        Function function = new Function(
+            VERIFY_OWNERSHIP_FUNCTION,
+            inputParameters,
+            Arrays.asList(new TypeReference<Bool>() {})
+        );
 
-            } catch (Exception e) {
-                log.error("Failed to verify ownership on blockchain", e);
-                throw new RuntimeException("Failed to verify ownership on blockchain", e);
+        return executeCallAsync(function).handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.error("Failed to verify ownership on blockchain", cause);
+                throw new CompletionException(new RuntimeException("Failed to verify ownership on blockchain", cause));
             }
+
+            boolean isOwner = (Boolean) result.get(0).getValue();
+
+            log.info("Ownership verification result: batchId={}, ownerAddress={}, isOwner={}", 
+                     batchId, ownerAddress, isOwner);
+            return isOwner;
         });
     }
 
+    /**
+     * Estimate gas của registerSerialNumbers cho một danh sách serial (không gửi transaction)
+     */
+    public BigInteger estimateRegisterSerialNumbersGas(BigInteger batchId, List<String> serialNumbers) throws Exception {
+        String contractAddress = blockchainConfig.getContractAddress();
+        if (contractAddress == null || contractAddress.isEmpty()) {
+            throw new IllegalStateException("Contract address not configured");
+        }
+
+        String encodedFunction = FunctionEncoder.encode(buildRegisterSerialNumbersFunction(batchId, serialNumbers));
+        EthEstimateGas response = web3j.ethEstimateGas(
+                Transaction.createEthCallTransaction(getCallerAddress(), contractAddress, encodedFunction)
+        ).send();
+
+        if (response.hasError()) {
+            throw new RuntimeException("Gas estimation failed: " + response.getError().getMessage());
+        }
+        return response.getAmountUsed();
+    }
+
     /**
      * Get transaction receipt by hash
      */
@@ -746,6 +709,29 @@ public class BlockchainService {
         }
     }
 
+    /**
+     * Receipt của giao dịch nếu đã được mined. Khác {@link #getTransactionReceipt}, lỗi RPC được ném ra
+     * thay vì coi như chưa có receipt.
+     */
+    public Optional<TransactionReceipt> findReceipt(String transactionHash) throws IOException {
+        EthGetTransactionReceipt response = web3j.ethGetTransactionReceipt(transactionHash).send();
+        if (response.hasError()) {
+            throw new IOException("eth_getTransactionReceipt failed: " + response.getError().getMessage());
+        }
+        return response.getTransactionReceipt();
+    }
+
+    /**
+     * Node còn biết giao dịch (đang chờ trong mempool hoặc đã mined); false nghĩa là giao dịch đã bị loại
+     */
+    public boolean isTransactionKnown(String transactionHash) throws IOException {
+        EthTransaction response = web3j.ethGetTransactionByHash(transactionHash).send();
+        if (response.hasError()) {
+            throw new IOException("eth_getTransactionByHash failed: " + response.getError().getMessage());
+        }
+        return response.getTransaction().isPresent();
+    }
+
     /**
      * Get the latest block number
      */
@@ -768,73 +754,119 @@ public class BlockchainService {
                 .orElse(false);
     }
 
-    /**
-     * Execute a transaction on the blockchain
-     */
-    private TransactionReceipt executeTransaction(Function function) throws Exception {
-        String contractAddress = blockchainConfig.getContractAddress();
-        if (contractAddress == null || contractAddress.isEmpty()) {
-            throw new IllegalStateException("Contract address not configured");
-        }
+    private Function buildRegisterSerialNumbersFunction(BigInteger batchId, List<String> serialNumbers) {
+        List<Utf8String> serialTypes = serialNumbers.stream()
+                .map(serial -> new Utf8String(sanitizeForBlockchain(serial, serial)))
+                .collect(Collectors.toList());
 
-        String encodedFunction = FunctionEncoder.encode(function);
-        TransactionManager transactionManager = new RawTransactionManager(web3j, credentials, blockchainConfig.getChainId());
-        
-        EthSendTransaction transactionResponse = transactionManager.sendTransaction(
-                gasProvider.getGasPrice(),
-                gasProvider.getGasLimit(),
-                contractAddress,
-                encodedFunction,
-                BigInteger.ZERO
+        return new Function(
+                REGISTER_SERIALS_FUNCTION,
+                Arrays.asList(
+                        new Uint256(batchId),
+                        new DynamicArray<>(Utf8String.class, serialTypes)
+                ),
+                Collections.emptyList()
         );
+    }
 
-        if (transactionResponse.hasError()) {
-            throw new RuntimeException("Transaction failed: " + transactionResponse.getError().getMessage());
-        }
+    /**
+     * Execute a transaction on the blockchain.
+     * Giao dịch được ký và gửi qua {@link BlockchainTransactionSender} (nonce cục bộ, không chờ giao dịch trước),
+     * receipt do {@link BlockchainReceiptTracker} hoàn tất; giao dịch bị revert hoặc quá hạn sẽ trả về lỗi.
+     */
+    private CompletableFuture<TransactionReceipt> executeTransaction(String failureMessage, Callable<Function> functionBuilder) {
+        return submitTransaction(failureMessage, functionBuilder)
+                .thenCompose(transactionHash -> confirmTransaction(failureMessage, transactionHash));
+    }
 
-        String transactionHash = transactionResponse.getTransactionHash();
-        
-        // Wait for transaction receipt with timeout
-        int maxAttempts = 30; // 30 seconds timeout
-        for (int i = 0; i < maxAttempts; i++) {
-            try {
-                Optional<TransactionReceipt> receipt = web3j.ethGetTransactionReceipt(transactionHash).send().getTransactionReceipt();
-                if (receipt.isPresent()) {
-                    return receipt.get();
-                }
-                Thread.sleep(1000); // Wait 1 second before retry
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Transaction receipt wait interrupted", e);
+    /**
+     * Chờ receipt của một giao dịch đã gửi; lỗi nếu giao dịch bị revert hoặc quá hạn receipt
+     */
+    public CompletableFuture<TransactionReceipt> confirmTransaction(String transactionHash) {
+        return confirmTransaction("Transaction " + transactionHash + " failed", transactionHash);
+    }
+
+    private CompletableFuture<String> submitTransaction(String failureMessage, Callable<Function> functionBuilder) {
+        Function function;
+        String contractAddress = blockchainConfig.getContractAddress();
+        try {
+            if (credentials == null) {
+                throw new IllegalStateException("Blockchain credentials not available");
+            }
+            if (contractAddress == null || contractAddress.isEmpty()) {
+                throw new IllegalStateException("Contract address not configured");
             }
+            function = functionBuilder.call();
+        } catch (Exception e) {
+            log.error(failureMessage, e);
+            return CompletableFuture.failedFuture(new RuntimeException(failureMessage, e));
         }
-        
-        // If no receipt after timeout, create a mock receipt for development
-        log.warn("No receipt received after {} seconds, creating mock receipt", maxAttempts);
-        TransactionReceipt mockReceipt = new TransactionReceipt();
-        mockReceipt.setTransactionHash(transactionHash);
-        mockReceipt.setBlockNumber("0x1");
-        mockReceipt.setStatus("0x1"); // Success status
-        return mockReceipt;
+
+        return transactionSender.submit(contractAddress, function.getName(), FunctionEncoder.encode(function))
+                .handle((transactionHash, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        log.error(failureMessage, cause);
+                        throw new CompletionException(new RuntimeException(failureMessage, cause));
+                    }
+                    return transactionHash;
+                });
+    }
+
+    private CompletableFuture<TransactionReceipt> confirmTransaction(String failureMessage, String transactionHash) {
+        return receiptTracker.track(transactionHash)
+                .handle((receipt, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        log.error(failureMessage, cause);
+                        throw new CompletionException(new RuntimeException(failureMessage, cause));
+                    }
+                    if (!receipt.isStatusOK()) {
+                        log.error("{}: transaction {} reverted", failureMessage, receipt.getTransactionHash());
+                        throw new CompletionException(new RuntimeException(
+                                failureMessage + ": transaction " + receipt.getTransactionHash() + " reverted"));
+                    }
+                    return receipt;
+                });
     }
 
     /**
-     * Execute a call (read-only) on the blockchain
+     * Execute a call (read-only) on the blockchain.
+     * Các call đồng thời được gom thành một JSON-RPC batch bởi {@link BlockchainCallAggregator}.
      */
-    private List<Type> executeCall(Function function) throws Exception {
+    private CompletableFuture<List<Type>> executeCallAsync(Function function) {
         String contractAddress = blockchainConfig.getContractAddress();
         if (contractAddress == null || contractAddress.isEmpty()) {
-            throw new IllegalStateException("Contract address not configured");
+            return CompletableFuture.failedFuture(new IllegalStateException("Contract address not configured"));
         }
 
         String encodedFunction = FunctionEncoder.encode(function);
         String fromAddress = credentials != null ? credentials.getAddress() : null;
-        EthCall response = web3j.ethCall(
-                Transaction.createEthCallTransaction(fromAddress, contractAddress, encodedFunction),
-                DefaultBlockParameterName.LATEST
-        ).send();
+        return callAggregator.call(Transaction.createEthCallTransaction(fromAddress, contractAddress, encodedFunction))
+                .thenApply(response -> {
+                    if (response.hasError()) {
+                        throw new CompletionException(new RuntimeException(
+                                function.getName() + " call failed: " + response.getError().getMessage()));
+                    }
+                    return FunctionReturnDecoder.decode(response.getValue(), function.getOutputParameters());
+                });
+    }
 
-        return FunctionReturnDecoder.decode(response.getValue(), function.getOutputParameters());
+    /**
+     * Chờ kết quả blockchain với thời hạn, để request thread (Tomcat) không bị giữ vô thời hạn.
+     * Giao dịch vẫn có thể được mined sau khi hết hạn; receipt tracker/outbox sẽ ghi nhận sau.
+     */
+    public <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get(awaitTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Blockchain did not respond within " + awaitTimeoutSeconds + " seconds");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
     }
 
     public String getCallerAddress() {
@@ -0,0 +1,147 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.config.BlockchainConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Nonce-managed submission engine for contract transactions.
+ *
+ * Every transaction signed with the backend {@link Credentials} goes through a single
+ * submission thread that keeps a local nonce counter, signs the transaction and pushes
+ * it to the node without waiting for earlier receipts. The counter is resynchronised
+ * from the node's pending nonce whenever the node rejects a nonce or the connection fails.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlockchainTransactionSender {
+
+    private final Web3j web3j;
+    private final Credentials credentials;
+    private final ContractGasProvider gasProvider;
+    private final BlockchainConfig blockchainConfig;
+    private final BlockchainExecutors executors;
+
+    @Value("${blockchain.tx.nonce-retries:3}")
+    private int nonceRetries;
+
+    // Chỉ được đọc/ghi trên write thread
+    private BigInteger nextNonce;
+    // Đặt từ thread khác, write thread xoá nonce cục bộ trước lần gửi kế tiếp
+    private final AtomicBoolean resetRequested = new AtomicBoolean();
+
+    /**
+     * Sign and send a contract call, completing with the transaction hash once the node accepted it.
+     * {@code functionName} selects the gas price and limit from the {@link ContractGasProvider}.
+     */
+    public CompletableFuture<String> submit(String to, String functionName, String encodedFunction) {
+        if (credentials == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Blockchain credentials not available"));
+        }
+        try {
+            // Write pool chỉ có một thread để đảm bảo nonce được cấp và gửi lên node theo đúng thứ tự
+            return CompletableFuture.supplyAsync(() -> sendWithNonce(to, functionName, encodedFunction), executors.getWriteExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Too many pending blockchain transactions", e));
+        }
+    }
+
+    /**
+     * Drop the local nonce so the next submission reloads it from the node. Only raises a flag, so it
+     * works even when the write queue is full.
+     */
+    public void resetNonce() {
+        resetRequested.set(true);
+    }
+
+    public String getSenderAddress() {
+        return credentials != null ? credentials.getAddress() : null;
+    }
+
+    private String sendWithNonce(String to, String functionName, String encodedFunction) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (resetRequested.getAndSet(false)) {
+                    nextNonce = null;
+                }
+                if (nextNonce == null) {
+                    nextNonce = fetchPendingNonce();
+                    log.info("Loaded nonce {} for {}", nextNonce, credentials.getAddress());
+                }
+
+                BigInteger nonce = nextNonce;
+                String signedTransaction = sign(nonce, to, functionName, encodedFunction);
+                EthSendTransaction response = web3j.ethSendRawTransaction(signedTransaction).send();
+
+                if (!response.hasError()) {
+                    nextNonce = nonce.add(BigInteger.ONE);
+                    log.debug("Submitted transaction {} with nonce {}", response.getTransactionHash(), nonce);
+                    return response.getTransactionHash();
+                }
+
+                String error = response.getError().getMessage();
+                if (error != null && error.toLowerCase().contains("already known")) {
+                    // Node đã có đúng giao dịch này trong mempool (gửi lại sau lỗi mạng)
+                    nextNonce = nonce.add(BigInteger.ONE);
+                    return Hash.sha3(signedTransaction);
+                }
+                if (isNonceError(error) && attempt < nonceRetries) {
+                    log.warn("Node rejected nonce {} ({}), resyncing", nonce, error);
+                    nextNonce = null;
+                    continue;
+                }
+                throw new RuntimeException("Transaction failed: " + error);
+
+            } catch (IOException e) {
+                // Không biết node đã nhận giao dịch hay chưa -> đọc lại nonce ở lần gửi sau
+                nextNonce = null;
+                throw new RuntimeException("Failed to send transaction: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private String sign(BigInteger nonce, String to, String functionName, String encodedFunction) {
+        RawTransaction rawTransaction = RawTransaction.createTransaction(
+                nonce,
+                gasProvider.getGasPrice(functionName),
+                gasProvider.getGasLimit(functionName),
+                to,
+                BigInteger.ZERO,
+                encodedFunction
+        );
+        byte[] signed = TransactionEncoder.signMessage(rawTransaction, blockchainConfig.getChainId(), credentials);
+        return Numeric.toHexString(signed);
+    }
+
+    private BigInteger fetchPendingNonce() throws IOException {
+        return web3j.ethGetTransactionCount(credentials.getAddress(), DefaultBlockParameterName.PENDING)
+                .send()
+                .getTransactionCount();
+    }
+
+    private boolean isNonceError(String message) {
+        if (message == null) {
+            return false;
+        }
+        String lower = message.toLowerCase();
+        return lower.contains("nonce") || lower.contains("replacement transaction");
+    }
+}
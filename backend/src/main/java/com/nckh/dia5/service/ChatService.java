@@ -1,34 +1,58 @@
 package com.nckh.dia5.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nckh.dia5.model.ChatMessage;
 import com.nckh.dia5.model.ChatSession;
 import com.nckh.dia5.model.User;
 import com.nckh.dia5.repository.ChatMessageRepository;
 import com.nckh.dia5.repository.ChatSessionRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.*;
+import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChatService {
 
-    private final RestTemplate restTemplate;
+    private final PythonServiceClient chatbotClient;
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final AuthService authService;
+    private final ObjectMapper objectMapper;
 
-    @Value("${chatbot.service.url}")
-    private String chatbotServiceUrl;
+    // StringHttpMessageConverter lấy charset từ Content-Type của response; thiếu charset thì ghi ISO-8859-1,
+    // làm hỏng tiếng Việt. Vì vậy cả response lẫn từng chunk đều khai báo UTF-8.
+    private static final MediaType SSE_DATA_TYPE = new MediaType("text", "plain", StandardCharsets.UTF_8);
+    private static final MediaType SSE_STREAM_TYPE = new MediaType("text", "event-stream", StandardCharsets.UTF_8);
+
+    @Value("${chatbot.service.stream-timeout-ms:180000}")
+    private long streamTimeoutMs;
+
+    // Lưu câu trả lời AI sau khi stream kết thúc, không chặn thread của HTTP client
+    private final ExecutorService writeBehindExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Tạo session chat mới
@@ -59,26 +83,20 @@ public class ChatService {
      */
     public ChatMessage saveUserMessage(String sessionId, String messageText) {
         try {
-            ChatSession session = getChatSession(sessionId);
-
             ChatMessage message = new ChatMessage();
-            message.setSession(session);
-            message.setMessageOrder(session.getTotalMessages() + 1);
             message.setSender(ChatMessage.Sender.user);
             message.setMessageText(messageText);
             message.setMessageType(ChatMessage.MessageType.text);
             message.setTimestamp(LocalDateTime.now());
             message.setContainsUrgencyKeywords(containsUrgencyKeywords(messageText));
 
-            ChatMessage savedMessage = chatMessageRepository.save(message);
-
-            // Cập nhật session
-            session.setTotalMessages(session.getTotalMessages() + 1);
-            chatSessionRepository.save(session);
+            ChatMessage savedMessage = appendForCurrentUser(sessionId, message);
 
             log.info("Saved user message for session: {}", sessionId);
             return savedMessage;
 
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error saving user message for session: {}", sessionId, e);
             throw new RuntimeException("Không thể lưu tin nhắn: " + e.getMessage());
@@ -91,68 +109,195 @@ public class ChatService {
     public ChatMessage saveAiMessage(String sessionId, String messageText,
             Double confidence, Integer processingTime, String sourcesJson) {
         try {
-            ChatSession session = getChatSession(sessionId);
-
-            ChatMessage message = new ChatMessage();
-            message.setSession(session);
-            message.setMessageOrder(session.getTotalMessages() + 1);
-            message.setSender(ChatMessage.Sender.ai);
-            message.setMessageText(messageText);
-            message.setMessageType(ChatMessage.MessageType.text);
-            message.setTimestamp(LocalDateTime.now());
-
-            if (confidence != null) {
-                message.setAiConfidence(java.math.BigDecimal.valueOf(confidence));
-            }
-            if (processingTime != null) {
-                message.setProcessingTimeMs(processingTime);
-            }
-            // ✅ NEW: Set sources JSON
-            if (sourcesJson != null && !sourcesJson.trim().isEmpty()) {
-                message.setSourcesJson(sourcesJson);
-            }
-
-            ChatMessage savedMessage = chatMessageRepository.save(message);
-
-            // Cập nhật session
-            session.setTotalMessages(session.getTotalMessages() + 1);
-            chatSessionRepository.save(session);
-
+            ChatMessage message = newAiMessage(messageText, confidence, processingTime, sourcesJson);
+            ChatMessage savedMessage = appendForCurrentUser(sessionId, message);
             log.info("Saved AI message for session: {}", sessionId);
             return savedMessage;
-
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error saving AI message for session: {}", sessionId, e);
             throw new RuntimeException("Không thể lưu phản hồi AI: " + e.getMessage());
         }
     }
 
+    private ChatMessage newAiMessage(String messageText, Double confidence, Integer processingTime, String sourcesJson) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(ChatMessage.Sender.ai);
+        message.setMessageText(messageText);
+        message.setMessageType(ChatMessage.MessageType.text);
+        message.setTimestamp(LocalDateTime.now());
+
+        if (confidence != null) {
+            message.setAiConfidence(java.math.BigDecimal.valueOf(confidence));
+        }
+        if (processingTime != null) {
+            message.setProcessingTimeMs(processingTime);
+        }
+        // ✅ NEW: Set sources JSON
+        if (sourcesJson != null && !sourcesJson.trim().isEmpty()) {
+            message.setSourcesJson(sourcesJson);
+        }
+        return message;
+    }
+
     /**
-     * Gọi Python chatbot service để get streaming response
+     * Ghi tin nhắn vào session của user hiện tại; message_order được cấp nguyên tử ở database
+     * (tăng total_messages và insert trong một transaction), không cần load session.
+     * Session chưa tồn tại thì được tạo tự động như trước.
      */
-    public void sendToChatbot(String sessionId, String query) {
-        try {
-            String url = chatbotServiceUrl + "/chat/stream";
+    private ChatMessage appendForCurrentUser(String sessionId, ChatMessage message) {
+        User currentUser = authService.getCurrentUser();
+        ChatMessage saved = chatMessageRepository.append(sessionId, currentUser.getId(), message);
+        if (saved == null) {
+            createSessionIfMissing(sessionId, currentUser);
+            saved = chatMessageRepository.append(sessionId, currentUser.getId(), message);
+            if (saved == null) {
+                throw new IllegalArgumentException("Chat session not found: " + sessionId);
+            }
+        }
+        saved.setSession(chatSessionRepository.getReferenceById(sessionId));
+        return saved;
+    }
+
+    /**
+     * Lưu tin nhắn user, gọi Python chatbot và chuyển tiếp stream câu trả lời tới client qua SSE.
+     * Các chunk được gom lại và câu trả lời AI được lưu (write-behind) khi stream kết thúc thành công,
+     * kể cả khi client đã ngắt kết nối giữa chừng; stream lỗi từ chatbot thì không lưu câu trả lời dở dang.
+     */
+    public SseEmitter streamChatResponse(String sessionId, String query) {
+        saveUserMessage(sessionId, query);
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs) {
+            @Override
+            protected void extendResponse(ServerHttpResponse outputMessage) {
+                outputMessage.getHeaders().setContentType(SSE_STREAM_TYPE);
+                super.extendResponse(outputMessage);
+            }
+        };
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        emitter.onTimeout(() -> clientGone.set(true));
+        emitter.onError(error -> clientGone.set(true));
 
-            Map<String, Object> requestBody = Map.of(
-                    "query", query,
-                    "session_id", sessionId);
+        StreamedAnswer answer = new StreamedAnswer();
+        Map<String, Object> requestBody = Map.of(
+                "query", query,
+                "session_id", sessionId);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("User-Agent", "Dia5-Backend/1.0");
+        log.info("Streaming chatbot response for session: {}", sessionId);
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+        chatbotClient.streamLines("/chat/stream", requestBody, Map.of(), line -> {
+            if (!line.startsWith("data:")) {
+                return;
+            }
+            String data = line.substring(5).trim();
+            if (data.isEmpty()) {
+                return;
+            }
+            answer.accept(data);
+            if (!clientGone.get()) {
+                try {
+                    emitter.send(SseEmitter.event().data(data, SSE_DATA_TYPE));
+                } catch (IOException | IllegalStateException e) {
+                    // Client đã đóng kết nối: tiếp tục gom câu trả lời để lưu
+                    clientGone.set(true);
+                }
+            }
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                log.error("Chatbot stream failed for session: {}: {}", sessionId, cause.getMessage());
+                sendStreamError(emitter, clientGone, cause.getMessage());
+            }
+            if (!clientGone.get()) {
+                emitter.complete();
+            }
 
-            log.info("Sending request to chatbot service: {} for session: {}", url, sessionId);
+            if (error != null) {
+                // Câu trả lời dở dang không được lưu vào lịch sử như một câu trả lời hoàn chỉnh
+                if (answer.hasText()) {
+                    log.warn("Discarding partial chatbot answer for session {} after stream failure", sessionId);
+                }
+            } else if (answer.hasText()) {
+                writeBehindExecutor.execute(() -> saveStreamedAnswer(sessionId, answer));
+            } else {
+                log.warn("Chatbot stream for session {} ended without content", sessionId);
+            }
+        });
 
-            // Gọi async - không chờ response ở đây vì là streaming
-            // Frontend sẽ connect trực tiếp tới Python service để nhận stream
-            restTemplate.postForEntity(url, entity, String.class);
+        return emitter;
+    }
 
+    private void sendStreamError(SseEmitter emitter, AtomicBoolean clientGone, String message) {
+        if (clientGone.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().data(objectMapper.writeValueAsString(
+                    Map.of("type", "error", "error", message != null ? message : "Chatbot stream failed")), SSE_DATA_TYPE));
+        } catch (IOException | IllegalStateException e) {
+            clientGone.set(true);
+        }
+    }
+
+    private void saveStreamedAnswer(String chatSessionId, StreamedAnswer answer) {
+        try {
+            // Chạy ngoài request nên không có user hiện tại; session đã được kiểm tra khi lưu tin nhắn user
+            ChatMessage message = newAiMessage(answer.text(), answer.confidence, answer.processingTime, answer.sourcesJson);
+            if (chatMessageRepository.append(chatSessionId, null, message) == null) {
+                throw new IllegalArgumentException("Chat session not found: " + chatSessionId);
+            }
+            log.info("Saved AI message for session: {}", chatSessionId);
         } catch (Exception e) {
-            log.error("Error calling chatbot service for session: {}", sessionId, e);
-            // Không throw exception vì đây chỉ là notification
+            log.error("Error saving streamed AI message for session: {}", chatSessionId, e);
+        }
+    }
+
+    /**
+     * Gom các event của stream chatbot: {"chunk": ...} cho từng đoạn văn bản, {"type": "final", ...} cho metadata
+     */
+    private class StreamedAnswer {
+
+        private final StringBuilder text = new StringBuilder();
+        private volatile Double confidence;
+        private volatile Integer processingTime;
+        private volatile String sourcesJson;
+
+        // Được gọi tuần tự từ line subscriber; text được đọc lại trên thread write-behind
+        void accept(String data) {
+            try {
+                JsonNode event = objectMapper.readTree(data);
+                if (event.hasNonNull("chunk")) {
+                    synchronized (text) {
+                        text.append(event.get("chunk").asText());
+                    }
+                } else if ("final".equals(event.path("type").asText())) {
+                    if (event.hasNonNull("confidence")) {
+                        confidence = event.get("confidence").asDouble();
+                    }
+                    if (event.hasNonNull("processing_time")) {
+                        processingTime = event.get("processing_time").asInt();
+                    }
+                    JsonNode sources = event.path("sources");
+                    if (sources.isArray() && !sources.isEmpty()) {
+                        sourcesJson = sources.toString();
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Ignoring malformed chatbot event: {}", data);
+            }
+        }
+
+        boolean hasText() {
+            synchronized (text) {
+                return !text.toString().isBlank();
+            }
+        }
+
+        String text() {
+            synchronized (text) {
+                return text.toString();
+            }
         }
     }
 
@@ -217,15 +362,20 @@ public class ChatService {
     /**
      * Health check chatbot service
      */
-    public boolean isChatbotServiceHealthy() {
-        try {
-            String url = chatbotServiceUrl + "/health";
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (Exception e) {
-            log.warn("Chatbot service health check failed", e);
-            return false;
-        }
+    public CompletableFuture<Boolean> isChatbotServiceHealthy() {
+        return chatbotClient.get("/health")
+                .handle((status, error) -> {
+                    if (error != null) {
+                        log.warn("Chatbot service health check failed: {}", error.getMessage());
+                        return false;
+                    }
+                    return status == HttpStatus.OK.value();
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeBehindExecutor.shutdown();
     }
 
     // Helper methods
@@ -245,6 +395,27 @@ public class ChatService {
                 });
     }
 
+    private void createSessionIfMissing(String sessionId, User currentUser) {
+        if (chatSessionRepository.existsById(sessionId)) {
+            // Session thuộc user khác
+            throw new IllegalArgumentException("Chat session not found: " + sessionId);
+        }
+        // Tự động tạo session nếu không tồn tại
+        log.info("Session {} not found, creating new session for user {}", sessionId, currentUser.getId());
+        ChatSession newSession = new ChatSession();
+        newSession.setId(sessionId);
+        newSession.setUser(currentUser);
+        newSession.setSessionType(ChatSession.SessionType.general_question);
+        newSession.setStartedAt(LocalDateTime.now());
+        newSession.setTotalMessages(0);
+        try {
+            chatSessionRepository.saveAndFlush(newSession);
+        } catch (DataIntegrityViolationException e) {
+            // Request khác vừa tạo cùng session -> append lại là đủ
+            log.debug("Session {} created concurrently", sessionId);
+        }
+    }
+
     private boolean containsUrgencyKeywords(String text) {
         String lowerText = text.toLowerCase();
         String[] urgencyKeywords = {
@@ -0,0 +1,272 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.model.ProductItem;
+import com.nckh.dia5.model.Shipment;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import com.nckh.dia5.repository.ShipmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-memory counters behind the traceability and manufacturer dashboards.
+ *
+ * Counters are rebuilt from GROUP BY rollups at startup and every
+ * {@code dashboard.stats.rebuild-interval-ms}. In between, batch and shipment writes (through
+ * {@code DashboardStatsListener}) and product item writes (from {@link ProductItemService},
+ * {@link SerialRegistrationService} and the indexer) apply deltas after commit, so reads never
+ * touch the tables. Product item deltas from bulk updates assume the usual transition
+ * (CREATED → REGISTERED → REDEEMED); the next rebuild corrects anything else, as well as
+ * writes made by other nodes.
+ *
+ * Until the first rebuild completes (it runs on {@link ApplicationReadyEvent}), reads return
+ * zeros instead of querying the tables on the request path.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardStatsService {
+
+    private static final int MONTHS_KEPT = 12;
+    private static final Counters EMPTY = new Counters();
+
+    private final DrugBatchRepository drugBatchRepository;
+    private final ShipmentRepository shipmentRepository;
+    private final ProductItemRepository productItemRepository;
+
+    private volatile Counters counters;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.stats.rebuild-interval-ms:600000}",
+            initialDelayString = "${dashboard.stats.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Counters fresh = new Counters();
+        try {
+            for (Object[] row : drugBatchRepository.countAndSumQuantityByStatus()) {
+                if (row[0] != null) {
+                    fresh.batches.get((DrugBatch.BatchStatus) row[0]).add(((Number) row[1]).longValue());
+                }
+                fresh.batchQuantity.add(((Number) row[2]).longValue());
+            }
+            for (Object[] row : shipmentRepository.countGroupedByStatus()) {
+                if (row[0] != null) {
+                    fresh.shipments.get((Shipment.ShipmentStatus) row[0]).add(((Number) row[1]).longValue());
+                }
+            }
+            LocalDateTime since = YearMonth.now().minusMonths(MONTHS_KEPT - 1L).atDay(1).atStartOfDay();
+            for (Object[] row : shipmentRepository.countByMonthSince(since)) {
+                YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+                fresh.shipmentsByMonth.computeIfAbsent(month, key -> new LongAdder()).add(((Number) row[2]).longValue());
+            }
+            for (Object[] row : productItemRepository.countGroupedByStatusAndRegistered()) {
+                long count = ((Number) row[2]).longValue();
+                if (row[0] != null) {
+                    fresh.items.get((ProductItem.ProductItemStatus) row[0]).add(count);
+                }
+                if (Boolean.TRUE.equals(row[1])) {
+                    fresh.itemsRegistered.add(count);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild dashboard statistics: {}", e.getMessage());
+            return;
+        }
+        counters = fresh;
+        log.debug("Dashboard statistics rebuilt in {} ms", System.currentTimeMillis() - start);
+    }
+
+    public void onBatchChanged(DrugBatch.BatchStatus oldStatus, Long oldQuantity,
+            DrugBatch.BatchStatus newStatus, Long newQuantity) {
+        afterCommit(current -> {
+            if (oldStatus != null) {
+                current.batches.get(oldStatus).decrement();
+            }
+            if (newStatus != null) {
+                current.batches.get(newStatus).increment();
+            }
+            current.batchQuantity.add(valueOf(newQuantity) - valueOf(oldQuantity));
+        });
+    }
+
+    public void onShipmentChanged(Shipment.ShipmentStatus oldStatus, LocalDateTime oldDate,
+            Shipment.ShipmentStatus newStatus, LocalDateTime newDate) {
+        afterCommit(current -> {
+            if (oldStatus != null) {
+                current.shipments.get(oldStatus).decrement();
+            }
+            if (newStatus != null) {
+                current.shipments.get(newStatus).increment();
+            }
+            // Shipment chỉ tồn tại trước/sau thay đổi khi có status tương ứng (null = persist/remove)
+            YearMonth oldMonth = oldStatus != null ? monthOf(oldDate) : null;
+            YearMonth newMonth = newStatus != null ? monthOf(newDate) : null;
+            if (!Objects.equals(oldMonth, newMonth)) {
+                if (oldMonth != null) {
+                    current.month(oldMonth).decrement();
+                }
+                if (newMonth != null) {
+                    current.month(newMonth).increment();
+                }
+            }
+        });
+    }
+
+    public void onItemsCreated(long count) {
+        moveItems(null, ProductItem.ProductItemStatus.CREATED, count, 0);
+    }
+
+    public void onItemsRegistered(long count) {
+        moveItems(ProductItem.ProductItemStatus.CREATED, ProductItem.ProductItemStatus.REGISTERED, count, count);
+    }
+
+    public void onItemsRedeemed(long count) {
+        moveItems(ProductItem.ProductItemStatus.REGISTERED, ProductItem.ProductItemStatus.REDEEMED, count, 0);
+    }
+
+    public void onItemStatusChanged(ProductItem.ProductItemStatus oldStatus, ProductItem.ProductItemStatus newStatus,
+            boolean newlyRegistered) {
+        moveItems(oldStatus, newStatus, 1, newlyRegistered ? 1 : 0);
+    }
+
+    private void moveItems(ProductItem.ProductItemStatus from, ProductItem.ProductItemStatus to, long count,
+            long registered) {
+        if (count <= 0 || from == to && registered == 0) {
+            return;
+        }
+        afterCommit(current -> {
+            if (from != null) {
+                current.items.get(from).add(-count);
+            }
+            current.items.get(to).add(count);
+            current.itemsRegistered.add(registered);
+        });
+    }
+
+    public long getBatchCount() {
+        return sum(counters().batches);
+    }
+
+    public long getBatchCount(DrugBatch.BatchStatus status) {
+        return counters().batches.get(status).sum();
+    }
+
+    public long getTotalBatchQuantity() {
+        return counters().batchQuantity.sum();
+    }
+
+    public long getShipmentCount() {
+        return sum(counters().shipments);
+    }
+
+    public long getShipmentCount(Shipment.ShipmentStatus status) {
+        return counters().shipments.get(status).sum();
+    }
+
+    public long getShipmentCount(YearMonth month) {
+        LongAdder adder = counters().shipmentsByMonth.get(month);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    public long getProductItemCount() {
+        return sum(counters().items);
+    }
+
+    public long getRegisteredProductItemCount() {
+        return counters().itemsRegistered.sum();
+    }
+
+    public Map<String, Long> getProductItemStatusCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        counters().items.forEach((status, adder) -> result.put(status.name(), adder.sum()));
+        return result;
+    }
+
+    private Counters counters() {
+        // Chưa build xong lúc khởi động: trả về 0, không rebuild trên luồng request
+        Counters current = counters;
+        return current != null ? current : EMPTY;
+    }
+
+    private void afterCommit(Consumer<Counters> delta) {
+        Runnable apply = () -> {
+            Counters current = counters;
+            if (current != null) {
+                delta.accept(current);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static YearMonth monthOf(LocalDateTime date) {
+        return date != null ? YearMonth.from(date) : null;
+    }
+
+    private static long sum(Map<?, LongAdder> adders) {
+        long total = 0;
+        for (LongAdder adder : adders.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    /**
+     * One generation of counters. The enum maps are filled for every constant up front and never
+     * structurally modified afterwards, so concurrent reads and {@link LongAdder} updates are safe.
+     */
+    private static final class Counters {
+
+        private final Map<DrugBatch.BatchStatus, LongAdder> batches = adders(DrugBatch.BatchStatus.class);
+        private final LongAdder batchQuantity = new LongAdder();
+        private final Map<Shipment.ShipmentStatus, LongAdder> shipments = adders(Shipment.ShipmentStatus.class);
+        private final Map<YearMonth, LongAdder> shipmentsByMonth = new ConcurrentHashMap<>();
+        private final Map<ProductItem.ProductItemStatus, LongAdder> items = adders(ProductItem.ProductItemStatus.class);
+        private final LongAdder itemsRegistered = new LongAdder();
+
+        LongAdder month(YearMonth month) {
+            return shipmentsByMonth.computeIfAbsent(month, key -> new LongAdder());
+        }
+
+        private static <E extends Enum<E>> Map<E, LongAdder> adders(Class<E> type) {
+            Map<E, LongAdder> map = new EnumMap<>(type);
+            for (E constant : type.getEnumConstants()) {
+                map.put(constant, new LongAdder());
+            }
+            return map;
+        }
+    }
+}
@@ -72,7 +72,7 @@ public class DistributorAuthService {
 
         // Create custom authentication token for distributor
         Authentication authentication = new UsernamePasswordAuthenticationToken(
-                savedUser.getEmail(), 
+                savedUser, 
                 null, 
                 savedUser.getAuthorities()
         );
@@ -129,6 +129,11 @@ public class DistributorAuthService {
             return null;
         }
 
+        // Filter JWT đã nạp sẵn principal, chỉ query lại khi principal thuộc loại tài khoản khác
+        if (authentication.getPrincipal() instanceof DistributorUser user) {
+            return user;
+        }
+
         String email = authentication.getName();
         return distributorUserRepository.findByEmail(email).orElse(null);
     }
@@ -3,6 +3,7 @@ package com.nckh.dia5.service;
 import com.nckh.dia5.dto.blockchain.CreateDistributorShipmentRequest;
 import com.nckh.dia5.dto.blockchain.ShipmentDto;
 import com.nckh.dia5.dto.blockchain.DrugBatchDto;
+import com.nckh.dia5.dto.common.CursorPage;
 import com.nckh.dia5.handler.ResourceNotFoundException;
 import com.nckh.dia5.model.DistributorInventory;
 import com.nckh.dia5.model.DrugBatch;
@@ -11,8 +12,11 @@ import com.nckh.dia5.model.Shipment;
 import com.nckh.dia5.repository.DrugBatchRepository;
 import com.nckh.dia5.repository.PharmaCompanyRepository;
 import com.nckh.dia5.repository.ShipmentRepository;
+import com.nckh.dia5.util.NdjsonStreams;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
@@ -22,7 +26,8 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -35,6 +40,7 @@ public class DistributorShipmentService {
     private final BlockchainService blockchainService;
     private final ShipmentAdapter shipmentAdapter;
     private final DistributorInventoryService distributorInventoryService;
+    private final EntityManager entityManager;
 
     @Transactional
     public ShipmentDto createShipmentToPharmacy(CreateDistributorShipmentRequest request) {
@@ -114,12 +120,12 @@ public class DistributorShipmentService {
             BigInteger shipmentId = BigInteger.valueOf(System.currentTimeMillis());
             
             try {
-                receipt = blockchainService.createShipment(
+                receipt = blockchainService.await(blockchainService.createShipment(
                     request.getBatchId(),
                     pharmacy.getWalletAddress(),
                     BigInteger.valueOf(request.getQuantity()),
                     trackingNumber  // Pass the meaningful tracking number
-                ).get();
+                ));
                 blockchainSuccess = true;
                 log.info("Shipment created on blockchain successfully. TX: {}, Tracking: {}", 
                         receipt.getTransactionHash(), trackingNumber);
@@ -171,9 +177,8 @@ public class DistributorShipmentService {
             additionalInfo.put("pharmacy_name", pharmacy.getName());
             additionalInfo.put("pharmacy_address", pharmacy.getAddress());
             
-            String currentNotes = shipment.getNotes() != null ? shipment.getNotes() : "{}";
-            // Merge with existing notes (which contains blockchain data)
-            shipment.setNotes(currentNotes.replace("}", ", \"shipment_info\": " + toJson(additionalInfo) + "}"));
+            // Metadata blockchain nằm ở các cột riêng, notes chỉ còn thông tin vận chuyển
+            shipment.setNotes("{\"shipment_info\": " + toJson(additionalInfo) + "}");
             
             // 10. ✅ Update batch quantity - giảm số lượng khi xuất kho
             // Khi xuất kho thì phải giảm quantity trong drug_batches
@@ -221,11 +226,27 @@ public class DistributorShipmentService {
         }
     }
 
-    public List<ShipmentDto> getAllShipments() {
-        List<Shipment> shipments = shipmentRepository.findAll();
-        return shipments.stream()
-                .map(s -> convertToDto(s, s.getDrugBatch(), s.getToCompany()))
-                .collect(Collectors.toList());
+    /**
+     * Keyset page of shipments ordered by id
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ShipmentDto> getShipments(Long cursor, Integer limit) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        List<Shipment> shipments = shipmentRepository.findByIdGreaterThanOrderByIdAsc(
+                CursorPage.resolveCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(shipments, pageSize, Shipment::getId,
+                s -> convertToDto(s, s.getDrugBatch(), s.getToCompany()));
+    }
+
+    /**
+     * Stream every shipment to the sink (NDJSON export) without holding them all in memory
+     */
+    @Transactional(readOnly = true)
+    public void exportShipments(Consumer<ShipmentDto> sink) {
+        try (Stream<Shipment> shipments = shipmentRepository.streamAllOrderById()) {
+            NdjsonStreams.exportRows(entityManager, shipments,
+                    s -> convertToDto(s, s.getDrugBatch(), s.getToCompany()), sink);
+        }
     }
 
     public ShipmentDto getShipmentById(Long id) {
@@ -254,7 +275,7 @@ public class DistributorShipmentService {
                     .transactionHash(batch.getTransactionHash())
                     .build();
             
-            log.info("📦 Including batch in DTO - Blockchain Batch ID: {}", batch.getBatchId());
+            log.debug("📦 Including batch in DTO - Blockchain Batch ID: {}", batch.getBatchId());
         }
         
         return ShipmentDto.builder()
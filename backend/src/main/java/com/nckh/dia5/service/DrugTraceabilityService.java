@@ -1,18 +1,26 @@
 package com.nckh.dia5.service;
 
+import com.nckh.dia5.config.CacheNames;
 import com.nckh.dia5.dto.blockchain.*;
+import com.nckh.dia5.dto.common.CursorPage;
 import com.nckh.dia5.handler.ResourceNotFoundException;
 import com.nckh.dia5.model.*;
 import com.nckh.dia5.repository.DrugBatchRepository;
 import com.nckh.dia5.repository.ShipmentRepository;
 import com.nckh.dia5.repository.BlockchainTransactionRepository;
 import com.nckh.dia5.repository.PharmaCompanyRepository;
+import com.nckh.dia5.repository.BlockchainOutboxRepository;
+import com.nckh.dia5.util.NdjsonStreams;
 import com.nckh.dia5.util.VietnameseUtils;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import java.math.BigInteger;
@@ -21,7 +29,9 @@ import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -32,11 +42,16 @@ public class DrugTraceabilityService {
     private final ShipmentRepository shipmentRepository;
     private final BlockchainTransactionRepository blockchainTransactionRepository;
     private final PharmaCompanyRepository pharmaCompanyRepository;
+    private final BlockchainOutboxRepository outboxRepository;
     private final BlockchainService blockchainService;
+    private final BlockchainIndexerService indexerService;
     private final ShipmentAdapter shipmentAdapter;
+    private final ShipmentIdentityResolver shipmentIdentityResolver;
     private final ProductItemService productItemService;
     private final PharmacyInventoryService pharmacyInventoryService;
     private final DistributorInventoryService distributorInventoryService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
 
     /**
      * Create a new drug batch
@@ -62,43 +77,8 @@ public class DrugTraceabilityService {
             log.info("Creating batch: batchId={}, drugName={}, manufacturer={}, quantity={}", 
                      batchId, request.getDrugName(), request.getManufacturer(), request.getQuantity());
 
-            // Convert expiry date to timestamp
-            BigInteger expiryTimestamp = BigInteger.valueOf(
-                request.getExpiryDate().toEpochSecond(ZoneOffset.UTC)
-            );
-
-            TransactionReceipt receipt = null;
-            boolean blockchainSuccess = false;
-            
-            try {
-                // BỎ DẤU TIẾNG VIỆT trước khi đưa lên blockchain
-                String drugNameNoDiacritics = VietnameseUtils.removeVietnameseDiacritics(request.getDrugName());
-                String manufacturerNoDiacritics = VietnameseUtils.removeVietnameseDiacritics(request.getManufacturer());
-                String storageNoDiacritics = VietnameseUtils.removeVietnameseDiacritics(
-                    request.getStorageConditions() != null ? request.getStorageConditions() : "Bao quan o nhiet do phong"
-                );
-                
-                log.info("Sending to blockchain (no diacritics): drug={}, manufacturer={}", 
-                         drugNameNoDiacritics, manufacturerNoDiacritics);
-                
-                // Try to create batch on blockchain with timeout
-                receipt = blockchainService.issueBatch(
-                    drugNameNoDiacritics,
-                    manufacturerNoDiacritics,
-                    request.getBatchNumber(),
-                    BigInteger.valueOf(request.getQuantity()),
-                    expiryTimestamp,
-                    storageNoDiacritics
-                ).get(10, java.util.concurrent.TimeUnit.SECONDS); // 10 second timeout
-                blockchainSuccess = true;
-                log.info("Blockchain transaction successful: {}", receipt.getTransactionHash());
-            } catch (java.util.concurrent.TimeoutException te) {
-                log.warn("Blockchain transaction timed out, proceeding with offline mode");
-            } catch (Exception be) {
-                log.warn("Blockchain transaction failed: {}, proceeding with offline mode", be.getMessage());
-            }
-
-            // Create local entity (regardless of blockchain success)
+            // Lưu lô ở trạng thái chờ đồng bộ cùng outbox entry ISSUE_BATCH; sinh hộp thuốc, phát hành lên
+            // blockchain và đăng ký serial chạy nền trong BatchCreationJobService
             com.nckh.dia5.model.DrugBatch batch = new com.nckh.dia5.model.DrugBatch();
             batch.setBatchId(batchId);
             batch.setDrugName(request.getDrugName());
@@ -112,64 +92,15 @@ public class DrugTraceabilityService {
             batch.setStorageConditions(request.getStorageConditions() != null ? request.getStorageConditions() : "Bảo quản ở nhiệt độ phòng");
             batch.setStatus(com.nckh.dia5.model.DrugBatch.BatchStatus.MANUFACTURED);
             batch.setQrCode(qrCode);
-            
-            if (blockchainSuccess && receipt != null) {
-                batch.setTransactionHash(receipt.getTransactionHash());
-                // Set block number directly from receipt (BigInteger)
-                BigInteger blockNumber = receipt.getBlockNumber();
-                batch.setBlockNumber(blockNumber != null ? blockNumber : BigInteger.ONE);
-                batch.setIsSynced(true);
-            } else {
-                // Mark as pending sync for later retry
-                batch.setTransactionHash("PENDING_" + System.currentTimeMillis());
-                batch.setBlockNumber(BigInteger.ZERO);
-                batch.setIsSynced(false);
-            }
+            batch.setTransactionHash("PENDING_" + System.currentTimeMillis());
+            batch.setBlockNumber(BigInteger.ZERO);
+            batch.setIsSynced(false);
 
-            log.info("=== BEFORE SAVE: batchId={} ===", batch.getBatchId());
             batch = drugBatchRepository.save(batch);
-            log.info("=== AFTER SAVE: id={}, batchId={} ===", batch.getId(), batch.getBatchId());
-            drugBatchRepository.flush(); // Force immediate write to DB
-            log.info("=== AFTER FLUSH: id={}, batchId={} ===", batch.getId(), batch.getBatchId());
+            enqueueOutbox(BlockchainOutboxEntry.Operation.ISSUE_BATCH, batch.getId());
+            log.info("Batch saved, blockchain sync pending: id={}, batchId={}", batch.getId(), batch.getBatchId());
 
-            // Record blockchain transaction if successful
-            if (blockchainSuccess && receipt != null) {
-                recordBlockchainTransaction(receipt, "issueBatch", batch, null);
-            }
-
-            // AUTO-GENERATE PRODUCT ITEMS
-            List<ProductItem> generatedItems = List.of();
-            try {
-                log.info("Auto-generating {} product items for batch {}", request.getQuantity(), batch.getBatchNumber());
-                generatedItems = productItemService.autoGenerateItemsForNewBatch(batch, request.getQuantity());
-                log.info("Successfully auto-generated {} product items", generatedItems.size());
-            } catch (Exception e) {
-                log.error("Failed to auto-generate product items: {}", e.getMessage(), e);
-                // Don't fail the batch creation if item generation fails
-            }
-
-            if (!generatedItems.isEmpty()) {
-                List<String> serialNumbers = productItemService.extractSerialNumbers(generatedItems);
-                try {
-                    log.info("Registering {} serial numbers on blockchain for batch {}", serialNumbers.size(), batch.getBatchNumber());
-                    TransactionReceipt registerReceipt = blockchainService.registerSerialNumbers(batch.getBatchId(), serialNumbers)
-                            .get(20, java.util.concurrent.TimeUnit.SECONDS);
-                    productItemService.markItemsRegistered(generatedItems);
-                    batch.setRegisteredSerials((long) serialNumbers.size());
-                    drugBatchRepository.save(batch);
-                    recordBlockchainTransaction(registerReceipt, "registerSerialNumbers", batch, null);
-                    log.info("Serial numbers registered on blockchain successfully");
-                } catch (Exception e) {
-                    log.error("Failed to register serial numbers on blockchain: {}", e.getMessage(), e);
-                }
-            }
-
-            log.info("Batch created successfully: id={}, batchId={}, blockchain={}",
-                     batch.getId(), batchId, blockchainSuccess ? "synced" : "pending");
-
-            DrugBatchDto dto = mapToDrugBatchDto(batch);
-            log.info("=== RETURNING DTO: batchId={} ===", dto.getBatchId());
-            return dto;
+            return mapToDrugBatchDto(batch);
 
         } catch (IllegalArgumentException e) {
             log.error("Validation error: {}", e.getMessage());
@@ -180,6 +111,126 @@ public class DrugTraceabilityService {
         }
     }
 
+    /**
+     * Sinh hộp thuốc cho lô đã lưu (stage GENERATING_ITEMS của job tạo lô). Chạy lại an toàn: serial đã có bị bỏ qua.
+     */
+    public long generateBatchItems(BigInteger batchId) {
+        com.nckh.dia5.model.DrugBatch batch = drugBatchRepository.findByBatchId(batchId)
+                .orElseThrow(() -> new ResourceNotFoundException("Batch", "batchId", batchId));
+        return productItemService.autoGenerateItemsForNewBatch(batch, batch.getQuantity());
+    }
+
+    /**
+     * Transaction hash của issueBatch nếu lô đã được phát hành lên blockchain
+     */
+    public Optional<String> findIssuedBatchHash(Long batchDbId) {
+        com.nckh.dia5.model.DrugBatch batch = drugBatchRepository.findById(batchDbId)
+                .orElseThrow(() -> new ResourceNotFoundException("Batch", "id", batchDbId));
+        return Boolean.TRUE.equals(batch.getIsSynced()) ? Optional.of(batch.getTransactionHash()) : Optional.empty();
+    }
+
+    /**
+     * Gửi issueBatch cho lô đã lưu (gọi từ BlockchainOutboxService), trả về transaction hash khi node đã nhận.
+     * Không chờ receipt: outbox lưu hash trước rồi mới chờ, để lần thử lại không phát hành lô lần thứ hai.
+     */
+    public String submitBatchIssue(Long batchDbId) {
+        com.nckh.dia5.model.DrugBatch batch = drugBatchRepository.findById(batchDbId)
+                .orElseThrow(() -> new ResourceNotFoundException("Batch", "id", batchDbId));
+
+        // BỎ DẤU TIẾNG VIỆT trước khi đưa lên blockchain
+        String drugNameNoDiacritics = VietnameseUtils.removeVietnameseDiacritics(batch.getDrugName());
+        String manufacturerNoDiacritics = VietnameseUtils.removeVietnameseDiacritics(batch.getManufacturer());
+        String storageNoDiacritics = VietnameseUtils.removeVietnameseDiacritics(
+            batch.getStorageConditions() != null ? batch.getStorageConditions() : "Bao quan o nhiet do phong"
+        );
+        BigInteger expiryTimestamp = BigInteger.valueOf(batch.getExpiryDate().toEpochSecond(ZoneOffset.UTC));
+
+        log.info("Sending batch {} to blockchain (no diacritics): drug={}, manufacturer={}",
+                 batch.getBatchId(), drugNameNoDiacritics, manufacturerNoDiacritics);
+
+        return blockchainService.submitIssueBatch(
+            drugNameNoDiacritics,
+            manufacturerNoDiacritics,
+            batch.getBatchNumber(),
+            BigInteger.valueOf(batch.getQuantity()),
+            expiryTimestamp,
+            storageNoDiacritics
+        ).join();
+    }
+
+    /**
+     * Ghi receipt issueBatch vào lô. Chạy trong một transaction ngắn và đọc lại lô: bản load trước khi chờ
+     * receipt có thể đã cũ.
+     *
+     * @return transaction hash của issueBatch
+     */
+    public String completeBatchIssue(Long batchDbId, TransactionReceipt receipt) {
+        transactionTemplate.executeWithoutResult(status -> {
+            com.nckh.dia5.model.DrugBatch batch = drugBatchRepository.findById(batchDbId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Batch", "id", batchDbId));
+            batch.setTransactionHash(receipt.getTransactionHash());
+            BigInteger blockNumber = receipt.getBlockNumber();
+            batch.setBlockNumber(blockNumber != null ? blockNumber : BigInteger.ONE);
+            batch.setIsSynced(true);
+            batch = drugBatchRepository.save(batch);
+            recordBlockchainTransaction(receipt, "issueBatch", batch, null);
+            log.info("Batch {} issued on blockchain: {}", batch.getBatchId(), receipt.getTransactionHash());
+        });
+        return receipt.getTransactionHash();
+    }
+
+    /**
+     * Transaction hash của createShipment nếu shipment offline đã được đồng bộ lên blockchain
+     */
+    public Optional<String> findSyncedShipmentHash(Long shipmentDbId) {
+        Shipment shipment = shipmentRepository.findById(shipmentDbId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shipment", "id", shipmentDbId));
+        String createTxHash = shipment.getCreateTxHash();
+        return createTxHash != null && !createTxHash.startsWith("PENDING_") ? Optional.of(createTxHash) : Optional.empty();
+    }
+
+    /**
+     * Gửi lại createShipment cho shipment lưu ở chế độ offline (gọi từ BlockchainOutboxService), trả về
+     * transaction hash khi node đã nhận; như submitBatchIssue, việc chờ receipt do outbox đảm nhận.
+     */
+    public String submitShipmentCreation(Long shipmentDbId) {
+        Shipment pending = shipmentRepository.findWithPartiesAndBatchById(shipmentDbId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shipment", "id", shipmentDbId));
+
+        com.nckh.dia5.model.DrugBatch batch = pending.getDrugBatch();
+        Map<String, Object> blockchainData = shipmentAdapter.extractBlockchainData(pending);
+        String toAddress = (String) blockchainData.get("toAddress");
+        String trackingInfo = (String) blockchainData.get("trackingInfo");
+        if (trackingInfo == null || trackingInfo.isEmpty()) {
+            trackingInfo = pending.getShipmentCode();
+        }
+
+        return blockchainService.submitCreateShipment(
+            batch.getBatchId(),
+            toAddress,
+            BigInteger.valueOf(pending.getQuantity()),
+            trackingInfo
+        ).join();
+    }
+
+    /**
+     * Ghi receipt createShipment vào shipment offline trong một transaction ngắn, đọc lại shipment như
+     * completeBatchIssue
+     *
+     * @return transaction hash của createShipment
+     */
+    public String completeShipmentCreation(Long shipmentDbId, TransactionReceipt receipt) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Shipment shipment = shipmentRepository.findById(shipmentDbId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Shipment", "id", shipmentDbId));
+            shipmentAdapter.markSynced(shipment, receipt.getTransactionHash(), receipt.getBlockNumber());
+            shipment = shipmentRepository.save(shipment);
+            recordBlockchainTransaction(receipt, "createShipment", shipment.getDrugBatch(), shipment);
+            log.info("Pending shipment {} synced to blockchain: {}", shipment.getShipmentCode(), receipt.getTransactionHash());
+        });
+        return receipt.getTransactionHash();
+    }
+
     /**
      * Create a new shipment
      */
@@ -235,12 +286,12 @@ public class DrugTraceabilityService {
             
             // Try to create shipment on blockchain
             try {
-                receipt = blockchainService.createShipment(
+                receipt = blockchainService.await(blockchainService.createShipment(
                     request.getBatchId(),
                     request.getToAddress(),
                     BigInteger.valueOf(request.getQuantity()),
                     trackingInfo  // Pass tracking info to blockchain
-                ).get();
+                ));
                 blockchainSuccess = true;
                 log.info("Shipment created on blockchain successfully with tracking: {}", trackingInfo);
             } catch (Exception e) {
@@ -281,6 +332,10 @@ public class DrugTraceabilityService {
             shipment.setDrugBatch(batch);
 
             shipment = shipmentRepository.save(shipment);
+            if (!blockchainSuccess) {
+                // BlockchainOutboxService sẽ gửi lại createShipment khi chain sẵn sàng
+                enqueueOutbox(BlockchainOutboxEntry.Operation.CREATE_SHIPMENT, shipment.getId());
+            }
 
             // Update batch status
             batch.setStatus(com.nckh.dia5.model.DrugBatch.BatchStatus.IN_TRANSIT);
@@ -322,64 +377,13 @@ public class DrugTraceabilityService {
         try {
             log.info("Attempting to receive shipment with ID: {}", shipmentId);
 
-            // Try multiple lookup strategies to find the shipment
-            Shipment shipment = null;
-            
-            // Strategy 1: Look by shipment code (SHIP-{id})
-            Optional<Shipment> shipmentOpt = shipmentRepository.findByShipmentId(shipmentId);
-            if (shipmentOpt.isPresent()) {
-                shipment = shipmentOpt.get();
-                log.info("Found shipment by shipmentId: {}", shipment.getShipmentCode());
-            } else {
-                // Strategy 2: Look by blockchain_id in notes JSON field
-                log.info("Shipment not found by shipmentId, trying blockchain_id lookup...");
-                shipmentOpt = shipmentRepository.findByBlockchainId(shipmentId.toString());
-                if (shipmentOpt.isPresent()) {
-                    shipment = shipmentOpt.get();
-                    log.info("Found shipment by blockchain_id in notes: {}", shipment.getShipmentCode());
-                } else {
-                    // Strategy 3: Look by database ID as fallback
-                    try {
-                        shipment = shipmentRepository.findById(shipmentId.longValue()).orElse(null);
-                        if (shipment != null) {
-                            log.info("Found shipment by database ID: {}", shipment.getShipmentCode());
-                        }
-                    } catch (Exception e) {
-                        log.debug("Failed to find by database ID: {}", e.getMessage());
-                    }
-                }
-            }
-
-            if (shipment == null) {
-                throw new ResourceNotFoundException("Shipment", "shipmentId", shipmentId.toString());
-            }
+            // Một truy vấn cho mọi loại định danh (mã SHIP-, ID blockchain, ID database)
+            Shipment shipment = shipmentIdentityResolver.resolve(shipmentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Shipment", "shipmentId", shipmentId.toString()));
+            log.info("Resolved shipment {} to {}", shipmentId, shipment.getShipmentCode());
 
             // Get receiver address from shipment (not default manufacturer)
-            String receiverAddress = shipment.getToAddress();
-            if (receiverAddress == null) {
-                // Fallback: extract from notes if available
-                if (shipment.getNotes() != null && shipment.getNotes().contains("to_address")) {
-                    try {
-                        // Simple JSON parsing to extract to_address
-                        String notes = shipment.getNotes();
-                        int toAddressIndex = notes.indexOf("\"to_address\":");
-                        if (toAddressIndex != -1) {
-                            int startQuote = notes.indexOf("\"", toAddressIndex + 13);
-                            int endQuote = notes.indexOf("\"", startQuote + 1);
-                            if (startQuote != -1 && endQuote != -1) {
-                                receiverAddress = notes.substring(startQuote + 1, endQuote);
-                                log.info("Extracted receiver address from notes: {}", receiverAddress);
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to extract receiver address from notes: {}", e.getMessage());
-                    }
-                }
-                
-                if (receiverAddress == null) {
-                    receiverAddress = shipment.getToCompany() != null ? shipment.getToCompany().getWalletAddress() : null;
-                }
-            }
+            String receiverAddress = receiverAddressOf(shipment);
 
             if (receiverAddress == null) {
                 throw new IllegalStateException("Không thể xác định địa chỉ người nhận");
@@ -389,7 +393,8 @@ public class DrugTraceabilityService {
 
             // Try to receive shipment on blockchain (but don't fail if it doesn't work)
             try {
-                TransactionReceipt receipt = blockchainService.receiveShipment(shipmentId).get();
+                BigInteger chainShipmentId = shipment.getShipmentId() != null ? shipment.getShipmentId() : shipmentId;
+                TransactionReceipt receipt = blockchainService.await(blockchainService.receiveShipment(chainShipmentId));
                 // Record blockchain transaction
                 recordBlockchainTransaction(receipt, "receiveShipment", shipment.getDrugBatch(), shipment);
                 log.info("Shipment received on blockchain successfully");
@@ -444,6 +449,8 @@ public class DrugTraceabilityService {
             log.info("Shipment received successfully: shipmentCode={}", shipment.getShipmentCode());
             return mapToShipmentDto(shipment);
 
+        } catch (ResourceNotFoundException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to receive shipment", e);
             throw new RuntimeException("Không thể nhận shipment: " + e.getMessage(), e);
@@ -459,35 +466,11 @@ public class DrugTraceabilityService {
             log.info("Attempting to receive shipment by database ID: {}", databaseId);
 
             // Find the shipment by database ID first
-            Shipment shipment = shipmentRepository.findById(databaseId.longValue())
+            Shipment shipment = shipmentRepository.findWithPartiesAndBatchById(databaseId.longValue())
                     .orElseThrow(() -> new ResourceNotFoundException("Shipment", "id", databaseId.toString()));
 
             // Get the receiver address from the shipment (distributor address)
-            String receiverAddress = shipment.getToAddress();
-            if (receiverAddress == null) {
-                // Fallback: extract from notes if available
-                if (shipment.getNotes() != null && shipment.getNotes().contains("to_address")) {
-                    try {
-                        // Simple JSON parsing to extract to_address
-                        String notes = shipment.getNotes();
-                        int toAddressIndex = notes.indexOf("\"to_address\":");
-                        if (toAddressIndex != -1) {
-                            int startQuote = notes.indexOf("\"", toAddressIndex + 13);
-                            int endQuote = notes.indexOf("\"", startQuote + 1);
-                            if (startQuote != -1 && endQuote != -1) {
-                                receiverAddress = notes.substring(startQuote + 1, endQuote);
-                                log.info("Extracted receiver address from notes: {}", receiverAddress);
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to extract receiver address from notes: {}", e.getMessage());
-                    }
-                }
-                
-                if (receiverAddress == null) {
-                    receiverAddress = shipment.getToCompany() != null ? shipment.getToCompany().getWalletAddress() : null;
-                }
-            }
+            String receiverAddress = receiverAddressOf(shipment);
             
             log.info("Receiving shipment by database ID: databaseId={}, shipmentCode={}, receiver={}", 
                      databaseId, shipment.getShipmentCode(), receiverAddress);
@@ -514,6 +497,14 @@ public class DrugTraceabilityService {
         }
     }
 
+    /**
+     * Receiver wallet: the to_address column (legacy notes while the backfill runs), otherwise the
+     * receiving company's wallet
+     */
+    private String receiverAddressOf(Shipment shipment) {
+        return (String) shipmentAdapter.extractBlockchainData(shipment).get("toAddress");
+    }
+
     /**
      * Update shipment status
      */
@@ -547,32 +538,40 @@ public class DrugTraceabilityService {
      */
     public DrugVerificationResultDto verifyDrug(VerifyDrugRequest request) {
         try {
-            com.nckh.dia5.model.DrugBatch batch = drugBatchRepository.findByBatchId(request.getBatchId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Drug batch", "batchId", request.getBatchId().toString()));
-
-            ProductItem productItem = productItemService.findByBatchAndSerial(batch, request.getSerialNumber())
+            ProductItem productItem = productItemService.findWithBatch(request.getBatchId(), request.getSerialNumber())
                     .orElseThrow(() -> new ResourceNotFoundException("Product item", "serialNumber", request.getSerialNumber()));
+            com.nckh.dia5.model.DrugBatch batch = productItem.getDrugBatch();
 
-            SerialNumberStatusDto serialStatus = blockchainService.getSerialStatus(request.getBatchId(), request.getSerialNumber()).get();
+            SerialNumberStatusDto serialStatus = resolveSerialStatus(productItem, request.getBatchId(), request.getSerialNumber());
 
             if (serialStatus == null || !serialStatus.isExists()) {
                 throw new IllegalStateException("Serial number không tồn tại trên blockchain");
             }
 
             if (serialStatus.isRedeemed()) {
-                productItemService.markItemRedeemed(productItem, serialStatus.getRedeemedBy(), serialStatus.getRedeemedAt());
+                if (!Boolean.TRUE.equals(productItem.getBlockchainRedeemed())) {
+                    productItemService.markItemRedeemed(productItem, serialStatus.getRedeemedBy(), serialStatus.getRedeemedAt(), null);
+                }
                 throw new IllegalStateException("Mã QR đã được sử dụng");
             }
 
             boolean newlyRedeemed = false;
+            BigInteger redeemedBlockNumber = null;
 
             if (request.isMarkAsSold()) {
                 try {
-                    TransactionReceipt receipt = blockchainService.redeemSerialNumber(request.getBatchId(), request.getSerialNumber())
-                            .get(20, java.util.concurrent.TimeUnit.SECONDS);
+                    TransactionReceipt receipt = blockchainService.await(
+                            blockchainService.redeemSerialNumber(request.getBatchId(), request.getSerialNumber()));
                     recordBlockchainTransaction(receipt, "redeemSerialNumber", batch, null);
-                    serialStatus = blockchainService.getSerialStatus(request.getBatchId(), request.getSerialNumber()).get();
-                    newlyRedeemed = serialStatus != null && serialStatus.isRedeemed();
+                    // Receipt thành công nghĩa là serial đã được redeem bởi sender, không cần eth_call lại
+                    serialStatus = SerialNumberStatusDto.builder()
+                            .exists(true)
+                            .redeemed(true)
+                            .redeemedAt(java.time.Instant.now().getEpochSecond())
+                            .redeemedBy(receipt.getFrom())
+                            .build();
+                    redeemedBlockNumber = receipt.getBlockNumber();
+                    newlyRedeemed = true;
                 } catch (Exception e) {
                     log.error("Failed to redeem serial number on blockchain", e);
                     throw new RuntimeException("Không thể đánh dấu serial đã bán: " + e.getMessage(), e);
@@ -580,7 +579,8 @@ public class DrugTraceabilityService {
             }
 
             if (newlyRedeemed && serialStatus != null && serialStatus.isRedeemed()) {
-                boolean updated = productItemService.markItemRedeemed(productItem, serialStatus.getRedeemedBy(), serialStatus.getRedeemedAt());
+                boolean updated = productItemService.markItemRedeemed(productItem, serialStatus.getRedeemedBy(),
+                        serialStatus.getRedeemedAt(), redeemedBlockNumber);
                 if (updated) {
                     Long redeemedSerials = batch.getRedeemedSerials() != null ? batch.getRedeemedSerials() : 0L;
                     batch.setRedeemedSerials(redeemedSerials + 1);
@@ -614,11 +614,40 @@ public class DrugTraceabilityService {
     }
 
     /**
-     * Get all batches
+     * Trạng thái serial cho xác minh QR: đọc từ product_items (được indexer cập nhật theo SerialNumberRedeemed)
+     * khi serial đã đăng ký và index đủ mới, ngược lại mới gọi getSerialStatus trên chain.
      */
-    public List<DrugBatchDto> getAllBatches() {
-        List<com.nckh.dia5.model.DrugBatch> batches = drugBatchRepository.findAll();
-        return batches.stream().map(this::mapToDrugBatchDto).collect(Collectors.toList());
+    private SerialNumberStatusDto resolveSerialStatus(ProductItem item, BigInteger batchId, String serialNumber) throws Exception {
+        if (Boolean.TRUE.equals(item.getBlockchainRegistered()) && indexerService.isSerialIndexFresh()) {
+            return SerialNumberStatusDto.builder()
+                    .exists(true)
+                    .redeemed(Boolean.TRUE.equals(item.getBlockchainRedeemed()))
+                    .redeemedAt(item.getRedeemedAt() != null ? item.getRedeemedAt().toEpochSecond(ZoneOffset.UTC) : 0L)
+                    .redeemedBy(item.getRedeemedByAddress())
+                    .build();
+        }
+        return blockchainService.await(blockchainService.getSerialStatus(batchId, serialNumber));
+    }
+
+    /**
+     * Keyset page of batches ordered by id
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<DrugBatchDto> getBatches(Long cursor, Integer limit) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        List<com.nckh.dia5.model.DrugBatch> batches = drugBatchRepository.findByIdGreaterThanOrderByIdAsc(
+                CursorPage.resolveCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(batches, pageSize, com.nckh.dia5.model.DrugBatch::getId, this::mapToDrugBatchDto);
+    }
+
+    /**
+     * Stream every batch to the sink (NDJSON export) without holding them all in memory
+     */
+    @Transactional(readOnly = true)
+    public void exportBatches(Consumer<DrugBatchDto> sink) {
+        try (Stream<com.nckh.dia5.model.DrugBatch> batches = drugBatchRepository.streamAllOrderById()) {
+            NdjsonStreams.exportRows(entityManager, batches, this::mapToDrugBatchDto, sink);
+        }
     }
 
     /**
@@ -655,6 +684,13 @@ public class DrugTraceabilityService {
         return mapToShipmentDto(shipment);
     }
 
+    /**
+     * Shipment matching a scanned code: chain ID, shipment code, database ID or QR payload
+     */
+    public Optional<ShipmentDto> findShipmentByScanCode(String scanCode) {
+        return shipmentIdentityResolver.resolve(scanCode).map(this::mapToShipmentDto);
+    }
+
     /**
      * Get shipments by batch
      */
@@ -678,6 +714,15 @@ public class DrugTraceabilityService {
         }
     }
 
+    /**
+     * Các shipment đã giao của lô (lịch sử sở hữu khi xác minh QR)
+     */
+    public List<ShipmentDto> getDeliveredShipmentsByBatch(BigInteger batchId) {
+        return shipmentRepository.findByBatchIdAndStatus(batchId, Shipment.ShipmentStatus.DELIVERED).stream()
+                .map(this::mapToShipmentDto)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Get transaction history for a batch
      */
@@ -686,6 +731,17 @@ public class DrugTraceabilityService {
         return transactions.stream().map(this::mapToBlockchainTransactionDto).collect(Collectors.toList());
     }
 
+    /**
+     * Keyset page of a batch's transactions in recording (id) order
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BlockchainTransactionDto> getBatchTransactions(BigInteger batchId, Long cursor, Integer limit) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        List<BlockchainTransaction> transactions = blockchainTransactionRepository.findByBatchIdAfterId(
+                batchId, CursorPage.resolveCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(transactions, pageSize, BlockchainTransaction::getId, this::mapToBlockchainTransactionDto);
+    }
+
     /**
      * Get batches ready for shipment (MANUFACTURED status and owned by manufacturer)
      */
@@ -699,6 +755,7 @@ public class DrugTraceabilityService {
     /**
      * Get available distributors from pharma_companies table
      */
+    @Cacheable(cacheNames = CacheNames.DISTRIBUTORS, key = "'active'")
     public List<DistributorDto> getDistributors() {
         List<PharmaCompany> distributors = pharmaCompanyRepository.findByCompanyTypeAndIsActive(
             PharmaCompany.CompanyType.DISTRIBUTOR, true);
@@ -706,10 +763,31 @@ public class DrugTraceabilityService {
     }
 
     /**
-     * Get all shipments
+     * Keyset page of shipments ordered by id
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ShipmentDto> getShipments(Long cursor, Integer limit) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        List<Shipment> shipments = shipmentRepository.findByIdGreaterThanOrderByIdAsc(
+                CursorPage.resolveCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(shipments, pageSize, Shipment::getId, this::mapToShipmentDto);
+    }
+
+    /**
+     * Stream every shipment to the sink (NDJSON export) without holding them all in memory
      */
-    public List<ShipmentDto> getAllShipments() {
-        List<Shipment> shipments = shipmentRepository.findAll();
+    @Transactional(readOnly = true)
+    public void exportShipments(Consumer<ShipmentDto> sink) {
+        try (Stream<Shipment> shipments = shipmentRepository.streamAllOrderById()) {
+            NdjsonStreams.exportRows(entityManager, shipments, this::mapToShipmentDto, sink);
+        }
+    }
+
+    /**
+     * 10 shipment mới nhất theo shipment_date (dùng index, không load toàn bộ bảng)
+     */
+    public List<ShipmentDto> getRecentShipments() {
+        List<Shipment> shipments = shipmentRepository.findTop10ByOrderByShipmentDateDesc();
         return shipments.stream().map(this::mapToShipmentDto).collect(Collectors.toList());
     }
 
@@ -805,6 +883,15 @@ public class DrugTraceabilityService {
         }
     }
 
+    private void enqueueOutbox(BlockchainOutboxEntry.Operation operation, Long aggregateId) {
+        if (outboxRepository.findByOperationAndAggregateId(operation, aggregateId).isEmpty()) {
+            outboxRepository.save(BlockchainOutboxEntry.builder()
+                    .operation(operation)
+                    .aggregateId(aggregateId)
+                    .build());
+        }
+    }
+
     // Mapping methods
     private DrugBatchDto mapToDrugBatchDto(com.nckh.dia5.model.DrugBatch batch) {
         return DrugBatchDto.builder()
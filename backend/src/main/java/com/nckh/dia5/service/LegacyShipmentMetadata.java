@@ -0,0 +1,58 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigInteger;
+
+/**
+ * Blockchain metadata as older versions stored it in {@code drug_shipments.notes} JSON. Only the
+ * backfill and the reads of not-yet-backfilled rows use it; the typed columns are authoritative.
+ */
+@Slf4j
+record LegacyShipmentMetadata(BigInteger shipmentId, String fromAddress, String toAddress, String trackingInfo,
+        BigInteger blockNumber, Boolean isSynced) {
+
+    static final LegacyShipmentMetadata EMPTY = new LegacyShipmentMetadata(null, null, null, null, null, null);
+
+    static LegacyShipmentMetadata parse(ObjectMapper objectMapper, String notes) {
+        if (notes == null || notes.isBlank() || notes.charAt(0) != '{') {
+            return EMPTY;
+        }
+        try {
+            JsonNode json = objectMapper.readTree(notes);
+            BigInteger shipmentId = bigInteger(json, "original_shipment_id");
+            if (shipmentId == null) {
+                // Dữ liệu seed cũ dùng khóa blockchain_id
+                shipmentId = bigInteger(json, "blockchain_id");
+            }
+            return new LegacyShipmentMetadata(
+                    shipmentId,
+                    text(json, "from_address"),
+                    text(json, "to_address"),
+                    text(json, "tracking_info"),
+                    bigInteger(json, "block_number"),
+                    json.hasNonNull("is_synced") ? json.get("is_synced").asBoolean() : null);
+        } catch (Exception e) {
+            log.warn("Failed to parse legacy blockchain data from notes: {}", e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    private static String text(JsonNode json, String field) {
+        return json.hasNonNull(field) ? json.get(field).asText() : null;
+    }
+
+    private static BigInteger bigInteger(JsonNode json, String field) {
+        String value = text(json, field);
+        if (value == null || value.isBlank() || "null".equals(value)) {
+            return null;
+        }
+        try {
+            return new BigInteger(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -68,7 +68,7 @@ public class ManufacturerAuthService {
 
         // Create custom authentication token for manufacturer
         Authentication authentication = new UsernamePasswordAuthenticationToken(
-                savedUser.getEmail(), 
+                savedUser, 
                 null, 
                 savedUser.getAuthorities()
         );
@@ -127,6 +127,11 @@ public class ManufacturerAuthService {
             return null;
         }
 
+        // Filter JWT đã nạp sẵn principal, chỉ query lại khi principal thuộc loại tài khoản khác
+        if (authentication.getPrincipal() instanceof ManufacturerUser user) {
+            return user;
+        }
+
         String email = authentication.getName();
         return manufacturerUserRepository.findByEmail(email).orElse(null);
     }
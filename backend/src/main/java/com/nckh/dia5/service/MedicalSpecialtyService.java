@@ -1,10 +1,12 @@
 package com.nckh.dia5.service;
 
+import com.nckh.dia5.config.CacheNames;
 import com.nckh.dia5.dto.medical.MedicalSpecialtyResponse;
 import com.nckh.dia5.model.MedicalSpecialty;
 import com.nckh.dia5.repository.MedicalSpecialtyRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -17,6 +19,7 @@ public class MedicalSpecialtyService {
 
     private final MedicalSpecialtyRepository medicalSpecialtyRepository;
 
+    @Cacheable(cacheNames = CacheNames.MEDICAL_SPECIALTIES, key = "'all'")
     public List<MedicalSpecialtyResponse> getAllSpecialties() {
         List<MedicalSpecialty> specialties = medicalSpecialtyRepository.findAll();
         return specialties.stream()
@@ -24,6 +27,7 @@ public class MedicalSpecialtyService {
                 .collect(Collectors.toList());
     }
 
+    @Cacheable(cacheNames = CacheNames.MEDICAL_SPECIALTIES, key = "'roots'")
     public List<MedicalSpecialtyResponse> getRootSpecialties() {
         List<MedicalSpecialty> specialties = medicalSpecialtyRepository.findRootSpecialties();
         return specialties.stream()
@@ -31,6 +35,7 @@ public class MedicalSpecialtyService {
                 .collect(Collectors.toList());
     }
 
+    @Cacheable(cacheNames = CacheNames.MEDICAL_SPECIALTIES, key = "'children:' + #parentId")
     public List<MedicalSpecialtyResponse> getChildSpecialties(Integer parentId) {
         List<MedicalSpecialty> specialties = medicalSpecialtyRepository.findByParentSpecialtyId(parentId);
         return specialties.stream()
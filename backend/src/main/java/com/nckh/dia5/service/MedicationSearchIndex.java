@@ -0,0 +1,475 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.model.Medication;
+import com.nckh.dia5.repository.MedicationRepository;
+import com.nckh.dia5.util.VietnameseUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * In-memory search index over medication name, generic name and drug class.
+ *
+ * Text is folded (lower case, Vietnamese diacritics removed) and split into words. Query terms of
+ * three or more characters are matched anywhere inside a word through a trigram index; two-letter
+ * terms match word prefixes and single characters whole words only, so a first keystroke does not
+ * rank most of the catalog. Every term must match; results are ranked so that matches in the
+ * name beat the generic name, which beats the drug class, and whole-word and prefix matches beat
+ * infix matches. Only the requested page and those before it are kept in ranked order (a bounded
+ * heap), the other matches are just counted.
+ *
+ * The index is built when the application is ready and rebuilt on a schedule. Between rebuilds
+ * {@code MedicationSearchIndexListener} applies single-row changes after commit. Until the first
+ * build finishes, searches fall back to the repository's LIKE query.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MedicationSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final Comparator<ScoredMedication> RANKING =
+            (a, b) -> compare(a.score(), a.doc(), b.score(), b.doc());
+
+    private final MedicationRepository medicationRepository;
+
+    private volatile Snapshot snapshot;
+
+    private final Object writeLock = new Object();
+    // Khác null khi đang rebuild: các thay đổi trong lúc đó được áp lại lên snapshot mới trước khi swap
+    private List<Consumer<Snapshot>> changesDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${medications.search.rebuild-interval-ms:21600000}",
+            initialDelayString = "${medications.search.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        synchronized (writeLock) {
+            if (changesDuringRebuild != null) {
+                return;
+            }
+            changesDuringRebuild = new ArrayList<>();
+        }
+
+        long start = System.currentTimeMillis();
+        Snapshot fresh = new Snapshot();
+        try {
+            for (Medication medication : medicationRepository.findAll()) {
+                fresh.add(medication);
+            }
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                changesDuringRebuild = null;
+            }
+            log.error("Failed to build medication search index: {}", e.getMessage());
+            return;
+        }
+
+        synchronized (writeLock) {
+            changesDuringRebuild.forEach(change -> change.accept(fresh));
+            changesDuringRebuild = null;
+            snapshot = fresh;
+        }
+        log.info("Medication search index built: {} medications, {} trigrams in {} ms",
+                fresh.docs.size(), fresh.grams.size(), System.currentTimeMillis() - start);
+    }
+
+    public void upsert(Medication medication) {
+        if (medication.getId() == null) {
+            return;
+        }
+        applyChange(index -> index.add(medication));
+    }
+
+    public void remove(Integer medicationId) {
+        applyChange(index -> index.remove(medicationId));
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public Page<Medication> search(String keyword, Pageable pageable) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return medicationRepository.searchByKeyword(keyword, pageable);
+        }
+
+        int limit = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE);
+        Ranked ranked = current.search(keyword, limit);
+        int from = (int) Math.min(pageable.getOffset(), ranked.top().size());
+        return new PageImpl<>(ranked.top().subList(from, ranked.top().size()), pageable, ranked.total());
+    }
+
+    private void applyChange(Consumer<Snapshot> change) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (current != null) {
+                change.accept(current);
+            }
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        }
+    }
+
+    static List<String> words(String text) {
+        String folded = VietnameseUtils.foldForSearch(text);
+        if (folded.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(folded.split("[^\\p{Alnum}]+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+
+    private static Set<String> gramsOf(String word) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+            grams.add(word.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * One generation of the index. Written under {@code writeLock} only, read without locking;
+     * postings may briefly reference a removed document, which is then skipped.
+     *
+     * Words get a numeric id and documents keep the ids of their words, so a search classifies the
+     * query against the vocabulary once and scores a candidate with a few array reads instead of
+     * string comparisons.
+     */
+    private static final class Snapshot {
+
+        private final Map<Integer, IndexedMedication> docs = new ConcurrentHashMap<>();
+        private final NavigableMap<String, Word> vocabulary = new ConcurrentSkipListMap<>();
+        private final Map<String, Set<Word>> grams = new ConcurrentHashMap<>();
+        // Id của từ chỉ tăng: từ đã xoá không được cấp lại id cho tới lần rebuild sau
+        private int nextWordId;
+
+        void add(Medication medication) {
+            remove(medication.getId());
+
+            IndexedMedication doc = IndexedMedication.of(medication, this::word);
+            docs.put(medication.getId(), doc);
+            for (Word word : doc.words) {
+                word.add(doc);
+            }
+        }
+
+        void remove(Integer id) {
+            IndexedMedication old = docs.remove(id);
+            if (old == null) {
+                return;
+            }
+            old.removed = true;
+            for (Word word : old.words) {
+                word.remove(old);
+                if (word.posting.size() == 0 && vocabulary.remove(word.text, word)) {
+                    for (String gram : gramsOf(word.text)) {
+                        Set<Word> posting = grams.get(gram);
+                        if (posting != null) {
+                            posting.remove(word);
+                            if (posting.isEmpty()) {
+                                grams.remove(gram, posting);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private Word word(String text) {
+            Word word = vocabulary.get(text);
+            if (word == null) {
+                word = new Word(nextWordId++, text);
+                vocabulary.put(text, word);
+                for (String gram : gramsOf(text)) {
+                    grams.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(word);
+                }
+            }
+            return word;
+        }
+
+        /**
+         * The best {@code limit} matches in ranked order, plus the number of all matches.
+         */
+        Ranked search(String keyword, int limit) {
+            List<String> terms = words(keyword);
+            if (terms.isEmpty() || limit <= 0) {
+                return Ranked.EMPTY;
+            }
+
+            // Với mỗi term: kiểu khớp (whole/prefix/infix) theo id từ; duyệt theo term có ít ứng viên nhất
+            byte[][] kinds = new byte[terms.size()][];
+            List<Word> driver = null;
+            int driverTerm = -1;
+            long driverSize = Long.MAX_VALUE;
+            for (int t = 0; t < terms.size(); t++) {
+                String term = terms.get(t);
+                List<Word> matched = wordsMatching(term);
+                if (matched.isEmpty()) {
+                    return Ranked.EMPTY;
+                }
+                kinds[t] = new byte[matched.stream().mapToInt(word -> word.id).max().orElse(0) + 1];
+                long size = 0;
+                for (Word word : matched) {
+                    kinds[t][word.id] = word.text.equals(term) ? WHOLE : word.text.startsWith(term) ? PREFIX : INFIX;
+                    size += word.posting.size();
+                }
+                if (size < driverSize) {
+                    driver = matched;
+                    driverTerm = t;
+                    driverSize = size;
+                }
+            }
+
+            PriorityQueue<ScoredMedication> best = new PriorityQueue<>(Math.min(limit, 1024), RANKING.reversed());
+            int total = 0;
+            byte[] driverKinds = kinds[driverTerm];
+            boolean dedupe = driver.size() > 1;
+            for (Word word : driver) {
+                Posting posting = word.posting;
+                IndexedMedication[] docs = posting.docs();
+                for (int i = 0; i < posting.size(); i++) {
+                    IndexedMedication doc = docs[i];
+                    // Document chứa một từ đã duyệt trước đó của cùng term thì đã được tính
+                    if (doc.removed || dedupe && doc.contains(driverKinds, SEEN)) {
+                        continue;
+                    }
+                    int score = doc.score(kinds);
+                    if (score == 0) {
+                        continue;
+                    }
+                    total++;
+                    if (best.size() < limit) {
+                        best.add(new ScoredMedication(doc, score));
+                    } else if (compare(score, doc, best.peek().score(), best.peek().doc()) < 0) {
+                        best.poll();
+                        best.add(new ScoredMedication(doc, score));
+                    }
+                }
+                driverKinds[word.id] |= SEEN;
+            }
+
+            List<ScoredMedication> top = new ArrayList<>(best);
+            top.sort(RANKING);
+            return new Ranked(top.stream().map(item -> item.doc().medication).toList(), total);
+        }
+
+        /**
+         * Vocabulary words the term matches: words containing it (through the rarest of its trigrams),
+         * words starting with a two-letter term, or the word itself for a single character.
+         */
+        private List<Word> wordsMatching(String term) {
+            if (term.length() < MIN_PREFIX_LENGTH) {
+                Word word = vocabulary.get(term);
+                return word != null ? List.of(word) : List.of();
+            }
+            if (term.length() < GRAM_LENGTH) {
+                return new ArrayList<>(vocabulary.subMap(term, true, term + Character.MAX_VALUE, true).values());
+            }
+
+            Set<Word> rarest = null;
+            for (String gram : gramsOf(term)) {
+                Set<Word> posting = grams.get(gram);
+                if (posting == null) {
+                    return List.of();
+                }
+                if (rarest == null || posting.size() < rarest.size()) {
+                    rarest = posting;
+                }
+            }
+            return rarest.stream().filter(word -> word.text.contains(term)).toList();
+        }
+    }
+
+    private static final byte INFIX = 1;
+    private static final byte PREFIX = 3;
+    private static final byte WHOLE = 5;
+    private static final byte KIND = 0x07;
+    private static final byte SEEN = 0x40;
+    private static final int[] FIELD_WEIGHTS = {6, 3, 1};
+
+    private static int compare(int score, IndexedMedication doc, int otherScore, IndexedMedication other) {
+        if (score != otherScore) {
+            return Integer.compare(otherScore, score);
+        }
+        if (doc.nameLength != other.nameLength) {
+            return Integer.compare(doc.nameLength, other.nameLength);
+        }
+        return doc.name.compareTo(other.name);
+    }
+
+    private static final class Word {
+
+        private final int id;
+        private final String text;
+        private volatile Posting posting = Posting.EMPTY;
+
+        Word(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        // Thêm vào chỗ trống cuối mảng (reader cũ không đọc quá size của nó), xoá thì chép ra mảng mới
+        void add(IndexedMedication doc) {
+            Posting current = posting;
+            IndexedMedication[] docs = current.docs();
+            if (current.size() == docs.length) {
+                docs = Arrays.copyOf(docs, Math.max(4, docs.length * 2));
+            }
+            docs[current.size()] = doc;
+            posting = new Posting(docs, current.size() + 1);
+        }
+
+        void remove(IndexedMedication doc) {
+            Posting current = posting;
+            IndexedMedication[] docs = new IndexedMedication[current.size()];
+            int size = 0;
+            for (int i = 0; i < current.size(); i++) {
+                if (current.docs()[i] != doc) {
+                    docs[size++] = current.docs()[i];
+                }
+            }
+            posting = new Posting(docs, size);
+        }
+    }
+
+    /**
+     * Documents containing a word: the first {@code size} slots of the array.
+     */
+    private record Posting(IndexedMedication[] docs, int size) {
+
+        static final Posting EMPTY = new Posting(new IndexedMedication[0], 0);
+    }
+
+    /**
+     * A medication as seen by the index. Compared by identity, so that postings can hold it directly.
+     */
+    private static final class IndexedMedication {
+
+        private final Medication medication;
+        private final String name;
+        private final int nameLength;
+        // Các từ khác nhau của document, để cập nhật posting
+        private final Word[] words;
+        // (id từ << 2) | field (0 name, 1 generic name, 2 drug class): các từ của name theo thứ tự,
+        // rồi generic name và drug class
+        private final int[] entries;
+        private final int nameWordCount;
+        private volatile boolean removed;
+
+        private IndexedMedication(Medication medication, String name, Word[] words, int[] entries, int nameWordCount) {
+            this.medication = medication;
+            this.name = name;
+            this.nameLength = name.length();
+            this.words = words;
+            this.entries = entries;
+            this.nameWordCount = nameWordCount;
+        }
+
+        static IndexedMedication of(Medication medication, Function<String, Word> vocabulary) {
+            List<List<String>> fields = List.of(words(medication.getName()), words(medication.getGenericName()),
+                    words(medication.getDrugClass()));
+            Set<Word> words = new LinkedHashSet<>();
+            List<Integer> entries = new ArrayList<>();
+            for (int field = 0; field < fields.size(); field++) {
+                for (String text : fields.get(field)) {
+                    Word word = vocabulary.apply(text);
+                    words.add(word);
+                    entries.add(word.id << 2 | field);
+                }
+            }
+            return new IndexedMedication(medication, VietnameseUtils.foldForSearch(medication.getName()),
+                    words.toArray(Word[]::new), entries.stream().mapToInt(Integer::intValue).toArray(),
+                    fields.get(0).size());
+        }
+
+        boolean contains(byte[] termKinds, byte flag) {
+            for (int entry : entries) {
+                int id = entry >>> 2;
+                if (id < termKinds.length && (termKinds[id] & flag) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Sum over the terms of the best match in any field (whole word 5, word prefix 3, infix 1,
+         * times the field weight), plus 100 when the name is the query and 50 when it starts with it;
+         * 0 when some term does not match.
+         */
+        int score(byte[][] kinds) {
+            int score = 0;
+            for (byte[] termKinds : kinds) {
+                int best = 0;
+                for (int entry : entries) {
+                    best = Math.max(best, kind(termKinds, entry) * FIELD_WEIGHTS[entry & 3]);
+                }
+                if (best == 0) {
+                    return 0;
+                }
+                score += best;
+            }
+            return score + nameBonus(kinds);
+        }
+
+        private int nameBonus(byte[][] kinds) {
+            int last = kinds.length - 1;
+            if (nameWordCount <= last) {
+                return 0;
+            }
+            for (int t = 0; t < last; t++) {
+                if (kind(kinds[t], entries[t]) != WHOLE) {
+                    return 0;
+                }
+            }
+            int kind = kind(kinds[last], entries[last]);
+            if (kind == WHOLE && nameWordCount == kinds.length) {
+                return 100;
+            }
+            return kind >= PREFIX ? 50 : 0;
+        }
+
+        private static int kind(byte[] termKinds, int entry) {
+            int id = entry >>> 2;
+            return id < termKinds.length ? termKinds[id] & KIND : 0;
+        }
+    }
+
+    private record ScoredMedication(IndexedMedication doc, int score) {
+    }
+
+    private record Ranked(List<Medication> top, int total) {
+
+        static final Ranked EMPTY = new Ranked(List.of(), 0);
+    }
+}
@@ -0,0 +1,57 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.config.CacheNames;
+import com.nckh.dia5.dto.common.CursorPage;
+import com.nckh.dia5.model.Medication;
+import com.nckh.dia5.repository.MedicationRepository;
+import com.nckh.dia5.util.NdjsonStreams;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MedicationService {
+
+    private final MedicationRepository medicationRepository;
+    private final EntityManager entityManager;
+
+    @Cacheable(cacheNames = CacheNames.MEDICATIONS, key = "'page:' + #cursor + ':' + #limit")
+    public CursorPage<Medication> getMedications(Long cursor, Integer limit) {
+        int pageSize = CursorPage.resolveLimit(limit);
+        List<Medication> medications = medicationRepository.findByIdGreaterThanOrderByIdAsc(
+                (int) CursorPage.resolveCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(medications, pageSize, medication -> medication.getId().longValue(), medication -> medication);
+    }
+
+    /**
+     * Stream every medication to the sink (NDJSON export) without holding them all in memory
+     */
+    @Transactional(readOnly = true)
+    public void exportMedications(Consumer<Medication> sink) {
+        try (Stream<Medication> medications = medicationRepository.streamAllOrderById()) {
+            NdjsonStreams.exportRows(entityManager, medications, Function.identity(), sink);
+        }
+    }
+
+    @Cacheable(cacheNames = CacheNames.MEDICATIONS, key = "'id:' + #id", unless = "#result == null")
+    public Optional<Medication> getMedicationById(Integer id) {
+        return medicationRepository.findById(id);
+    }
+
+    @Cacheable(cacheNames = CacheNames.MEDICATIONS, key = "'drugClass:' + #drugClass")
+    public List<Medication> getMedicationsByDrugClass(String drugClass) {
+        return medicationRepository.findByDrugClass(drugClass);
+    }
+}
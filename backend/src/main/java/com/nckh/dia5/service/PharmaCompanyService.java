@@ -0,0 +1,35 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.config.CacheNames;
+import com.nckh.dia5.model.PharmaCompany;
+import com.nckh.dia5.repository.PharmaCompanyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PharmaCompanyService {
+
+    private final PharmaCompanyRepository pharmaCompanyRepository;
+
+    @Cacheable(cacheNames = CacheNames.PHARMACIES, key = "'active'")
+    public List<PharmaCompany> getActivePharmacies() {
+        return pharmaCompanyRepository.findByCompanyTypeAndIsActive(PharmaCompany.CompanyType.PHARMACY, true);
+    }
+
+    @Cacheable(cacheNames = CacheNames.PHARMACIES, key = "'id:' + #id", unless = "#result == null")
+    public Optional<PharmaCompany> getPharmacyById(Long id) {
+        return pharmaCompanyRepository.findById(id);
+    }
+
+    @Cacheable(cacheNames = CacheNames.PHARMACIES, key = "'wallet:' + #walletAddress", unless = "#result == null")
+    public Optional<PharmaCompany> getPharmacyByWallet(String walletAddress) {
+        return pharmaCompanyRepository.findByWalletAddress(walletAddress);
+    }
+}
@@ -39,6 +39,7 @@ public class PharmaLedgerContract {
     private final Credentials credentials;
     private final StaticGasProvider gasProvider;
     private final BlockchainEncodingFixer encodingFixer;
+    private final BlockchainExecutors executors;
 
     @Value("${pharmaledger.contract.address:0xc6e7DF5E7b4f2A278906862b61205850344D4e7d}")
     private String contractAddress;
@@ -121,7 +122,7 @@ public class PharmaLedgerContract {
                 log.error("❌ Failed to create batch: {}", e.getMessage());
                 throw new RuntimeException("Failed to create batch", e);
             }
-        });
+        }, executors.getWriteExecutor());
     }
 
     /**
@@ -176,7 +177,7 @@ public class PharmaLedgerContract {
                 log.error("❌ Failed to create shipment: {}", e.getMessage());
                 throw new RuntimeException("Failed to create shipment", e);
             }
-        });
+        }, executors.getWriteExecutor());
     }
 
     /**
@@ -217,7 +218,7 @@ public class PharmaLedgerContract {
                 log.error("❌ Failed to receive shipment: {}", e.getMessage());
                 throw new RuntimeException("Failed to receive shipment", e);
             }
-        });
+        }, executors.getWriteExecutor());
     }
 
     /**
@@ -272,7 +273,7 @@ public class PharmaLedgerContract {
                 log.error("❌ Failed to verify QR code: {}", e.getMessage());
                 throw new RuntimeException("Failed to verify QR code", e);
             }
-        });
+        }, executors.getReadExecutor());
     }
 
     /**
@@ -330,7 +331,7 @@ public class PharmaLedgerContract {
                 log.error("❌ Failed to get batch info: {}", e.getMessage());
                 throw new RuntimeException("Failed to get batch info", e);
             }
-        });
+        }, executors.getReadExecutor());
     }
 
     /**
@@ -0,0 +1,218 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.model.BlockchainEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decode topics + data của các event PharmaLedger thành BlockchainEvent với các cột đã tách sẵn
+ * (batch_id, shipment_id, from/to address, quantity, serial_number, status_code).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PharmaLedgerEventDecoder {
+
+    private final ObjectMapper objectMapper;
+
+    // Event definitions - khớp với contracts/contracts/PharmaLedger.sol
+    public static final Event BATCH_ISSUED_EVENT = new Event("BatchIssued",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Address>(true) {}, // manufacturer (indexed)
+            new TypeReference<Utf8String>() {}, // drugName
+            new TypeReference<Uint256>() {}, // quantity
+            new TypeReference<Utf8String>() {} // qrCode
+        )
+    );
+
+    public static final Event SERIAL_NUMBERS_REGISTERED_EVENT = new Event("SerialNumbersRegistered",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Uint256>() {} // count
+        )
+    );
+
+    public static final Event SERIAL_NUMBER_REDEEMED_EVENT = new Event("SerialNumberRedeemed",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Utf8String>() {}, // serialNumber
+            new TypeReference<Address>(true) {}, // redeemedBy (indexed)
+            new TypeReference<Uint256>() {} // timestamp
+        )
+    );
+
+    public static final Event SHIPMENT_CREATED_EVENT = new Event("ShipmentCreated",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // shipmentId (indexed)
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Address>(true) {}, // from (indexed)
+            new TypeReference<Address>() {}, // to
+            new TypeReference<Uint256>() {} // quantity
+        )
+    );
+
+    public static final Event SHIPMENT_RECEIVED_EVENT = new Event("ShipmentReceived",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // shipmentId (indexed)
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Address>(true) {}, // receiver (indexed)
+            new TypeReference<Uint256>() {} // receiveDate
+        )
+    );
+
+    public static final Event BATCH_STATUS_UPDATED_EVENT = new Event("BatchStatusUpdated",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Uint8>() {}, // oldStatus (BatchStatus enum)
+            new TypeReference<Uint8>() {} // newStatus (BatchStatus enum)
+        )
+    );
+
+    public static final Event OWNERSHIP_TRANSFERRED_EVENT = new Event("OwnershipTransferred",
+        Arrays.asList(
+            new TypeReference<Uint256>(true) {}, // batchId (indexed)
+            new TypeReference<Address>(true) {}, // previousOwner (indexed)
+            new TypeReference<Address>(true) {} // newOwner (indexed)
+        )
+    );
+
+    // topic0 -> event, tính một lần vì keccak của signature nằm trên hot path khi catch-up
+    private static final Map<String, Event> EVENTS_BY_TOPIC = new LinkedHashMap<>();
+
+    static {
+        for (Event event : List.of(BATCH_ISSUED_EVENT, SERIAL_NUMBERS_REGISTERED_EVENT, SERIAL_NUMBER_REDEEMED_EVENT,
+                SHIPMENT_CREATED_EVENT, SHIPMENT_RECEIVED_EVENT, BATCH_STATUS_UPDATED_EVENT, OWNERSHIP_TRANSFERRED_EVENT)) {
+            EVENTS_BY_TOPIC.put(EventEncoder.encode(event), event);
+        }
+    }
+
+    /**
+     * topic0 của tất cả event được index, dùng cho filter eth_getLogs
+     */
+    public String[] getEventTopics() {
+        return EVENTS_BY_TOPIC.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Decode một log; trả về null nếu log không phải event PharmaLedger đã biết
+     */
+    public BlockchainEvent decode(Log eventLog) throws Exception {
+        List<String> topics = eventLog.getTopics();
+        if (topics == null || topics.isEmpty()) {
+            return null;
+        }
+        Event event = EVENTS_BY_TOPIC.get(topics.get(0));
+        if (event == null) {
+            return null;
+        }
+
+        List<TypeReference<Type>> indexedParameters = event.getIndexedParameters();
+        if (topics.size() != indexedParameters.size() + 1) {
+            log.warn("Unexpected topic count {} for {} in TX {}", topics.size(), event.getName(), eventLog.getTransactionHash());
+            return null;
+        }
+
+        List<Type> indexed = new ArrayList<>(indexedParameters.size());
+        for (int i = 0; i < indexedParameters.size(); i++) {
+            indexed.add(FunctionReturnDecoder.decodeIndexedValue(topics.get(i + 1), indexedParameters.get(i)));
+        }
+        List<Type> data = FunctionReturnDecoder.decode(eventLog.getData(), event.getNonIndexedParameters());
+
+        BlockchainEvent.BlockchainEventBuilder builder = BlockchainEvent.builder()
+            .eventType(event.getName())
+            .transactionHash(eventLog.getTransactionHash())
+            .blockNumber(eventLog.getBlockNumber())
+            .logIndex(eventLog.getLogIndex())
+            .processed(false);
+        Map<String, Object> eventData = new LinkedHashMap<>();
+
+        switch (event.getName()) {
+            case "BatchIssued" -> {
+                BigInteger quantity = uint(data.get(1));
+                builder.batchId(uint(indexed.get(0)))
+                    .fromAddress(address(indexed.get(1)))
+                    .quantity(quantity);
+                eventData.put("drugName", string(data.get(0)));
+                eventData.put("quantity", quantity);
+                eventData.put("qrCode", string(data.get(2)));
+            }
+            case "SerialNumbersRegistered" -> {
+                BigInteger count = uint(data.get(0));
+                builder.batchId(uint(indexed.get(0)))
+                    .quantity(count);
+                eventData.put("count", count);
+            }
+            case "SerialNumberRedeemed" -> {
+                String serialNumber = string(data.get(0));
+                builder.batchId(uint(indexed.get(0)))
+                    .fromAddress(address(indexed.get(1)))
+                    .serialNumber(serialNumber);
+                eventData.put("serialNumber", serialNumber);
+                eventData.put("timestamp", uint(data.get(1)));
+            }
+            case "ShipmentCreated" -> {
+                BigInteger quantity = uint(data.get(1));
+                builder.shipmentId(uint(indexed.get(0)))
+                    .batchId(uint(indexed.get(1)))
+                    .fromAddress(address(indexed.get(2)))
+                    .toAddress(address(data.get(0)))
+                    .quantity(quantity);
+                eventData.put("quantity", quantity);
+            }
+            case "ShipmentReceived" -> {
+                builder.shipmentId(uint(indexed.get(0)))
+                    .batchId(uint(indexed.get(1)))
+                    .toAddress(address(indexed.get(2)));
+                eventData.put("receiveDate", uint(data.get(0)));
+            }
+            case "BatchStatusUpdated" -> {
+                BigInteger newStatus = uint(data.get(1));
+                builder.batchId(uint(indexed.get(0)))
+                    .statusCode(newStatus.intValue());
+                eventData.put("oldStatus", uint(data.get(0)).intValue());
+                eventData.put("newStatus", newStatus.intValue());
+            }
+            case "OwnershipTransferred" -> builder.batchId(uint(indexed.get(0)))
+                .fromAddress(address(indexed.get(1)))
+                .toAddress(address(indexed.get(2)));
+            default -> {
+                return null;
+            }
+        }
+
+        return builder.eventData(objectMapper.writeValueAsString(eventData)).build();
+    }
+
+    private BigInteger uint(Type value) {
+        return (BigInteger) value.getValue();
+    }
+
+    private String string(Type value) {
+        return (String) value.getValue();
+    }
+
+    // Lưu address dạng lowercase để query theo address không phụ thuộc checksum
+    private String address(Type value) {
+        return ((String) value.getValue()).toLowerCase();
+    }
+}
@@ -106,6 +106,11 @@ public class PharmacyAuthService {
             return null;
         }
 
+        // Filter JWT đã nạp sẵn principal, chỉ query lại khi principal thuộc loại tài khoản khác
+        if (authentication.getPrincipal() instanceof PharmacyUser user) {
+            return user;
+        }
+
         String email = authentication.getName();
         return pharmacyUserRepository.findByEmail(email).orElse(null);
     }
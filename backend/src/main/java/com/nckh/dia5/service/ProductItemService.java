@@ -5,9 +5,11 @@ import com.nckh.dia5.model.ProductItem;
 import com.nckh.dia5.repository.ProductItemRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigInteger;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -24,43 +26,54 @@ import java.util.stream.Collectors;
 public class ProductItemService {
 
     private final ProductItemRepository productItemRepository;
+    private final DashboardStatsService dashboardStatsService;
+
+    // Số dòng mỗi câu INSERT nhiều dòng (8 tham số/dòng, dưới giới hạn 65535 placeholder của MySQL)
+    @Value("${product-items.insert-chunk-size:1000}")
+    private int insertChunkSize;
 
     /**
-     * Tự động sinh danh sách hộp thuốc cho lô mới
+     * Tự động sinh danh sách hộp thuốc cho lô mới.
+     *
+     * Serial được sinh tuần tự theo lô nên không cần kiểm tra tồn tại từng serial; các hộp được ghi theo từng
+     * chunk bằng INSERT nhiều dòng ... ON DUPLICATE KEY UPDATE (serial trùng bị unique constraint bỏ qua) và
+     * không giữ toàn bộ entity trong bộ nhớ. Số hộp mới là chênh lệch số dòng của lô trước và sau khi ghi.
+     *
+     * @return số hộp được tạo mới
      */
     @Transactional
-    public List<ProductItem> autoGenerateItemsForNewBatch(DrugBatch batch, long quantity) {
-        List<ProductItem> items = new ArrayList<>();
+    public long autoGenerateItemsForNewBatch(DrugBatch batch, long quantity) {
+        long started = System.currentTimeMillis();
+        long existing = productItemRepository.countByDrugBatch(batch);
+        List<ProductItem> chunk = new ArrayList<>((int) Math.min(quantity, insertChunkSize));
 
         for (long i = 0; i < quantity; i++) {
             String serialNumber = generateSerialNumber(batch, i + 1);
 
-            if (productItemRepository.findBySerialNumber(serialNumber).isPresent()) {
-                log.warn("Serial number {} already exists, skipping", serialNumber);
-                continue;
-            }
-
-            String qrPayload = buildQrPayload(batch, serialNumber);
-
-            ProductItem item = ProductItem.builder()
-                    .drugBatch(batch)
+            chunk.add(ProductItem.builder()
                     .serialNumber(serialNumber)
-                    .qrCode(qrPayload)
+                    .qrCode(buildQrPayload(batch, serialNumber))
                     .status(ProductItem.ProductItemStatus.CREATED)
                     .blockchainRegistered(false)
                     .blockchainRedeemed(false)
-                    .build();
+                    .build());
 
-            items.add(item);
+            if (chunk.size() >= insertChunkSize) {
+                productItemRepository.insertSkippingDuplicates(batch.getId(), chunk);
+                chunk.clear();
+            }
         }
+        productItemRepository.insertSkippingDuplicates(batch.getId(), chunk);
+        long inserted = productItemRepository.countByDrugBatch(batch) - existing;
+        dashboardStatsService.onItemsCreated(inserted);
 
-        if (items.isEmpty()) {
-            return List.of();
+        if (inserted < quantity) {
+            log.warn("{} serial numbers of batch {} already existed, skipped", quantity - inserted, batch.getBatchNumber());
         }
-
-        List<ProductItem> savedItems = productItemRepository.saveAll(items);
-        log.info("Generated {} product items for batch {}", savedItems.size(), batch.getBatchNumber());
-        return savedItems;
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+        log.info("Generated {} product items for batch {} in {} ms ({} items/s)",
+                inserted, batch.getBatchNumber(), elapsed, inserted * 1000 / elapsed);
+        return inserted;
     }
 
     /**
@@ -69,6 +82,8 @@ public class ProductItemService {
     @Transactional
     public void markItemsRegistered(List<ProductItem> items) {
         for (ProductItem item : items) {
+            dashboardStatsService.onItemStatusChanged(item.getStatus(), ProductItem.ProductItemStatus.REGISTERED,
+                    !Boolean.TRUE.equals(item.getBlockchainRegistered()));
             item.setStatus(ProductItem.ProductItemStatus.REGISTERED);
             item.setBlockchainRegistered(true);
         }
@@ -78,16 +93,22 @@ public class ProductItemService {
     /**
      * Đánh dấu hộp đã được bán/đổi trả trên blockchain
      *
+     * @param redeemedBlockNumber block chứa giao dịch redeem, null nếu chỉ biết qua eth_call (indexer ghi sau)
      * @return true nếu trạng thái thay đổi
      */
     @Transactional
-    public boolean markItemRedeemed(ProductItem item, String redeemedByAddress, Long redeemedAtEpochSeconds) {
+    public boolean markItemRedeemed(ProductItem item, String redeemedByAddress, Long redeemedAtEpochSeconds,
+                                    BigInteger redeemedBlockNumber) {
         boolean statusChanged = item.getStatus() != ProductItem.ProductItemStatus.REDEEMED
                 || !Boolean.TRUE.equals(item.getBlockchainRedeemed());
+        dashboardStatsService.onItemStatusChanged(item.getStatus(), ProductItem.ProductItemStatus.REDEEMED, false);
 
         item.setStatus(ProductItem.ProductItemStatus.REDEEMED);
         item.setBlockchainRedeemed(true);
         item.setRedeemedByAddress(redeemedByAddress);
+        if (redeemedBlockNumber != null) {
+            item.setRedeemedBlockNumber(redeemedBlockNumber);
+        }
 
         if (redeemedAtEpochSeconds != null && redeemedAtEpochSeconds > 0) {
             LocalDateTime redeemedAt = LocalDateTime.ofInstant(
@@ -105,6 +126,10 @@ public class ProductItemService {
         return productItemRepository.findByDrugBatchAndSerialNumber(batch, serialNumber);
     }
 
+    public Optional<ProductItem> findWithBatch(BigInteger batchId, String serialNumber) {
+        return productItemRepository.findWithBatch(batchId, serialNumber);
+    }
+
     public Optional<ProductItem> findBySerial(String serialNumber) {
         return productItemRepository.findBySerialNumber(serialNumber);
     }
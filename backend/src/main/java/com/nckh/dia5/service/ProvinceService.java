@@ -1,10 +1,12 @@
 package com.nckh.dia5.service;
 
+import com.nckh.dia5.config.CacheNames;
 import com.nckh.dia5.dto.medical.ProvinceResponse;
 import com.nckh.dia5.model.Province;
 import com.nckh.dia5.repository.ProvinceRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -17,6 +19,7 @@ public class ProvinceService {
 
     private final ProvinceRepository provinceRepository;
 
+    @Cacheable(cacheNames = CacheNames.PROVINCES, key = "'all'")
     public List<ProvinceResponse> getAllProvinces() {
         List<Province> provinces = provinceRepository.findAllOrderByName();
         return provinces.stream()
@@ -24,6 +27,7 @@ public class ProvinceService {
                 .collect(Collectors.toList());
     }
 
+    @Cacheable(cacheNames = CacheNames.PROVINCES, key = "'region:' + #region")
     public List<ProvinceResponse> getProvincesByRegion(Province.Region region) {
         List<Province> provinces = provinceRepository.findByRegion(region);
         return provinces.stream()
@@ -31,6 +35,7 @@ public class ProvinceService {
                 .collect(Collectors.toList());
     }
 
+    @Cacheable(cacheNames = CacheNames.PROVINCES, key = "'climate:' + #climate")
     public List<ProvinceResponse> getProvincesByClimate(Province.Climate climate) {
         List<Province> provinces = provinceRepository.findByClimate(climate);
         return provinces.stream()
@@ -0,0 +1,280 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.handler.UpstreamServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * HTTP client non-blocking cho một Python service (AI diagnosis, chatbot).
+ *
+ * Dùng {@link HttpClient} của JDK (kết nối keep-alive được giữ trong pool, {@code sendAsync} không giữ
+ * thread trong lúc chờ response) với:
+ * <ul>
+ *   <li>connect/read timeout riêng cho từng service</li>
+ *   <li>bulkhead: tối đa {@code maxConcurrent} request đang chạy, vượt quá thì từ chối ngay</li>
+ *   <li>circuit breaker: sau {@code failureThreshold} lỗi liên tiếp thì từ chối ngay trong {@code openDuration},
+ *       hết thời gian đó cho một request thử, thành công thì đóng lại</li>
+ * </ul>
+ * Bean được tạo trong {@link com.nckh.dia5.config.PythonServiceClientConfig}.
+ */
+@Slf4j
+public class PythonServiceClient {
+
+    @Getter
+    private final String name;
+    private final String baseUrl;
+    private final Duration readTimeout;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Semaphore bulkhead;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean(false);
+    private volatile boolean open;
+    private volatile long openedAt;
+
+    private final Timer latency;
+    private final Counter rejected;
+
+    public PythonServiceClient(String name, String baseUrl, Duration connectTimeout, Duration readTimeout,
+                               int maxConcurrent, int failureThreshold, Duration openDuration,
+                               Executor executor, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.readTimeout = readTimeout;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationNanos = openDuration.toNanos();
+        this.objectMapper = objectMapper;
+        this.bulkhead = new Semaphore(Math.max(1, maxConcurrent));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+
+        this.latency = Timer.builder("python.service.requests")
+                .description("Latency of calls to Python services")
+                .tag("service", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("python.service.rejected")
+                .description("Calls rejected by the bulkhead or an open circuit")
+                .tag("service", name)
+                .register(meterRegistry);
+        Gauge.builder("python.service.circuit.open", this, client -> client.isCircuitOpen() ? 1 : 0)
+                .tag("service", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * POST JSON, parse response thành {@code responseType}
+     */
+    public <T> CompletableFuture<T> postJson(String path, Object body, Map<String, String> headers, Class<T> responseType) {
+        HttpRequest.Builder request;
+        try {
+            request = newRequest(path, headers)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot serialize request for " + name, e));
+        }
+
+        return send(request.build()).thenApply(response -> {
+            try {
+                return objectMapper.readValue(response.body(), responseType);
+            } catch (IOException e) {
+                throw new CompletionException(new RuntimeException(name + " returned an invalid response", e));
+            }
+        });
+    }
+
+    /**
+     * POST JSON, chỉ trả về HTTP status (bỏ qua body)
+     */
+    public CompletableFuture<Integer> postJson(String path, Object body, Map<String, String> headers) {
+        try {
+            HttpRequest request = newRequest(path, headers)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            return send(request).thenApply(HttpResponse::statusCode);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot serialize request for " + name, e));
+        }
+    }
+
+    /**
+     * POST JSON và nhận response dạng stream (SSE, NDJSON): mỗi dòng được đẩy tới {@code onLine} ngay khi
+     * nhận được, không giữ thread trong lúc chờ. Future hoàn thành khi stream kết thúc; bulkhead được giữ
+     * trong suốt thời gian stream.
+     *
+     * Nếu {@code onLine} ném exception (ví dụ client đã ngắt kết nối), các dòng sau vẫn được đọc hết
+     * nhưng bị bỏ qua để kết nối được trả về pool.
+     */
+    public CompletableFuture<Void> streamLines(String path, Object body, Map<String, String> headers, Consumer<String> onLine) {
+        HttpRequest request;
+        try {
+            request = newRequest(path, headers)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Cannot serialize request for " + name, e));
+        }
+
+        return send(request, HttpResponse.BodyHandlers.fromLineSubscriber(new LineSubscriber(onLine)))
+                .thenApply(response -> null);
+    }
+
+    /**
+     * GET, trả về HTTP status
+     */
+    public CompletableFuture<Integer> get(String path) {
+        return send(newRequest(path, Map.of()).GET().build()).thenApply(HttpResponse::statusCode);
+    }
+
+    public boolean isCircuitOpen() {
+        return open && System.nanoTime() - openedAt < openDurationNanos;
+    }
+
+    private HttpRequest.Builder newRequest(String path, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(readTimeout)
+                .header("User-Agent", "Dia5-Backend/1.0");
+        headers.forEach(builder::setHeader);
+        return builder;
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest request) {
+        return send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        boolean trial = false;
+        if (open) {
+            if (isCircuitOpen() || !trialInFlight.compareAndSet(false, true)) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new UpstreamServiceUnavailableException(
+                        "Dịch vụ " + name + " tạm thời không khả dụng, vui lòng thử lại sau"));
+            }
+            // Hết thời gian open -> cho một request thử (half-open)
+            trial = true;
+        }
+        if (!bulkhead.tryAcquire()) {
+            if (trial) {
+                trialInFlight.set(false);
+            }
+            rejected.increment();
+            return CompletableFuture.failedFuture(new UpstreamServiceUnavailableException(
+                    "Dịch vụ " + name + " đang quá tải, vui lòng thử lại sau"));
+        }
+
+        boolean isTrial = trial;
+        long started = System.nanoTime();
+        return httpClient.sendAsync(request, bodyHandler)
+                .handle((response, error) -> {
+                    bulkhead.release();
+                    latency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    boolean failed = cause != null || response.statusCode() >= 500;
+                    recordResult(failed, isTrial);
+
+                    if (cause instanceof HttpTimeoutException) {
+                        throw new CompletionException(new UpstreamServiceUnavailableException(
+                                "Dịch vụ " + name + " không phản hồi trong " + readTimeout.toSeconds() + " giây", cause));
+                    }
+                    if (cause != null) {
+                        throw new CompletionException(new UpstreamServiceUnavailableException(
+                                "Không thể kết nối đến dịch vụ " + name + ": " + cause.getMessage(), cause));
+                    }
+                    if (response.statusCode() >= 300 && !request.method().equals("GET")) {
+                        throw new CompletionException(new RuntimeException(
+                                name + " returned status: " + response.statusCode()));
+                    }
+                    return response;
+                });
+    }
+
+    private void recordResult(boolean failed, boolean trial) {
+        if (trial) {
+            trialInFlight.set(false);
+        }
+        if (!failed) {
+            if (open) {
+                log.info("Circuit for {} closed", name);
+            }
+            consecutiveFailures.set(0);
+            open = false;
+            return;
+        }
+        if (trial || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt = System.nanoTime();
+            open = true;
+            log.warn("Circuit for {} opened for {} s after {} consecutive failures",
+                    name, TimeUnit.NANOSECONDS.toSeconds(openDurationNanos), consecutiveFailures.get());
+        }
+    }
+
+    private class LineSubscriber implements Flow.Subscriber<String> {
+
+        private final Consumer<String> onLine;
+        private boolean consumerFailed;
+
+        private LineSubscriber(Consumer<String> onLine) {
+            this.onLine = onLine;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (consumerFailed) {
+                return;
+            }
+            try {
+                onLine.accept(line);
+            } catch (RuntimeException e) {
+                consumerFailed = true;
+                log.debug("Stopped forwarding {} stream: {}", name, e.getMessage());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.debug("{} stream failed: {}", name, throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.config.BlockchainConfig;
+import com.nckh.dia5.dto.blockchain.SerialNumberStatusDto;
+import com.nckh.dia5.model.BlockchainTransaction;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.model.ProductItem;
+import com.nckh.dia5.repository.BlockchainTransactionRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Pipeline đăng ký serial number lên blockchain.
+ *
+ * Danh sách serial chưa đăng ký của một lô được chia thành các chunk vừa với gas limit (ước lượng gas cho
+ * mỗi serial bằng eth_estimateGas), gửi song song qua nonce-managed sender và đánh dấu
+ * {@code product_items.blockchain_registered} theo từng chunk, nên khi restart chỉ các serial còn thiếu
+ * được gửi lại. Lô còn serial thiếu sau một lượt được resume lại với exponential backoff; quá
+ * {@code max-attempts} lượt thì lô bị đánh dấu failed và không được resume tự động nữa (gọi
+ * {@link #registerPendingSerials} trực tiếp vẫn chạy và đặt lại trạng thái khi thành công).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SerialRegistrationService {
+
+    private final BlockchainService blockchainService;
+    private final BlockchainConfig blockchainConfig;
+    private final ProductItemRepository productItemRepository;
+    private final DrugBatchRepository drugBatchRepository;
+    private final BlockchainTransactionRepository blockchainTransactionRepository;
+    private final DashboardStatsService dashboardStatsService;
+
+    // Giá trị dự phòng khi không estimate được gas (node không hỗ trợ, lô chưa có trên chain...)
+    @Value("${blockchain.serial.gas-per-serial:60000}")
+    private long defaultGasPerSerial;
+
+    @Value("${blockchain.serial.base-gas:80000}")
+    private long defaultBaseGas;
+
+    @Value("${blockchain.serial.max-chunk-size:500}")
+    private int maxChunkSize;
+
+    @Value("${blockchain.serial.max-in-flight:8}")
+    private int maxInFlight;
+
+    @Value("${blockchain.serial.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${blockchain.serial.base-backoff-seconds:60}")
+    private long baseBackoffSeconds;
+
+    @Value("${blockchain.serial.max-backoff-seconds:3600}")
+    private long maxBackoffSeconds;
+
+    // Chỉ dùng 80% gas limit để chừa sai số cho estimate
+    private static final double GAS_LIMIT_HEADROOM = 0.8;
+    private static final int GAS_SAMPLE_SIZE = 20;
+
+    private final Set<BigInteger> activeBatches = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService registrationExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "serial-registration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Ghi tiến độ từng chunk xuống DB, tách khỏi thread của receipt tracker
+    private final ExecutorService progressExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "serial-registration-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Đăng ký tất cả serial chưa đăng ký của lô, trả về số serial đăng ký thành công
+     */
+    public CompletableFuture<Long> registerPendingSerials(BigInteger batchId) {
+        if (!activeBatches.add(batchId)) {
+            log.debug("Serial registration for batch {} already running", batchId);
+            return CompletableFuture.completedFuture(0L);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return registerBatch(batchId);
+            } finally {
+                activeBatches.remove(batchId);
+            }
+        }, registrationExecutor);
+    }
+
+    /**
+     * Tiếp tục các lô còn serial chưa đăng ký (sau restart hoặc chunk bị lỗi) đã tới lượt thử lại
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void resumePendingRegistrations() {
+        try {
+            List<BigInteger> batchIds = productItemRepository.findBatchIdsWithUnregisteredItems(LocalDateTime.now());
+            if (!batchIds.isEmpty()) {
+                log.info("Resuming serial registration for {} batches", batchIds.size());
+                batchIds.forEach(this::registerPendingSerials);
+            }
+        } catch (Exception e) {
+            log.error("Failed to resume serial registrations: {}", e.getMessage());
+        }
+    }
+
+    private long registerBatch(BigInteger batchId) {
+        DrugBatch batch = drugBatchRepository.findByBatchId(batchId)
+                .orElseThrow(() -> new IllegalArgumentException("Batch not found: " + batchId));
+
+        List<String> pending = productItemRepository.findUnregisteredSerialNumbers(batch);
+        if (pending.isEmpty()) {
+            return 0L;
+        }
+
+        int chunkSize = computeChunkSize(batchId, pending);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i += chunkSize) {
+            chunks.add(pending.subList(i, Math.min(i + chunkSize, pending.size())));
+        }
+        log.info("Registering {} serials for batch {} in {} chunks of up to {}",
+                pending.size(), batchId, chunks.size(), chunkSize);
+
+        long started = System.currentTimeMillis();
+        Semaphore inFlight = new Semaphore(Math.max(1, maxInFlight));
+        AtomicLong registered = new AtomicLong();
+        List<CompletableFuture<Void>> results = new ArrayList<>(chunks.size());
+
+        for (List<String> chunk : chunks) {
+            inFlight.acquireUninterruptibly();
+            results.add(blockchainService.registerSerialNumbers(batchId, chunk)
+                    .handleAsync((receipt, error) -> {
+                        if (error == null) {
+                            markRegistered(batch, chunk);
+                            recordTransaction(receipt, batch);
+                            return CompletableFuture.completedFuture((long) chunk.size());
+                        }
+                        log.warn("Serial chunk of {} for batch {} failed: {}",
+                                chunk.size(), batchId, error.getMessage());
+                        return reconcileChunk(batch, chunk);
+                    }, progressExecutor)
+                    .thenCompose(Function.identity())
+                    .handle((count, error) -> {
+                        // Giữ slot tới khi chunk được ghi nhận xong, kể cả lượt đối soát
+                        if (error == null) {
+                            registered.addAndGet(count);
+                        } else {
+                            log.error("Failed to record serial chunk progress for batch {}: {}", batchId, error.getMessage());
+                        }
+                        inFlight.release();
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+        batch.setRegisteredSerials(productItemRepository.countByDrugBatchAndBlockchainRegisteredTrue(batch));
+        recordAttempt(batch, pending.size() - registered.get());
+        // Chỉ ghi các cột của lượt đăng ký: entity đã load từ đầu lượt, save() sẽ ghi đè thay đổi đồng thời
+        drugBatchRepository.updateSerialRegistration(batch.getId(), batch.getRegisteredSerials(),
+                batch.getSerialRegistrationAttempts(), batch.getSerialRegistrationNextAttemptAt(),
+                batch.getSerialRegistrationFailed());
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+        log.info("Registered {}/{} serials for batch {} in {} ms ({} serials/s)",
+                registered.get(), pending.size(), batchId, elapsed, registered.get() * 1000 / elapsed);
+        return registered.get();
+    }
+
+    /**
+     * Lượt đủ serial thì xoá trạng thái retry; còn thiếu thì lên lịch lượt sau với exponential backoff,
+     * tới {@code max-attempts} thì đánh dấu lô failed.
+     */
+    private void recordAttempt(DrugBatch batch, long remaining) {
+        if (remaining <= 0) {
+            batch.setSerialRegistrationAttempts(0);
+            batch.setSerialRegistrationNextAttemptAt(null);
+            batch.setSerialRegistrationFailed(false);
+            return;
+        }
+
+        int attempts = batch.getSerialRegistrationAttempts() + 1;
+        batch.setSerialRegistrationAttempts(attempts);
+        if (attempts >= maxAttempts) {
+            batch.setSerialRegistrationFailed(true);
+            batch.setSerialRegistrationNextAttemptAt(null);
+            log.error("Serial registration for batch {} failed after {} attempts, {} serials still unregistered",
+                    batch.getBatchId(), attempts, remaining);
+        } else {
+            long delay = Math.min(maxBackoffSeconds, baseBackoffSeconds << Math.min(attempts - 1, 20));
+            batch.setSerialRegistrationNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+            log.warn("Serial registration for batch {} left {} serials unregistered (attempt {}), retrying in {} s",
+                    batch.getBatchId(), remaining, attempts, delay);
+        }
+    }
+
+    /**
+     * Số serial tối đa mỗi transaction: ước lượng gas cố định + gas cho mỗi serial từ hai lần estimate
+     * (1 serial và một mẫu nhiều serial), rồi chia phần gas limit còn lại.
+     */
+    private int computeChunkSize(BigInteger batchId, List<String> serials) {
+        long baseGas = defaultBaseGas;
+        long gasPerSerial = defaultGasPerSerial;
+
+        int sampleSize = Math.min(GAS_SAMPLE_SIZE, serials.size());
+        try {
+            long single = blockchainService.estimateRegisterSerialNumbersGas(batchId, serials.subList(0, 1)).longValue();
+            if (sampleSize > 1) {
+                long sample = blockchainService.estimateRegisterSerialNumbersGas(batchId, serials.subList(0, sampleSize)).longValue();
+                gasPerSerial = Math.max(1, (sample - single) / (sampleSize - 1));
+                baseGas = Math.max(0, single - gasPerSerial);
+            } else {
+                baseGas = Math.max(0, single - gasPerSerial);
+            }
+        } catch (Exception e) {
+            log.warn("Gas estimation for batch {} failed ({}), using defaults", batchId, e.getMessage());
+        }
+
+        long usableGas = (long) (blockchainConfig.getGasLimit().longValue() * GAS_LIMIT_HEADROOM) - baseGas;
+        long fitting = usableGas / gasPerSerial;
+        log.debug("Serial gas for batch {}: base={}, perSerial={}, fitting={}", batchId, baseGas, gasPerSerial, fitting);
+        return (int) Math.max(1, Math.min(fitting, maxChunkSize));
+    }
+
+    private void markRegistered(DrugBatch batch, List<String> serials) {
+        int updated = productItemRepository.markRegistered(batch, serials, ProductItem.ProductItemStatus.REGISTERED,
+                LocalDateTime.now());
+        dashboardStatsService.onItemsRegistered(updated);
+    }
+
+    /**
+     * Chunk bị lỗi có thể đã được mined trước khi restart (contract revert "Serial already registered").
+     * Kiểm tra các serial trên chain (các call được gửi đồng thời và gom thành batch RPC) và đánh dấu
+     * những serial đã tồn tại; phần còn lại chờ lần resume sau.
+     */
+    private CompletableFuture<Long> reconcileChunk(DrugBatch batch, List<String> chunk) {
+        List<CompletableFuture<SerialNumberStatusDto>> statuses = new ArrayList<>(chunk.size());
+        for (String serial : chunk) {
+            statuses.add(blockchainService.getSerialStatus(batch.getBatchId(), serial));
+        }
+
+        // Không chờ trên progressExecutor: kết quả được xử lý khi mọi call đã xong
+        return CompletableFuture.allOf(statuses.toArray(new CompletableFuture[0]))
+                .handleAsync((ignored, error) -> {
+                    List<String> onChain = new ArrayList<>();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        try {
+                            if (statuses.get(i).join().isExists()) {
+                                onChain.add(chunk.get(i));
+                            }
+                        } catch (Exception e) {
+                            log.debug("Cannot check serial {} on chain: {}", chunk.get(i), e.getMessage());
+                        }
+                    }
+                    if (!onChain.isEmpty()) {
+                        markRegistered(batch, onChain);
+                        log.info("Reconciled {} already-registered serials for batch {}", onChain.size(), batch.getBatchId());
+                    }
+                    return (long) onChain.size();
+                }, progressExecutor);
+    }
+
+    private void recordTransaction(TransactionReceipt receipt, DrugBatch batch) {
+        try {
+            BlockchainTransaction transaction = new BlockchainTransaction();
+            transaction.setTransactionHash(receipt.getTransactionHash());
+            BigInteger txBlock = receipt.getBlockNumber();
+            transaction.setBlockNumber(txBlock != null ? txBlock : BigInteger.ONE);
+            transaction.setFromAddress(receipt.getFrom());
+            transaction.setToAddress(receipt.getTo());
+            transaction.setFunctionName("registerSerialNumbers");
+            transaction.setGasUsed(receipt.getGasUsed());
+            transaction.setStatus(receipt.isStatusOK()
+                    ? BlockchainTransaction.TransactionStatus.SUCCESS
+                    : BlockchainTransaction.TransactionStatus.FAILED);
+            transaction.setTimestamp(LocalDateTime.now());
+            transaction.setDrugBatch(batch);
+            blockchainTransactionRepository.save(transaction);
+        } catch (Exception e) {
+            log.error("Failed to record blockchain transaction", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        registrationExecutor.shutdownNow();
+        progressExecutor.shutdownNow();
+    }
+}
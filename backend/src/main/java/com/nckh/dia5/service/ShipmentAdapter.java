@@ -25,6 +25,7 @@ import java.util.Optional;
 public class ShipmentAdapter {
     
     private final PharmaCompanyRepository pharmaCompanyRepository;
+    private final ShipmentMetadataBackfill metadataBackfill;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     /**
@@ -44,12 +45,13 @@ public class ShipmentAdapter {
         // Generate shipment code
         shipment.setShipmentCode("SHIP-" + shipmentId.toString());
         
-        // Store blockchain data in transient fields
+        // Metadata blockchain lưu ở các cột riêng của drug_shipments
         shipment.setShipmentId(shipmentId);
         shipment.setFromAddress(fromAddress);
         shipment.setToAddress(toAddress);
         shipment.setTrackingInfo(trackingInfo);
         shipment.setBlockNumber(blockNumber);
+        shipment.setIsSynced(transactionHash != null && !transactionHash.startsWith("PENDING_"));
         
         // Find or create companies based on addresses
         PharmaCompany fromCompany = findOrCreateCompanyByAddress(fromAddress, "Manufacturer");
@@ -68,60 +70,41 @@ public class ShipmentAdapter {
         // Set transaction hash
         shipment.setCreateTxHash(transactionHash);
         
-        // Store blockchain data in notes as JSON
-        Map<String, Object> blockchainData = new HashMap<>();
-        blockchainData.put("original_shipment_id", shipmentId.toString());
-        blockchainData.put("from_address", fromAddress);
-        blockchainData.put("to_address", toAddress);
-        blockchainData.put("tracking_info", trackingInfo);
-        blockchainData.put("block_number", blockNumber != null ? blockNumber.toString() : null);
-        blockchainData.put("is_synced", true);
-        
-        try {
-            shipment.setNotes(objectMapper.writeValueAsString(blockchainData));
-        } catch (Exception e) {
-            log.error("Failed to serialize blockchain data", e);
-            shipment.setNotes(blockchainData.toString());
-        }
-        
         return shipment;
     }
     
+    /**
+     * Cập nhật shipment offline sau khi giao dịch createShipment được mined
+     */
+    public void markSynced(Shipment shipment, String transactionHash, BigInteger blockNumber) {
+        shipment.setCreateTxHash(transactionHash);
+        shipment.setBlockNumber(blockNumber);
+        shipment.setIsSynced(true);
+    }
+
     /**
      * Extract blockchain data from Shipment entity
      */
     public Map<String, Object> extractBlockchainData(Shipment shipment) {
         Map<String, Object> data = new HashMap<>();
-        
-        // Try to parse from notes
-        if (shipment.getNotes() != null && !shipment.getNotes().isEmpty()) {
-            try {
-                ObjectNode jsonNode = objectMapper.readValue(shipment.getNotes(), ObjectNode.class);
-                
-                // Extract blockchain fields
-                if (jsonNode.has("original_shipment_id")) {
-                    data.put("shipmentId", new BigInteger(jsonNode.get("original_shipment_id").asText()));
-                }
-                if (jsonNode.has("from_address")) {
-                    data.put("fromAddress", jsonNode.get("from_address").asText());
-                }
-                if (jsonNode.has("to_address")) {
-                    data.put("toAddress", jsonNode.get("to_address").asText());
-                }
-                if (jsonNode.has("tracking_info")) {
-                    data.put("trackingInfo", jsonNode.get("tracking_info").asText());
-                }
-                if (jsonNode.has("block_number")) {
-                    String blockNum = jsonNode.get("block_number").asText();
-                    if (blockNum != null && !blockNum.equals("null")) {
-                        data.put("blockNumber", new BigInteger(blockNum));
-                    }
-                }
-                if (jsonNode.has("is_synced")) {
-                    data.put("isSynced", jsonNode.get("is_synced").asBoolean());
-                }
-            } catch (Exception e) {
-                log.error("Failed to parse blockchain data from notes", e);
+        putIfNotNull(data, "shipmentId", shipment.getShipmentId());
+        putIfNotNull(data, "fromAddress", shipment.getFromAddress());
+        putIfNotNull(data, "toAddress", shipment.getToAddress());
+        putIfNotNull(data, "trackingInfo", shipment.getTrackingInfo());
+        putIfNotNull(data, "blockNumber", shipment.getBlockNumber());
+        putIfNotNull(data, "isSynced", shipment.getIsSynced());
+
+        // Dòng cũ chưa được backfill: đọc tạm từ notes JSON
+        if (!metadataBackfill.isComplete() && shipment.getShipmentId() == null
+                && shipment.getFromAddress() == null && shipment.getToAddress() == null) {
+            LegacyShipmentMetadata legacy = LegacyShipmentMetadata.parse(objectMapper, shipment.getNotes());
+            putIfNotNull(data, "shipmentId", legacy.shipmentId());
+            putIfNotNull(data, "fromAddress", legacy.fromAddress());
+            putIfNotNull(data, "toAddress", legacy.toAddress());
+            putIfNotNull(data, "trackingInfo", legacy.trackingInfo());
+            putIfNotNull(data, "blockNumber", legacy.blockNumber());
+            if (legacy.isSynced() != null) {
+                data.put("isSynced", legacy.isSynced());
             }
         }
         
@@ -137,7 +120,7 @@ public class ShipmentAdapter {
             }
         }
         
-        // Get addresses from companies if not in notes
+        // Get addresses from companies if not stored on the shipment
         if (!data.containsKey("fromAddress") && shipment.getFromCompany() != null) {
             data.put("fromAddress", shipment.getFromCompany().getWalletAddress());
         }
@@ -152,6 +135,12 @@ public class ShipmentAdapter {
         return data;
     }
     
+    private static void putIfNotNull(Map<String, Object> data, String key, Object value) {
+        if (value != null) {
+            data.put(key, value);
+        }
+    }
+
     /**
      * Find or create a pharma company by wallet address
      */
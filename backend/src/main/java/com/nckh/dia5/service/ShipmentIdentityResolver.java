@@ -0,0 +1,228 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.model.Shipment;
+import com.nckh.dia5.repository.ShipmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves whatever identifies a shipment — blockchain shipment ID, shipment code, database ID or a
+ * scanned QR payload (JSON or URL carrying one of those) — to the shipment row.
+ *
+ * A number matches, in this order, the code {@code SHIP-<number>}, the blockchain shipment ID and
+ * the database ID; any other text matches the shipment code. All of it is one query over indexed
+ * columns. A near cache maps each lookup key to the database ID so repeated scans of the same
+ * shipment go straight to the primary key. {@code ShipmentIdentityListener} evicts the keys of a
+ * shipment after its writes commit; writes made by other nodes are picked up once entries expire
+ * ({@code shipments.identity-cache.ttl-seconds}). Nothing is cached while the blockchain columns
+ * are still being backfilled, since the backfill writes them outside JPA.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShipmentIdentityResolver {
+
+    static final String CODE_PREFIX = "SHIP-";
+
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pageable FIRST_MATCH = PageRequest.of(0, 1);
+    // Trường mang định danh shipment trong QR (JSON hoặc query string), mã shipment trước vì là unique
+    private static final List<String> PAYLOAD_FIELDS = List.of(
+            "shipmentCode", "shipment_code", "trackingCode", "shipmentId", "shipment_id", "id");
+
+    private final ShipmentRepository shipmentRepository;
+    private final ShipmentMetadataBackfill metadataBackfill;
+    private final ObjectMapper objectMapper;
+
+    @Value("${shipments.identity-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${shipments.identity-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, CachedId> entries = new ConcurrentHashMap<>();
+
+    public Optional<Shipment> resolve(BigInteger shipmentId) {
+        if (shipmentId == null || shipmentId.signum() < 0) {
+            return Optional.empty();
+        }
+        return resolve(ShipmentKey.ofNumber(shipmentId));
+    }
+
+    /**
+     * @param scanned raw scan input: a number, a shipment code, or a QR payload carrying either
+     */
+    public Optional<Shipment> resolve(String scanned) {
+        ShipmentKey key = parse(scanned);
+        if (key == null) {
+            return Optional.empty();
+        }
+        return resolve(key);
+    }
+
+    /**
+     * Drops the cached keys of a shipment; called after its insert, update or delete commits.
+     */
+    public void evict(List<String> keys) {
+        keys.forEach(entries::remove);
+    }
+
+    /**
+     * Every lookup key that can currently resolve to this shipment (or be shadowed by it).
+     */
+    public static List<String> keysOf(Shipment shipment) {
+        List<String> keys = new ArrayList<>(4);
+        if (shipment.getId() != null) {
+            keys.add(shipment.getId().toString());
+        }
+        if (shipment.getShipmentId() != null) {
+            keys.add(shipment.getShipmentId().toString());
+        }
+        String code = shipment.getShipmentCode();
+        if (code != null) {
+            String normalized = normalizeCode(code);
+            keys.add(normalized);
+            if (normalized.startsWith(CODE_PREFIX) && DIGITS.matcher(normalized.substring(CODE_PREFIX.length())).matches()) {
+                keys.add(normalized.substring(CODE_PREFIX.length()));
+            }
+        }
+        return keys;
+    }
+
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(cached -> cached.expiresAtMs() <= now);
+    }
+
+    private Optional<Shipment> resolve(ShipmentKey key) {
+        CachedId cached = entries.get(key.cacheKey());
+        if (cached != null) {
+            if (cached.expiresAtMs() > System.currentTimeMillis()) {
+                Optional<Shipment> hit = shipmentRepository.findWithPartiesAndBatchById(cached.id());
+                if (hit.isPresent()) {
+                    return hit;
+                }
+            }
+            entries.remove(key.cacheKey(), cached);
+        }
+
+        Optional<Shipment> found = shipmentRepository
+                .findByAnyIdentity(key.code(), key.chainId(), key.databaseId(), FIRST_MATCH)
+                .stream()
+                .findFirst();
+        found.ifPresent(shipment -> put(key.cacheKey(), shipment.getId()));
+        return found;
+    }
+
+    private void put(String key, Long id) {
+        if (id == null || !metadataBackfill.isComplete()) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evictExpired();
+            if (entries.size() >= maxSize) {
+                // Cache đầy thì bỏ qua, lần sau vẫn tra bằng một truy vấn
+                return;
+            }
+        }
+        entries.put(key, new CachedId(id, System.currentTimeMillis() + ttlSeconds * 1000));
+    }
+
+    ShipmentKey parse(String scanned) {
+        if (scanned == null) {
+            return null;
+        }
+        String value = scanned.trim();
+        if (value.startsWith("{")) {
+            value = fromJson(value);
+        } else if (value.contains("://") || value.contains("?")) {
+            value = fromUrl(value);
+        }
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        value = value.trim();
+        if (DIGITS.matcher(value).matches()) {
+            return ShipmentKey.ofNumber(new BigInteger(value));
+        }
+        return ShipmentKey.ofCode(value);
+    }
+
+    private String fromJson(String payload) {
+        try {
+            JsonNode root = objectMapper.readTree(payload);
+            for (String field : PAYLOAD_FIELDS) {
+                JsonNode node = root.get(field);
+                if (node != null && !node.isNull() && node.isValueNode()) {
+                    return node.asText();
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Scanned payload is not valid JSON: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private static String fromUrl(String payload) {
+        try {
+            UriComponents uri = UriComponentsBuilder.fromUriString(payload).build();
+            MultiValueMap<String, String> params = uri.getQueryParams();
+            for (String field : PAYLOAD_FIELDS) {
+                String param = params.getFirst(field);
+                if (param != null && !param.isBlank()) {
+                    return param;
+                }
+            }
+            List<String> segments = uri.getPathSegments();
+            return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        } catch (IllegalArgumentException e) {
+            log.debug("Scanned payload is not a valid URL: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String normalizeCode(String code) {
+        // shipment_code so khớp không phân biệt hoa thường (collation của MySQL)
+        return code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Parsed lookup: the values compared against shipment_code, blockchain_shipment_id and id
+     * (absent ones are {@code null}), plus the near-cache key.
+     */
+    record ShipmentKey(String cacheKey, String code, BigInteger chainId, Long databaseId) {
+
+        static ShipmentKey ofNumber(BigInteger number) {
+            Long databaseId = number.signum() > 0 && number.bitLength() < Long.SIZE ? number.longValue() : null;
+            return new ShipmentKey(number.toString(), CODE_PREFIX + number, number, databaseId);
+        }
+
+        static ShipmentKey ofCode(String code) {
+            return new ShipmentKey(normalizeCode(code), code, null, null);
+        }
+    }
+
+    private record CachedId(Long id, long expiresAtMs) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Online backfill of the typed blockchain columns of {@code drug_shipments} (blockchain_shipment_id,
+ * from/to_address, tracking_info, block_number, is_synced) from the legacy notes JSON.
+ *
+ * Runs in the background once the application is ready and walks the table by primary key in
+ * chunks. Each chunk is a short autocommit batch of single-row UPDATEs, so only that chunk's rows
+ * are locked and writes keep flowing. Columns are only filled while still NULL, so values the
+ * application wrote in the meantime win. Completion is recorded in {@code schema_backfills};
+ * later starts skip the scan.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShipmentMetadataBackfill {
+
+    static final String NAME = "drug_shipments.blockchain_columns";
+
+    private static final String UPDATE_SQL = "UPDATE drug_shipments SET " +
+            "blockchain_shipment_id = COALESCE(blockchain_shipment_id, ?), " +
+            "from_address = COALESCE(from_address, ?), " +
+            "to_address = COALESCE(to_address, ?), " +
+            "tracking_info = COALESCE(tracking_info, ?), " +
+            "block_number = COALESCE(block_number, ?), " +
+            "is_synced = (is_synced OR ?) " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${shipments.metadata-backfill.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${shipments.metadata-backfill.pause-ms:50}")
+    private long pauseMs;
+
+    private volatile boolean complete;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            // Lần khởi động sau chạy lại; các dòng đã điền không bị ghi đè
+            log.error("Shipment metadata backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * True once every row has been backfilled; until then reads fall back to the notes JSON for
+     * rows whose columns are still empty.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private void run() {
+        Integer recorded = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM schema_backfills WHERE name = ?", Integer.class, NAME);
+        if (recorded != null && recorded > 0) {
+            complete = true;
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        long rowsSeen = 0;
+        while (true) {
+            List<LegacyRow> rows = jdbcTemplate.query(
+                    "SELECT id, notes, create_tx_hash FROM drug_shipments WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new LegacyRow(rs.getLong("id"), rs.getString("notes"), rs.getString("create_tx_hash")),
+                    lastId, chunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (LegacyRow row : rows) {
+                LegacyShipmentMetadata legacy = LegacyShipmentMetadata.parse(objectMapper, row.notes());
+                boolean synced = legacy.isSynced() != null
+                        ? legacy.isSynced()
+                        : row.createTxHash() != null && !row.createTxHash().startsWith("PENDING_");
+                updates.add(new Object[]{
+                        decimal(legacy.shipmentId()), legacy.fromAddress(), legacy.toAddress(),
+                        legacy.trackingInfo(), decimal(legacy.blockNumber()), synced, row.id()});
+            }
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+
+            lastId = rows.get(rows.size() - 1).id();
+            rowsSeen += rows.size();
+            pause();
+        }
+
+        jdbcTemplate.update("INSERT IGNORE INTO schema_backfills (name, completed_at) VALUES (?, NOW(6))", NAME);
+        complete = true;
+        log.info("Shipment metadata backfill finished: {} rows in {} ms", rowsSeen, System.currentTimeMillis() - start);
+    }
+
+    private void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Shipment metadata backfill interrupted", e);
+        }
+    }
+
+    private static BigDecimal decimal(BigInteger value) {
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    private record LegacyRow(long id, String notes, String createTxHash) {
+    }
+}
@@ -15,6 +15,7 @@ import com.nckh.dia5.repository.UserLifestyleRepository;
 import com.nckh.dia5.repository.UserRepository;
 import com.nckh.dia5.repository.UserMedicationRepository;
 import com.nckh.dia5.repository.UserAllergyRepository;
+import com.nckh.dia5.security.PrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,6 +34,7 @@ public class UserService {
     private final UserMedicationRepository userMedicationRepository;
     private final UserAllergyRepository userAllergyRepository;
     private final AuthService authService;
+    private final PrincipalCache principalCache;
 
     public UserResponse getCurrentUserInfo() {
         User user = authService.getCurrentUser();
@@ -40,7 +42,10 @@ public class UserService {
     }
 
     public UserProfileResponse getCurrentUserProfile() {
-        User user = authService.getCurrentUser();
+        return mapToProfileResponse(authService.getCurrentUser());
+    }
+
+    private UserProfileResponse mapToProfileResponse(User user) {
         UserDemographic demographic = userDemographicRepository.findByUserId(user.getId()).orElse(null);
 
         UserProfileResponse.UserProfileResponseBuilder builder = UserProfileResponse.builder()
@@ -78,7 +83,10 @@ public class UserService {
 
     @Transactional
     public UserProfileResponse updateProfile(UpdateProfileRequest request) {
-        User user = authService.getCurrentUser();
+        // Principal trong SecurityContext được cache dùng chung giữa các request, không sửa trực tiếp
+        String userId = authService.getCurrentUserId();
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
 
         // Update user basic info
         if (request.getName() != null) {
@@ -136,9 +144,11 @@ public class UserService {
 
         userRepository.save(user);
         userDemographicRepository.save(demographic);
+        principalCache.invalidate(user.getEmail());
 
         log.info("User profile updated: {}", user.getId());
-        return getCurrentUserProfile();
+        // Principal của request hiện tại vẫn là bản cũ, dựng response từ user vừa lưu
+        return mapToProfileResponse(user);
     }
 
     public UserResponse getUserById(String userId) {
@@ -0,0 +1,62 @@
+package com.nckh.dia5.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hoá chuỗi trước khi ghi lên contract PharmaLedger.
+ *
+ * Chuỗi trên chain chỉ nên chứa ASCII in được: tên thuốc/nhà sản xuất tiếng Việt được bỏ dấu, ký tự
+ * điều khiển và ký tự ngoài ASCII bị loại, khoảng trắng được gộp lại. Số lô còn được giới hạn ở
+ * chữ, số và {@code - _ . /} vì nó là một phần của mã QR.
+ */
+@Slf4j
+@Component
+public class BlockchainEncodingFixer {
+
+    private static final int MAX_BATCH_NUMBER_LENGTH = 100;
+    private static final String UNKNOWN_BATCH_NUMBER = "UNKNOWN";
+
+    private static final Pattern NON_PRINTABLE_ASCII = Pattern.compile("[^\\x20-\\x7E]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern BATCH_NUMBER_INVALID = Pattern.compile("[^A-Za-z0-9._/-]+");
+
+    /**
+     * Bỏ dấu tiếng Việt, loại ký tự ngoài ASCII in được và gộp khoảng trắng. Trả về {@code null} cho {@code null}.
+     */
+    public String cleanForBlockchain(String input) {
+        if (input == null) {
+            return null;
+        }
+        String ascii = NON_PRINTABLE_ASCII.matcher(
+                WHITESPACE.matcher(VietnameseUtils.removeVietnameseDiacritics(input)).replaceAll(" ")).replaceAll("");
+        return ascii.trim();
+    }
+
+    /**
+     * Số lô an toàn cho contract và mã QR: ký tự không hợp lệ thành {@code -}, tối đa
+     * {@value #MAX_BATCH_NUMBER_LENGTH} ký tự; số lô rỗng thành {@value #UNKNOWN_BATCH_NUMBER}.
+     */
+    public String validateBatchNumber(String batchNumber) {
+        String cleaned = cleanForBlockchain(batchNumber);
+        if (cleaned == null || cleaned.isEmpty()) {
+            return UNKNOWN_BATCH_NUMBER;
+        }
+        cleaned = BATCH_NUMBER_INVALID.matcher(cleaned).replaceAll("-");
+        if (cleaned.length() > MAX_BATCH_NUMBER_LENGTH) {
+            cleaned = cleaned.substring(0, MAX_BATCH_NUMBER_LENGTH);
+        }
+        return cleaned.isEmpty() || cleaned.chars().allMatch(c -> c == '-') ? UNKNOWN_BATCH_NUMBER : cleaned;
+    }
+
+    /**
+     * Ghi log khi giá trị gửi lên chain khác giá trị gốc, để truy lại dữ liệu bị chuẩn hoá
+     */
+    public void logEncodingIssues(String original, String cleaned, String field) {
+        if (original != null && !original.equals(cleaned)) {
+            log.debug("Normalized {} for blockchain: '{}' -> '{}'", field, original, cleaned);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.nckh.dia5.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Newline-delimited JSON responses for full exports: each row is serialized and written as soon
+ * as the producer hands it over, so memory use does not depend on the number of rows.
+ */
+public final class NdjsonStreams {
+
+    /**
+     * Request attribute marking an export response, so that {@code WebAsyncConfig} applies the
+     * export timeout to it instead of the default async request timeout.
+     */
+    public static final String EXPORT_ATTRIBUTE = NdjsonStreams.class.getName() + ".export";
+
+    private static final int EXPORT_CLEAR_INTERVAL = 500;
+
+    private NdjsonStreams() {
+    }
+
+    /**
+     * @param producer pushes every row into the given sink; it runs on the async request thread
+     *                 and is expected to open its own (read-only) transaction
+     */
+    public static <T> ResponseEntity<StreamingResponseBody> response(ObjectMapper objectMapper, String filename,
+            Consumer<Consumer<T>> producer) {
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(EXPORT_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        ObjectWriter writer = objectMapper.writer();
+        StreamingResponseBody body = out -> {
+            try {
+                producer.accept(row -> {
+                    try {
+                        out.write(writer.writeValueAsBytes(row));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // Client ngắt kết nối giữa chừng: trả IOException gốc cho Spring xử lý
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    /**
+     * Maps every row of a repository stream into the sink. The rows are managed entities, so the
+     * persistence context is cleared every {@value #EXPORT_CLEAR_INTERVAL} rows to keep memory flat.
+     */
+    public static <E, T> void exportRows(EntityManager entityManager, Stream<E> rows, Function<E, T> mapper,
+            Consumer<T> sink) {
+        int[] count = {0};
+        rows.forEach(row -> {
+            sink.accept(mapper.apply(row));
+            if (++count[0] % EXPORT_CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.nckh.dia5.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for Vietnamese text: stripping diacritics (for ASCII-only targets such as contract
+ * strings) and folding text for accent-insensitive search.
+ */
+public final class VietnameseUtils {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private VietnameseUtils() {
+    }
+
+    /**
+     * "Thuốc giảm đau" → "Thuoc giam dau". Returns {@code null} for {@code null}.
+     */
+    public static String removeVietnameseDiacritics(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+    }
+
+    /**
+     * Lower-cased, diacritic-free form used as the key for accent-insensitive matching.
+     */
+    public static String foldForSearch(String text) {
+        if (text == null) {
+            return "";
+        }
+        return removeVietnameseDiacritics(text).toLowerCase(Locale.ROOT).trim();
+    }
+}
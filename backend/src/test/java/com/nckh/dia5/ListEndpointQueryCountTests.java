@@ -0,0 +1,144 @@
+package com.nckh.dia5;
+
+import com.nckh.dia5.dto.common.CursorPage;
+import com.nckh.dia5.support.SqlStatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * List endpoints must run a fixed number of SQL statements however many rows they return: a page
+ * of one row and a page of {@link CursorPage#MAX_LIMIT} rows issue the same statements, and a full
+ * NDJSON export issues no statement per row. Runs on the H2 test profile with a few rows per list,
+ * each pointing at its own batch and companies so that per-row lazy loads would show up.
+ */
+@SpringBootTest(properties = SqlStatementCounter.PROPERTY + "=com.nckh.dia5.support.SqlStatementCounter")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Sql(scripts = "/sql/list-endpoint-rows.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_CLASS)
+@WithMockUser
+class ListEndpointQueryCountTests {
+
+    private static final long MAX_STATEMENTS_PER_LIST = 3;
+    private static final int SEEDED_SHIPMENTS = 3;
+    private static final String PHARMACY_WITH_ONE_ROW = "0x00000000000000000000000000000000000000c1";
+    private static final String PHARMACY_WITH_THREE_ROWS = "0x00000000000000000000000000000000000000c2";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${app.export.timeout-ms}")
+    private long exportTimeoutMs;
+
+    @BeforeEach
+    void clearCaches() {
+        // Trang medications được cache: phải đọc từ database thì mới đếm được câu lệnh
+        cacheManager.getCacheNames().forEach(name -> Objects.requireNonNull(cacheManager.getCache(name)).clear());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/api/blockchain/drugs/batches",
+            "/api/blockchain/drugs/shipments",
+            "/api/blockchain/drugs/shipments/pending",
+            "/api/distributor/shipments",
+            "/api/medications"
+    })
+    void statementCountDoesNotGrowWithPageSize(String path) throws Exception {
+        long singleRow = statementsFor(path + "?limit=1");
+        clearCaches();
+        long fullPage = statementsFor(path + "?limit=" + CursorPage.MAX_LIMIT);
+
+        assertThat(singleRow).isPositive();
+        assertThat(fullPage).isEqualTo(singleRow);
+        assertThat(fullPage).isLessThanOrEqualTo(MAX_STATEMENTS_PER_LIST);
+    }
+
+    /**
+     * The wallet inventory list has no page size: compare a pharmacy with one row to one with three
+     */
+    @Test
+    void inventoryStatementCountDoesNotGrowWithRows() throws Exception {
+        String path = "/api/pharmacy/inventory/wallet/";
+        long singleRow = statementsFor(path + PHARMACY_WITH_ONE_ROW);
+        long threeRows = statementsFor(path + PHARMACY_WITH_THREE_ROWS);
+
+        mockMvc.perform(get(path + PHARMACY_WITH_THREE_ROWS))
+                .andExpect(jsonPath("$.data.length()").value(3))
+                .andExpect(jsonPath("$.data[*].receivedFromDistributorName")
+                        .value(containsInAnyOrder("Distributor A", "Distributor B", "Distributor C")));
+
+        assertThat(singleRow).isPositive();
+        assertThat(threeRows).isEqualTo(singleRow);
+        assertThat(threeRows).isLessThanOrEqualTo(MAX_STATEMENTS_PER_LIST);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/api/blockchain/drugs/shipments/export",
+            "/api/distributor/shipments/export"
+    })
+    void shipmentExportDoesNotLoadAssociationsPerRow(String path) throws Exception {
+        MvcResult[] result = new MvcResult[1];
+        long statements = SqlStatementCounter.count(() -> {
+            result[0] = mockMvc.perform(get(path)).andExpect(request().asyncStarted()).andReturn();
+            // Chờ body export chạy xong trên luồng async
+            return result[0].getAsyncResult(10_000);
+        });
+
+        assertThat(result[0].getResponse().getContentAsString().lines()).hasSize(SEEDED_SHIPMENTS);
+        assertThat(statements).isPositive().isLessThanOrEqualTo(MAX_STATEMENTS_PER_LIST);
+        assertThat(result[0].getRequest().getAsyncContext().getTimeout()).isEqualTo(exportTimeoutMs);
+    }
+
+    private long statementsFor(String uri) throws Exception {
+        return SqlStatementCounter.count(() -> mockMvc.perform(get(uri)).andExpect(status().isOk()));
+    }
+
+    /**
+     * Counts the statements of async (export) bodies towards the request that started them.
+     */
+    @TestConfiguration
+    static class CountingAsyncConfig {
+
+        @Bean
+        WebMvcConfigurer countingAsyncExecutor() {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("export-");
+            executor.setTaskDecorator(SqlStatementCounter::propagate);
+            return new WebMvcConfigurer() {
+                @Override
+                public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                    configurer.setTaskExecutor(executor);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.nckh.dia5.benchmark;
+
+import com.nckh.dia5.service.BlockchainCallAggregator;
+import com.nckh.dia5.service.BlockchainExecutors;
+import com.nckh.dia5.support.EthNodeStub;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.request.Transaction;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of 100 concurrent serial-status checks through {@link BlockchainCallAggregator}, one
+ * eth_call per HTTP round trip ({@code batched=false}) against JSON-RPC batches, with a node that
+ * takes {@code rpcLatencyMs} per round trip ({@link EthNodeStub}). The secondary result
+ * {@code roundTripsPerCheck} ({@link RoundTrips}) is the number of HTTP round trips per check.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=BlockchainCallAggregatorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockchainCallAggregatorBenchmark {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final int CONCURRENT_CHECKS = 100;
+    private static final List<TypeReference<Type>> SERIAL_STATUS = outputs();
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    @Param({"2"})
+    public long rpcLatencyMs;
+
+    private final List<Transaction> checks = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private Counter rpcCounter;
+    private BlockchainExecutors executors;
+    private BlockchainCallAggregator aggregator;
+
+    @Setup
+    public void setUp() {
+        String status = "0x" + FunctionEncoder.encodeConstructor(List.of(
+                new Bool(true), new Bool(false), new Uint256(0), new Address(CONTRACT)));
+        EthNodeStub node = new EthNodeStub(rpcLatencyMs).on("eth_call", params -> status);
+
+        meterRegistry = new SimpleMeterRegistry();
+        executors = new BlockchainExecutors(meterRegistry);
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 1000);
+        ReflectionTestUtils.setField(executors, "readThreads", 8);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 2000);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 4);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 5000);
+        ReflectionTestUtils.invokeMethod(executors, "init");
+
+        // Giá trị mặc định của blockchain.call-batch.*
+        aggregator = new BlockchainCallAggregator(Web3j.build(node), meterRegistry, executors);
+        ReflectionTestUtils.setField(aggregator, "enabled", batched);
+        ReflectionTestUtils.setField(aggregator, "windowMs", 5L);
+        ReflectionTestUtils.setField(aggregator, "maxBatchSize", 50);
+        ReflectionTestUtils.invokeMethod(aggregator, "init");
+        rpcCounter = meterRegistry.get("blockchain.call.rpc").counter();
+
+        for (int i = 0; i < CONCURRENT_CHECKS; i++) {
+            Function getSerialStatus = new Function("getSerialStatus",
+                    List.of(new Uint256(BigInteger.valueOf(42)), new Utf8String("SN-" + i)),
+                    List.of());
+            checks.add(Transaction.createEthCallTransaction(null, CONTRACT, FunctionEncoder.encode(getSerialStatus)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(aggregator, "shutdown");
+        ReflectionTestUtils.invokeMethod(executors, "shutdown");
+    }
+
+    /**
+     * One operation issues 100 serial-status checks at once and waits for all of them.
+     */
+    @Benchmark
+    public List<List<Type>> concurrentSerialStatusChecks(RoundTrips roundTrips) {
+        double rpcBefore = rpcCounter.count();
+        List<CompletableFuture<List<Type>>> results = new ArrayList<>(CONCURRENT_CHECKS);
+        for (Transaction check : checks) {
+            results.add(aggregator.call(check)
+                    .thenApply(response -> FunctionReturnDecoder.decode(response.getValue(), SERIAL_STATUS)));
+        }
+        List<List<Type>> statuses = results.stream().map(CompletableFuture::join).toList();
+        roundTrips.record(rpcCounter.count() - rpcBefore, CONCURRENT_CHECKS);
+        return statuses;
+    }
+
+    /**
+     * Round trips (metric {@code blockchain.call.rpc}) per check in the current iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+
+        private double rpc;
+        private long checks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rpc = 0;
+            checks = 0;
+        }
+
+        void record(double rpcDelta, int checkCount) {
+            rpc += rpcDelta;
+            checks += checkCount;
+        }
+
+        public double roundTripsPerCheck() {
+            return checks == 0 ? 0 : rpc / checks;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<TypeReference<Type>> outputs() {
+        List outputs = List.of(new TypeReference<Bool>() {}, new TypeReference<Bool>() {},
+                new TypeReference<Uint256>() {}, new TypeReference<Address>() {});
+        return outputs;
+    }
+}
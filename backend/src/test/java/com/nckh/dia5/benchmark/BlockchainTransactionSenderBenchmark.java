@@ -0,0 +1,143 @@
+package com.nckh.dia5.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.nckh.dia5.config.BlockchainConfig;
+import com.nckh.dia5.service.BlockchainCallAggregator;
+import com.nckh.dia5.service.BlockchainExecutors;
+import com.nckh.dia5.service.BlockchainReceiptTracker;
+import com.nckh.dia5.service.BlockchainService;
+import com.nckh.dia5.service.BlockchainTransactionSender;
+import com.nckh.dia5.support.EthNodeStub;
+import com.nckh.dia5.util.BlockchainEncodingFixer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.gas.StaticGasProvider;
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Transactions per second submitted through {@link BlockchainService#issueBatch} and
+ * {@link BlockchainService#createShipment} (alternating) by 1, 8 and 64 concurrent callers. The
+ * node is {@link EthNodeStub} taking {@code rpcLatencyMs} per round trip; receipts complete as soon
+ * as the node accepted the transaction, so block time is left out and the numbers are the
+ * sign-and-send capacity of {@link BlockchainTransactionSender}.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=BlockchainTransactionSenderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockchainTransactionSenderBenchmark {
+
+    private static final String PRIVATE_KEY = "0xac0974bec39a17e36ba4a6b4d238ff944bacb478cbed5efcae784d7bf4f2ff80";
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final String DISTRIBUTOR = "0x70997970c51812dc3a010c7d01b50e0d17dc79c8";
+
+    @Param({"1"})
+    public long rpcLatencyMs;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private BlockchainExecutors executors;
+    private BlockchainService blockchainService;
+
+    @Setup
+    public void setUp() {
+        // Log INFO của mỗi giao dịch sẽ chiếm phần lớn thời gian đo
+        ((Logger) LoggerFactory.getLogger("com.nckh.dia5")).setLevel(Level.WARN);
+
+        EthNodeStub node = new EthNodeStub(rpcLatencyMs)
+                .on("eth_getTransactionCount", params -> "0x0")
+                .on("eth_sendRawTransaction", params -> Hash.sha3(params.get(0).asText()));
+        Web3j web3j = Web3j.build(node);
+        Credentials credentials = Credentials.create(PRIVATE_KEY);
+        StaticGasProvider gasProvider = new StaticGasProvider(BigInteger.valueOf(20_000_000_000L), BigInteger.valueOf(6_721_975));
+
+        BlockchainConfig config = new BlockchainConfig();
+        ReflectionTestUtils.setField(config, "chainId", 31337L);
+        ReflectionTestUtils.setField(config, "contractAddress", CONTRACT);
+
+        // Giá trị mặc định của blockchain.executor.*
+        executors = new BlockchainExecutors(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 1000);
+        ReflectionTestUtils.setField(executors, "readThreads", 8);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 2000);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 4);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 5000);
+        ReflectionTestUtils.invokeMethod(executors, "init");
+
+        BlockchainTransactionSender sender = new BlockchainTransactionSender(web3j, credentials, gasProvider, config, executors);
+        ReflectionTestUtils.setField(sender, "nonceRetries", 3);
+
+        BlockchainReceiptTracker receiptTracker = mock(BlockchainReceiptTracker.class);
+        when(receiptTracker.track(anyString())).thenAnswer(invocation -> {
+            TransactionReceipt receipt = new TransactionReceipt();
+            receipt.setTransactionHash(invocation.getArgument(0));
+            receipt.setStatus("0x1");
+            return CompletableFuture.completedFuture(receipt);
+        });
+
+        blockchainService = new BlockchainService(web3j, credentials, gasProvider, config, new BlockchainEncodingFixer(),
+                sender, receiptTracker, mock(BlockchainCallAggregator.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(executors, "shutdown");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransactionReceipt callers1() {
+        return submit();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransactionReceipt callers8() {
+        return submit();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public TransactionReceipt callers64() {
+        return submit();
+    }
+
+    private TransactionReceipt submit() {
+        long n = sequence.incrementAndGet();
+        CompletableFuture<TransactionReceipt> receipt = n % 2 == 0
+                ? blockchainService.issueBatch("Paracetamol 500mg", "Dia5 Pharma", "LOT-" + n,
+                        BigInteger.valueOf(1000), BigInteger.valueOf(1_900_000_000L), "Below 30C")
+                : blockchainService.createShipment(BigInteger.valueOf(n), DISTRIBUTOR, BigInteger.TEN, "TRK-" + n);
+        return receipt.join();
+    }
+}
@@ -0,0 +1,113 @@
+package com.nckh.dia5.benchmark;
+
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.model.ProductItem;
+import com.nckh.dia5.model.Shipment;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import com.nckh.dia5.repository.ShipmentRepository;
+import com.nckh.dia5.service.DashboardStatsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of the dashboard endpoints' reads and of the per-write deltas in
+ * {@link DashboardStatsService}, with counters built from rollups describing 1M shipments (and as
+ * many product items). The rollup queries themselves run in MySQL and are not measured here.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=DashboardStatsBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DashboardStatsBenchmark {
+
+    @Param({"1000000"})
+    public long shipments;
+
+    private DashboardStatsService stats;
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @Setup
+    public void setUp() {
+        Shipment.ShipmentStatus[] statuses = Shipment.ShipmentStatus.values();
+        List<Object[]> byStatus = new ArrayList<>();
+        for (Shipment.ShipmentStatus status : statuses) {
+            byStatus.add(new Object[]{status, shipments / statuses.length});
+        }
+        List<Object[]> byMonth = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            YearMonth month = YearMonth.now().minusMonths(i);
+            byMonth.add(new Object[]{month.getYear(), month.getMonthValue(), shipments / 12});
+        }
+        List<Object[]> batches = new ArrayList<>();
+        for (DrugBatch.BatchStatus status : DrugBatch.BatchStatus.values()) {
+            batches.add(new Object[]{status, shipments / 10, shipments * 100});
+        }
+        List<Object[]> items = new ArrayList<>();
+        for (ProductItem.ProductItemStatus status : ProductItem.ProductItemStatus.values()) {
+            items.add(new Object[]{status, true, shipments});
+        }
+
+        DrugBatchRepository drugBatchRepository = mock(DrugBatchRepository.class);
+        ShipmentRepository shipmentRepository = mock(ShipmentRepository.class);
+        ProductItemRepository productItemRepository = mock(ProductItemRepository.class);
+        when(drugBatchRepository.countAndSumQuantityByStatus()).thenReturn(batches);
+        when(shipmentRepository.countGroupedByStatus()).thenReturn(byStatus);
+        when(shipmentRepository.countByMonthSince(any())).thenReturn(byMonth);
+        when(productItemRepository.countGroupedByStatusAndRegistered()).thenReturn(items);
+
+        stats = new DashboardStatsService(drugBatchRepository, shipmentRepository, productItemRepository);
+        stats.rebuild();
+    }
+
+    /**
+     * One operation reads everything the traceability dashboard endpoint returns.
+     */
+    @Benchmark
+    public void dashboardReads(Blackhole blackhole) {
+        long totalBatches = stats.getBatchCount();
+        blackhole.consume(totalBatches - stats.getBatchCount(DrugBatch.BatchStatus.SOLD));
+        blackhole.consume(stats.getShipmentCount(Shipment.ShipmentStatus.IN_TRANSIT)
+                + stats.getShipmentCount(Shipment.ShipmentStatus.PENDING));
+        blackhole.consume(stats.getShipmentCount());
+        blackhole.consume(stats.getShipmentCount(Shipment.ShipmentStatus.DELIVERED));
+        blackhole.consume(stats.getTotalBatchQuantity());
+        blackhole.consume(stats.getShipmentCount(YearMonth.now()));
+        blackhole.consume(stats.getProductItemStatusCounts());
+    }
+
+    /**
+     * One operation applies the delta of a shipment moving from IN_TRANSIT to DELIVERED, from four
+     * writer threads at once.
+     */
+    @Benchmark
+    @Threads(4)
+    public void shipmentStatusDelta() {
+        stats.onShipmentChanged(Shipment.ShipmentStatus.IN_TRANSIT, now, Shipment.ShipmentStatus.DELIVERED, now);
+    }
+}
@@ -0,0 +1,238 @@
+package com.nckh.dia5.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.config.BlockchainConfig;
+import com.nckh.dia5.controller.DrugTraceabilityController;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.model.ProductItem;
+import com.nckh.dia5.repository.BlockchainOutboxRepository;
+import com.nckh.dia5.repository.BlockchainTransactionRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.PharmaCompanyRepository;
+import com.nckh.dia5.repository.ShipmentRepository;
+import com.nckh.dia5.service.BatchCreationJobService;
+import com.nckh.dia5.service.BlockchainCallAggregator;
+import com.nckh.dia5.service.BlockchainExecutors;
+import com.nckh.dia5.service.BlockchainIndexerService;
+import com.nckh.dia5.service.BlockchainReceiptTracker;
+import com.nckh.dia5.service.BlockchainService;
+import com.nckh.dia5.service.BlockchainTransactionSender;
+import com.nckh.dia5.service.DashboardStatsService;
+import com.nckh.dia5.service.DistributorInventoryService;
+import com.nckh.dia5.service.DrugTraceabilityService;
+import com.nckh.dia5.service.PharmacyInventoryService;
+import com.nckh.dia5.service.ProductItemService;
+import com.nckh.dia5.service.ShipmentAdapter;
+import com.nckh.dia5.service.ShipmentIdentityResolver;
+import com.nckh.dia5.support.EthNodeStub;
+import com.nckh.dia5.util.BlockchainEncodingFixer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.gas.StaticGasProvider;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Load test of read-only QR verification ({@code POST /api/blockchain/drugs/verify} with
+ * {@code markAsSold=false}) on one node: 200 concurrent callers, as many as Tomcat's default worker
+ * threads, go through the controller, {@link DrugTraceabilityService#verifyDrug} and JSON
+ * (de)serialization. The target is 2k verifications/s; {@code verifyLatency} reports p99 under the same
+ * load.
+ *
+ * The database is simulated: each query takes {@code dbMicros} and holds one of 20 connections (the
+ * {@code spring.datasource.hikari.maximum-pool-size}); a verification runs two queries (item with
+ * batch, delivered shipments). With {@code indexed=true} the serial status comes from the local
+ * index; otherwise the indexer is stale and each verification also does a {@code getSerialStatus}
+ * eth_call through {@link BlockchainCallAggregator} to {@link EthNodeStub} taking
+ * {@code rpcLatencyMs}. The JWT filter is left out (see {@link JwtAuthenticationFilterBenchmark}).
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=DrugVerificationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DrugVerificationBenchmark {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final String PRIVATE_KEY = "0xac0974bec39a17e36ba4a6b4d238ff944bacb478cbed5efcae784d7bf4f2ff80";
+    private static final BigInteger BATCH_ID = BigInteger.valueOf(1_700_000_000_001L);
+    private static final int POOL_SIZE = 20;
+    private static final int SERIALS = 10_000;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"300"})
+    public long dbMicros;
+
+    @Param({"20"})
+    public long rpcLatencyMs;
+
+    private final Semaphore connections = new Semaphore(POOL_SIZE);
+    private BlockchainExecutors executors;
+    private BlockchainCallAggregator aggregator;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.nckh.dia5")).setLevel(Level.WARN);
+
+        DrugBatch batch = new DrugBatch();
+        batch.setId(1L);
+        batch.setBatchId(BATCH_ID);
+        batch.setDrugName("Paracetamol 500mg");
+        batch.setManufacturer("Dia5 Pharma");
+        batch.setBatchNumber("LOT-BENCH");
+        batch.setQuantity((long) SERIALS);
+        batch.setManufacturerAddress(CONTRACT);
+        batch.setManufactureTimestamp(LocalDateTime.now().minusMonths(1));
+        batch.setExpiryDate(LocalDateTime.now().plusYears(2));
+        batch.setRegisteredSerials((long) SERIALS);
+
+        ProductItemService productItemService = mock(ProductItemService.class, withSettings().stubOnly());
+        when(productItemService.findWithBatch(any(), anyString())).thenAnswer(invocation -> query(() -> Optional.of(
+                ProductItem.builder()
+                        .drugBatch(batch)
+                        .serialNumber(invocation.getArgument(1))
+                        .status(ProductItem.ProductItemStatus.REGISTERED)
+                        .blockchainRegistered(true)
+                        .blockchainRedeemed(false)
+                        .build())));
+        ShipmentRepository shipmentRepository = mock(ShipmentRepository.class, withSettings().stubOnly());
+        when(shipmentRepository.findByBatchIdAndStatus(any(), any())).thenAnswer(invocation -> query(List::of));
+        BlockchainIndexerService indexerService = mock(BlockchainIndexerService.class, withSettings().stubOnly());
+        when(indexerService.isSerialIndexFresh()).thenReturn(indexed);
+
+        // Serial đã đăng ký, chưa redeem
+        String status = "0x" + FunctionEncoder.encodeConstructor(List.of(
+                new Bool(true), new Bool(false), new Uint256(0), new Address(CONTRACT)));
+        Web3j web3j = Web3j.build(new EthNodeStub(rpcLatencyMs).on("eth_call", params -> status));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        executors = new BlockchainExecutors(meterRegistry);
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 1000);
+        ReflectionTestUtils.setField(executors, "readThreads", 8);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 2000);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 4);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 5000);
+        ReflectionTestUtils.invokeMethod(executors, "init");
+        aggregator = new BlockchainCallAggregator(web3j, meterRegistry, executors);
+        ReflectionTestUtils.setField(aggregator, "enabled", true);
+        ReflectionTestUtils.setField(aggregator, "windowMs", 5L);
+        ReflectionTestUtils.setField(aggregator, "maxBatchSize", 50);
+        ReflectionTestUtils.invokeMethod(aggregator, "init");
+
+        BlockchainConfig config = new BlockchainConfig();
+        ReflectionTestUtils.setField(config, "contractAddress", CONTRACT);
+        BlockchainService blockchainService = new BlockchainService(web3j, Credentials.create(PRIVATE_KEY),
+                new StaticGasProvider(BigInteger.valueOf(20_000_000_000L), BigInteger.valueOf(6_721_975)), config,
+                new BlockchainEncodingFixer(), mock(BlockchainTransactionSender.class),
+                mock(BlockchainReceiptTracker.class), aggregator);
+        ReflectionTestUtils.setField(blockchainService, "awaitTimeoutSeconds", 150L);
+
+        DrugTraceabilityService drugTraceabilityService = new DrugTraceabilityService(
+                mock(DrugBatchRepository.class), shipmentRepository, mock(BlockchainTransactionRepository.class),
+                mock(PharmaCompanyRepository.class), mock(BlockchainOutboxRepository.class), blockchainService,
+                indexerService, mock(ShipmentAdapter.class), mock(ShipmentIdentityResolver.class), productItemService,
+                mock(PharmacyInventoryService.class), mock(DistributorInventoryService.class),
+                mock(EntityManager.class), mock(TransactionTemplate.class));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        mockMvc = MockMvcBuilders.standaloneSetup(new DrugTraceabilityController(drugTraceabilityService,
+                mock(DrugBatchRepository.class), blockchainService, mock(BatchCreationJobService.class),
+                mock(DashboardStatsService.class), objectMapper)).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(aggregator, "shutdown");
+        ReflectionTestUtils.invokeMethod(executors, "shutdown");
+    }
+
+    /**
+     * One operation verifies one random serial of the batch.
+     */
+    @Benchmark
+    @Threads(200)
+    public int verify() throws Exception {
+        return verifyRandomSerial();
+    }
+
+    /**
+     * Same load as {@link #verify()}, reported as latency percentiles (p99) instead of throughput.
+     */
+    @Benchmark
+    @Threads(200)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int verifyLatency() throws Exception {
+        return verifyRandomSerial();
+    }
+
+    private int verifyRandomSerial() throws Exception {
+        String serial = "SN-" + ThreadLocalRandom.current().nextInt(SERIALS);
+        String body = "{\"qrCode\":\"" + serial + "\",\"batchId\":" + BATCH_ID
+                + ",\"serialNumber\":\"" + serial + "\",\"markAsSold\":false}";
+        int status = mockMvc.perform(post("/api/blockchain/drugs/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn().getResponse().getStatus();
+        if (status != 200) {
+            throw new IllegalStateException("Verification answered " + status);
+        }
+        return status;
+    }
+
+    private <T> T query(Supplier<T> result) {
+        connections.acquireUninterruptibly();
+        try {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(dbMicros));
+            return result.get();
+        } finally {
+            connections.release();
+        }
+    }
+}
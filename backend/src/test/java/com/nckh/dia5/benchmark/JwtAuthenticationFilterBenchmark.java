@@ -0,0 +1,107 @@
+package com.nckh.dia5.benchmark;
+
+import com.nckh.dia5.security.CustomUserDetailsService;
+import com.nckh.dia5.security.JwtAuthenticationFilter;
+import com.nckh.dia5.security.JwtTokenProvider;
+import com.nckh.dia5.security.PrincipalCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of {@link JwtAuthenticationFilter} for one authenticated request, with the principal served
+ * from {@link PrincipalCache} ({@code cached=true}) or loaded for every request. The account lookup
+ * is a mock that takes {@code lookupMicros}, standing in for the database query; the token is
+ * verified for real in both cases.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=JwtAuthenticationFilterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final String EMAIL = "pharmacist@example.com";
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"0", "500"})
+    public long lookupMicros;
+
+    private final FilterChain chain = (request, response) -> { };
+    private JwtAuthenticationFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        JwtTokenProvider tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret",
+                "dia5MedicalApiSecretKeyForJwtTokenGenerationMustBeLongEnoughForHS256Algorithm");
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationMs", 86_400_000L);
+        tokenProvider.init();
+
+        UserDetails account = User.withUsername(EMAIL).password("{noop}secret").roles("PHARMACY").build();
+        CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+        // Token của User thường không có claim ptype
+        when(userDetailsService.loadUserByUsername(anyString(), any())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(lookupMicros));
+            return account;
+        });
+
+        PrincipalCache principalCache = new PrincipalCache(meterRegistry);
+        ReflectionTestUtils.setField(principalCache, "enabled", cached);
+        ReflectionTestUtils.setField(principalCache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(principalCache, "maxSize", 10_000);
+        ReflectionTestUtils.invokeMethod(principalCache, "registerMetrics");
+
+        filter = new JwtAuthenticationFilter(tokenProvider, userDetailsService, principalCache, meterRegistry);
+        authorization = "Bearer " + tokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(account, null, account.getAuthorities()));
+    }
+
+    /**
+     * One operation authenticates one request carrying a valid bearer token.
+     */
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/medications");
+        request.addHeader("Authorization", authorization);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,93 @@
+package com.nckh.dia5.benchmark;
+
+import com.nckh.dia5.model.Medication;
+import com.nckh.dia5.repository.MedicationRepository;
+import com.nckh.dia5.service.MedicationSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Search latency of {@link MedicationSearchIndex} over a synthetic catalog of 100k medications
+ * (Vietnamese and Latin names, generic names and drug classes), one query shape per parameter:
+ * a first keystroke, a short word prefix, an infix served by the trigram index, a multi-term query
+ * and a query typed with diacritics.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=MedicationSearchIndexBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MedicationSearchIndexBenchmark {
+
+    private static final String[] STEMS = {
+            "paracetamol", "amoxicillin", "ibuprofen", "cefuroxime", "azithromycin", "metformin",
+            "omeprazole", "loratadin", "salbutamol", "vitamin", "berberin", "clorpheniramin"};
+    private static final String[] VIETNAMESE = {
+            "Thuốc ho", "Bổ phế", "Hoạt huyết", "Dưỡng não", "Siro trẻ em", "Viên sủi", "Cao lỏng"};
+    private static final String[] CLASSES = {
+            "Kháng sinh", "Giảm đau hạ sốt", "Kháng histamin", "Ức chế bơm proton", "Đái tháo đường"};
+    private static final String[] STRENGTHS = {"100mg", "250mg", "500mg", "650mg", "1g"};
+
+    @Param({"100000"})
+    public int medications;
+
+    @Param({"p", "pa", "cetam", "amoxicillin 500", "thuốc ho"})
+    public String query;
+
+    private final Pageable firstPage = PageRequest.of(0, 20);
+    private MedicationSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<Medication> catalog = new ArrayList<>(medications);
+        for (int i = 1; i <= medications; i++) {
+            String stem = STEMS[random.nextInt(STEMS.length)];
+            Medication medication = new Medication();
+            medication.setId(i);
+            medication.setName(random.nextInt(4) == 0
+                    ? VIETNAMESE[random.nextInt(VIETNAMESE.length)] + " " + i
+                    : capitalize(stem) + " " + STRENGTHS[random.nextInt(STRENGTHS.length)] + " " + i);
+            medication.setGenericName(stem);
+            medication.setDrugClass(CLASSES[random.nextInt(CLASSES.length)]);
+            catalog.add(medication);
+        }
+
+        MedicationRepository repository = mock(MedicationRepository.class);
+        when(repository.findAll()).thenReturn(catalog);
+        index = new MedicationSearchIndex(repository);
+        index.rebuild();
+    }
+
+    @Benchmark
+    public Object search() {
+        return index.search(query, firstPage);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
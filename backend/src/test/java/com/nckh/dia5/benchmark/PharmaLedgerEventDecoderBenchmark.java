@@ -0,0 +1,66 @@
+package com.nckh.dia5.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.model.BlockchainEvent;
+import com.nckh.dia5.service.PharmaLedgerEventDecoder;
+import com.nckh.dia5.support.PharmaLedgerLogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput of {@link PharmaLedgerEventDecoder} over a mix of all seven events, i.e. the
+ * per-log cost of an indexer catch-up.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=PharmaLedgerEventDecoderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PharmaLedgerEventDecoderBenchmark {
+
+    private static final String MANUFACTURER = "0x5FbDB2315678afecb367f032d93F642f64180aa3";
+    private static final String DISTRIBUTOR = "0xE7f1725E7734CE288F8367e1Bb143E90bb3F0512";
+
+    private PharmaLedgerEventDecoder decoder;
+    private List<Log> logs;
+
+    @Setup
+    public void setUp() {
+        decoder = new PharmaLedgerEventDecoder(new ObjectMapper());
+        logs = List.of(
+                PharmaLedgerLogs.batchIssued(42, MANUFACTURER, "Paracetamol 500mg", 1000, "QR-42"),
+                PharmaLedgerLogs.serialNumbersRegistered(42, 250),
+                PharmaLedgerLogs.serialNumberRedeemed(42, "SN-42-0007", DISTRIBUTOR, 1_700_000_000L),
+                PharmaLedgerLogs.shipmentCreated(7, 42, MANUFACTURER, DISTRIBUTOR, 300),
+                PharmaLedgerLogs.shipmentReceived(7, 42, DISTRIBUTOR, 1_700_000_500L),
+                PharmaLedgerLogs.batchStatusUpdated(42, 0, 2),
+                PharmaLedgerLogs.ownershipTransferred(42, MANUFACTURER, DISTRIBUTOR));
+    }
+
+    /**
+     * One operation decodes one log of each event type.
+     */
+    @Benchmark
+    public void decodeAllEventTypes(Blackhole blackhole) throws Exception {
+        for (Log log : logs) {
+            BlockchainEvent event = decoder.decode(log);
+            blackhole.consume(event);
+        }
+    }
+}
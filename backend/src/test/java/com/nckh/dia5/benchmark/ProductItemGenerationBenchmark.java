@@ -0,0 +1,168 @@
+package com.nckh.dia5.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.model.ProductItem;
+import com.nckh.dia5.repository.ProductItemRepository;
+import com.nckh.dia5.repository.ProductItemRepositoryImpl;
+import com.nckh.dia5.service.DashboardStatsService;
+import com.nckh.dia5.service.ProductItemService;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.net.ServerSocket;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Time to generate the product items of one batch, for 1k, 10k and 100k items; items/s is
+ * {@code quantity / score}. {@code bulk} runs {@link ProductItemService#autoGenerateItemsForNewBatch}
+ * over {@link ProductItemRepositoryImpl} (multi-row INSERT per 1000 items); {@code perItem} replays
+ * the statements of the previous implementation, one SELECT by serial and one single-row INSERT per
+ * item. The database is in-memory H2 in MySQL mode reached over its TCP server on loopback with one
+ * connection, so every statement is a real round trip, but a shorter one than to a MySQL host.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=ProductItemGenerationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductItemGenerationBenchmark {
+
+    private static final long BATCH_ROW_ID = 1L;
+
+    @Param({"1000", "10000", "100000"})
+    public long quantity;
+
+    @Param({"perItem", "bulk"})
+    public String path;
+
+    private int port;
+    private Server server;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProductItemService productItemService;
+    private final DrugBatch batch = new DrugBatch();
+
+    @Setup
+    public void setUp() throws Exception {
+        ((Logger) LoggerFactory.getLogger("com.nckh.dia5")).setLevel(Level.WARN);
+
+        // Qua TCP (loopback) để mỗi câu lệnh là một round trip thật như với MySQL
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        dataSource = new SingleConnectionDataSource("jdbc:h2:tcp://localhost:" + port
+                + "/mem:product_items_bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // Các cột product_items mà luồng sinh hộp ghi (khoá ngoại tới drug_batches bỏ qua)
+        jdbcTemplate.execute("CREATE TABLE product_items (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "drug_batch_id BIGINT NOT NULL, " +
+                "serial_number VARCHAR(255) NOT NULL UNIQUE, " +
+                "qr_code VARCHAR(1000), " +
+                "status VARCHAR(50) NOT NULL, " +
+                "blockchain_registered BOOLEAN NOT NULL, " +
+                "blockchain_redeemed BOOLEAN NOT NULL, " +
+                "created_at TIMESTAMP NOT NULL, " +
+                "updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE INDEX idx_product_items_batch ON product_items (drug_batch_id)");
+
+        batch.setId(BATCH_ROW_ID);
+        batch.setBatchId(BigInteger.valueOf(1_700_000_000_001L));
+        batch.setBatchNumber("LOT-BENCH");
+
+        // Phần Spring Data của repository chỉ cần countByDrugBatch
+        ProductItemRepositoryImpl bulkInserts = new ProductItemRepositoryImpl(jdbcTemplate);
+        ProductItemRepository productItemRepository = mock(ProductItemRepository.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            bulkInserts.insertSkippingDuplicates(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(productItemRepository).insertSkippingDuplicates(any(), anyList());
+        when(productItemRepository.countByDrugBatch(batch)).thenAnswer(invocation -> countItems());
+
+        productItemService = new ProductItemService(productItemRepository,
+                mock(DashboardStatsService.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(productItemService, "insertChunkSize", 1000);
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+    public void clearItems() {
+        jdbcTemplate.execute("TRUNCATE TABLE product_items");
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.destroy();
+        server.stop();
+    }
+
+    /**
+     * One operation generates every item of the batch.
+     */
+    @Benchmark
+    public long generate() {
+        long inserted = "bulk".equals(path)
+                ? productItemService.autoGenerateItemsForNewBatch(batch, quantity)
+                : generatePerItem();
+        if (inserted != quantity) {
+            throw new IllegalStateException("Generated " + inserted + " of " + quantity + " items");
+        }
+        return inserted;
+    }
+
+    private long generatePerItem() {
+        long inserted = 0;
+        for (long i = 1; i <= quantity; i++) {
+            String serialNumber = String.format("%s-%s-%05d", batch.getBatchId(), batch.getBatchNumber(), i);
+            List<Long> existing = jdbcTemplate.queryForList(
+                    "SELECT id FROM product_items WHERE serial_number = ?", Long.class, serialNumber);
+            if (!existing.isEmpty()) {
+                continue;
+            }
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            inserted += jdbcTemplate.update("INSERT INTO product_items (drug_batch_id, serial_number, qr_code, status, " +
+                            "blockchain_registered, blockchain_redeemed, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    BATCH_ROW_ID, serialNumber,
+                    String.format("{\"batchId\":\"%s\",\"serialNumber\":\"%s\"}", batch.getBatchId(), serialNumber),
+                    ProductItem.ProductItemStatus.CREATED.name(), false, false, now, now);
+        }
+        return inserted;
+    }
+
+    private long countItems() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_items WHERE drug_batch_id = ?",
+                Long.class, BATCH_ROW_ID);
+    }
+}
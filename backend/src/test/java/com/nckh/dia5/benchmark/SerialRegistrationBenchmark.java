@@ -0,0 +1,177 @@
+package com.nckh.dia5.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.nckh.dia5.config.BlockchainConfig;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.repository.BlockchainTransactionRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import com.nckh.dia5.service.BlockchainCallAggregator;
+import com.nckh.dia5.service.BlockchainExecutors;
+import com.nckh.dia5.service.BlockchainReceiptTracker;
+import com.nckh.dia5.service.BlockchainService;
+import com.nckh.dia5.service.BlockchainTransactionSender;
+import com.nckh.dia5.service.DashboardStatsService;
+import com.nckh.dia5.service.SerialRegistrationService;
+import com.nckh.dia5.support.EthNodeStub;
+import com.nckh.dia5.util.BlockchainEncodingFixer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.gas.StaticGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Time to register every serial of one batch through {@link SerialRegistrationService}, for 10k and
+ * 100k serials; serials/s is {@code serials / score}. Gas estimation, chunking, signing and sending
+ * run for real against {@link EthNodeStub}, which takes {@code rpcLatencyMs} per round trip and
+ * charges 80k gas per transaction plus 60k per serial (the {@code blockchain.serial.*} defaults),
+ * so chunks hold 88 serials under the default 6.7M gas limit. Receipts complete as soon as the node
+ * accepted the transaction and the repositories are mocks, so block time and MySQL are left out.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=SerialRegistrationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerialRegistrationBenchmark {
+
+    private static final String PRIVATE_KEY = "0xac0974bec39a17e36ba4a6b4d238ff944bacb478cbed5efcae784d7bf4f2ff80";
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final BigInteger BATCH_ID = BigInteger.ONE;
+
+    // selector + batchId + offset của mảng serial, tiếp theo là độ dài mảng
+    private static final int SERIAL_COUNT_OFFSET = 2 + 8 + 64 + 64;
+
+    @Param({"10000", "100000"})
+    public int serials;
+
+    @Param({"1"})
+    public long rpcLatencyMs;
+
+    private BlockchainExecutors executors;
+    private SerialRegistrationService registrationService;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.nckh.dia5")).setLevel(Level.WARN);
+
+        EthNodeStub node = new EthNodeStub(rpcLatencyMs)
+                .on("eth_estimateGas", params -> {
+                    String data = params.get(0).get("data").asText();
+                    long count = Numeric.toBigInt(data.substring(SERIAL_COUNT_OFFSET, SERIAL_COUNT_OFFSET + 64)).longValue();
+                    return Numeric.encodeQuantity(BigInteger.valueOf(80_000 + 60_000 * count));
+                })
+                .on("eth_getTransactionCount", params -> "0x0")
+                .on("eth_sendRawTransaction", params -> Hash.sha3(params.get(0).asText()));
+        Web3j web3j = Web3j.build(node);
+        Credentials credentials = Credentials.create(PRIVATE_KEY);
+        StaticGasProvider gasProvider = new StaticGasProvider(BigInteger.valueOf(20_000_000_000L), BigInteger.valueOf(6_721_975));
+
+        BlockchainConfig config = new BlockchainConfig();
+        ReflectionTestUtils.setField(config, "chainId", 31337L);
+        ReflectionTestUtils.setField(config, "contractAddress", CONTRACT);
+        ReflectionTestUtils.setField(config, "gasLimit", BigInteger.valueOf(6_721_975));
+
+        executors = new BlockchainExecutors(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 1000);
+        ReflectionTestUtils.setField(executors, "readThreads", 8);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 2000);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 4);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 5000);
+        ReflectionTestUtils.invokeMethod(executors, "init");
+
+        BlockchainTransactionSender sender = new BlockchainTransactionSender(web3j, credentials, gasProvider, config, executors);
+        ReflectionTestUtils.setField(sender, "nonceRetries", 3);
+
+        BlockchainReceiptTracker receiptTracker = mock(BlockchainReceiptTracker.class);
+        when(receiptTracker.track(anyString())).thenAnswer(invocation -> {
+            TransactionReceipt receipt = new TransactionReceipt();
+            receipt.setTransactionHash(invocation.getArgument(0));
+            receipt.setBlockNumber("0x1");
+            receipt.setGasUsed("0x5208");
+            receipt.setStatus("0x1");
+            return CompletableFuture.completedFuture(receipt);
+        });
+        BlockchainService blockchainService = new BlockchainService(web3j, credentials, gasProvider, config,
+                new BlockchainEncodingFixer(), sender, receiptTracker, mock(BlockchainCallAggregator.class));
+
+        // Mỗi lần gọi đăng ký lại toàn bộ serial của lô
+        DrugBatch batch = new DrugBatch();
+        batch.setBatchId(BATCH_ID);
+        List<String> pending = new ArrayList<>(serials);
+        for (int i = 0; i < serials; i++) {
+            pending.add(String.format("SN-BENCH-%08d", i));
+        }
+        DrugBatchRepository drugBatchRepository = mock(DrugBatchRepository.class, withSettings().stubOnly());
+        ProductItemRepository productItemRepository = mock(ProductItemRepository.class, withSettings().stubOnly());
+        when(drugBatchRepository.findByBatchId(BATCH_ID)).thenReturn(Optional.of(batch));
+        when(productItemRepository.findUnregisteredSerialNumbers(batch)).thenReturn(pending);
+        when(productItemRepository.markRegistered(any(), anyList(), any(), any()))
+                .thenAnswer(invocation -> invocation.<List<String>>getArgument(1).size());
+
+        registrationService = new SerialRegistrationService(blockchainService, config, productItemRepository,
+                drugBatchRepository, mock(BlockchainTransactionRepository.class, withSettings().stubOnly()),
+                mock(DashboardStatsService.class, withSettings().stubOnly()));
+        // Giá trị mặc định của blockchain.serial.*
+        ReflectionTestUtils.setField(registrationService, "defaultGasPerSerial", 60_000L);
+        ReflectionTestUtils.setField(registrationService, "defaultBaseGas", 80_000L);
+        ReflectionTestUtils.setField(registrationService, "maxChunkSize", 500);
+        ReflectionTestUtils.setField(registrationService, "maxInFlight", 8);
+        ReflectionTestUtils.setField(registrationService, "maxAttempts", 10);
+        ReflectionTestUtils.setField(registrationService, "baseBackoffSeconds", 60L);
+        ReflectionTestUtils.setField(registrationService, "maxBackoffSeconds", 3600L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        registrationService.shutdown();
+        ReflectionTestUtils.invokeMethod(executors, "shutdown");
+    }
+
+    /**
+     * One operation registers the whole batch.
+     */
+    @Benchmark
+    public long registerBatch() {
+        long registered = registrationService.registerPendingSerials(BATCH_ID).join();
+        if (registered != serials) {
+            throw new IllegalStateException("Registered " + registered + " of " + serials + " serials");
+        }
+        return registered;
+    }
+}
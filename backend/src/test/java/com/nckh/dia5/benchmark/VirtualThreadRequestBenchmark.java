@@ -0,0 +1,147 @@
+package com.nckh.dia5.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load-test harness for {@code spring.threads.virtual.enabled}: 400 concurrent clients call an
+ * embedded Tomcat whose handler blocks on a slow upstream ({@code upstreamLatencyMs}), like the
+ * chatbot, AI diagnosis and chain calls do. {@code virtualThreads=false} is Tomcat's default pool of
+ * 200 platform threads; {@code true} applies {@link TomcatVirtualThreadsWebServerFactoryCustomizer},
+ * the same customizer Spring Boot installs for the flag. {@code request} reports throughput and
+ * {@code requestLatency} the latency percentiles (p99) under the same load.
+ *
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark=VirtualThreadRequestBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadRequestBenchmark {
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"200"})
+    public long upstreamLatencyMs;
+
+    private final ExecutorService upstreamThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private HttpServer upstream;
+    private WebServer webServer;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1000);
+        upstream.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(upstreamLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        upstream.setExecutor(upstreamThreads);
+        upstream.start();
+
+        HttpClient upstreamClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest upstreamRequest = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + upstream.getAddress().getPort() + "/slow")).build();
+
+        // Handler chặn thread xử lý request trong suốt lời gọi upstream
+        HttpServlet blockingHandler = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                try {
+                    resp.setStatus(upstreamClient.send(upstreamRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                }
+            }
+        };
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        if (virtualThreads) {
+            new TomcatVirtualThreadsWebServerFactoryCustomizer().customize(factory);
+        }
+        webServer = factory.getWebServer(servletContext ->
+                servletContext.addServlet("blocking", blockingHandler).addMapping("/api/slow"));
+        webServer.start();
+
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + webServer.getPort() + "/api/slow"))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        webServer.stop();
+        webServer.destroy();
+        upstream.stop(0);
+        upstreamThreads.shutdownNow();
+    }
+
+    /**
+     * One operation is one request through Tomcat and the upstream.
+     */
+    @Benchmark
+    @Threads(400)
+    public int request() throws Exception {
+        return send();
+    }
+
+    /**
+     * Same load as {@link #request()}, reported as latency percentiles (p99) instead of throughput.
+     */
+    @Benchmark
+    @Threads(400)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int requestLatency() throws Exception {
+        return send();
+    }
+
+    private int send() throws Exception {
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Request answered " + status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,192 @@
+package com.nckh.dia5.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TwoTierCacheTests {
+
+    private static final String NAME = CacheNames.PROVINCES;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentGetsRunOneLoaderPerKey() throws Exception {
+        Cache cache = localOnlyManager(1000).getCache(NAME);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.get("hanoi", () -> {
+                loads.incrementAndGet();
+                release.await();
+                return "Ha Noi";
+            })));
+        }
+        // Cho các thread kịp vào get trước khi loader trả về
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(2, TimeUnit.SECONDS)).isEqualTo("Ha Noi");
+        }
+        assertThat(loads).hasValue(1);
+
+        // Key khác có loader riêng
+        assertThat(cache.get("hue", () -> "Hue")).isEqualTo("Hue");
+        assertThat(cache.get("hanoi", () -> "reloaded")).isEqualTo("Ha Noi");
+    }
+
+    @Test
+    void fullNearTierEvictsTheOldestEntryFirst() throws InterruptedException {
+        Cache cache = localOnlyManager(10).getCache(NAME);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, i);
+            // Hạn dùng tính theo ms: tách thời điểm put để thứ tự cũ/mới rõ ràng
+            Thread.sleep(2);
+        }
+
+        cache.put("k10", 10);
+
+        assertThat(cache.get("k0")).isNull();
+        for (int i = 1; i <= 10; i++) {
+            assertThat(cache.get("k" + i)).as("k" + i).isNotNull();
+        }
+    }
+
+    @Test
+    void redisFailuresFallBackToTheNearTier() {
+        FlakyCache remote = new FlakyCache();
+        Cache cache = managerWithRemote(remote).getCache(NAME);
+        remote.down = true;
+
+        cache.put("hanoi", "Ha Noi");
+        assertThat(cache.get("hanoi", String.class)).isEqualTo("Ha Noi");
+        assertThat(cache.get("hue", () -> "Hue")).isEqualTo("Hue");
+
+        // Trong thời gian back-off lượt đọc không gọi Redis nữa
+        int readsBefore = remote.reads.get();
+        cache.get("danang");
+        assertThat(remote.reads).hasValue(readsBefore);
+    }
+
+    @Test
+    void evictionsDuringTheBackOffStillReachRedis() {
+        FlakyCache remote = new FlakyCache();
+        TwoTierCacheManager manager = managerWithRemote(remote);
+        Cache cache = manager.getCache(NAME);
+        cache.put("hanoi", "Ha Noi");
+
+        remote.down = true;
+        cache.get("hue", () -> "Hue");
+        remote.down = false;
+
+        // Redis đã hoạt động lại nhưng vẫn đang trong back-off
+        cache.evict("hanoi");
+        assertThat(remote.get("hanoi")).isNull();
+
+        // Evict không tới được Redis: tier Redis của cache bị xoá trước lần đọc sau
+        remote.put("hue", "stale");
+        remote.down = true;
+        cache.evict("hue");
+        remote.down = false;
+        ReflectionTestUtils.setField(manager, "remoteRetryAtMs", 0L);
+
+        assertThat(cache.get("hue", () -> "Hue")).isEqualTo("Hue");
+        assertThat(remote.get("hue", String.class)).isEqualTo("Hue");
+    }
+
+    @Test
+    void invalidationFromAnotherNodeClearsTheNearTier() {
+        TwoTierCacheManager manager = localOnlyManager(1000);
+        Cache cache = manager.getCache(NAME);
+        cache.put("hanoi", "Ha Noi");
+
+        // Message của chính node này bị bỏ qua
+        manager.onInvalidation(ReflectionTestUtils.getField(manager, "nodeId") + ":" + NAME);
+        assertThat(cache.get("hanoi")).isNotNull();
+
+        manager.onInvalidation("other-node:" + NAME);
+        assertThat(cache.get("hanoi")).isNull();
+    }
+
+    private static TwoTierCacheManager localOnlyManager(int localMaxSize) {
+        return new TwoTierCacheManager(name -> Duration.ofHours(1), Duration.ofMinutes(1), localMaxSize,
+                null, null, "test:invalidate", Duration.ofSeconds(30));
+    }
+
+    private static TwoTierCacheManager managerWithRemote(Cache remote) {
+        RedisCacheManager redisCacheManager = mock(RedisCacheManager.class);
+        when(redisCacheManager.getCache(NAME)).thenReturn(remote);
+        // Không có connection factory: không có kênh invalidation, chỉ có tier Redis giả
+        return new TwoTierCacheManager(name -> Duration.ofHours(1), Duration.ofMinutes(1), 1000,
+                null, redisCacheManager, "test:invalidate", Duration.ofSeconds(30));
+    }
+
+    /**
+     * Tier Redis giả: lỗi mọi thao tác khi {@code down}
+     */
+    private static class FlakyCache extends ConcurrentMapCache {
+
+        private volatile boolean down;
+        private final AtomicInteger reads = new AtomicInteger();
+
+        FlakyCache() {
+            super(NAME, false);
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            reads.incrementAndGet();
+            failIfDown();
+            return super.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            failIfDown();
+            super.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            failIfDown();
+            super.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            failIfDown();
+            super.clear();
+        }
+
+        private void failIfDown() {
+            if (down) {
+                throw new IllegalStateException("Redis connection refused");
+            }
+        }
+    }
+}
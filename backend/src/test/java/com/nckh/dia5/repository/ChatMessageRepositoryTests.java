@@ -0,0 +1,94 @@
+package com.nckh.dia5.repository;
+
+import com.nckh.dia5.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link ChatMessageRepositoryCustom#append} on the H2 test profile. Every append commits on
+ * its own thread, as it does from concurrent chat requests.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = "/sql/chat-sessions.sql")
+@Sql(statements = {"DELETE FROM chat_messages", "DELETE FROM chat_sessions", "DELETE FROM users"},
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ChatMessageRepositoryTests {
+
+    private static final int MESSAGES_PER_SESSION = 200;
+
+    // Entity listener của catalog cần CacheManager, slice JPA không tạo cache
+    @MockitoBean
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentAppendsGetDistinctContiguousOrdersPerSession() throws Exception {
+        List<Callable<ChatMessage>> appends = new ArrayList<>();
+        for (int i = 0; i < MESSAGES_PER_SESSION; i++) {
+            int n = i;
+            appends.add(() -> chatMessageRepository.append("session-1", "user-1", message("s1 #" + n)));
+            appends.add(() -> chatMessageRepository.append("session-2", null, message("s2 #" + n)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            for (Future<ChatMessage> appended : executor.invokeAll(appends)) {
+                assertThat(appended.get()).isNotNull();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (String sessionId : List.of("session-1", "session-2")) {
+            List<Integer> orders = jdbcTemplate.queryForList(
+                    "SELECT message_order FROM chat_messages WHERE session_id = ? ORDER BY message_order",
+                    Integer.class, sessionId);
+            assertThat(orders).containsExactlyElementsOf(IntStream.rangeClosed(1, MESSAGES_PER_SESSION).boxed().toList());
+            assertThat(jdbcTemplate.queryForObject(
+                    "SELECT total_messages FROM chat_sessions WHERE id = ?", Integer.class, sessionId))
+                    .isEqualTo(MESSAGES_PER_SESSION);
+        }
+    }
+
+    @Test
+    void appendReturnsNullForAnotherUsersOrAMissingSession() {
+        assertThat(chatMessageRepository.append("session-1", "user-2", message("not mine"))).isNull();
+        assertThat(chatMessageRepository.append("missing", null, message("nowhere"))).isNull();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages", Integer.class)).isZero();
+    }
+
+    private static ChatMessage message(String text) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(ChatMessage.Sender.user);
+        message.setMessageText(text);
+        return message;
+    }
+}
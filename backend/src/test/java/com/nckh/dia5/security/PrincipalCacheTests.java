@@ -0,0 +1,101 @@
+package com.nckh.dia5.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrincipalCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PrincipalCache cache = new PrincipalCache(meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        cache.registerMetrics();
+    }
+
+    @Test
+    void entryDoesNotOutliveItsToken() throws InterruptedException {
+        // Thời điểm hết hạn của JWT tính theo giây
+        Claims claims = token("alice@example.com", 1_500);
+        UserDetails alice = user("alice@example.com");
+        cache.put(claims, alice);
+
+        assertThat(cache.get(claims)).isSameAs(alice);
+        Thread.sleep(claims.getExpiration().getTime() - System.currentTimeMillis() + 100);
+
+        // TTL 300 s nhưng token đã hết hạn
+        assertThat(cache.get(claims)).isNull();
+        assertThat(meterRegistry.get("security.principal.cache").tag("result", "expired").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("security.principal.cache.size").gauge().value()).isZero();
+    }
+
+    @Test
+    void entryDoesNotOutliveTheTtl() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 1L);
+        Claims claims = token("alice@example.com", 3_600_000);
+        cache.put(claims, user("alice@example.com"));
+
+        assertThat(cache.get(claims)).isNotNull();
+        Thread.sleep(1_200);
+
+        assertThat(cache.get(claims)).isNull();
+    }
+
+    @Test
+    void invalidateDropsEveryTokenOfTheAccountOnly() {
+        Claims laptop = token("alice@example.com", 3_600_000);
+        Claims phone = token("alice@example.com", 3_600_000);
+        Claims other = token("bob@example.com", 3_600_000);
+        cache.put(laptop, user("alice@example.com"));
+        cache.put(phone, user("alice@example.com"));
+        cache.put(other, user("bob@example.com"));
+
+        cache.invalidate("Alice@Example.com");
+
+        assertThat(cache.get(laptop)).isNull();
+        assertThat(cache.get(phone)).isNull();
+        assertThat(cache.get(other)).isNotNull();
+
+        cache.invalidateAll();
+        assertThat(cache.get(other)).isNull();
+    }
+
+    @Test
+    void tokensWithoutIdAreKeyedBySubjectAndIssueTime() {
+        Date issuedAt = new Date();
+        Claims first = Jwts.claims().subject("alice@example.com").issuedAt(issuedAt).build();
+        Claims reissued = Jwts.claims().subject("alice@example.com").issuedAt(new Date(issuedAt.getTime() + 1000)).build();
+        cache.put(first, user("alice@example.com"));
+
+        assertThat(cache.get(Jwts.claims().subject("alice@example.com").issuedAt(issuedAt).build())).isNotNull();
+        assertThat(cache.get(reissued)).isNull();
+    }
+
+    private static Claims token(String subject, long expiresInMs) {
+        return Jwts.claims()
+                .id(UUID.randomUUID().toString())
+                .subject(subject)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + expiresInMs))
+                .build();
+    }
+
+    private static UserDetails user(String email) {
+        return User.withUsername(email).password("{noop}secret").roles("USER").build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.support.EthNodeStub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Aggregator against {@link EthNodeStub}, a node that echoes the call data of each eth_call.
+ */
+class BlockchainCallAggregatorTests {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EthNodeStub node = new EthNodeStub(0)
+            .on("eth_call", params -> params.get(0).get("data").asText());
+    private final BlockchainExecutors executors = new BlockchainExecutors(meterRegistry);
+    private BlockchainCallAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 10);
+        ReflectionTestUtils.setField(executors, "readThreads", 2);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 100);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 1);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 10);
+        executors.init();
+
+        aggregator = new BlockchainCallAggregator(Web3j.build(node), meterRegistry, executors);
+        ReflectionTestUtils.setField(aggregator, "enabled", true);
+        ReflectionTestUtils.setField(aggregator, "windowMs", 10_000L);
+        ReflectionTestUtils.setField(aggregator, "maxBatchSize", 5);
+        aggregator.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregator.shutdown();
+        executors.shutdown();
+    }
+
+    @Test
+    void outOfOrderBatchResponsesAreMatchedBackById() {
+        node.reverseBatches();
+
+        List<String> data = new ArrayList<>();
+        List<CompletableFuture<EthCall>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            data.add("0x" + String.format("%064x", i));
+            calls.add(aggregator.call(Transaction.createEthCallTransaction(null, CONTRACT, data.get(i))));
+        }
+
+        // Đủ max-size nên được gửi ngay, không chờ cửa sổ 10 s
+        List<String> results = calls.stream().map(call -> call.join().getValue()).toList();
+        assertThat(results).isEqualTo(data);
+        assertThat(node.roundTrips()).isEqualTo(1);
+        assertThat(meterRegistry.get("blockchain.call.rpc").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("blockchain.call.requests").counter().count()).isEqualTo(5);
+    }
+}
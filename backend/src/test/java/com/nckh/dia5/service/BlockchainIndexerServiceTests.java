@@ -0,0 +1,346 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.model.IndexedBlock;
+import com.nckh.dia5.model.IndexerCursor;
+import com.nckh.dia5.model.ProductItem;
+import com.nckh.dia5.repository.BlockchainEventRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.IndexedBlockRepository;
+import com.nckh.dia5.repository.IndexerCursorRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import com.nckh.dia5.support.PharmaLedgerLogs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Indexer against a simulated chain: web3j answers from an in-memory list of block hashes, and the
+ * cursor and checkpoint repositories keep their rows in memory, so runs can be interrupted, forked
+ * and resumed like against a real node.
+ */
+class BlockchainIndexerServiceTests {
+
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final String CONSUMER = "0xE7f1725E7734CE288F8367e1Bb143E90bb3F0512";
+
+    private final Web3j web3j = mock(Web3j.class);
+    private final BlockchainEventRepository eventRepository = mock(BlockchainEventRepository.class);
+    private final IndexerCursorRepository cursorRepository = mock(IndexerCursorRepository.class);
+    private final IndexedBlockRepository blockRepository = mock(IndexedBlockRepository.class);
+    private final ProductItemRepository productItemRepository = mock(ProductItemRepository.class);
+    private final DrugBatchRepository drugBatchRepository = mock(DrugBatchRepository.class);
+    private final DashboardStatsService dashboardStatsService = mock(DashboardStatsService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    // Canonical chain: hash của block i là hashes.get(i); fork() đổi hash từ một block trở đi
+    private final List<String> hashes = new ArrayList<>();
+    private final TreeMap<BigInteger, IndexedBlock> checkpoints = new TreeMap<>();
+    private final List<BigInteger> cursorHistory = new ArrayList<>();
+    private final List<BigInteger> failingHeaders = new ArrayList<>();
+    private final List<Log> chainLogs = new ArrayList<>();
+    private IndexerCursor cursor;
+    private BlockchainIndexerService indexer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        indexer = new BlockchainIndexerService(web3j, eventRepository, cursorRepository, blockRepository,
+                new PharmaLedgerEventDecoder(objectMapper), productItemRepository, drugBatchRepository,
+                dashboardStatsService, objectMapper,
+                new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(indexer, "contractAddress", CONTRACT);
+        ReflectionTestUtils.setField(indexer, "safetyBuffer", 1);
+        ReflectionTestUtils.setField(indexer, "initialChunkSize", 10L);
+        ReflectionTestUtils.setField(indexer, "maxChunkSize", 10L);
+        ReflectionTestUtils.setField(indexer, "parallelism", 2);
+        ReflectionTestUtils.setField(indexer, "reorgDepth", 256L);
+        indexer.init();
+
+        stubChain();
+        stubRepositories();
+    }
+
+    @AfterEach
+    void tearDown() {
+        indexer.shutdown();
+    }
+
+    @Test
+    void checkpointsEveryChunkBeforeMovingTheCursor() {
+        mineTo(26);
+
+        indexer.indexNewEvents();
+
+        assertThat(cursorHistory).containsExactly(block(10), block(20), block(25));
+        assertThat(checkpoints.keySet()).containsExactly(block(10), block(20), block(25));
+        assertThat(checkpoints.get(block(25)).getBlockHash()).isEqualTo(hashes.get(25));
+    }
+
+    @Test
+    void interruptedRunLeavesACheckpointForTheCursorBlock() {
+        mineTo(26);
+        failHeaderOf(block(20));
+
+        indexer.indexNewEvents();
+
+        assertThat(cursor.getLastIndexedBlock()).isEqualTo(block(10));
+        assertThat(checkpoints).containsKey(block(10));
+    }
+
+    @Test
+    void reorgRollsBackToTheLastMatchingCheckpoint() {
+        mineTo(26);
+        indexer.indexNewEvents();
+        fork(15);
+        mineTo(30);
+
+        indexer.indexNewEvents();
+
+        verify(eventRepository).deleteAfterBlock(block(10));
+        assertThat(cursor.getLastIndexedBlock()).isEqualTo(block(29));
+        assertThat(checkpoints.get(block(20)).getBlockHash()).isEqualTo(hashes.get(20));
+    }
+
+    @Test
+    void cursorWithoutCheckpointIsVerifiedFromThePreviousCheckpoint() {
+        mineTo(26);
+        checkpoint(10);
+        cursorAt(15);
+
+        indexer.indexNewEvents();
+
+        verify(eventRepository).deleteAfterBlock(block(10));
+        assertThat(cursor.getLastIndexedBlock()).isEqualTo(block(25));
+    }
+
+    @Test
+    void reorgRevertsRedemptionsAfterTheForkPointAndRebuildsStats() {
+        mineTo(26);
+        emit(17, PharmaLedgerLogs.serialNumberRedeemed(42, "SN-42-0007", CONSUMER, 1_700_000_000L));
+        indexer.indexNewEvents();
+        verify(productItemRepository).markRedeemedFromChain(eq("SN-42-0007"), any(), any(), eq(block(17)), any(), any());
+
+        when(productItemRepository.findBatchIdsRedeemedAfterBlock(block(10))).thenReturn(List.of(7L));
+        when(productItemRepository.revertRedemptionsAfterBlock(eq(block(10)), any(), any(), any())).thenReturn(1);
+        fork(15);
+        mineTo(30);
+        indexer.indexNewEvents();
+
+        verify(productItemRepository).revertRedemptionsAfterBlock(eq(block(10)),
+                eq(ProductItem.ProductItemStatus.REGISTERED), eq(ProductItem.ProductItemStatus.CREATED), any());
+        verify(drugBatchRepository).recountRedeemedSerials(List.of(7L));
+        verify(dashboardStatsService).rebuild();
+    }
+
+    @Test
+    void firstRunWithoutCheckpointsDoesNotRollBack() {
+        mineTo(26);
+        cursorAt(15);
+
+        indexer.indexNewEvents();
+
+        verify(eventRepository, never()).deleteAfterBlock(any());
+        assertThat(cursor.getLastIndexedBlock()).isEqualTo(block(25));
+    }
+
+    @Test
+    void chunkIsReplacedAndProjectedInOneTransaction() {
+        ReflectionTestUtils.setField(indexer, "streamingEnabled", true);
+        mineTo(6);
+        emit(3, PharmaLedgerLogs.serialNumberRedeemed(42, "SN-42-0007", CONSUMER, 1_700_000_000L));
+
+        indexer.indexNewEvents();
+
+        InOrder order = inOrder(transactionManager, eventRepository, productItemRepository, cursorRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(eventRepository).deleteBlockRange(block(1), block(5));
+        order.verify(eventRepository).upsertAll(anyList());
+        order.verify(productItemRepository).markRedeemedFromChain(eq("SN-42-0007"), any(), any(), eq(block(3)), any(), any());
+        order.verify(cursorRepository).save(any(IndexerCursor.class));
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void streamedLogIsStoredWithoutProjections() {
+        indexer.indexStreamedLog(PharmaLedgerLogs.serialNumberRedeemed(42, "SN-42-0007", CONSUMER, 1_700_000_000L));
+
+        verify(eventRepository).upsertAll(anyList());
+        verifyNoInteractions(productItemRepository, dashboardStatsService, cursorRepository);
+    }
+
+    // ---- simulated chain ----
+
+    private void mineTo(int head) {
+        while (hashes.size() <= head) {
+            hashes.add(hash("main", hashes.size()));
+        }
+    }
+
+    private void fork(int fromBlock) {
+        for (int i = fromBlock; i < hashes.size(); i++) {
+            hashes.set(i, hash("fork", i));
+        }
+    }
+
+    private void emit(int blockNumber, Log eventLog) {
+        eventLog.setBlockNumber("0x" + Integer.toHexString(blockNumber));
+        eventLog.setLogIndex("0x" + Integer.toHexString(chainLogs.size()));
+        chainLogs.add(eventLog);
+    }
+
+    private void failHeaderOf(BigInteger blockNumber) {
+        failingHeaders.add(blockNumber);
+    }
+
+    private void checkpoint(int blockNumber) {
+        checkpoints.put(block(blockNumber), IndexedBlock.builder()
+                .blockNumber(block(blockNumber))
+                .blockHash(hashes.get(blockNumber))
+                .parentHash(hashes.get(blockNumber - 1))
+                .build());
+    }
+
+    private void cursorAt(int blockNumber) {
+        cursor = IndexerCursor.builder().contractAddress(CONTRACT).lastIndexedBlock(block(blockNumber)).build();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void stubChain() throws IOException {
+        when(web3j.ethBlockNumber()).thenAnswer(invocation -> {
+            EthBlockNumber response = new EthBlockNumber();
+            response.setResult("0x" + Integer.toHexString(hashes.size() - 1));
+            return request(response);
+        });
+        when(web3j.ethGetBlockByNumber(any(), anyBoolean())).thenAnswer(invocation -> {
+            BigInteger number = ((DefaultBlockParameterNumber) invocation.getArgument(0)).getBlockNumber();
+            if (failingHeaders.contains(number)) {
+                Request failing = mock(Request.class);
+                when(failing.send()).thenThrow(new IOException("connection reset"));
+                return failing;
+            }
+            return request(blockResponse(number));
+        });
+        when(web3j.ethGetLogs(any(EthFilter.class))).thenAnswer(invocation -> {
+            EthFilter filter = invocation.getArgument(0);
+            BigInteger from = ((DefaultBlockParameterNumber) filter.getFromBlock()).getBlockNumber();
+            BigInteger to = ((DefaultBlockParameterNumber) filter.getToBlock()).getBlockNumber();
+            List<EthLog.LogResult> inRange = new ArrayList<>();
+            chainLogs.stream()
+                    .filter(eventLog -> eventLog.getBlockNumber().compareTo(from) >= 0
+                            && eventLog.getBlockNumber().compareTo(to) <= 0)
+                    .map(eventLog -> new EthLog.LogObject(false, eventLog.getLogIndexRaw(), null,
+                            eventLog.getTransactionHash(), null, eventLog.getBlockNumberRaw(), CONTRACT,
+                            eventLog.getData(), null, eventLog.getTopics()))
+                    .forEach(inRange::add);
+            EthLog response = new EthLog();
+            response.setResult(inRange);
+            return request(response);
+        });
+        when(web3j.newBatch()).thenAnswer(invocation -> {
+            List<Request<?, ? extends Response<?>>> added = new ArrayList<>();
+            BatchRequest batch = mock(BatchRequest.class);
+            when(batch.add(any())).thenAnswer(add -> {
+                added.add(add.getArgument(0));
+                return batch;
+            });
+            when(batch.send()).thenAnswer(send -> {
+                List<Response<?>> responses = new ArrayList<>();
+                for (Request<?, ? extends Response<?>> request : added) {
+                    responses.add(request.send());
+                }
+                return new BatchResponse(added, responses);
+            });
+            return batch;
+        });
+    }
+
+    private void stubRepositories() {
+        when(cursorRepository.findById(CONTRACT)).thenAnswer(invocation -> Optional.ofNullable(cursor));
+        when(cursorRepository.save(any(IndexerCursor.class))).thenAnswer(invocation -> {
+            cursor = invocation.getArgument(0);
+            cursorHistory.add(cursor.getLastIndexedBlock());
+            return cursor;
+        });
+        when(eventRepository.findMaxBlockNumber()).thenReturn(Optional.empty());
+
+        when(blockRepository.findById(any(BigInteger.class)))
+                .thenAnswer(invocation -> Optional.ofNullable(checkpoints.get(invocation.<BigInteger>getArgument(0))));
+        when(blockRepository.save(any(IndexedBlock.class))).thenAnswer(invocation -> {
+            IndexedBlock block = invocation.getArgument(0);
+            checkpoints.put(block.getBlockNumber(), block);
+            return block;
+        });
+        when(blockRepository.findByBlockNumberLessThanOrderByBlockNumberDesc(any())).thenAnswer(invocation ->
+                new ArrayList<>(checkpoints.headMap(invocation.getArgument(0), false).descendingMap().values()));
+        when(blockRepository.deleteAfter(any())).thenAnswer(invocation -> {
+            Map<BigInteger, IndexedBlock> after = checkpoints.tailMap(invocation.getArgument(0), false);
+            int removed = after.size();
+            after.clear();
+            return removed;
+        });
+    }
+
+    private EthBlock blockResponse(BigInteger number) {
+        EthBlock response = new EthBlock();
+        if (number.intValue() < hashes.size()) {
+            EthBlock.Block block = new EthBlock.Block();
+            block.setNumber("0x" + number.toString(16));
+            block.setHash(hashes.get(number.intValue()));
+            block.setParentHash(number.signum() > 0 ? hashes.get(number.intValue() - 1) : hash("genesis", 0));
+            response.setResult(block);
+        }
+        return response;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Request request(Response<?> response) throws IOException {
+        Request request = mock(Request.class);
+        when(request.send()).thenReturn(response);
+        return request;
+    }
+
+    private static String hash(String branch, int number) {
+        String hex = Integer.toHexString((branch + ":" + number).hashCode());
+        return "0x" + "0".repeat(64 - hex.length()) + hex;
+    }
+
+    private static BigInteger block(int number) {
+        return BigInteger.valueOf(number);
+    }
+}
@@ -0,0 +1,192 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.model.BlockchainOutboxEntry;
+import com.nckh.dia5.repository.BlockchainOutboxRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ShipmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Outbox driven through {@link BlockchainOutboxService#processNow} with the chain calls mocked; the
+ * entry under test is the one the repository returns, so its state after the call is what was saved.
+ */
+class BlockchainOutboxServiceTests {
+
+    private static final long BATCH_DB_ID = 11L;
+    private static final long SHIPMENT_DB_ID = 21L;
+    private static final String OLD_HASH = "0x" + "1".repeat(64);
+    private static final String NEW_HASH = "0x" + "2".repeat(64);
+
+    private final BlockchainOutboxRepository outboxRepository = mock(BlockchainOutboxRepository.class);
+    private final DrugTraceabilityService drugTraceabilityService = mock(DrugTraceabilityService.class);
+    private final ShipmentRepository shipmentRepository = mock(ShipmentRepository.class);
+    private final BlockchainService blockchainService = mock(BlockchainService.class);
+    private BlockchainOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BlockchainOutboxService(outboxRepository, drugTraceabilityService,
+                mock(DrugBatchRepository.class), shipmentRepository, blockchainService);
+        ReflectionTestUtils.setField(service, "parallelism", 1);
+        ReflectionTestUtils.setField(service, "maxAttempts", 5);
+        ReflectionTestUtils.setField(service, "baseBackoffSeconds", 10L);
+        ReflectionTestUtils.setField(service, "maxBackoffSeconds", 1800L);
+        service.init();
+
+        when(outboxRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(drugTraceabilityService.findIssuedBatchHash(anyLong())).thenReturn(Optional.empty());
+        when(drugTraceabilityService.findSyncedShipmentHash(anyLong())).thenReturn(Optional.empty());
+        when(drugTraceabilityService.completeBatchIssue(anyLong(), any()))
+                .thenAnswer(invocation -> invocation.<TransactionReceipt>getArgument(1).getTransactionHash());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void storedHashThatWasMinedIsCompletedWithoutResubmitting() throws Exception {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID, OLD_HASH, 1);
+        when(blockchainService.findReceipt(OLD_HASH)).thenReturn(Optional.of(receipt(OLD_HASH, "0x1")));
+
+        assertThat(service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID)).isEqualTo(OLD_HASH);
+
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.DONE);
+        verify(drugTraceabilityService, never()).submitBatchIssue(anyLong());
+        verify(blockchainService, never()).confirmTransaction(anyString());
+    }
+
+    @Test
+    void storedHashThatRevertedIsResubmitted() throws Exception {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID, OLD_HASH, 1);
+        when(blockchainService.findReceipt(OLD_HASH)).thenReturn(Optional.of(receipt(OLD_HASH, "0x0")));
+        resubmissionSucceeds();
+
+        assertThat(service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID)).isEqualTo(NEW_HASH);
+
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.DONE);
+        assertThat(entry.getTransactionHash()).isEqualTo(NEW_HASH);
+        verify(blockchainService, never()).isTransactionKnown(anyString());
+    }
+
+    @Test
+    void storedHashThatWasDroppedIsResubmitted() throws Exception {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID, OLD_HASH, 1);
+        when(blockchainService.findReceipt(OLD_HASH)).thenReturn(Optional.empty());
+        when(blockchainService.isTransactionKnown(OLD_HASH)).thenReturn(false);
+        resubmissionSucceeds();
+
+        assertThat(service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID)).isEqualTo(NEW_HASH);
+
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.DONE);
+        assertThat(entry.getTransactionHash()).isEqualTo(NEW_HASH);
+    }
+
+    @Test
+    void storedHashStillPendingIsAwaitedInsteadOfResubmitted() throws Exception {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID, OLD_HASH, 1);
+        when(blockchainService.findReceipt(OLD_HASH)).thenReturn(Optional.empty());
+        when(blockchainService.isTransactionKnown(OLD_HASH)).thenReturn(true);
+        when(blockchainService.confirmTransaction(OLD_HASH))
+                .thenReturn(CompletableFuture.completedFuture(receipt(OLD_HASH, "0x1")));
+
+        assertThat(service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID)).isEqualTo(OLD_HASH);
+
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.DONE);
+        verify(drugTraceabilityService, never()).submitBatchIssue(anyLong());
+    }
+
+    @Test
+    void failedAttemptIsRescheduledWithExponentialBackoff() throws Exception {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID, null, 2);
+        when(drugTraceabilityService.submitBatchIssue(BATCH_DB_ID)).thenThrow(new RuntimeException("node unavailable"));
+
+        assertThatThrownBy(() -> service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not synced yet");
+
+        // Lần thử thứ 3: 10 s << 2
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.PENDING);
+        assertThat(entry.getAttempts()).isEqualTo(3);
+        assertThat(entry.getLastError()).isEqualTo("node unavailable");
+        assertThat(entry.getNextAttemptAt()).isCloseTo(LocalDateTime.now().plusSeconds(40), within(5, ChronoUnit.SECONDS));
+    }
+
+    @Test
+    void entryIsFailedAfterMaxAttemptsAndNotRetried() throws Exception {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID, null, 4);
+        when(drugTraceabilityService.submitBatchIssue(BATCH_DB_ID)).thenThrow(new RuntimeException("execution reverted"));
+
+        assertThatThrownBy(() -> service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.FAILED);
+        assertThat(entry.getAttempts()).isEqualTo(5);
+
+        assertThatThrownBy(() -> service.processNow(BlockchainOutboxEntry.Operation.ISSUE_BATCH, BATCH_DB_ID))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("failed permanently: execution reverted");
+        verify(drugTraceabilityService).submitBatchIssue(BATCH_DB_ID);
+    }
+
+    @Test
+    void shipmentWaitsForItsBatchWithoutUsingAnAttempt() {
+        BlockchainOutboxEntry entry = stored(BlockchainOutboxEntry.Operation.CREATE_SHIPMENT, SHIPMENT_DB_ID, null, 0);
+        when(shipmentRepository.findBatchSyncedByShipmentId(SHIPMENT_DB_ID)).thenReturn(Optional.of(false));
+
+        assertThatThrownBy(() -> service.processNow(BlockchainOutboxEntry.Operation.CREATE_SHIPMENT, SHIPMENT_DB_ID))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("waiting for batch to be issued on chain");
+
+        assertThat(entry.getStatus()).isEqualTo(BlockchainOutboxEntry.Status.PENDING);
+        assertThat(entry.getAttempts()).isZero();
+        assertThat(entry.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        verify(drugTraceabilityService, never()).submitShipmentCreation(anyLong());
+    }
+
+    private BlockchainOutboxEntry stored(BlockchainOutboxEntry.Operation operation, long aggregateId,
+                                         String transactionHash, int attempts) {
+        BlockchainOutboxEntry entry = BlockchainOutboxEntry.builder()
+                .id(aggregateId)
+                .operation(operation)
+                .aggregateId(aggregateId)
+                .transactionHash(transactionHash)
+                .attempts(attempts)
+                .build();
+        when(outboxRepository.findByOperationAndAggregateId(operation, aggregateId)).thenReturn(Optional.of(entry));
+        return entry;
+    }
+
+    private void resubmissionSucceeds() throws Exception {
+        when(drugTraceabilityService.submitBatchIssue(BATCH_DB_ID)).thenReturn(NEW_HASH);
+        when(blockchainService.confirmTransaction(NEW_HASH))
+                .thenReturn(CompletableFuture.completedFuture(receipt(NEW_HASH, "0x1")));
+    }
+
+    private static TransactionReceipt receipt(String transactionHash, String status) {
+        TransactionReceipt receipt = new TransactionReceipt();
+        receipt.setTransactionHash(transactionHash);
+        receipt.setStatus(status);
+        return receipt;
+    }
+}
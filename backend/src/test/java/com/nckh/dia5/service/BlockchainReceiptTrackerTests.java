@@ -0,0 +1,149 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.support.EthNodeStub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tracker against {@link EthNodeStub} acting as a node whose head is {@link #head}: receipts put
+ * in {@link #mined} are answered by eth_getTransactionReceipt and, per block, by eth_getBlockReceipts.
+ */
+class BlockchainReceiptTrackerTests {
+
+    private static final String TX_A = "0x" + "a".repeat(64);
+    private static final String TX_B = "0x" + "b".repeat(64);
+
+    private final AtomicLong head = new AtomicLong(10);
+    private final Map<String, Map<String, String>> mined = new ConcurrentHashMap<>();
+    private final List<Long> scannedBlocks = new CopyOnWriteArrayList<>();
+    private final List<String> lookedUpHashes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstLookup = new CountDownLatch(1);
+
+    private final EthNodeStub node = new EthNodeStub(0)
+            .on("eth_blockNumber", params -> Numeric.encodeQuantity(BigInteger.valueOf(head.get())))
+            .on("eth_getTransactionReceipt", params -> {
+                String hash = params.get(0).asText();
+                lookedUpHashes.add(hash);
+                Map<String, String> receipt = mined.get(hash);
+                firstLookup.countDown();
+                return receipt;
+            })
+            .on("eth_getBlockReceipts", params -> {
+                long block = Numeric.decodeQuantity(params.get(0).asText()).longValueExact();
+                scannedBlocks.add(block);
+                return mined.values().stream()
+                        .filter(receipt -> Numeric.decodeQuantity(receipt.get("blockNumber")).longValueExact() == block)
+                        .toList();
+            });
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockchainExecutors executors = new BlockchainExecutors(meterRegistry);
+    private final BlockchainTransactionSender transactionSender = mock(BlockchainTransactionSender.class);
+    private BlockchainReceiptTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 10);
+        ReflectionTestUtils.setField(executors, "readThreads", 1);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 10);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 1);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 10);
+        executors.init();
+
+        tracker = new BlockchainReceiptTracker(Web3j.build(node), meterRegistry, executors, transactionSender);
+        ReflectionTestUtils.setField(tracker, "pollIntervalMs", 20L);
+        ReflectionTestUtils.setField(tracker, "timeoutSeconds", 60L);
+        ReflectionTestUtils.setField(tracker, "maxBlocksPerPoll", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+        executors.shutdown();
+    }
+
+    @Test
+    void newBlocksAreScannedWithOneBlockReceiptsBatch() throws Exception {
+        tracker.start();
+        CompletableFuture<TransactionReceipt> receipt = tracker.track(TX_A);
+        awaitFirstLookup();
+
+        // Giao dịch được mine ở block 12, sau lần tra theo hash đầu tiên (head = 10)
+        mine(TX_A, 12);
+        head.set(12);
+
+        assertThat(receipt.get(5, TimeUnit.SECONDS).getTransactionHash()).isEqualTo(TX_A);
+        assertThat(scannedBlocks).containsExactly(11L, 12L);
+        assertThat(lookedUpHashes).containsExactly(TX_A);
+        assertThat(tracker.getPendingCount()).isZero();
+        verify(transactionSender, never()).resetNonce();
+    }
+
+    @Test
+    void headFurtherAheadThanMaxBlocksPerPollFallsBackToBatchedHashLookups() throws Exception {
+        tracker.start();
+        CompletableFuture<TransactionReceipt> first = tracker.track(TX_A);
+        CompletableFuture<TransactionReceipt> second = tracker.track(TX_B);
+        awaitFirstLookup();
+
+        // Node chậm 5 block (> max-blocks-per-poll = 3): tra theo hash thay vì quét từng block
+        mine(TX_A, 14);
+        mine(TX_B, 15);
+        head.set(15);
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getTransactionHash()).isEqualTo(TX_A);
+        assertThat(second.get(5, TimeUnit.SECONDS).getTransactionHash()).isEqualTo(TX_B);
+        assertThat(scannedBlocks).isEmpty();
+        assertThat(lookedUpHashes).containsOnly(TX_A, TX_B);
+        assertThat(lookedUpHashes).hasSizeGreaterThan(2);
+    }
+
+    @Test
+    void timedOutTransactionFailsItsFutureAndReloadsTheNonce() {
+        ReflectionTestUtils.setField(tracker, "timeoutSeconds", 0L);
+        tracker.start();
+
+        CompletableFuture<TransactionReceipt> receipt = tracker.track(TX_A);
+
+        assertThatThrownBy(() -> receipt.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("No receipt received for transaction " + TX_A);
+        verify(transactionSender, timeout(5_000)).resetNonce();
+        assertThat(tracker.getPendingCount()).isZero();
+    }
+
+    private void awaitFirstLookup() throws InterruptedException {
+        assertThat(firstLookup.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void mine(String hash, long block) {
+        mined.put(hash, Map.of(
+                "transactionHash", hash,
+                "blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(block)),
+                "status", "0x1"));
+    }
+}
@@ -0,0 +1,183 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.config.BlockchainConfig;
+import com.nckh.dia5.support.EthNodeStub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.gas.StaticGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Sender against {@link EthNodeStub} acting as a node that checks nonces: it rejects a nonce below
+ * its pending nonce with "nonce too low", and answers the errors queued in {@link #nodeErrors} to
+ * the next sends.
+ */
+class BlockchainTransactionSenderTests {
+
+    // Tài khoản #0 mặc định của Hardhat
+    private static final String PRIVATE_KEY = "0xac0974bec39a17e36ba4a6b4d238ff944bacb478cbed5efcae784d7bf4f2ff80";
+    private static final String CONTRACT = "0x5fbdb2315678afecb367f032d93f642f64180aa3";
+    private static final String FUNCTION = "issueBatch";
+    private static final String CALL = "0x12345678";
+
+    private final AtomicLong pendingNonce = new AtomicLong(5);
+    private final AtomicInteger nonceQueries = new AtomicInteger();
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final Queue<String> nodeErrors = new ConcurrentLinkedQueue<>();
+
+    private final EthNodeStub node = new EthNodeStub(0)
+            .on("eth_getTransactionCount", params -> {
+                nonceQueries.incrementAndGet();
+                return Numeric.encodeQuantity(BigInteger.valueOf(pendingNonce.get()));
+            })
+            .on("eth_sendRawTransaction", params -> {
+                String signed = params.get(0).asText();
+                sent.add(signed);
+                String error = nodeErrors.poll();
+                if (error != null) {
+                    throw new EthNodeStub.RpcError(-32000, error);
+                }
+                long nonce = nonceOf(signed).longValueExact();
+                if (nonce < pendingNonce.get()) {
+                    throw new EthNodeStub.RpcError(-32000, "nonce too low");
+                }
+                pendingNonce.set(nonce + 1);
+                return Hash.sha3(signed);
+            });
+
+    private final BlockchainExecutors executors = new BlockchainExecutors(new SimpleMeterRegistry());
+    private BlockchainTransactionSender sender;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executors, "writeQueueCapacity", 10);
+        ReflectionTestUtils.setField(executors, "readThreads", 1);
+        ReflectionTestUtils.setField(executors, "readQueueCapacity", 10);
+        ReflectionTestUtils.setField(executors, "receiptThreads", 1);
+        ReflectionTestUtils.setField(executors, "receiptQueueCapacity", 10);
+        executors.init();
+
+        BlockchainConfig config = new BlockchainConfig();
+        ReflectionTestUtils.setField(config, "chainId", 31337L);
+        sender = new BlockchainTransactionSender(Web3j.build(node), Credentials.create(PRIVATE_KEY),
+                new StaticGasProvider(BigInteger.valueOf(20_000_000_000L), BigInteger.valueOf(6_721_975)),
+                config, executors);
+        ReflectionTestUtils.setField(sender, "nonceRetries", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    void nonceTooLowResyncsFromThePendingNonceAndResends() {
+        sender.submit(CONTRACT, FUNCTION, CALL).join();
+        // Một tiến trình khác dùng cùng ví đã gửi nonce 6 và 7
+        pendingNonce.set(8);
+
+        String hash = sender.submit(CONTRACT, FUNCTION, CALL).join();
+
+        assertThat(sent).extracting(BlockchainTransactionSenderTests::nonceOf)
+                .containsExactly(BigInteger.valueOf(5), BigInteger.valueOf(6), BigInteger.valueOf(8));
+        assertThat(hash).isEqualTo(Hash.sha3(sent.get(2)));
+        assertThat(nonceQueries).hasValue(2);
+
+        sender.submit(CONTRACT, FUNCTION, CALL).join();
+        assertThat(nonceOf(sent.get(3))).isEqualTo(BigInteger.valueOf(9));
+        assertThat(nonceQueries).hasValue(2);
+    }
+
+    @Test
+    void alreadyKnownCountsAsSentAndKeepsTheLocalNonce() {
+        // Node đã có giao dịch này trong mempool (gửi lại sau lỗi mạng)
+        nodeErrors.add("already known");
+        pendingNonce.set(5);
+
+        String hash = sender.submit(CONTRACT, FUNCTION, CALL).join();
+        pendingNonce.set(6);
+        sender.submit(CONTRACT, FUNCTION, CALL).join();
+
+        assertThat(hash).isEqualTo(Hash.sha3(sent.get(0)));
+        assertThat(sent).extracting(BlockchainTransactionSenderTests::nonceOf)
+                .containsExactly(BigInteger.valueOf(5), BigInteger.valueOf(6));
+        assertThat(nonceQueries).hasValue(1);
+    }
+
+    @Test
+    void givesUpAfterTheConfiguredNonceRetries() {
+        for (int i = 0; i < 4; i++) {
+            nodeErrors.add("nonce too low");
+        }
+
+        assertThatThrownBy(() -> sender.submit(CONTRACT, FUNCTION, CALL).join())
+                .hasMessageContaining("Transaction failed: nonce too low");
+        assertThat(sent).hasSize(4);
+        assertThat(nonceQueries).hasValue(4);
+    }
+
+    @Test
+    void resetNonceWithAFullWriteQueueReloadsTheNonceBeforeTheNextSend() throws InterruptedException {
+        CountDownLatch nodeBlocked = new CountDownLatch(1);
+        CountDownLatch releaseNode = new CountDownLatch(1);
+        node.on("eth_getTransactionCount", params -> {
+            nonceQueries.incrementAndGet();
+            nodeBlocked.countDown();
+            await(releaseNode);
+            return Numeric.encodeQuantity(BigInteger.valueOf(pendingNonce.get()));
+        });
+
+        // Write thread đang chờ node, hàng đợi (10) đầy
+        List<CompletableFuture<String>> queued = new ArrayList<>();
+        queued.add(sender.submit(CONTRACT, FUNCTION, CALL));
+        nodeBlocked.await();
+        for (int i = 0; i < 10; i++) {
+            queued.add(sender.submit(CONTRACT, FUNCTION, CALL));
+        }
+        assertThat(sender.submit(CONTRACT, FUNCTION, CALL)).isCompletedExceptionally();
+
+        sender.resetNonce();
+        releaseNode.countDown();
+        queued.forEach(CompletableFuture::join);
+
+        // Lần gửi đầu tiên đọc nonce; cờ reset làm lần gửi kế tiếp đọc lại đúng một lần
+        assertThat(nonceQueries).hasValue(2);
+        assertThat(sent).extracting(BlockchainTransactionSenderTests::nonceOf)
+                .containsExactlyElementsOf(LongStream.range(5, 16).mapToObj(BigInteger::valueOf).toList());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static BigInteger nonceOf(String signedTransaction) {
+        return TransactionDecoder.decode(signedTransaction).getNonce();
+    }
+}
@@ -0,0 +1,205 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.controller.ChatController;
+import com.nckh.dia5.model.User;
+import com.nckh.dia5.repository.ChatMessageRepository;
+import com.nckh.dia5.repository.ChatSessionRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * {@link ChatService#streamChatResponse} against a local {@link HttpServer} standing in for the
+ * Python chatbot, persisting to the H2 test profile. {@code /chat/stream} answers with the stream
+ * configured by the test.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql(scripts = "/sql/chat-sessions.sql")
+@Sql(statements = {"DELETE FROM chat_messages", "DELETE FROM chat_sessions", "DELETE FROM users"},
+        executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class ChatServiceTests {
+
+    private static final List<String> ANSWER_EVENTS = List.of(
+            "data: {\"chunk\": \"Bạn nên \"}",
+            "data: {\"chunk\": \"nghỉ ngơi.\"}",
+            "data: {\"type\": \"final\", \"confidence\": 0.9, \"processing_time\": 120}");
+
+    // Entity listener của catalog cần CacheManager, slice JPA không tạo cache
+    @MockitoBean
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private final ExecutorService callbackExecutor = Executors.newFixedThreadPool(2);
+    private HttpServer server;
+    private volatile int upstreamStatus = 200;
+    // Chatbot dừng sau event đầu tiên cho tới khi latch được mở
+    private volatile CountDownLatch resumeUpstream = new CountDownLatch(0);
+
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/chat/stream", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(upstreamStatus, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                for (int i = 0; i < ANSWER_EVENTS.size(); i++) {
+                    body.write((ANSWER_EVENTS.get(i) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                    body.flush();
+                    if (i == 0) {
+                        resumeUpstream.await(5, TimeUnit.SECONDS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+
+        PythonServiceClient chatbotClient = new PythonServiceClient("chatbot",
+                "http://127.0.0.1:" + server.getAddress().getPort(), Duration.ofSeconds(1), Duration.ofSeconds(10),
+                10, 5, Duration.ofSeconds(30), callbackExecutor, new ObjectMapper(), new SimpleMeterRegistry());
+
+        User user = new User();
+        user.setId("user-1");
+        AuthService authService = mock(AuthService.class);
+        when(authService.getCurrentUser()).thenReturn(user);
+
+        chatService = new ChatService(chatbotClient, chatSessionRepository, chatMessageRepository, authService,
+                new ObjectMapper());
+        ReflectionTestUtils.setField(chatService, "streamTimeoutMs", 10_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatService.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+        callbackExecutor.shutdownNow();
+    }
+
+    @Test
+    void relaysTheStreamOverSseAndSavesTheAnswerOnce() throws Exception {
+        List<String> relayed = stream("Tôi bị sốt");
+
+        assertThat(relayed).containsExactly(
+                "data:{\"chunk\": \"Bạn nên \"}",
+                "data:{\"chunk\": \"nghỉ ngơi.\"}",
+                "data:{\"type\": \"final\", \"confidence\": 0.9, \"processing_time\": 120}");
+
+        awaitMessages(2);
+        assertThat(messages()).containsExactly("1 user: Tôi bị sốt", "2 ai: Bạn nên nghỉ ngơi.");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT processing_time_ms FROM chat_messages WHERE sender = 'ai'", Integer.class)).isEqualTo(120);
+    }
+
+    @Test
+    void upstreamErrorIsRelayedAndSavesNoAnswer() throws Exception {
+        upstreamStatus = 500;
+
+        List<String> relayed = stream("Tôi bị sốt");
+
+        assertThat(relayed).last(InstanceOfAssertFactories.STRING).startsWith("data:").contains("\"type\":\"error\"");
+        // Chờ thêm để write-behind (nếu có) kịp chạy
+        Thread.sleep(300);
+        assertThat(messages()).containsExactly("1 user: Tôi bị sốt");
+    }
+
+    @Test
+    void answerIsSavedAfterTheClientDisconnects() throws Exception {
+        resumeUpstream = new CountDownLatch(1);
+
+        SseEmitter emitter = chatService.streamChatResponse("session-1", "Tôi bị sốt");
+        // Container hoàn tất emitter khi client ngắt kết nối; các lần send sau đó bị từ chối như khi đó
+        emitter.complete();
+        resumeUpstream.countDown();
+
+        awaitMessages(2);
+        assertThat(messages()).containsExactly("1 user: Tôi bị sốt", "2 ai: Bạn nên nghỉ ngơi.");
+    }
+
+    /**
+     * Gửi tin nhắn qua endpoint stream, trả về các dòng SSE khác rỗng client nhận được
+     */
+    private List<String> stream(String message) throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new ChatController(chatService)).build();
+        MvcResult result = mockMvc.perform(post("/api/chat/sessions/session-1/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .content(new ObjectMapper().writeValueAsString(Map.of("message", message))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8).lines()
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+
+    private List<String> messages() {
+        return jdbcTemplate.query(
+                "SELECT message_order, sender, message_text FROM chat_messages WHERE session_id = 'session-1' " +
+                "ORDER BY message_order",
+                (rs, row) -> rs.getInt("message_order") + " " + rs.getString("sender") + ": " + rs.getString("message_text"));
+    }
+
+    private void awaitMessages(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (messages().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+}
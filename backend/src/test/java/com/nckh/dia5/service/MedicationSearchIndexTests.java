@@ -0,0 +1,183 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.model.Medication;
+import com.nckh.dia5.repository.MedicationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MedicationSearchIndexTests {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+
+    private final MedicationRepository medicationRepository = mock(MedicationRepository.class);
+    private final MedicationSearchIndex index = new MedicationSearchIndex(medicationRepository);
+
+    @Test
+    void foldsDiacriticsAndCaseOnBothSides() {
+        build(medication(1, "Thuốc ho Bổ Phế", null, "Siro ho"));
+
+        assertThat(names("bo phe")).containsExactly("Thuốc ho Bổ Phế");
+        assertThat(names("BỔ PHẾ")).containsExactly("Thuốc ho Bổ Phế");
+        assertThat(names("thuoc")).containsExactly("Thuốc ho Bổ Phế");
+    }
+
+    @Test
+    void shortTermsMatchWordPrefixesOnly() {
+        build(medication(1, "Paracetamol", null, null),
+                medication(2, "Ampicillin", null, null));
+
+        assertThat(names("pa")).containsExactly("Paracetamol");
+        assertThat(names("ci")).isEmpty();
+    }
+
+    @Test
+    void singleCharactersMatchWholeWordsAndBlankKeywordsMatchNothing() {
+        build(medication(1, "Vitamin C", null, null),
+                medication(2, "Cefuroxime", null, null));
+
+        assertThat(names("c")).containsExactly("Vitamin C");
+        assertThat(names("v")).isEmpty();
+        assertThat(index.search("  ", FIRST_PAGE).getTotalElements()).isZero();
+    }
+
+    @Test
+    void longerTermsMatchInsideWordsThroughTrigrams() {
+        build(medication(1, "Paracetamol", null, null),
+                medication(2, "Ampicillin", null, null));
+
+        assertThat(names("cetam")).containsExactly("Paracetamol");
+        assertThat(names("cilli")).containsExactly("Ampicillin");
+        assertThat(names("cetax")).isEmpty();
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        build(medication(1, "Paracetamol 500mg", null, null),
+                medication(2, "Paracetamol 650mg", null, null));
+
+        assertThat(names("paracetamol 500")).containsExactly("Paracetamol 500mg");
+        assertThat(names("paracetamol 250")).isEmpty();
+    }
+
+    @Test
+    void ranksNameOverGenericNameOverDrugClass() {
+        build(medication(1, "Ecotrin", "Aspirin", "NSAID"),
+                medication(2, "Salicylate mix", null, "Aspirin derivatives"),
+                medication(3, "Bayer Aspirin 81", null, null),
+                medication(4, "Aspirin", "Acetylsalicylic acid", null));
+
+        assertThat(names("aspirin")).containsExactly("Aspirin", "Bayer Aspirin 81", "Ecotrin", "Salicylate mix");
+    }
+
+    @Test
+    void ranksWholeWordsOverPrefixesOverInfixes() {
+        build(medication(1, "Cillin forte", null, null),
+                medication(2, "Ampicillin", null, null),
+                medication(3, "Cillinex", null, null));
+
+        assertThat(names("cillin")).containsExactly("Cillin forte", "Cillinex", "Ampicillin");
+    }
+
+    @Test
+    void changesCommittedDuringARebuildAreReplayedOnTheNewSnapshot() {
+        Medication stale = medication(1, "Amoxicillin", null, null);
+        Medication added = medication(2, "Azithromycin", null, null);
+        Medication renamed = medication(3, "Cefuroxime", null, null);
+        when(medicationRepository.findAll()).thenAnswer(invocation -> {
+            // Các thay đổi commit trong lúc rebuild đang đọc bảng (kết quả đọc đã cũ)
+            index.remove(1);
+            index.upsert(added);
+            index.upsert(medication(3, "Cefixime", null, null));
+            return List.of(stale, renamed);
+        });
+
+        index.rebuild();
+
+        assertThat(names("amoxicillin")).isEmpty();
+        assertThat(names("azithromycin")).containsExactly("Azithromycin");
+        assertThat(names("cefuroxime")).isEmpty();
+        assertThat(names("cefixime")).containsExactly("Cefixime");
+    }
+
+    @Test
+    void changesAfterTheBuildApplyToTheLiveSnapshot() {
+        build(medication(1, "Amoxicillin", null, null));
+
+        index.upsert(medication(1, "Amoxicillin 250mg", null, null));
+        index.upsert(medication(2, "Azithromycin", null, null));
+        index.remove(2);
+
+        assertThat(names("250")).containsExactly("Amoxicillin 250mg");
+        assertThat(names("azithromycin")).isEmpty();
+    }
+
+    @Test
+    void fallsBackToTheRepositoryUntilTheFirstBuild() {
+        Page<Medication> fromDatabase = new PageImpl<>(List.of(medication(1, "Paracetamol", null, null)));
+        when(medicationRepository.searchByKeyword("para", FIRST_PAGE)).thenReturn(fromDatabase);
+
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.search("para", FIRST_PAGE)).isSameAs(fromDatabase);
+
+        build(medication(1, "Paracetamol", null, null));
+        index.search("para", FIRST_PAGE);
+        verify(medicationRepository, times(1)).searchByKeyword(any(), any(Pageable.class));
+    }
+
+    @Test
+    void pagesTheRankedResults() {
+        build(medication(1, "Vitamin A", null, null),
+                medication(2, "Vitamin B1", null, null),
+                medication(3, "Vitamin C", null, null));
+
+        Page<Medication> page = index.search("vitamin", PageRequest.of(1, 2));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(Medication::getName).containsExactly("Vitamin B1");
+    }
+
+    @Test
+    void countsEveryMatchWhileRankingOnlyTheRequestedPages() {
+        Medication[] medications = new Medication[50];
+        for (int i = 0; i < medications.length; i++) {
+            medications[i] = medication(i + 1, "Vitamin " + (char) ('A' + i % 26) + i, null, null);
+        }
+        build(medications);
+
+        Page<Medication> page = index.search("vitamin", PageRequest.of(2, 4));
+
+        assertThat(page.getTotalElements()).isEqualTo(50);
+        assertThat(page.getContent()).extracting(Medication::getName)
+                .containsExactly("Vitamin I8", "Vitamin J9", "Vitamin A26", "Vitamin B27");
+    }
+
+    private void build(Medication... medications) {
+        when(medicationRepository.findAll()).thenReturn(List.of(medications));
+        index.rebuild();
+    }
+
+    private List<String> names(String keyword) {
+        return index.search(keyword, FIRST_PAGE).getContent().stream().map(Medication::getName).toList();
+    }
+
+    private static Medication medication(int id, String name, String genericName, String drugClass) {
+        Medication medication = new Medication();
+        medication.setId(id);
+        medication.setName(name);
+        medication.setGenericName(genericName);
+        medication.setDrugClass(drugClass);
+        return medication;
+    }
+}
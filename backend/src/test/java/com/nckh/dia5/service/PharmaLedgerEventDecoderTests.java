@@ -0,0 +1,133 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.model.BlockchainEvent;
+import com.nckh.dia5.support.PharmaLedgerLogs;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PharmaLedgerEventDecoderTests {
+
+    private static final String MANUFACTURER = "0x5FbDB2315678afecb367f032d93F642f64180aa3";
+    private static final String DISTRIBUTOR = "0xE7f1725E7734CE288F8367e1Bb143E90bb3F0512";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PharmaLedgerEventDecoder decoder = new PharmaLedgerEventDecoder(objectMapper);
+
+    @Test
+    void decodesBatchIssued() throws Exception {
+        BlockchainEvent event = decoder.decode(
+                PharmaLedgerLogs.batchIssued(42, MANUFACTURER, "Paracetamol 500mg", 1000, "QR-42"));
+
+        assertThat(event.getEventType()).isEqualTo("BatchIssued");
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getFromAddress()).isEqualTo(MANUFACTURER.toLowerCase());
+        assertThat(event.getQuantity()).isEqualTo(BigInteger.valueOf(1000));
+        JsonNode data = objectMapper.readTree(event.getEventData());
+        assertThat(data.get("drugName").asText()).isEqualTo("Paracetamol 500mg");
+        assertThat(data.get("qrCode").asText()).isEqualTo("QR-42");
+    }
+
+    @Test
+    void decodesSerialNumbersRegistered() throws Exception {
+        BlockchainEvent event = decoder.decode(PharmaLedgerLogs.serialNumbersRegistered(42, 250));
+
+        assertThat(event.getEventType()).isEqualTo("SerialNumbersRegistered");
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getQuantity()).isEqualTo(BigInteger.valueOf(250));
+    }
+
+    @Test
+    void decodesSerialNumberRedeemed() throws Exception {
+        BlockchainEvent event = decoder.decode(
+                PharmaLedgerLogs.serialNumberRedeemed(42, "SN-42-0007", DISTRIBUTOR, 1_700_000_000L));
+
+        assertThat(event.getEventType()).isEqualTo("SerialNumberRedeemed");
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getSerialNumber()).isEqualTo("SN-42-0007");
+        assertThat(event.getFromAddress()).isEqualTo(DISTRIBUTOR.toLowerCase());
+        assertThat(objectMapper.readTree(event.getEventData()).get("timestamp").asLong()).isEqualTo(1_700_000_000L);
+    }
+
+    @Test
+    void decodesShipmentCreated() throws Exception {
+        BlockchainEvent event = decoder.decode(
+                PharmaLedgerLogs.shipmentCreated(7, 42, MANUFACTURER, DISTRIBUTOR, 300));
+
+        assertThat(event.getEventType()).isEqualTo("ShipmentCreated");
+        assertThat(event.getShipmentId()).isEqualTo(BigInteger.valueOf(7));
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getFromAddress()).isEqualTo(MANUFACTURER.toLowerCase());
+        assertThat(event.getToAddress()).isEqualTo(DISTRIBUTOR.toLowerCase());
+        assertThat(event.getQuantity()).isEqualTo(BigInteger.valueOf(300));
+    }
+
+    @Test
+    void decodesShipmentReceived() throws Exception {
+        BlockchainEvent event = decoder.decode(
+                PharmaLedgerLogs.shipmentReceived(7, 42, DISTRIBUTOR, 1_700_000_500L));
+
+        assertThat(event.getEventType()).isEqualTo("ShipmentReceived");
+        assertThat(event.getShipmentId()).isEqualTo(BigInteger.valueOf(7));
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getToAddress()).isEqualTo(DISTRIBUTOR.toLowerCase());
+        assertThat(objectMapper.readTree(event.getEventData()).get("receiveDate").asLong()).isEqualTo(1_700_000_500L);
+    }
+
+    @Test
+    void decodesBatchStatusUpdated() throws Exception {
+        BlockchainEvent event = decoder.decode(PharmaLedgerLogs.batchStatusUpdated(42, 0, 2));
+
+        assertThat(event.getEventType()).isEqualTo("BatchStatusUpdated");
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getStatusCode()).isEqualTo(2);
+        assertThat(objectMapper.readTree(event.getEventData()).get("oldStatus").asInt()).isZero();
+    }
+
+    @Test
+    void decodesOwnershipTransferred() throws Exception {
+        BlockchainEvent event = decoder.decode(PharmaLedgerLogs.ownershipTransferred(42, MANUFACTURER, DISTRIBUTOR));
+
+        assertThat(event.getEventType()).isEqualTo("OwnershipTransferred");
+        assertThat(event.getBatchId()).isEqualTo(BigInteger.valueOf(42));
+        assertThat(event.getFromAddress()).isEqualTo(MANUFACTURER.toLowerCase());
+        assertThat(event.getToAddress()).isEqualTo(DISTRIBUTOR.toLowerCase());
+    }
+
+    @Test
+    void keepsLogPosition() throws Exception {
+        BlockchainEvent event = decoder.decode(PharmaLedgerLogs.serialNumbersRegistered(1, 1));
+
+        assertThat(event.getTransactionHash()).isEqualTo(PharmaLedgerLogs.TX_HASH);
+        assertThat(event.getBlockNumber()).isEqualTo(BigInteger.valueOf(PharmaLedgerLogs.BLOCK_NUMBER));
+        assertThat(event.getLogIndex()).isEqualTo(BigInteger.ZERO);
+        assertThat(event.getProcessed()).isFalse();
+    }
+
+    @Test
+    void ignoresUnknownEventsAndMalformedTopics() throws Exception {
+        Log unknown = PharmaLedgerLogs.serialNumbersRegistered(1, 1);
+        unknown.setTopics(List.of("0x" + "00".repeat(32), unknown.getTopics().get(1)));
+        assertThat(decoder.decode(unknown)).isNull();
+
+        Log missingTopic = PharmaLedgerLogs.ownershipTransferred(1, MANUFACTURER, DISTRIBUTOR);
+        missingTopic.setTopics(new ArrayList<>(missingTopic.getTopics().subList(0, 2)));
+        assertThat(decoder.decode(missingTopic)).isNull();
+
+        Log noTopics = PharmaLedgerLogs.serialNumbersRegistered(1, 1);
+        noTopics.setTopics(List.of());
+        assertThat(decoder.decode(noTopics)).isNull();
+    }
+
+    @Test
+    void filtersOnEveryDecodedEvent() {
+        assertThat(decoder.getEventTopics()).hasSize(7).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,192 @@
+package com.nckh.dia5.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nckh.dia5.handler.UpstreamServiceUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Client against a local {@link HttpServer} standing in for a Python service: {@code /slow}
+ * answers after {@link #SLOW_MS}, {@code /error} answers 500 at once and {@code /stream} sends
+ * {@link #SSE_EVENTS} as a chunked event stream.
+ */
+class PythonServiceClientTests {
+
+    private static final long SLOW_MS = 1_500;
+
+    private static final List<String> SSE_EVENTS = List.of(
+            "data: {\"chunk\": \"Xin \"}",
+            "data: {\"chunk\": \"chào\"}",
+            "data: {\"type\": \"final\", \"confidence\": 0.9, \"processing_time\": 120}");
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private final ExecutorService callbackExecutor = Executors.newFixedThreadPool(2);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer server;
+    private volatile String acceptHeader;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/slow", exchange -> {
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(SLOW_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/error", exchange -> {
+            hits.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.createContext("/stream", exchange -> {
+            hits.incrementAndGet();
+            acceptHeader = exchange.getRequestHeaders().getFirst("Accept");
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                for (String event : SSE_EVENTS) {
+                    body.write((event + "\n\n").getBytes(StandardCharsets.UTF_8));
+                    body.flush();
+                }
+            }
+        });
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        callbackExecutor.shutdownNow();
+    }
+
+    @Test
+    void readTimeoutOfTheServiceFailsTheCall() {
+        PythonServiceClient client = client(Duration.ofMillis(200), 10, 5);
+
+        long started = System.nanoTime();
+        CompletableFuture<Integer> call = client.get("/slow");
+
+        assertThatThrownBy(call::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(UpstreamServiceUnavailableException.class)
+                .hasRootCauseInstanceOf(HttpTimeoutException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(SLOW_MS);
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondMaxConcurrentWithoutWaiting() {
+        PythonServiceClient client = client(Duration.ofSeconds(10), 2, 5);
+
+        // Gửi xong trả về ngay: thread gọi (thread của servlet) không phải chờ service
+        long started = System.nanoTime();
+        List<CompletableFuture<Integer>> inFlight = List.of(client.get("/slow"), client.get("/slow"));
+        CompletableFuture<Integer> extra = client.get("/slow");
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(submitMillis).isLessThan(SLOW_MS / 3);
+        assertThat(inFlight).noneMatch(CompletableFuture::isDone);
+        assertThat(extra).isCompletedExceptionally();
+        assertThatThrownBy(extra::join).hasCauseInstanceOf(UpstreamServiceUnavailableException.class);
+        assertThat(meterRegistry.get("python.service.rejected").counter().count()).isEqualTo(1);
+
+        assertThat(inFlight).allSatisfy(call -> assertThat(call.join()).isEqualTo(200));
+        assertThat(hits).hasValue(2);
+        assertThat(client.get("/error").join()).isEqualTo(500);
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveFailuresAndRejectsWithoutCallingTheService() {
+        PythonServiceClient client = client(Duration.ofSeconds(10), 10, 3);
+
+        List<Integer> statuses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            statuses.add(client.get("/error").join());
+        }
+        assertThat(statuses).containsOnly(500);
+        assertThat(client.isCircuitOpen()).isTrue();
+        assertThat(meterRegistry.get("python.service.circuit.open").gauge().value()).isEqualTo(1);
+
+        CompletableFuture<Integer> rejected = client.get("/slow");
+
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(UpstreamServiceUnavailableException.class);
+        assertThat(hits).hasValue(3);
+    }
+
+    @Test
+    void streamRelaysEveryLineInOrder() {
+        PythonServiceClient client = client(Duration.ofSeconds(10), 10, 5);
+        List<String> lines = new CopyOnWriteArrayList<>();
+
+        assertThat(client.streamLines("/stream", Map.of("query", "xin chào"), Map.of(), lines::add))
+                .succeedsWithin(5, TimeUnit.SECONDS);
+
+        assertThat(lines).filteredOn(line -> !line.isEmpty()).containsExactlyElementsOf(SSE_EVENTS);
+        assertThat(acceptHeader).isEqualTo("text/event-stream");
+    }
+
+    @Test
+    void failingLineConsumerStillDrainsTheStream() {
+        PythonServiceClient client = client(Duration.ofSeconds(10), 1, 1);
+        AtomicInteger delivered = new AtomicInteger();
+
+        CompletableFuture<Void> stream = client.streamLines("/stream", Map.of(), Map.of(), line -> {
+            delivered.incrementAndGet();
+            throw new IllegalStateException("client disconnected");
+        });
+
+        // Stream vẫn kết thúc bình thường, bulkhead được trả lại và circuit không mở
+        assertThat(stream).succeedsWithin(5, TimeUnit.SECONDS);
+        assertThat(delivered).hasValue(1);
+        assertThat(client.isCircuitOpen()).isFalse();
+        assertThat(client.streamLines("/stream", Map.of(), Map.of(), line -> { }))
+                .succeedsWithin(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void streamFailsOnAnErrorStatus() {
+        PythonServiceClient client = client(Duration.ofSeconds(10), 10, 5);
+
+        assertThatThrownBy(() -> client.streamLines("/error", Map.of(), Map.of(), line -> { }).join())
+                .isInstanceOf(CompletionException.class)
+                .hasMessageContaining("returned status: 500");
+    }
+
+    private PythonServiceClient client(Duration readTimeout, int maxConcurrent, int failureThreshold) {
+        return new PythonServiceClient("test", "http://127.0.0.1:" + server.getAddress().getPort(),
+                Duration.ofSeconds(1), readTimeout, maxConcurrent, failureThreshold, Duration.ofSeconds(30),
+                callbackExecutor, new ObjectMapper(), meterRegistry);
+    }
+}
@@ -0,0 +1,125 @@
+package com.nckh.dia5.service;
+
+import com.nckh.dia5.config.BlockchainConfig;
+import com.nckh.dia5.dto.blockchain.SerialNumberStatusDto;
+import com.nckh.dia5.model.DrugBatch;
+import com.nckh.dia5.repository.BlockchainTransactionRepository;
+import com.nckh.dia5.repository.DrugBatchRepository;
+import com.nckh.dia5.repository.ProductItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SerialRegistrationServiceTests {
+
+    private static final BigInteger BATCH_ID = BigInteger.valueOf(7);
+
+    private final BlockchainService blockchainService = mock(BlockchainService.class);
+    private final ProductItemRepository productItemRepository = mock(ProductItemRepository.class);
+    private final DrugBatchRepository drugBatchRepository = mock(DrugBatchRepository.class);
+    private final DrugBatch batch = new DrugBatch();
+    private SerialRegistrationService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BlockchainConfig config = new BlockchainConfig();
+        ReflectionTestUtils.setField(config, "gasLimit", BigInteger.valueOf(6_721_975));
+
+        service = new SerialRegistrationService(blockchainService, config, productItemRepository,
+                drugBatchRepository, mock(BlockchainTransactionRepository.class), mock(DashboardStatsService.class));
+        ReflectionTestUtils.setField(service, "defaultGasPerSerial", 60_000L);
+        ReflectionTestUtils.setField(service, "defaultBaseGas", 80_000L);
+        ReflectionTestUtils.setField(service, "maxChunkSize", 2);
+        ReflectionTestUtils.setField(service, "maxInFlight", 8);
+        ReflectionTestUtils.setField(service, "maxAttempts", 10);
+        ReflectionTestUtils.setField(service, "baseBackoffSeconds", 60L);
+        ReflectionTestUtils.setField(service, "maxBackoffSeconds", 3600L);
+
+        batch.setBatchId(BATCH_ID);
+        when(drugBatchRepository.findByBatchId(BATCH_ID)).thenReturn(Optional.of(batch));
+        when(blockchainService.estimateRegisterSerialNumbersGas(any(), anyList()))
+                .thenThrow(new IllegalStateException("estimation disabled"));
+        when(productItemRepository.markRegistered(eq(batch), anyList(), any(), any()))
+                .thenAnswer(invocation -> invocation.<List<String>>getArgument(1).size());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void reconcilingAFailedChunkDoesNotHoldUpProgressOfOtherChunks() {
+        when(productItemRepository.findUnregisteredSerialNumbers(batch)).thenReturn(List.of("S1", "S2", "S3", "S4"));
+
+        // Chunk đầu lỗi (có thể đã mined trước khi restart), chunk sau còn đang chờ receipt
+        CompletableFuture<TransactionReceipt> second = new CompletableFuture<>();
+        when(blockchainService.registerSerialNumbers(BATCH_ID, List.of("S1", "S2")))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Serial already registered")));
+        when(blockchainService.registerSerialNumbers(BATCH_ID, List.of("S3", "S4"))).thenReturn(second);
+        CompletableFuture<SerialNumberStatusDto> s1 = new CompletableFuture<>();
+        CompletableFuture<SerialNumberStatusDto> s2 = new CompletableFuture<>();
+        when(blockchainService.getSerialStatus(BATCH_ID, "S1")).thenReturn(s1);
+        when(blockchainService.getSerialStatus(BATCH_ID, "S2")).thenReturn(s2);
+
+        CompletableFuture<Long> registered = service.registerPendingSerials(BATCH_ID);
+        verify(blockchainService, timeout(2_000)).getSerialStatus(BATCH_ID, "S2");
+
+        // eth_call của lượt đối soát chưa trả về nhưng thread ghi tiến độ vẫn rảnh
+        second.complete(receipt());
+        verify(productItemRepository, timeout(2_000)).markRegistered(eq(batch), eq(List.of("S3", "S4")), any(), any());
+        verify(productItemRepository, never()).markRegistered(eq(batch), eq(List.of("S1")), any(), any());
+        assertThat(registered).isNotDone();
+
+        s1.complete(SerialNumberStatusDto.builder().exists(true).build());
+        s2.completeExceptionally(new RuntimeException("node unavailable"));
+
+        assertThat(registered).succeedsWithin(2, TimeUnit.SECONDS).isEqualTo(3L);
+        verify(productItemRepository).markRegistered(eq(batch), eq(List.of("S1")), any(), any());
+        assertThat(batch.getSerialRegistrationAttempts()).isEqualTo(1);
+        assertThat(batch.getSerialRegistrationNextAttemptAt()).isNotNull();
+    }
+
+    @Test
+    void failedStatusCallsLeaveTheChunkForTheNextRun() {
+        when(productItemRepository.findUnregisteredSerialNumbers(batch)).thenReturn(List.of("S1", "S2"));
+        when(blockchainService.registerSerialNumbers(BATCH_ID, List.of("S1", "S2")))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("timeout")));
+        when(blockchainService.getSerialStatus(eq(BATCH_ID), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("node unavailable")));
+
+        assertThat(service.registerPendingSerials(BATCH_ID)).succeedsWithin(2, TimeUnit.SECONDS).isEqualTo(0L);
+        verify(productItemRepository, never()).markRegistered(any(), anyList(), any(), any());
+        verify(drugBatchRepository).updateSerialRegistration(batch.getId(), batch.getRegisteredSerials(),
+                1, batch.getSerialRegistrationNextAttemptAt(), false);
+        verify(drugBatchRepository, never()).save(any());
+    }
+
+    private static TransactionReceipt receipt() {
+        TransactionReceipt receipt = new TransactionReceipt();
+        receipt.setTransactionHash("0x01");
+        receipt.setBlockNumber("0x1");
+        receipt.setGasUsed("0x5208");
+        receipt.setStatus("0x1");
+        return receipt;
+    }
+}
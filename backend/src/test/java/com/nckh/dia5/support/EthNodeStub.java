@@ -0,0 +1,121 @@
+package com.nckh.dia5.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.web3j.protocol.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process JSON-RPC node for web3j ({@code Web3j.build(stub)}): every HTTP round trip, single
+ * request or batch, costs {@code latencyMs} and is counted, and each method answers through a
+ * handler registered with {@link #on}. Batches can be answered in reverse order, as nodes are
+ * allowed to.
+ */
+public class EthNodeStub extends Service {
+
+    private final long latencyMs;
+    private final Map<String, Function<JsonNode, Object>> handlers = new ConcurrentHashMap<>();
+    private final AtomicLong roundTrips = new AtomicLong();
+    private volatile boolean reverseBatches;
+
+    public EthNodeStub(long latencyMs) {
+        super(false);
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Answers {@code method} with the handler's result (serialized as JSON) for the request params;
+     * a handler throwing {@link RpcError} answers with a JSON-RPC error instead.
+     */
+    public EthNodeStub on(String method, Function<JsonNode, Object> handler) {
+        handlers.put(method, handler);
+        return this;
+    }
+
+    public EthNodeStub reverseBatches() {
+        reverseBatches = true;
+        return this;
+    }
+
+    public long roundTrips() {
+        return roundTrips.get();
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        roundTrips.incrementAndGet();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the node");
+            }
+        }
+
+        JsonNode request = objectMapper.readTree(payload);
+        JsonNode response;
+        if (request.isArray()) {
+            List<JsonNode> answers = new ArrayList<>();
+            request.forEach(item -> answers.add(answer(item)));
+            if (reverseBatches) {
+                Collections.reverse(answers);
+            }
+            ArrayNode array = objectMapper.createArrayNode();
+            array.addAll(answers);
+            response = array;
+        } else {
+            response = answer(request);
+        }
+        return new ByteArrayInputStream(objectMapper.writeValueAsBytes(response));
+    }
+
+    private JsonNode answer(JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+
+        String method = request.get("method").asText();
+        Function<JsonNode, Object> handler = handlers.get(method);
+        try {
+            if (handler == null) {
+                throw new RpcError(-32601, "the method " + method + " does not exist/is not available");
+            }
+            response.set("result", objectMapper.valueToTree(handler.apply(request.get("params"))));
+        } catch (RpcError e) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", e.code);
+            error.put("message", e.getMessage());
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * JSON-RPC error answered by a handler, e.g. {@code new RpcError(-32000, "nonce too low")}.
+     */
+    public static class RpcError extends RuntimeException {
+
+        private final int code;
+
+        public RpcError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+}
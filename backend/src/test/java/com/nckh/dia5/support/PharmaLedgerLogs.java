@@ -0,0 +1,93 @@
+package com.nckh.dia5.support;
+
+import com.nckh.dia5.service.PharmaLedgerEventDecoder;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeEncoder;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ABI-encoded PharmaLedger logs, built the way the contract emits them (indexed values as topics,
+ * the rest as data), for decoder tests and benchmarks.
+ */
+public final class PharmaLedgerLogs {
+
+    public static final String TX_HASH = "0x" + "ab".repeat(32);
+    public static final long BLOCK_NUMBER = 1234;
+
+    private PharmaLedgerLogs() {
+    }
+
+    public static Log batchIssued(long batchId, String manufacturer, String drugName, long quantity, String qrCode) {
+        return log(PharmaLedgerEventDecoder.BATCH_ISSUED_EVENT,
+                List.of(uint(batchId), new Address(manufacturer)),
+                List.of(new Utf8String(drugName), uint(quantity), new Utf8String(qrCode)));
+    }
+
+    public static Log serialNumbersRegistered(long batchId, long count) {
+        return log(PharmaLedgerEventDecoder.SERIAL_NUMBERS_REGISTERED_EVENT,
+                List.of(uint(batchId)),
+                List.of(uint(count)));
+    }
+
+    public static Log serialNumberRedeemed(long batchId, String serialNumber, String redeemedBy, long timestamp) {
+        return log(PharmaLedgerEventDecoder.SERIAL_NUMBER_REDEEMED_EVENT,
+                List.of(uint(batchId), new Address(redeemedBy)),
+                List.of(new Utf8String(serialNumber), uint(timestamp)));
+    }
+
+    public static Log shipmentCreated(long shipmentId, long batchId, String from, String to, long quantity) {
+        return log(PharmaLedgerEventDecoder.SHIPMENT_CREATED_EVENT,
+                List.of(uint(shipmentId), uint(batchId), new Address(from)),
+                List.of(new Address(to), uint(quantity)));
+    }
+
+    public static Log shipmentReceived(long shipmentId, long batchId, String receiver, long receiveDate) {
+        return log(PharmaLedgerEventDecoder.SHIPMENT_RECEIVED_EVENT,
+                List.of(uint(shipmentId), uint(batchId), new Address(receiver)),
+                List.of(uint(receiveDate)));
+    }
+
+    public static Log batchStatusUpdated(long batchId, int oldStatus, int newStatus) {
+        return log(PharmaLedgerEventDecoder.BATCH_STATUS_UPDATED_EVENT,
+                List.of(uint(batchId)),
+                List.of(new Uint8(oldStatus), new Uint8(newStatus)));
+    }
+
+    public static Log ownershipTransferred(long batchId, String previousOwner, String newOwner) {
+        return log(PharmaLedgerEventDecoder.OWNERSHIP_TRANSFERRED_EVENT,
+                List.of(uint(batchId), new Address(previousOwner), new Address(newOwner)),
+                List.of());
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Log log(Event event, List<? extends Type> indexed, List<? extends Type> data) {
+        List<String> topics = new ArrayList<>();
+        topics.add(EventEncoder.encode(event));
+        for (Type value : indexed) {
+            topics.add("0x" + TypeEncoder.encode(value));
+        }
+
+        Log log = new Log();
+        log.setTopics(topics);
+        log.setData("0x" + FunctionEncoder.encodeConstructor(new ArrayList<Type>(data)));
+        log.setTransactionHash(TX_HASH);
+        log.setBlockNumber("0x" + Long.toHexString(BLOCK_NUMBER));
+        log.setLogIndex("0x0");
+        return log;
+    }
+
+    private static Uint256 uint(long value) {
+        return new Uint256(BigInteger.valueOf(value));
+    }
+}
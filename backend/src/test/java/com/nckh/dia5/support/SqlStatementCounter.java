@@ -0,0 +1,61 @@
+package com.nckh.dia5.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Hibernate statement inspector that counts the SQL statements issued by the current thread while
+ * {@link #count(Callable)} runs. Statements from other threads (scheduled jobs, the indexer) are
+ * ignored, so counts stay stable in a full application context.
+ *
+ * Register it with {@link #PROPERTY}{@code =com.nckh.dia5.support.SqlStatementCounter}.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    public static final String PROPERTY = "spring.jpa.properties.hibernate.session_factory.statement_inspector";
+
+    private static final ThreadLocal<long[]> COUNTER = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        long[] counter = COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+        return sql;
+    }
+
+    /**
+     * Wraps a task so that the statements it runs on another thread count towards the caller's
+     * {@link #count(Callable)}. Usable as a {@code TaskDecorator}; the caller must wait for the task.
+     */
+    public static Runnable propagate(Runnable task) {
+        long[] counter = COUNTER.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            COUNTER.set(counter);
+            try {
+                task.run();
+            } finally {
+                COUNTER.remove();
+            }
+        };
+    }
+
+    /**
+     * Runs the action on this thread and returns how many statements it sent to the database.
+     */
+    public static long count(Callable<?> action) throws Exception {
+        long[] counter = {0};
+        COUNTER.set(counter);
+        try {
+            action.call();
+            return counter[0];
+        } finally {
+            COUNTER.remove();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+INSERT INTO users (id, email, password_hash, created_at, is_profile_complete, is_active) VALUES
+    ('user-1', 'patient1@example.com', 'x', CURRENT_TIMESTAMP, FALSE, TRUE),
+    ('user-2', 'patient2@example.com', 'x', CURRENT_TIMESTAMP, FALSE, TRUE);
+
+INSERT INTO chat_sessions (id, user_id, started_at, total_messages) VALUES
+    ('session-1', 'user-1', CURRENT_TIMESTAMP, 0),
+    ('session-2', 'user-2', CURRENT_TIMESTAMP, 0);
@@ -0,0 +1,42 @@
+-- Mỗi shipment trỏ tới lô và công ty riêng, để lazy load theo từng dòng (N+1) hiện ra trong số câu lệnh
+INSERT INTO pharma_companies (id, name, wallet_address, company_type, blockchain_verified, is_active, status, created_at) VALUES
+    (1, 'Manufacturer A', '0x00000000000000000000000000000000000000a1', 'MANUFACTURER', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (2, 'Manufacturer B', '0x00000000000000000000000000000000000000a2', 'MANUFACTURER', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (3, 'Manufacturer C', '0x00000000000000000000000000000000000000a3', 'MANUFACTURER', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (4, 'Distributor A', '0x00000000000000000000000000000000000000b1', 'DISTRIBUTOR', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (5, 'Distributor B', '0x00000000000000000000000000000000000000b2', 'DISTRIBUTOR', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (6, 'Distributor C', '0x00000000000000000000000000000000000000b3', 'DISTRIBUTOR', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (7, 'Pharmacy A', '0x00000000000000000000000000000000000000c1', 'PHARMACY', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP),
+    (8, 'Pharmacy B', '0x00000000000000000000000000000000000000c2', 'PHARMACY', FALSE, TRUE, 'ACTIVE', CURRENT_TIMESTAMP);
+
+INSERT INTO drug_batches (id, batch_id, drug_name, manufacturer, batch_number, quantity, manufacturer_address, current_owner,
+        manufacture_timestamp, expiry_date, status, is_synced, registered_serials, redeemed_serials,
+        serial_registration_attempts, serial_registration_failed, created_at) VALUES
+    (1, 1001, 'Paracetamol 500mg', 'Manufacturer A', 'LOT-1', 100, '0x00000000000000000000000000000000000000a1',
+        '0x00000000000000000000000000000000000000b1', CURRENT_TIMESTAMP, DATEADD('YEAR', 2, CURRENT_TIMESTAMP), 'IN_TRANSIT', TRUE, 0, 0, 0, FALSE, CURRENT_TIMESTAMP),
+    (2, 1002, 'Amoxicillin 250mg', 'Manufacturer B', 'LOT-2', 200, '0x00000000000000000000000000000000000000a2',
+        '0x00000000000000000000000000000000000000b2', CURRENT_TIMESTAMP, DATEADD('YEAR', 2, CURRENT_TIMESTAMP), 'IN_TRANSIT', TRUE, 0, 0, 0, FALSE, CURRENT_TIMESTAMP),
+    (3, 1003, 'Ibuprofen 400mg', 'Manufacturer C', 'LOT-3', 300, '0x00000000000000000000000000000000000000a3',
+        '0x00000000000000000000000000000000000000b3', CURRENT_TIMESTAMP, DATEADD('YEAR', 2, CURRENT_TIMESTAMP), 'IN_TRANSIT', TRUE, 0, 0, 0, FALSE, CURRENT_TIMESTAMP);
+
+INSERT INTO drug_shipments (id, shipment_code, blockchain_shipment_id, from_address, to_address, from_company_id, to_company_id,
+        quantity, shipment_date, shipment_status, create_tx_hash, is_synced, batch_id, created_at) VALUES
+    (1, 'SHIP-1', 1, '0x00000000000000000000000000000000000000a1', '0x00000000000000000000000000000000000000b1', 1, 4,
+        10, CURRENT_TIMESTAMP, 'IN_TRANSIT', '0x01', TRUE, 1, CURRENT_TIMESTAMP),
+    (2, 'SHIP-2', 2, '0x00000000000000000000000000000000000000a2', '0x00000000000000000000000000000000000000b2', 2, 5,
+        20, CURRENT_TIMESTAMP, 'IN_TRANSIT', '0x02', TRUE, 2, CURRENT_TIMESTAMP),
+    (3, 'SHIP-3', 3, '0x00000000000000000000000000000000000000a3', '0x00000000000000000000000000000000000000b3', 3, 6,
+        30, CURRENT_TIMESTAMP, 'IN_TRANSIT', '0x03', TRUE, 3, CURRENT_TIMESTAMP);
+
+INSERT INTO medications (id, name, generic_name, drug_class, requires_prescription, is_controlled_substance, created_at) VALUES
+    (1, 'Paracetamol 500mg', 'Paracetamol', 'Giảm đau hạ sốt', FALSE, FALSE, CURRENT_TIMESTAMP),
+    (2, 'Amoxicillin 250mg', 'Amoxicillin', 'Kháng sinh', TRUE, FALSE, CURRENT_TIMESTAMP),
+    (3, 'Ibuprofen 400mg', 'Ibuprofen', 'Giảm đau hạ sốt', FALSE, FALSE, CURRENT_TIMESTAMP);
+
+-- Pharmacy A có một dòng kho, Pharmacy B có ba dòng, mỗi dòng nhận từ một nhà phân phối riêng
+INSERT INTO pharmacy_inventory (id, pharmacy_id, batch_id, drug_name, manufacturer, batch_number, quantity, reserved_quantity,
+        sold_quantity, received_from_distributor_id, received_shipment_id, received_quantity, created_at) VALUES
+    (1, 7, 1, 'Paracetamol 500mg', 'Manufacturer A', 'LOT-1', 10, 0, 0, 4, 1, 10, CURRENT_TIMESTAMP),
+    (2, 8, 1, 'Paracetamol 500mg', 'Manufacturer A', 'LOT-1', 10, 0, 0, 4, 1, 10, CURRENT_TIMESTAMP),
+    (3, 8, 2, 'Amoxicillin 250mg', 'Manufacturer B', 'LOT-2', 20, 0, 0, 5, 2, 20, CURRENT_TIMESTAMP),
+    (4, 8, 3, 'Ibuprofen 400mg', 'Manufacturer C', 'LOT-3', 30, 0, 0, 6, 3, 30, CURRENT_TIMESTAMP);
@@ -28,6 +28,10 @@ apiClient.interceptors.request.use(
 // Response interceptor to handle API responses
 apiClient.interceptors.response.use(
   (response) => {
+    if (response.config.rawResponse) {
+      return response;
+    }
+
     let data = response.data;
     
     // If data is a string, try to parse it as JSON
@@ -58,6 +62,21 @@ apiClient.interceptors.response.use(
   }
 );
 
+// List endpoints are cursor-paged: follow X-Next-Cursor to the last page so callers still get every row
+const PAGE_LIMIT = 1000;
+const getAllPages = async (url, params = {}) => {
+  const rows = [];
+  let cursor;
+  let body;
+  do {
+    const response = await apiClient.get(url, { params: { limit: PAGE_LIMIT, ...params, cursor }, rawResponse: true });
+    body = typeof response.data === 'string' ? JSON.parse(response.data) : response.data;
+    rows.push(...(body?.data || []));
+    cursor = response.headers['x-next-cursor'];
+  } while (cursor);
+  return { ...body, data: rows };
+};
+
 // Pharmacy service for hiệu thuốc
 export const pharmacyService = {
   // Get available batches (inventory) - NOW USING pharmacy_inventory
@@ -154,7 +173,7 @@ export const pharmacyService = {
   // Get medications from backend
   getMedications: async () => {
     try {
-      return await apiClient.get('/medications');
+      return await getAllPages('/medications');
     } catch (error) {
       console.error('Failed to get medications:', error);
       return { success: false, data: [], message: error.message };
@@ -405,7 +424,7 @@ export const pharmacyService = {
   // Get all shipments (for distributor/manufacturer to manage)
   getAllShipments: async () => {
     try {
-      const response = await apiClient.get('/blockchain/drugs/shipments');
+      const response = await getAllPages('/blockchain/drugs/shipments');
       return response;
     } catch (error) {
       console.error('Failed to get all shipments:', error);
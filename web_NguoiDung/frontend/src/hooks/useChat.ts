@@ -242,7 +242,8 @@ export const useChat = (onSessionCreated?: (sessionId: string) => void): UseChat
     lastMessageRef.current = null;
 
     // ✅ Auto-create session if none exists (like ChatGPT)
-    if (!sessionId) {
+    let activeSessionId = sessionId;
+    if (!activeSessionId) {
       logger.info('No session exists, creating new one automatically');
       const newSessionId = await startNewSession(false); // ✅ Don't force, use normal logic
       if (!newSessionId) {
@@ -250,6 +251,7 @@ export const useChat = (onSessionCreated?: (sessionId: string) => void): UseChat
         setError('Không thể tạo phiên chat mới');
         return;
       }
+      activeSessionId = newSessionId;
     }
 
     try {
@@ -275,7 +277,7 @@ export const useChat = (onSessionCreated?: (sessionId: string) => void): UseChat
 
       setMessages(prev => [...prev, userMessage]);
 
-      // NO backend call here! Stream directly from Python chatbot first
+      // Backend lưu tin nhắn user, proxy stream từ Python chatbot và lưu câu trả lời AI
 
       // Create assistant message for streaming
       const assistantMessageId = generateMessageId();
@@ -301,7 +303,7 @@ export const useChat = (onSessionCreated?: (sessionId: string) => void): UseChat
       try {
         abortControllerRef.current = await ChatService.streamChat(
           query,
-          sessionId,
+          activeSessionId,
           {
             onChunk: (chunkData) => {
               // ✅ Enhanced check for request state - more robust than before
@@ -333,33 +335,7 @@ export const useChat = (onSessionCreated?: (sessionId: string) => void): UseChat
                 processingTime: finalData.processing_time || 0
               };
               
-              // NOW save both messages to backend after streaming is complete
-              try {
-                // Save user message first
-                if (sessionId) {
-                  await BackendService.sendUserMessage(sessionId, query);
-                  logger.info('User message saved to backend');
-                  
-                  // Then save AI response (only if we have content)
-                  if (accumulatedContent && accumulatedContent.trim().length > 0) {
-                    await BackendService.saveAiResponse(
-                      sessionId, 
-                      accumulatedContent,
-                      finalData.confidence,
-                      finalData.processing_time || 0,
-                      finalData.sources || [] // ✅ NEW: Pass sources array
-                    );
-                  } else {
-                    logger.warn('No content to save for AI response');
-                  }
-                  logger.info('AI response saved to backend');
-                } else {
-                  logger.warn('No session ID available to save messages');
-                }
-              } catch (backendError) {
-                logger.warn('Failed to save messages to backend:', backendError);
-                // Không fail UX
-              }
+              // Tin nhắn user và câu trả lời AI đã được backend lưu trong lúc stream
               
               // Mark streaming as complete với metadata
               setMessages(prev => 
@@ -1,11 +1,11 @@
 import type { ChatStreamCallbacks, ChatChunkData, ChatFinalData } from '../types';
+import { AuthService } from './auth.service';
+import { APP_CONFIG } from '../constants/config';
 
 /**
  * Chat Service để tích hợp với medical_chatbot_enhanced.py streaming API
  */
 export class ChatService {
-  private static readonly CHAT_API_URL = 'http://localhost:5001/chat/stream';
-
   /**
    * Stream chat với backend medical chatbot
    * @param query Câu hỏi của user
@@ -23,14 +23,20 @@ export class ChatService {
     try {
       console.log('🚀 Starting stream chat:', { query, sessionId });
 
-      const response = await fetch(this.CHAT_API_URL, {
+      if (!sessionId) {
+        throw new Error('Missing chat session');
+      }
+
+      // Backend proxy stream từ Python chatbot và tự lưu tin nhắn user + câu trả lời AI
+      const response = await fetch(`${APP_CONFIG.API_BASE_URL}/chat/sessions/${sessionId}/stream`, {
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
+          'Accept': 'text/event-stream',
+          ...AuthService.getAuthHeaders(),
         },
         body: JSON.stringify({
-          query: query,
-          session_id: sessionId,
+          message: query,
         }),
         signal: abortController.signal,
       });
@@ -89,8 +95,8 @@ export class ChatService {
             let data = '';
 
             for (const line of lines) {
-              if (line.startsWith('data: ')) {
-                data = line.substring(6);
+              if (line.startsWith('data:')) {
+                data = line.substring(5).trim();
                 break;
               }
             }
@@ -29,7 +29,7 @@ apiClient.interceptors.request.use(
 
 // Response interceptor for error handling
 apiClient.interceptors.response.use(
-  (response) => response.data,
+  (response) => (response.config.rawResponse ? response : response.data),
   (error) => {
     console.error('API Error:', error);
     
@@ -53,6 +53,21 @@ apiClient.interceptors.response.use(
 );
 
 // Helpers
+// List endpoints are cursor-paged: follow X-Next-Cursor to the last page so callers still get every row
+const PAGE_LIMIT = 1000;
+const getAllPages = async (url, params = {}) => {
+  const rows = [];
+  let cursor;
+  let body;
+  do {
+    const response = await apiClient.get(url, { params: { limit: PAGE_LIMIT, ...params, cursor }, rawResponse: true });
+    body = typeof response.data === 'string' ? JSON.parse(response.data) : response.data;
+    rows.push(...(body?.data || []));
+    cursor = response.headers['x-next-cursor'];
+  } while (cursor);
+  return { ...body, data: rows };
+};
+
 const toDateTimeString = (input) => {
   const d = new Date(input);
   const pad = (n) => String(n).padStart(2, '0');
@@ -94,12 +109,12 @@ export const blockchainAPI = {
   getShipmentsByBatch: (batchId) => apiClient.get(`/blockchain/drugs/batches/${batchId}/shipments`),
   
   // All batches
-  getAllBatches: () => apiClient.get('/blockchain/drugs/batches'),
+  getAllBatches: () => getAllPages('/blockchain/drugs/batches'),
   // Batches by current owner -> GET /api/blockchain/drugs/batches/owner/{ownerAddress}
   getBatchesByOwner: (ownerAddress) => apiClient.get(`/blockchain/drugs/batches/owner/${ownerAddress}`),
   
   // Shipments list
-  getShipments: (params = {}) => apiClient.get('/blockchain/drugs/shipments', { params }),
+  getShipments: (params = {}) => getAllPages('/blockchain/drugs/shipments', params),
   
   // Shipment by ID
   getShipmentById: (shipmentId) => apiClient.get(`/blockchain/drugs/shipments/${shipmentId}`),
@@ -123,7 +138,7 @@ export const distributorService = {
   // Batches
   getBatches: async () => {
     try {
-      return await apiClient.get('/blockchain/drugs/batches');
+      return await getAllPages('/blockchain/drugs/batches');
     } catch (error) {
       console.error('Failed to get batches:', error.message);
       throw error;
@@ -26,7 +26,7 @@ apiClient.interceptors.request.use(
 
 // Response interceptor for error handling
 apiClient.interceptors.response.use(
-  (response) => response.data,
+  (response) => (response.config.rawResponse ? response : response.data),
   (error) => {
     console.error('API Error:', error);
     
@@ -43,6 +43,21 @@ apiClient.interceptors.response.use(
 );
 
 // Helpers
+// List endpoints are cursor-paged: follow X-Next-Cursor to the last page so callers still get every row
+const PAGE_LIMIT = 1000;
+const getAllPages = async (url, params = {}) => {
+  const rows = [];
+  let cursor;
+  let body;
+  do {
+    const response = await apiClient.get(url, { params: { limit: PAGE_LIMIT, ...params, cursor }, rawResponse: true });
+    body = typeof response.data === 'string' ? JSON.parse(response.data) : response.data;
+    rows.push(...(body?.data || []));
+    cursor = response.headers['x-next-cursor'];
+  } while (cursor);
+  return { ...body, data: rows };
+};
+
 const toDateTimeString = (input) => {
   const d = new Date(input);
   const pad = (n) => String(n).padStart(2, '0');
@@ -145,7 +160,7 @@ const manufacturerService = {
   getProducts: async () => {
     try {
       // Use real manufacturer products
-      const response = await apiClient.get('/products');
+      const response = await getAllPages('/products');
       if (response.success && response.data) {
         // Backend already returns drug_products; no transform/duplication
         return { success: true, data: response.data };
@@ -196,7 +211,7 @@ const manufacturerService = {
 
   getBatches: async () => {
     try {
-      return await apiClient.get('/blockchain/drugs/batches');
+      return await getAllPages('/blockchain/drugs/batches');
     } catch (error) {
       console.error('Failed to get batches:', error.message);
       throw error;
@@ -233,7 +248,7 @@ const manufacturerService = {
 
   getShipments: async () => {
     try {
-      return await apiClient.get('/blockchain/drugs/shipments');
+      return await getAllPages('/blockchain/drugs/shipments');
     } catch (error) {
       console.error('Failed to get shipments:', error.message);
       throw error;